@@ -0,0 +1,142 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+/**
+ * Measures the catalog lookups hit on every OWS request (layer lookup by name) and the workspace
+ * and store scoped listings used by the capabilities documents, the REST API and the admin UI.
+ *
+ * <p>Run with {@code java -jar target/benchmarks.jar CatalogBenchmark -prof gc} to also get the
+ * allocation rate of each lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    int layers;
+
+    @Param({"10"})
+    int workspaces;
+
+    @Param({"10"})
+    int storesPerWorkspace;
+
+    CatalogBenchmarkData data;
+
+    Catalog catalog;
+
+    /** Pre-resolved items, so that the benchmarks measure a single lookup each */
+    StoreInfo[] stores;
+
+    WorkspaceInfo[] workspaceInfos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = new CatalogBenchmarkData(workspaces, storesPerWorkspace, layers);
+        catalog = data.build();
+
+        workspaceInfos = new WorkspaceInfo[workspaces];
+        stores = new StoreInfo[workspaces * storesPerWorkspace];
+        for (int i = 0; i < workspaces; i++) {
+            String wsName = CatalogBenchmarkData.workspaceName(i);
+            workspaceInfos[i] = catalog.getWorkspaceByName(wsName);
+            for (int j = 0; j < storesPerWorkspace; j++) {
+                stores[i * storesPerWorkspace + j] =
+                        catalog.getDataStoreByName(wsName, CatalogBenchmarkData.storeName(i, j));
+            }
+        }
+    }
+
+    int randomLayer() {
+        return ThreadLocalRandom.current().nextInt(layers);
+    }
+
+    @Benchmark
+    public LayerInfo getLayerByPrefixedName() {
+        return catalog.getLayerByName(data.prefixedLayerName(randomLayer()));
+    }
+
+    @Benchmark
+    public LayerInfo getLayerByUnprefixedName() {
+        return catalog.getLayerByName(CatalogBenchmarkData.layerName(randomLayer()));
+    }
+
+    @Benchmark
+    public LayerInfo getLayerByMissingName() {
+        return catalog.getLayerByName("ws0:missing" + randomLayer());
+    }
+
+    @Benchmark
+    public List<ResourceInfo> getResourcesByStore() {
+        StoreInfo store = stores[ThreadLocalRandom.current().nextInt(stores.length)];
+        return catalog.getResourcesByStore(store, ResourceInfo.class);
+    }
+
+    @Benchmark
+    public List<DataStoreInfo> getStoresByWorkspace() {
+        WorkspaceInfo ws = workspaceInfos[ThreadLocalRandom.current().nextInt(workspaces)];
+        return catalog.getStoresByWorkspace(ws, DataStoreInfo.class);
+    }
+
+    @Benchmark
+    public List<LayerInfo> getLayersByResource() {
+        ResourceInfo resource =
+                catalog.getResourceByName(data.prefixedLayerName(randomLayer()), ResourceInfo.class);
+        return catalog.getLayers(resource);
+    }
+
+    /** The kind of query issued by the layer page of the admin UI */
+    @Benchmark
+    public void listLayersPage(Blackhole bh) {
+        String wsName = CatalogBenchmarkData.workspaceName(randomLayer() % workspaces);
+        Filter filter = Predicates.equal("resource.store.workspace.name", wsName);
+        SortBy sort = Predicates.asc("resource.name");
+        try (CloseableIterator<LayerInfo> it =
+                catalog.list(LayerInfo.class, filter, 0, 25, sort)) {
+            while (it.hasNext()) {
+                bh.consume(it.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public int countLayersInWorkspace() {
+        String wsName = CatalogBenchmarkData.workspaceName(randomLayer() % workspaces);
+        return catalog.count(
+                LayerInfo.class, Predicates.equal("resource.store.workspace.name", wsName));
+    }
+}
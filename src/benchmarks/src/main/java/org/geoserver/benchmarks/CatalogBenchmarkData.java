@@ -0,0 +1,153 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+/**
+ * Builds an in memory {@link CatalogImpl} of configurable size, in the spirit of {@code MockData},
+ * but without touching the file system so that the setup cost does not pollute the measurements.
+ *
+ * <p>Layers are spread evenly among the workspaces, and among the stores of each workspace. Names
+ * are predictable ({@code ws<i>}, {@code store<i>_<j>}, {@code layer<k>}) so that benchmarks can
+ * pick random existing (or missing) items without keeping references around.
+ */
+public class CatalogBenchmarkData {
+
+    public static final String STYLE_NAME = "point";
+
+    int workspaces;
+
+    int storesPerWorkspace;
+
+    int layers;
+
+    CatalogImpl catalog;
+
+    public CatalogBenchmarkData(int workspaces, int storesPerWorkspace, int layers) {
+        this.workspaces = workspaces;
+        this.storesPerWorkspace = storesPerWorkspace;
+        this.layers = layers;
+    }
+
+    /** Builds the catalog, replacing the one built by a previous call, if any */
+    public Catalog build() {
+        catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        StyleInfo style = factory.createStyle();
+        style.setName(STYLE_NAME);
+        style.setFilename(STYLE_NAME + ".sld");
+        catalog.add(style);
+        style = catalog.getStyleByName(STYLE_NAME);
+
+        List<DataStoreInfo> stores = new ArrayList<>();
+        List<NamespaceInfo> namespaces = new ArrayList<>();
+        for (int i = 0; i < workspaces; i++) {
+            WorkspaceInfo ws = factory.createWorkspace();
+            ws.setName(workspaceName(i));
+            catalog.add(ws);
+
+            NamespaceInfo ns = factory.createNamespace();
+            ns.setPrefix(workspaceName(i));
+            ns.setURI("http://geoserver.org/benchmarks/" + workspaceName(i));
+            catalog.add(ns);
+            namespaces.add(catalog.getNamespaceByPrefix(ns.getPrefix()));
+
+            for (int j = 0; j < storesPerWorkspace; j++) {
+                DataStoreInfo ds = factory.createDataStore();
+                ds.setName(storeName(i, j));
+                ds.setWorkspace(catalog.getWorkspaceByName(ws.getName()));
+                ds.setEnabled(true);
+                catalog.add(ds);
+                stores.add(catalog.getDataStoreByName(ws.getName(), ds.getName()));
+            }
+        }
+
+        ReferencedEnvelope bounds = new ReferencedEnvelope(-180, 180, -90, 90, null);
+        ReferencedEnvelope latLon =
+                new ReferencedEnvelope(-180, 180, -90, 90, DefaultGeographicCRS.WGS84);
+        for (int k = 0; k < layers; k++) {
+            int wsIdx = workspaceIndex(k);
+            DataStoreInfo store = stores.get(wsIdx * storesPerWorkspace + storeIndex(k));
+
+            FeatureTypeInfo ft = factory.createFeatureType();
+            ft.setName(layerName(k));
+            ft.setNativeName(layerName(k));
+            ft.setTitle("Layer " + k);
+            ft.setStore(store);
+            ft.setNamespace(namespaces.get(wsIdx));
+            ft.setSRS("EPSG:4326");
+            ft.setNativeBoundingBox(bounds);
+            ft.setLatLonBoundingBox(latLon);
+            ft.setEnabled(true);
+            catalog.add(ft);
+
+            LayerInfo layer = factory.createLayer();
+            layer.setResource(
+                    catalog.getFeatureTypeByName(ft.getNamespace().getPrefix(), ft.getName()));
+            layer.setDefaultStyle(style);
+            layer.setEnabled(true);
+            catalog.add(layer);
+        }
+
+        return catalog;
+    }
+
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    public int getLayers() {
+        return layers;
+    }
+
+    public int getWorkspaces() {
+        return workspaces;
+    }
+
+    public int getStoresPerWorkspace() {
+        return storesPerWorkspace;
+    }
+
+    /** The workspace the k-th layer has been assigned to */
+    public int workspaceIndex(int layer) {
+        return layer % workspaces;
+    }
+
+    /** The store, within its workspace, the k-th layer has been assigned to */
+    public int storeIndex(int layer) {
+        return (layer / workspaces) % storesPerWorkspace;
+    }
+
+    public static String workspaceName(int i) {
+        return "ws" + i;
+    }
+
+    public static String storeName(int workspace, int store) {
+        return "store" + workspace + "_" + store;
+    }
+
+    public static String layerName(int k) {
+        return "layer" + k;
+    }
+
+    /** The prefixed name of the k-th layer */
+    public String prefixedLayerName(int k) {
+        return workspaceName(workspaceIndex(k)) + ":" + layerName(k);
+    }
+}
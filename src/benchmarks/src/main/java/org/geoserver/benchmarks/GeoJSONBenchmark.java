@@ -0,0 +1,141 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import net.sf.json.util.JSONBuilder;
+import org.apache.commons.io.output.NullWriter;
+import org.geoserver.wfs.json.GeoJSONBuilder;
+import org.geoserver.wfs.json.RoundingUtil;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the geometry encoding performed by {@link GeoJSONBuilder#writeGeom}, which is shared by
+ * the WFS GeoJSON output format and the WMS GeoJSON feature info. Output goes to a {@link
+ * NullWriter}, so the numbers only account for the encoding itself.
+ *
+ * <p>The {@code *JSONBuilder} benchmarks encode the same geometries one ordinate at a time through
+ * the plain json-lib {@link JSONBuilder}, as {@link GeoJSONBuilder} did before coordinates were
+ * streamed by {@link org.geoserver.wfs.json.GeoJSONCoordinateWriter}, as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeoJSONBenchmark {
+
+    /** Number of vertices in the polygon shell and in each line string */
+    @Param({"10", "1000", "100000"})
+    int vertices;
+
+    @Param({"6"})
+    int numDecimals;
+
+    Writer writer = new NullWriter();
+
+    Point point;
+
+    Polygon polygon;
+
+    MultiLineString lines;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        GeometryFactory gf = new GeometryFactory();
+        point = gf.createPoint(new Coordinate(12.345678912, 45.678912345));
+
+        Coordinate[] ring = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            ring[i] = new Coordinate(10 + Math.cos(angle) * 7.123456789, Math.sin(angle) * 3.3);
+        }
+        ring[vertices] = ring[0];
+        polygon = gf.createPolygon(ring);
+
+        LineString[] strings = new LineString[10];
+        for (int i = 0; i < strings.length; i++) {
+            Coordinate[] coords = new Coordinate[vertices];
+            for (int j = 0; j < vertices; j++) {
+                coords[j] = new Coordinate(j * 0.000123456789, i + j * 0.000987654321);
+            }
+            strings[i] = gf.createLineString(coords);
+        }
+        lines = gf.createMultiLineString(strings);
+    }
+
+    GeoJSONBuilder builder() {
+        GeoJSONBuilder builder = new GeoJSONBuilder(writer);
+        builder.setNumberOfDecimals(numDecimals);
+        return builder;
+    }
+
+    @Benchmark
+    public Object writePoint() {
+        return builder().writeGeom(point);
+    }
+
+    @Benchmark
+    public Object writePolygon() {
+        return builder().writeGeom(polygon);
+    }
+
+    @Benchmark
+    public Object writeMultiLineString() {
+        return builder().writeGeom(lines);
+    }
+
+    @Benchmark
+    public Object writePolygonJSONBuilder() {
+        JSONBuilder builder = new JSONBuilder(writer);
+        builder.object().key("type").value("Polygon").key("coordinates").array();
+        writeCoordinates(builder, polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            writeCoordinates(builder, polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+        return builder.endArray().endObject();
+    }
+
+    @Benchmark
+    public Object writeMultiLineStringJSONBuilder() {
+        JSONBuilder builder = new JSONBuilder(writer);
+        builder.object().key("type").value("MultiLineString").key("coordinates").array();
+        for (int i = 0; i < lines.getNumGeometries(); i++) {
+            writeCoordinates(builder, ((LineString) lines.getGeometryN(i)).getCoordinateSequence());
+        }
+        return builder.endArray().endObject();
+    }
+
+    void writeCoordinates(JSONBuilder builder, CoordinateSequence coordinates) {
+        builder.array();
+        for (int i = 0; i < coordinates.size(); i++) {
+            builder.array();
+            builder.value(RoundingUtil.round(coordinates.getX(i), numDecimals));
+            builder.value(RoundingUtil.round(coordinates.getY(i), numDecimals));
+            builder.endArray();
+        }
+        builder.endArray();
+    }
+}
@@ -0,0 +1,97 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.output.NullOutputStream;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.png.AdaptivePNGWriter;
+import org.geoserver.wms.map.png.PNGJWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link PNGJWriter} and {@link AdaptivePNGWriter} encoders on 256x256 RGBA tiles that
+ * are empty, mostly transparent (a few lines) or dense (many filled shapes). Output goes to a
+ * {@link NullOutputStream}, so only the encoding is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PNGEncodingBenchmark {
+
+    @Param({"empty", "sparse", "dense"})
+    String tile;
+
+    /** The WMS PNG compression, in percent */
+    @Param({"25", "90"})
+    int compression;
+
+    OutputStream output = new NullOutputStream();
+
+    WMSMapContent mapContent = new WMSMapContent();
+
+    BufferedImage image;
+
+    float quality;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        quality = (100 - compression) / 100.0f;
+        image = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        Random random = new Random(0);
+        if ("sparse".equals(tile)) {
+            graphics.setColor(Color.BLUE);
+            graphics.setStroke(new BasicStroke(2));
+            for (int i = 0; i < 5; i++) {
+                graphics.drawLine(
+                        random.nextInt(256),
+                        random.nextInt(256),
+                        random.nextInt(256),
+                        random.nextInt(256));
+            }
+        } else if ("dense".equals(tile)) {
+            for (int i = 0; i < 200; i++) {
+                graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+                graphics.fillOval(
+                        random.nextInt(256), random.nextInt(256), 5 + random.nextInt(50), 20);
+            }
+        }
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public Object pngj() {
+        return new PNGJWriter().writePNG(image, output, quality, mapContent);
+    }
+
+    @Benchmark
+    public Object adaptive() {
+        return new AdaptivePNGWriter().writePNG(image, output, quality, mapContent);
+    }
+}
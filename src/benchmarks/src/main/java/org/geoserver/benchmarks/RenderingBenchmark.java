@@ -0,0 +1,130 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMS;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.WMSMockData;
+import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.map.RenderedImageMapOutputFormat;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RenderedImageMapOutputFormat#produceMap(WMSMapContent)} on an in memory vector
+ * layer, using the {@link WMSMockData} setup to avoid the full application context. Image encoding
+ * is not part of the measurement, only the rendering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RenderingBenchmark {
+
+    /** Number of polygons in the layer, arranged on a regular grid */
+    @Param({"100", "10000"})
+    int features;
+
+    /** Image size, 256 is the typical tile, 2048 a large print */
+    @Param({"256", "2048"})
+    int size;
+
+    RenderedImageMapOutputFormat outputFormat;
+
+    ListFeatureCollection collection;
+
+    Style style;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        WMSMockData mockData = new WMSMockData();
+        mockData.setUp();
+        WMS wms = mockData.getWMS();
+        outputFormat = new RenderedImageMapOutputFormat("image/png", wms);
+
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("grid");
+        tb.add("geom", Polygon.class, DefaultGeographicCRS.WGS84);
+        tb.add("value", Integer.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+
+        collection = new ListFeatureCollection(type);
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+        GeometryFactory gf = new GeometryFactory();
+        int side = (int) Math.ceil(Math.sqrt(features));
+        double dx = 360d / side;
+        double dy = 180d / side;
+        for (int i = 0; i < features; i++) {
+            double x = -180 + (i % side) * dx;
+            double y = -90 + (i / side) * dy;
+            Polygon cell =
+                    gf.createPolygon(
+                            new Coordinate[] {
+                                new Coordinate(x, y),
+                                new Coordinate(x + dx * 0.9, y),
+                                new Coordinate(x + dx * 0.9, y + dy * 0.9),
+                                new Coordinate(x, y + dy * 0.9),
+                                new Coordinate(x, y)
+                            });
+            fb.add(cell);
+            fb.add(i);
+            collection.add(fb.buildFeature("grid." + i));
+        }
+
+        StyleBuilder sb = new StyleBuilder();
+        style = sb.createStyle(sb.createPolygonSymbolizer(Color.ORANGE, Color.BLACK, 1));
+    }
+
+    @Benchmark
+    public Object produceMap() {
+        GetMapRequest request = new GetMapRequest();
+        request.setFormat("image/png");
+        request.setWidth(size);
+        request.setHeight(size);
+
+        WMSMapContent map = new WMSMapContent(request);
+        map.getViewport()
+                .setBounds(
+                        new ReferencedEnvelope(
+                                new Envelope(-180, 180, -90, 90), DefaultGeographicCRS.WGS84));
+        map.setMapWidth(size);
+        map.setMapHeight(size);
+        map.setTransparent(true);
+        map.addLayer(new FeatureLayer(collection, style));
+        RenderedImageMap result = outputFormat.produceMap(map);
+        Object image = result.getImage();
+        // also disposes the map content
+        result.dispose();
+        return image;
+    }
+}
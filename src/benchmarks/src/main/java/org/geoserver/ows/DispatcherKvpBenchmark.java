@@ -0,0 +1,141 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.ows.kvp.BooleanKvpParser;
+import org.geoserver.ows.kvp.DoubleKvpParser;
+import org.geoserver.ows.kvp.FormatOptionsKvpParser;
+import org.geoserver.ows.kvp.IntegerKvpParser;
+import org.geoserver.ows.kvp.TimeKvpParser;
+import org.geoserver.ows.util.KvpUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.kvp.BBoxKvpParser;
+import org.geoserver.wms.kvp.ColorKvpParser;
+import org.geotools.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Measures the KVP handling the {@link Dispatcher} performs on every GET request: normalization of
+ * the raw parameters and parsing of the values with the registered {@link KvpParser} extensions.
+ *
+ * <p>The benchmark lives in the {@code org.geoserver.ows} package to reach the package private
+ * dispatcher methods. The application context is populated with the parsers a GetMap request
+ * actually uses, plus a configurable number of parsers bound to other services, mimicking the
+ * amount of {@link KvpParser} beans found in a full GeoServer setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatcherKvpBenchmark {
+
+    /** Number of parsers registered for services other than WMS */
+    @Param({"0", "200"})
+    int otherParsers;
+
+    StaticApplicationContext context;
+
+    Dispatcher dispatcher;
+
+    MockHttpServletRequest httpRequest;
+
+    int parsers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new StaticApplicationContext();
+        register(new BBoxKvpParser());
+        register(new IntegerKvpParser("width"));
+        register(new IntegerKvpParser("height"));
+        register(new BooleanKvpParser("transparent"));
+        register(new BooleanKvpParser("tiled"));
+        register(new ColorKvpParser("bgcolor"));
+        register(new FormatOptionsKvpParser());
+        register(new TimeKvpParser("time"));
+        register(new DoubleKvpParser("scalemethod_threshold"));
+        for (int i = 0; i < otherParsers; i++) {
+            KvpParser parser = new IntegerKvpParser("param" + i);
+            parser.setService(i % 2 == 0 ? "WCS" : "WFS");
+            parser.setVersion(new Version("2.0.0"));
+            register(parser);
+        }
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+
+        dispatcher = new Dispatcher();
+
+        httpRequest = new MockHttpServletRequest("GET", "/geoserver/wms");
+        httpRequest.addParameter("service", "WMS");
+        httpRequest.addParameter("version", "1.1.1");
+        httpRequest.addParameter("request", "GetMap");
+        httpRequest.addParameter("layers", "topp:states,topp:roads,topp:poi");
+        httpRequest.addParameter("styles", "");
+        httpRequest.addParameter("srs", "EPSG:4326");
+        httpRequest.addParameter("bbox", "-124.73142200000001,24.955967,-66.969849,49.371735");
+        httpRequest.addParameter("width", "768");
+        httpRequest.addParameter("height", "330");
+        httpRequest.addParameter("format", "image/png");
+        httpRequest.addParameter("transparent", "true");
+        httpRequest.addParameter("tiled", "true");
+        httpRequest.addParameter("bgcolor", "0xFFFFFF");
+        httpRequest.addParameter("format_options", "antialias:full;dpi:90");
+        httpRequest.addParameter("time", "2021-01-01T00:00:00Z");
+        httpRequest.addParameter("exceptions", "application/vnd.ogc.se_inimage");
+        httpRequest.addParameter("tilesorigin", "-124.73142200000001,24.955967");
+        httpRequest.addParameter("buffer", "10");
+        httpRequest.addParameter("env", "color:FF0000");
+        httpRequest.addParameter("cql_filter", "PERSONS > 1000000");
+        httpRequest.addParameter("scalemethod_threshold", "0.5");
+    }
+
+    private void register(KvpParser parser) {
+        String name = parser.getClass().getSimpleName() + "-" + parsers++;
+        context.getBeanFactory().registerSingleton(name, parser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+        context.close();
+    }
+
+    private Request newRequest() {
+        Request request = new Request();
+        request.setHttpRequest(httpRequest);
+        return request;
+    }
+
+    /** Normalization of the raw parameter map only */
+    @Benchmark
+    public Map normalize() {
+        return KvpUtils.normalize(httpRequest.getParameterMap());
+    }
+
+    /** Full KVP pre-parse and parse, as performed by the dispatcher for each GET request */
+    @Benchmark
+    public Map parseKvp() {
+        Request request = newRequest();
+        dispatcher.parseKVP(request);
+        return request.getKvp();
+    }
+}
@@ -0,0 +1,163 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Measures the service and response lookups the {@link Dispatcher} performs on every request,
+ * comparing the precompiled {@link DispatcherTables} with the extension lookups and scans the
+ * dispatcher used to perform (the {@code legacy} benchmarks replicate them).
+ *
+ * <p>The application context is populated with a configurable number of services and responses,
+ * bound to unrelated result types, mimicking a full GeoServer setup, plus the ones the looked up
+ * request actually uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatcherTablesBenchmark {
+
+    /** Number of services and responses registered besides the looked up ones */
+    @Param({"10", "200"})
+    int extensions;
+
+    StaticApplicationContext context;
+
+    Dispatcher dispatcher;
+
+    Request request;
+
+    Object result = "result";
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new StaticApplicationContext();
+        for (int i = 0; i < extensions; i++) {
+            register("service" + i, service("service" + i, "1.0.0"));
+            register("response" + i, new BenchmarkResponse(Integer.class, "format" + i));
+        }
+        register("wms111", service("wms", "1.1.1"));
+        register("wms130", service("wms", "1.3.0"));
+        register("objectResponse", new BenchmarkResponse(Object.class, "text/plain"));
+        register("charSequenceResponse", new BenchmarkResponse(CharSequence.class, "text/plain"));
+        register("stringResponse", new BenchmarkResponse(String.class, "text/plain"));
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+
+        dispatcher = new Dispatcher();
+        request = new Request();
+        request.setOutputFormat("text/plain");
+    }
+
+    private Service service(String id, String version) {
+        return new Service(id, new Object(), new Version(version), Arrays.asList("GetMap"));
+    }
+
+    private void register(String name, Object bean) {
+        context.getBeanFactory().registerSingleton(name, bean);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+        context.close();
+    }
+
+    @Benchmark
+    public Service findService() {
+        return dispatcher.findService("wms", "1.3.0", null);
+    }
+
+    /** The service lookup as performed before the dispatch tables */
+    @Benchmark
+    public Service findServiceLegacy() {
+        List<Service> matches = new ArrayList<>();
+        for (Service service : GeoServerExtensions.extensions(Service.class)) {
+            if (service.getId().equalsIgnoreCase("wms")) {
+                matches.add(service);
+            }
+        }
+        Version version = new Version("1.3.0");
+        for (Service service : matches) {
+            if (version.equals(service.getVersion())) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Response findResponse() {
+        return dispatcher.findResponse(request, null, result);
+    }
+
+    /** The response lookup as performed before the dispatch tables */
+    @Benchmark
+    public Response findResponseLegacy() {
+        List<Response> responses = GeoServerExtensions.extensions(Response.class);
+        for (Iterator<Response> it = responses.iterator(); it.hasNext(); ) {
+            Response response = it.next();
+            if (!response.getBinding().isAssignableFrom(result.getClass())
+                    || !response.canHandle(null)
+                    || !response.getOutputFormats().contains(request.getOutputFormat())) {
+                it.remove();
+            }
+        }
+        Collections.sort(
+                responses,
+                (r1, r2) -> {
+                    Class c1 = r1.getBinding();
+                    Class c2 = r2.getBinding();
+                    if (c1.equals(c2)) {
+                        return 0;
+                    }
+                    return c1.isAssignableFrom(c2) ? 1 : -1;
+                });
+        return responses.get(0);
+    }
+
+    static class BenchmarkResponse extends Response {
+
+        BenchmarkResponse(Class<?> binding, String outputFormat) {
+            super(binding, outputFormat);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) {
+            return "text/plain";
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation) {}
+    }
+}
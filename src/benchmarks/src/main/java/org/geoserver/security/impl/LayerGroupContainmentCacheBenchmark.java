@@ -0,0 +1,163 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.benchmarks.CatalogBenchmarkData;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.security.impl.LayerGroupContainmentCache.LayerGroupSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the containment lookups of the {@link LayerGroupContainmentCache} on deep and wide
+ * nested layer groups, alone and while another thread keeps modifying the group contents.
+ *
+ * <p>The groups are organized in {@code depth} levels of {@code width} groups each. The groups of
+ * the first level share all the layers, every other group contains two groups of the level below,
+ * so that each item has a growing number of ancestors. Modifications are simulated by firing the
+ * catalog modify events that add and remove a layer from a first level group, in order to measure
+ * the cache alone rather than the catalog validation. Lives in the security package as the cache
+ * is package private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayerGroupContainmentCacheBenchmark {
+
+    @Param({"10000"})
+    int layers;
+
+    @Param({"2", "8"})
+    int depth;
+
+    @Param({"10", "100"})
+    int width;
+
+    Catalog catalog;
+
+    LayerGroupContainmentCache cache;
+
+    ResourceInfo[] resources;
+
+    LayerGroupInfo[] groups;
+
+    LayerGroupInfo modified;
+
+    List<PublishedInfo> fullLayers;
+
+    List<PublishedInfo> reducedLayers;
+
+    boolean reduced;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CatalogBenchmarkData data = new CatalogBenchmarkData(10, 1, layers);
+        catalog = data.build();
+
+        resources = new ResourceInfo[layers];
+        List<LayerInfo> layerInfos = new ArrayList<>();
+        for (int k = 0; k < layers; k++) {
+            LayerInfo layer = catalog.getLayerByName(data.prefixedLayerName(k));
+            layerInfos.add(layer);
+            resources[k] = layer.getResource();
+        }
+
+        groups = new LayerGroupInfo[depth * width];
+        for (int level = 0; level < depth; level++) {
+            for (int j = 0; j < width; j++) {
+                LayerGroupInfo group = catalog.getFactory().createLayerGroup();
+                group.setName("group" + level + "_" + j);
+                group.setMode(LayerGroupInfo.Mode.CONTAINER);
+                if (level == 0) {
+                    // split the layers among the first level groups
+                    for (int k = j; k < layers; k += width) {
+                        group.getLayers().add(layerInfos.get(k));
+                    }
+                } else {
+                    group.getLayers().add(groups[(level - 1) * width + j]);
+                    if (width > 1) {
+                        group.getLayers().add(groups[(level - 1) * width + (j + 1) % width]);
+                    }
+                }
+                catalog.add(group);
+                groups[level * width + j] = catalog.getLayerGroupByName(group.getName());
+            }
+        }
+
+        cache = new LayerGroupContainmentCache(catalog);
+
+        modified = groups[0];
+        fullLayers = new ArrayList<>(modified.getLayers());
+        reducedLayers = new ArrayList<>(fullLayers.subList(1, fullLayers.size()));
+    }
+
+    @Benchmark
+    public Collection<LayerGroupSummary> resourceContainers() {
+        ResourceInfo resource = resources[ThreadLocalRandom.current().nextInt(layers)];
+        return cache.getContainerGroupsFor(resource);
+    }
+
+    @Benchmark
+    public Collection<LayerGroupSummary> groupContainers() {
+        LayerGroupInfo group = groups[ThreadLocalRandom.current().nextInt(groups.length)];
+        return cache.getContainerGroupsFor(group);
+    }
+
+    @Benchmark
+    public void modifyGroup() {
+        toggleLayer();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Collection<LayerGroupSummary> mixedRead() {
+        return resourceContainers();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() {
+        toggleLayer();
+    }
+
+    /** Removes or adds back the first layer of the modified group, alternatively */
+    private synchronized void toggleLayer() {
+        List<PublishedInfo> oldLayers = reduced ? reducedLayers : fullLayers;
+        List<PublishedInfo> newLayers = reduced ? fullLayers : reducedLayers;
+        catalog.fireModified(
+                modified,
+                Collections.singletonList("layers"),
+                Collections.singletonList(oldLayers),
+                Collections.singletonList(newLayers));
+        reduced = !reduced;
+    }
+}
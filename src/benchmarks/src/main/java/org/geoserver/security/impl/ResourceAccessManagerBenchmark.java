@@ -0,0 +1,134 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.impl;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.benchmarks.CatalogBenchmarkData;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.security.DataAccessLimits;
+import org.geoserver.security.WorkspaceAccessLimits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Measures the layer and workspace access checks performed by the {@link
+ * DefaultResourceAccessManager} for each catalog item a secured request touches, with and without
+ * the per role set decision cache.
+ *
+ * <p>Each workspace is assigned to a role, and one layer every ten has its own rule. Lives in the
+ * security package to build the rules in memory and to toggle the decision cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourceAccessManagerBenchmark {
+
+    @Param({"1000", "100000"})
+    int layers;
+
+    @Param({"100"})
+    int workspaces;
+
+    @Param({"10"})
+    int roles;
+
+    @Param({"true", "false"})
+    boolean cache;
+
+    CatalogBenchmarkData data;
+
+    DefaultResourceAccessManager manager;
+
+    LayerInfo[] layerInfos;
+
+    WorkspaceInfo[] workspaceInfos;
+
+    Authentication[] users;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = new CatalogBenchmarkData(workspaces, 1, layers);
+        Catalog catalog = data.build();
+
+        Properties rules = new Properties();
+        rules.put("*.*.r", "ADMIN");
+        rules.put("*.*.w", "ADMIN");
+        for (int i = 0; i < workspaces; i++) {
+            rules.put(CatalogBenchmarkData.workspaceName(i) + ".*.r", roleName(i % roles));
+        }
+        for (int k = 0; k < layers; k += 10) {
+            String ws = CatalogBenchmarkData.workspaceName(data.workspaceIndex(k));
+            String layer = CatalogBenchmarkData.layerName(k);
+            rules.put(ws + "." + layer + ".r", roleName((k + 1) % roles));
+        }
+        DataAccessRuleDAO dao =
+                new DataAccessRuleDAO(catalog, null) {
+                    @Override
+                    protected void checkPropertyFile(boolean force) {
+                        // rules are built in memory
+                    }
+                };
+        dao.loadRules(rules);
+        manager = new DefaultResourceAccessManager(dao, catalog);
+        manager.decisions = new AccessDecisionCache(cache ? AccessDecisionCache.DEFAULT_SIZE : 0);
+
+        layerInfos = new LayerInfo[layers];
+        for (int k = 0; k < layers; k++) {
+            layerInfos[k] = catalog.getLayerByName(data.prefixedLayerName(k));
+        }
+        workspaceInfos = new WorkspaceInfo[workspaces];
+        for (int i = 0; i < workspaces; i++) {
+            workspaceInfos[i] = catalog.getWorkspaceByName(CatalogBenchmarkData.workspaceName(i));
+        }
+        users = new Authentication[roles];
+        for (int r = 0; r < roles; r++) {
+            GrantedAuthority role = new GeoServerRole(roleName(r));
+            users[r] =
+                    new TestingAuthenticationToken(
+                            "user" + r, null, Collections.singletonList(role));
+        }
+    }
+
+    static String roleName(int r) {
+        return "ROLE_" + r;
+    }
+
+    Authentication randomUser() {
+        return users[ThreadLocalRandom.current().nextInt(users.length)];
+    }
+
+    @Benchmark
+    public DataAccessLimits layerAccessLimits() {
+        LayerInfo layer = layerInfos[ThreadLocalRandom.current().nextInt(layers)];
+        return manager.getAccessLimits(randomUser(), layer);
+    }
+
+    @Benchmark
+    public WorkspaceAccessLimits workspaceAccessLimits() {
+        WorkspaceInfo ws = workspaceInfos[ThreadLocalRandom.current().nextInt(workspaces)];
+        return manager.getAccessLimits(randomUser(), ws);
+    }
+}
@@ -0,0 +1,102 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster;
+
+import java.io.Serializable;
+import java.util.List;
+import org.geoserver.catalog.CatalogInfo;
+
+/**
+ * A single change to the catalog, in a form that can be shipped to other nodes of the cluster and
+ * applied there without reloading the configuration.
+ *
+ * <p>Added and modified objects travel as their XML configuration, with references to other
+ * catalog objects encoded by id, modifications also carry the names of the changed properties.
+ * Removals only carry the object identity.
+ */
+public class CatalogDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        ADD,
+        MODIFY,
+        REMOVE,
+        /** A change that cannot be applied incrementally, the configuration must be reloaded */
+        RELOAD
+    }
+
+    Type type;
+
+    /** id of object */
+    String id;
+
+    /** name of object, for logging purposes */
+    String name;
+
+    /** catalog interface of the object */
+    Class<? extends CatalogInfo> clazz;
+
+    /** XML encoding of the object, for additions and modifications */
+    String xml;
+
+    /** names of the modified properties */
+    List<String> propertyNames;
+
+    public CatalogDelta(
+            Type type, String id, String name, Class<? extends CatalogInfo> clazz, String xml) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.clazz = clazz;
+        this.xml = xml;
+    }
+
+    /** A delta requesting a full reload, with the reason for it */
+    public static CatalogDelta reload(String reason) {
+        return new CatalogDelta(Type.RELOAD, null, reason, null, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getObjectId() {
+        return id;
+    }
+
+    public String getObjectName() {
+        return name;
+    }
+
+    public Class<? extends CatalogInfo> getObjectInterface() {
+        return clazz;
+    }
+
+    public String getXml() {
+        return xml;
+    }
+
+    public List<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    public void setPropertyNames(List<String> propertyNames) {
+        this.propertyNames = propertyNames;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.valueOf(type)).append(" [");
+        if (clazz != null) {
+            sb.append(clazz.getSimpleName()).append(" id:").append(id).append(", ");
+        }
+        sb.append("name:").append(name);
+        if (propertyNames != null) {
+            sb.append(", properties:").append(propertyNames);
+        }
+        return sb.append("]").toString();
+    }
+}
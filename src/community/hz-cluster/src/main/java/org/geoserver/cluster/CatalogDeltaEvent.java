@@ -0,0 +1,67 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of {@link CatalogDelta} published by a node.
+ *
+ * <p>Batches are numbered in sequence for each node run (identified by {@link #getEpoch()}), so
+ * that the receivers can tell when they missed one.
+ */
+public class CatalogDeltaEvent extends Event {
+
+    /** serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** identifies the run of the publishing node, sequences restart with each run */
+    UUID epoch;
+
+    /** sequence number of the batch within the epoch, starting from 1 */
+    long sequence;
+
+    /** publication time, in milliseconds since the epoch */
+    long timestamp;
+
+    List<CatalogDelta> deltas;
+
+    public CatalogDeltaEvent(UUID epoch, long sequence, List<CatalogDelta> deltas) {
+        super();
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.deltas = deltas;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public UUID getEpoch() {
+        return epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<CatalogDelta> getDeltas() {
+        return deltas;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("CatalogDeltaEvent[")
+                .append(getSource())
+                .append(", sequence:")
+                .append(sequence)
+                .append(", deltas:")
+                .append(deltas.size())
+                .append(']')
+                .toString();
+    }
+}
@@ -0,0 +1,402 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFacade;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.CoverageInfo;
+import org.geoserver.catalog.CoverageStoreInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WMSLayerInfo;
+import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.WMTSLayerInfo;
+import org.geoserver.catalog.WMTSStoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.impl.CatalogAddEventImpl;
+import org.geoserver.catalog.event.impl.CatalogModifyEventImpl;
+import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
+import org.geoserver.catalog.event.impl.CatalogRemoveEventImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.ResolvingProxy;
+import org.geoserver.cluster.CatalogDelta;
+import org.geoserver.cluster.CatalogDelta.Type;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.ows.util.OwsUtils;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Encodes catalog changes as {@link CatalogDelta} and applies them to the local catalog.
+ *
+ * <p>Deltas are applied straight to the {@link CatalogFacade}, modifying the existing objects in
+ * place so that the objects referring to them stay valid, and the catalog listeners are then
+ * notified as the catalog would. Since the data directory is shared among the nodes, the listeners
+ * persisting the configuration are left out by the caller provided filter.
+ */
+class CatalogDeltaApplier {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogDeltaApplier.class);
+
+    /** Catalog interfaces, the most specific ones first */
+    static final List<Class<? extends CatalogInfo>> INTERFACES =
+            Arrays.asList(
+                    WorkspaceInfo.class,
+                    NamespaceInfo.class,
+                    DataStoreInfo.class,
+                    CoverageStoreInfo.class,
+                    WMSStoreInfo.class,
+                    WMTSStoreInfo.class,
+                    StoreInfo.class,
+                    FeatureTypeInfo.class,
+                    CoverageInfo.class,
+                    WMSLayerInfo.class,
+                    WMTSLayerInfo.class,
+                    ResourceInfo.class,
+                    LayerInfo.class,
+                    LayerGroupInfo.class,
+                    StyleInfo.class);
+
+    /**
+     * Properties the catalog lookups are keyed on, changing them requires the object to be indexed
+     * again
+     */
+    static final Set<String> KEY_PROPERTIES =
+            new HashSet<>(
+                    Arrays.asList(
+                            "name", "prefix", "workspace", "namespace", "store", "resource"));
+
+    private final Catalog catalog;
+
+    private final XStreamPersister xp;
+
+    CatalogDeltaApplier(Catalog catalog, XStreamPersister xp) {
+        this.catalog = catalog;
+        this.xp = xp;
+        xp.setCatalog(catalog);
+    }
+
+    /** Returns the catalog interface implemented by the object, or null if not supported */
+    static Class<? extends CatalogInfo> getInterface(CatalogInfo info) {
+        for (Class<? extends CatalogInfo> clazz : INTERFACES) {
+            if (clazz.isInstance(info)) {
+                return clazz;
+            }
+        }
+        return null;
+    }
+
+    CatalogDelta added(CatalogInfo info) throws IOException {
+        return delta(Type.ADD, info, true);
+    }
+
+    CatalogDelta modified(CatalogInfo info, List<String> propertyNames) throws IOException {
+        CatalogDelta delta = delta(Type.MODIFY, info, true);
+        if (delta.getType() == Type.MODIFY) {
+            delta.setPropertyNames(new ArrayList<>(propertyNames));
+        }
+        return delta;
+    }
+
+    CatalogDelta removed(CatalogInfo info) throws IOException {
+        return delta(Type.REMOVE, info, false);
+    }
+
+    private CatalogDelta delta(Type type, CatalogInfo info, boolean encode) throws IOException {
+        info = ModificationProxy.unwrap(info);
+        Class<? extends CatalogInfo> clazz = getInterface(info);
+        String name = OwsUtils.has(info, "name") ? (String) OwsUtils.get(info, "name") : null;
+        if (clazz == null) {
+            return CatalogDelta.reload(type + " " + info);
+        }
+        String xml = null;
+        if (encode) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            synchronized (xp) {
+                xp.save(info, out);
+            }
+            xml = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+        return new CatalogDelta(type, info.getId(), name, clazz, xml);
+    }
+
+    /**
+     * Applies a delta to the local catalog.
+     *
+     * @param delta the change to apply
+     * @param listeners the catalog listeners to notify
+     * @return false if the delta could not be applied, and the configuration must be reloaded
+     */
+    boolean apply(CatalogDelta delta, Predicate<CatalogListener> listeners) throws IOException {
+        switch (delta.getType()) {
+            case ADD:
+                return add(delta, listeners);
+            case MODIFY:
+                return modify(delta, listeners);
+            case REMOVE:
+                return remove(delta, listeners);
+            default:
+                return false;
+        }
+    }
+
+    private boolean add(CatalogDelta delta, Predicate<CatalogListener> listeners)
+            throws IOException {
+        final CatalogFacade facade = catalog.getFacade();
+        if (get(facade, delta.getObjectInterface(), delta.getObjectId()) != null) {
+            // already there, e.g. loaded by a reload that followed the change
+            return true;
+        }
+        CatalogInfo info = decode(delta);
+        CatalogInfo added = add(facade, info);
+
+        CatalogAddEventImpl event = new CatalogAddEventImpl();
+        event.setSource(added);
+        notify(listeners, l -> l.handleAddEvent(event));
+        return true;
+    }
+
+    private boolean modify(CatalogDelta delta, Predicate<CatalogListener> listeners)
+            throws IOException {
+        final Class<? extends CatalogInfo> clazz = delta.getObjectInterface();
+        final CatalogFacade facade = catalog.getFacade();
+        CatalogInfo proxy = get(facade, clazz, delta.getObjectId());
+        if (proxy == null || ModificationProxy.handler(proxy) == null) {
+            LOGGER.fine("Modified object not found, " + delta);
+            return false;
+        }
+        List<String> changed = delta.getPropertyNames();
+        boolean rekey = false;
+        for (String property : changed) {
+            rekey |= KEY_PROPERTIES.contains(property);
+        }
+        if (rekey && (proxy instanceof WorkspaceInfo || proxy instanceof NamespaceInfo)) {
+            // other objects are indexed by workspace and namespace names
+            return false;
+        }
+
+        CatalogInfo remote = decode(delta);
+        for (String property : changed) {
+            copy(remote, proxy, clazz, property);
+        }
+
+        ModificationProxy h = ModificationProxy.handler(proxy);
+        final List<String> propertyNames = h.getPropertyNames();
+        final List<Object> oldValues = h.getOldValues();
+        final List<Object> newValues = h.getNewValues();
+        if (propertyNames.isEmpty()) {
+            // already up to date
+            return true;
+        }
+        final CatalogInfo real = ModificationProxy.unwrap(proxy);
+
+        CatalogModifyEventImpl event = new CatalogModifyEventImpl();
+        event.setSource(real);
+        event.setPropertyNames(propertyNames);
+        event.setOldValues(oldValues);
+        event.setNewValues(newValues);
+        notify(listeners, l -> l.handleModifyEvent(event));
+
+        if (rekey) {
+            // the lookups are keyed on the old values, remove and add back the same instance
+            List<LayerInfo> layers =
+                    real instanceof ResourceInfo
+                            ? facade.getLayers((ResourceInfo) real)
+                            : new ArrayList<>();
+            for (LayerInfo layer : layers) {
+                facade.remove(layer);
+            }
+            remove(facade, real);
+            h.commit();
+            add(facade, real);
+            for (LayerInfo layer : layers) {
+                facade.add(ModificationProxy.unwrap(layer));
+            }
+        } else {
+            h.commit();
+        }
+
+        CatalogPostModifyEventImpl post = new CatalogPostModifyEventImpl();
+        post.setSource(real);
+        post.setPropertyNames(propertyNames);
+        post.setOldValues(oldValues);
+        post.setNewValues(newValues);
+        notify(listeners, l -> l.handlePostModifyEvent(post));
+        return true;
+    }
+
+    private boolean remove(CatalogDelta delta, Predicate<CatalogListener> listeners) {
+        final CatalogFacade facade = catalog.getFacade();
+        CatalogInfo info = get(facade, delta.getObjectInterface(), delta.getObjectId());
+        if (info == null) {
+            // already gone, e.g. a reload followed the removal
+            return true;
+        }
+        final CatalogInfo real = ModificationProxy.unwrap(info);
+        remove(facade, real);
+
+        CatalogRemoveEventImpl event = new CatalogRemoveEventImpl();
+        event.setSource(real);
+        notify(listeners, l -> l.handleRemoveEvent(event));
+        return true;
+    }
+
+    private CatalogInfo decode(CatalogDelta delta) throws IOException {
+        byte[] bytes = delta.getXml().getBytes(StandardCharsets.UTF_8);
+        synchronized (xp) {
+            return xp.load(new ByteArrayInputStream(bytes), delta.getObjectInterface());
+        }
+    }
+
+    /** Copies a property from the decoded object to the modification proxy of the local one */
+    @SuppressWarnings("unchecked")
+    private void copy(
+            CatalogInfo remote,
+            CatalogInfo proxy,
+            Class<? extends CatalogInfo> clazz,
+            String property) {
+        Method getter = OwsUtils.getter(clazz, property, null);
+        if (getter == null) {
+            LOGGER.fine("Unknown property " + property + " for " + clazz.getSimpleName());
+            return;
+        }
+        Object value = resolve(OwsUtils.get(remote, property));
+        Method setter = OwsUtils.setter(clazz, property, getter.getReturnType());
+        try {
+            if (setter != null) {
+                setter.invoke(proxy, value);
+            } else if (value instanceof Collection) {
+                Collection<Object> target = (Collection<Object>) getter.invoke(proxy);
+                target.clear();
+                target.addAll((Collection<Object>) value);
+            } else if (value instanceof Map) {
+                Map<Object, Object> target = (Map<Object, Object>) getter.invoke(proxy);
+                target.clear();
+                target.putAll((Map<Object, Object>) value);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to copy " + property, e);
+            throw new IllegalStateException("Failed to update property " + property, e);
+        }
+    }
+
+    /** Replaces unresolved references with the local catalog objects */
+    @SuppressWarnings("unchecked")
+    private Object resolve(Object value) {
+        if (value instanceof CatalogInfo) {
+            CatalogInfo resolved = ResolvingProxy.resolve(catalog, (CatalogInfo) value);
+            return resolved == null ? value : ModificationProxy.unwrap(resolved);
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object o : (List<Object>) value) list.add(resolve(o));
+            return list;
+        }
+        if (value instanceof Set) {
+            Set<Object> set = new LinkedHashSet<>();
+            for (Object o : (Set<Object>) value) set.add(resolve(o));
+            return set;
+        }
+        return value;
+    }
+
+    private void notify(Predicate<CatalogListener> listeners, ListenerCall call) {
+        for (CatalogListener l : new ArrayList<CatalogListener>(catalog.getListeners())) {
+            if (listeners.test(l)) {
+                try {
+                    call.call(l);
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Catalog listener " + l + " failed", e);
+                }
+            }
+        }
+    }
+
+    private interface ListenerCall {
+        void call(CatalogListener listener) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    static CatalogInfo get(CatalogFacade facade, Class<? extends CatalogInfo> clazz, String id) {
+        if (WorkspaceInfo.class.isAssignableFrom(clazz)) {
+            return facade.getWorkspace(id);
+        } else if (NamespaceInfo.class.isAssignableFrom(clazz)) {
+            return facade.getNamespace(id);
+        } else if (StoreInfo.class.isAssignableFrom(clazz)) {
+            return facade.getStore(id, (Class<StoreInfo>) clazz);
+        } else if (ResourceInfo.class.isAssignableFrom(clazz)) {
+            return facade.getResource(id, (Class<ResourceInfo>) clazz);
+        } else if (LayerInfo.class.isAssignableFrom(clazz)) {
+            return facade.getLayer(id);
+        } else if (LayerGroupInfo.class.isAssignableFrom(clazz)) {
+            return facade.getLayerGroup(id);
+        } else if (StyleInfo.class.isAssignableFrom(clazz)) {
+            return facade.getStyle(id);
+        }
+        throw new IllegalArgumentException("Unsupported type " + clazz);
+    }
+
+    static CatalogInfo add(CatalogFacade facade, CatalogInfo info) {
+        if (info instanceof WorkspaceInfo) {
+            return facade.add((WorkspaceInfo) info);
+        } else if (info instanceof NamespaceInfo) {
+            return facade.add((NamespaceInfo) info);
+        } else if (info instanceof StoreInfo) {
+            return facade.add((StoreInfo) info);
+        } else if (info instanceof ResourceInfo) {
+            return facade.add((ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            return facade.add((LayerInfo) info);
+        } else if (info instanceof LayerGroupInfo) {
+            return facade.add((LayerGroupInfo) info);
+        } else if (info instanceof StyleInfo) {
+            return facade.add((StyleInfo) info);
+        }
+        throw new IllegalArgumentException("Unsupported object " + info);
+    }
+
+    static void remove(CatalogFacade facade, CatalogInfo info) {
+        if (info instanceof WorkspaceInfo) {
+            facade.remove((WorkspaceInfo) info);
+        } else if (info instanceof NamespaceInfo) {
+            facade.remove((NamespaceInfo) info);
+        } else if (info instanceof StoreInfo) {
+            facade.remove((StoreInfo) info);
+        } else if (info instanceof ResourceInfo) {
+            facade.remove((ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            facade.remove((LayerInfo) info);
+        } else if (info instanceof LayerGroupInfo) {
+            facade.remove((LayerGroupInfo) info);
+        } else if (info instanceof StyleInfo) {
+            facade.remove((StyleInfo) info);
+        } else {
+            throw new IllegalArgumentException("Unsupported object " + info);
+        }
+    }
+}
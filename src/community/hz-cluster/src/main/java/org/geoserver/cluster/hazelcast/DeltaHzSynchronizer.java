@@ -0,0 +1,400 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static java.lang.String.format;
+import static org.geoserver.cluster.hazelcast.HazelcastUtil.localAddress;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.cluster.CatalogDelta;
+import org.geoserver.cluster.CatalogDeltaEvent;
+import org.geoserver.cluster.ConfigChangeEvent;
+import org.geoserver.cluster.Event;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerConfigPersister;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.GeoServerResourcePersister;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensions;
+
+/**
+ * Synchronizer that ships the catalog changes to the other nodes, which apply them in place.
+ *
+ * <p>Each added, modified or removed catalog object is encoded as a {@link CatalogDelta}. The
+ * deltas are collected for a short time and published as a single numbered {@link
+ * CatalogDeltaEvent}, so that a burst of changes (e.g. a layer being created through REST) results
+ * in a single message. The receiving nodes apply the deltas to their catalog without reloading it.
+ *
+ * <p>A full reload still happens when a node detects it missed a batch, when a delta cannot be
+ * applied, and for the changes that are not replicated incrementally: the GeoServer configuration
+ * (global, settings, services, logging), the catalog default objects and the renames of
+ * workspaces and namespaces.
+ *
+ * <p>This synchronizer assumes a shared data directory among nodes in the cluster.
+ */
+public class DeltaHzSynchronizer extends HzSynchronizer {
+
+    /** Time the changes are collected before being published, in milliseconds */
+    static final long BATCH_DELAY = 100;
+
+    /** Number of changes that triggers publishing without waiting for {@link #BATCH_DELAY} */
+    static final int MAX_BATCH_SIZE = 500;
+
+    /** lock during reload */
+    protected AtomicBoolean eventLock = new AtomicBoolean();
+
+    /** identifies this run of the node, the batch sequence restarts with it */
+    final UUID epoch = UUID.randomUUID();
+
+    final AtomicLong sequence = new AtomicLong();
+
+    final ScheduledExecutorService publisher;
+
+    final CatalogDeltaApplier applier;
+
+    /** changes waiting to be published, guarded by itself */
+    private final List<CatalogDelta> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> flush;
+
+    /**
+     * Set when the configuration change being saved by the current thread only touched the update
+     * sequence, by the modify event, and cleared by the post modify one. Also cleared by the next
+     * change handled in the same thread, in case the save failed and the post event never came.
+     */
+    private final ThreadLocal<Boolean> sequenceOnly = new ThreadLocal<>();
+
+    /** last batch received for each remote node run */
+    private final Map<UUID, Long> received = new ConcurrentHashMap<>();
+
+    /** last batch received for each remote node run when the last full reload started */
+    private final Map<UUID, Long> reloaded = new ConcurrentHashMap<>();
+
+    private final AtomicLong appliedDeltas = new AtomicLong();
+
+    private final AtomicLong reloads = new AtomicLong();
+
+    private final AtomicLong missedBatches = new AtomicLong();
+
+    private final AtomicLong receivedBatches = new AtomicLong();
+
+    private final AtomicLong totalLag = new AtomicLong();
+
+    private final AtomicLong maxLag = new AtomicLong();
+
+    private volatile long lastLag;
+
+    public DeltaHzSynchronizer(HzCluster cluster, GeoServer gs) {
+        super(cluster, gs);
+
+        applier = getNewApplier();
+        publisher = getNewPublisher();
+    }
+
+    CatalogDeltaApplier getNewApplier() {
+        XStreamPersisterFactory xpf = GeoServerExtensions.bean(XStreamPersisterFactory.class);
+        if (xpf == null) {
+            xpf = new XStreamPersisterFactory();
+        }
+        return new CatalogDeltaApplier(cluster.getRawCatalog(), xpf.createXMLPersister());
+    }
+
+    ScheduledExecutorService getNewPublisher() {
+        return Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("Hz-GeoServer-Delta-%d")
+                        .build());
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        enqueue(() -> applier.added(event.getSource()));
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the change is published once committed, see handlePostModifyEvent
+        sequenceOnly.remove();
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        final CatalogInfo source = event.getSource();
+        if (source instanceof Catalog) {
+            enqueue(() -> CatalogDelta.reload("catalog defaults changed"));
+        } else {
+            enqueue(() -> applier.modified(source, event.getPropertyNames()));
+        }
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        enqueue(() -> applier.removed(event.getSource()));
+    }
+
+    @Override
+    public void handleGlobalChange(
+            GeoServerInfo global,
+            List<String> propertyNames,
+            List<Object> oldValues,
+            List<Object> newValues) {
+        // every catalog change bumps the update sequence, which does not need replicating
+        setSequenceOnly(propertyNames);
+        super.handleGlobalChange(global, propertyNames, oldValues, newValues);
+    }
+
+    @Override
+    public void handlePostGlobalChange(GeoServerInfo global) {
+        if (!sequenceOnly()) {
+            super.handlePostGlobalChange(global);
+        }
+    }
+
+    @Override
+    public void handleSettingsModified(
+            SettingsInfo settings,
+            List<String> propertyNames,
+            List<Object> oldValues,
+            List<Object> newValues) {
+        setSequenceOnly(propertyNames);
+        super.handleSettingsModified(settings, propertyNames, oldValues, newValues);
+    }
+
+    @Override
+    public void handleSettingsPostModified(SettingsInfo settings) {
+        if (!sequenceOnly()) {
+            super.handleSettingsPostModified(settings);
+        }
+    }
+
+    private void setSequenceOnly(List<String> propertyNames) {
+        if (propertyNames.size() == 1 && propertyNames.contains("updateSequence")) {
+            sequenceOnly.set(Boolean.TRUE);
+        } else {
+            sequenceOnly.remove();
+        }
+    }
+
+    /** Returns and clears whether the change being committed only touched the update sequence */
+    private boolean sequenceOnly() {
+        Boolean only = sequenceOnly.get();
+        sequenceOnly.remove();
+        return Boolean.TRUE.equals(only);
+    }
+
+    /** Called for the GeoServer configuration changes, which are not replicated incrementally */
+    @Override
+    protected void dispatch(Event e) {
+        if (e instanceof ConfigChangeEvent
+                && ((ConfigChangeEvent) e).getChangeType() == ConfigChangeEvent.Type.MODIFY) {
+            // wait for the post modify event
+            return;
+        }
+        enqueue(() -> CatalogDelta.reload(String.valueOf(e)));
+    }
+
+    private interface DeltaSupplier {
+        CatalogDelta get() throws Exception;
+    }
+
+    private void enqueue(DeltaSupplier supplier) {
+        // the flag only spans a configuration modify event and its post event
+        sequenceOnly.remove();
+        // check lock, if locked it means event in response to configuration reload, don't propagate
+        if (eventLock.get() || applier == null) {
+            return;
+        }
+        CatalogDelta delta;
+        try {
+            delta = supplier.get();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, format("%s - Failed to encode change", nodeId()), e);
+            delta = CatalogDelta.reload("change could not be encoded");
+        }
+        synchronized (pending) {
+            pending.add(delta);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                publisher.execute(this::publish);
+            } else if (flush == null) {
+                flush = publisher.schedule(this::publish, BATCH_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Publishes the collected changes as a single event */
+    void publish() {
+        List<CatalogDelta> batch;
+        synchronized (pending) {
+            flush = null;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        // a reload makes the other changes of the batch moot
+        for (CatalogDelta delta : batch) {
+            if (delta.getType() == CatalogDelta.Type.RELOAD) {
+                batch = Collections.singletonList(delta);
+                break;
+            }
+        }
+        CatalogDeltaEvent event = new CatalogDeltaEvent(epoch, sequence.incrementAndGet(), batch);
+        event.setSource(localAddress(cluster.getHz()));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(format("%s - Publishing event %s", nodeId(), event));
+        }
+        try {
+            topic.publish(event);
+            incCounter(getClass(), "dispatched");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, format("%s - Failed to publish %s", nodeId(), event), e);
+        }
+    }
+
+    @Override
+    protected Future<?> processEvent(Event event) {
+        if (!(event instanceof CatalogDeltaEvent)) {
+            return null;
+        }
+        final CatalogDeltaEvent batch = (CatalogDeltaEvent) event;
+        receivedBatches.incrementAndGet();
+
+        Long reloadedUpTo = reloaded.get(batch.getEpoch());
+        if (reloadedUpTo != null && batch.getSequence() <= reloadedUpTo) {
+            // already covered by the last reload, which read the changes from disk
+            LOGGER.fine(format("%s - Skipping %s, already reloaded", nodeId(), batch));
+        } else {
+            Long last = received.put(batch.getEpoch(), batch.getSequence());
+            if (last != null && batch.getSequence() != last + 1) {
+                long missed = batch.getSequence() - last - 1;
+                missedBatches.addAndGet(Math.max(missed, 1));
+                LOGGER.warning(
+                        format(
+                                "%s - Missed %d change batches from %s, reloading",
+                                nodeId(), missed, batch.getSource()));
+                reload();
+            } else {
+                apply(batch);
+            }
+        }
+
+        long lag = Math.max(0, System.currentTimeMillis() - batch.getTimestamp());
+        lastLag = lag;
+        totalLag.addAndGet(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+        updateHistogram(getClass(), "replicationLag", lag);
+        return null;
+    }
+
+    private void apply(CatalogDeltaEvent batch) {
+        for (CatalogDelta delta : batch.getDeltas()) {
+            boolean applied;
+            try {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(format("%s - Applying %s", nodeId(), delta));
+                }
+                applied = applier.apply(delta, this::isNotified);
+            } catch (Exception e) {
+                LOGGER.log(
+                        Level.WARNING, format("%s - Failed to apply %s", nodeId(), delta), e);
+                applied = false;
+            }
+            if (!applied) {
+                LOGGER.info(format("%s - Reloading for %s", nodeId(), delta));
+                reload();
+                return;
+            }
+            appliedDeltas.incrementAndGet();
+            incCounter(getClass(), "applied");
+        }
+    }
+
+    /** Listeners notified of the applied changes */
+    private boolean isNotified(CatalogListener l) {
+        // Don't notify self otherwise the event bounces back out into the cluster, and don't
+        // persist again what the originating node already wrote to the shared data directory
+        return l != this
+                && isStarted()
+                && !(l instanceof GeoServerConfigPersister)
+                && !(l instanceof GeoServerResourcePersister)
+                // HACK-HACK-HACK -- prevent infinite loop with update sequence listener
+                && !"org.geoserver.config.UpdateSequenceListener"
+                        .equals(l.getClass().getCanonicalName());
+    }
+
+    void reload() {
+        // lock during reload
+        eventLock.set(true);
+        reloaded.putAll(received);
+        try {
+            gs.reload();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Reload failed", e);
+        } finally {
+            eventLock.set(false);
+        }
+        reloads.incrementAndGet();
+        incCounter(getClass(), "reloads");
+    }
+
+    /** Number of changes received from other nodes and applied in place */
+    public long getAppliedDeltaCount() {
+        return appliedDeltas.get();
+    }
+
+    /** Number of full reloads performed */
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    /** Number of change batches found missing in the sequences received from other nodes */
+    public long getMissedBatchCount() {
+        return missedBatches.get();
+    }
+
+    /**
+     * Time between the publication and the processing of the last received batch, in milliseconds.
+     * Includes the configured sync delay.
+     */
+    public long getReplicationLag() {
+        return lastLag;
+    }
+
+    /** Average replication lag, in milliseconds */
+    public double getAverageReplicationLag() {
+        long count = receivedBatches.get();
+        return count == 0 ? 0 : totalLag.get() / (double) count;
+    }
+
+    /** Maximum replication lag, in milliseconds */
+    public long getMaxReplicationLag() {
+        return maxLag.get();
+    }
+}
@@ -282,6 +282,11 @@ public abstract class HzSynchronizer extends GeoServerSynchronizer
         this.registry.counter(MetricRegistry.name(clazz, name)).inc();
     }
 
+    /** Adds a value to the histogram for the specified class and name. */
+    protected void updateHistogram(Class<?> clazz, String name, long value) {
+        this.registry.histogram(MetricRegistry.name(clazz, name)).update(value);
+    }
+
     protected String nodeId() {
         return HazelcastUtil.nodeId(cluster);
     }
@@ -0,0 +1,269 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.cluster.CatalogDelta;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogDeltaApplierTest {
+
+    Catalog source;
+
+    Catalog target;
+
+    CatalogDeltaApplier sender;
+
+    CatalogDeltaApplier receiver;
+
+    /** deltas produced by the changes to the source catalog */
+    List<CatalogDelta> deltas = new ArrayList<>();
+
+    /** events received by the target catalog listeners */
+    List<Object> received = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        XStreamPersisterFactory xpf = new XStreamPersisterFactory();
+        source = new CatalogImpl();
+        target = new CatalogImpl();
+        sender = new CatalogDeltaApplier(source, xpf.createXMLPersister());
+        receiver = new CatalogDeltaApplier(target, xpf.createXMLPersister());
+        source.addListener(new Recorder());
+        target.addListener(new Listener(received));
+
+        CatalogFactory factory = source.getFactory();
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("ws");
+        source.add(ws);
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("ws");
+        ns.setURI("http://geoserver.org/ws");
+        source.add(ns);
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("store");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        source.add(ds);
+
+        assertTrue(replicate());
+        received.clear();
+    }
+
+    /** Applies the pending deltas to the target catalog */
+    boolean replicate() throws IOException {
+        try {
+            for (CatalogDelta delta : deltas) {
+                if (!receiver.apply(delta, l -> true)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            deltas.clear();
+        }
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        WorkspaceInfo ws = target.getWorkspaceByName("ws");
+        assertNotNull(ws);
+        assertEquals(source.getWorkspaceByName("ws").getId(), ws.getId());
+        assertNotNull(target.getNamespaceByPrefix("ws"));
+
+        DataStoreInfo ds = target.getDataStoreByName("ws", "store");
+        assertNotNull(ds);
+        // references are resolved against the target catalog
+        assertSame(ModificationProxy.unwrap(ws), ModificationProxy.unwrap(ds.getWorkspace()));
+    }
+
+    @Test
+    public void testAddTwice() throws Exception {
+        WorkspaceInfo ws = source.getWorkspaceByName("ws");
+        assertTrue(receiver.apply(sender.added(ws), l -> true));
+        assertEquals(1, target.getWorkspaces().size());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testModifyInPlace() throws Exception {
+        DataStoreInfo before = ModificationProxy.unwrap(target.getDataStoreByName("ws", "store"));
+
+        DataStoreInfo ds = source.getDataStoreByName("ws", "store");
+        ds.setDescription("changed");
+        ds.getConnectionParameters().put("foo", "bar");
+        source.save(ds);
+        assertTrue(replicate());
+
+        DataStoreInfo after = target.getDataStoreByName("ws", "store");
+        assertSame(before, ModificationProxy.unwrap(after));
+        assertEquals("changed", after.getDescription());
+        assertEquals("bar", after.getConnectionParameters().get("foo"));
+
+        assertEquals(2, received.size());
+        assertTrue(received.get(0) instanceof CatalogModifyEvent);
+        assertTrue(received.get(1) instanceof CatalogPostModifyEvent);
+        CatalogPostModifyEvent post = (CatalogPostModifyEvent) received.get(1);
+        assertTrue(post.getPropertyNames().contains("description"));
+    }
+
+    @Test
+    public void testRename() throws Exception {
+        DataStoreInfo ds = source.getDataStoreByName("ws", "store");
+        ds.setName("renamed");
+        source.save(ds);
+        assertTrue(replicate());
+
+        assertNull(target.getDataStoreByName("ws", "store"));
+        DataStoreInfo renamed = target.getDataStoreByName("ws", "renamed");
+        assertNotNull(renamed);
+        assertEquals(ds.getId(), renamed.getId());
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        source.remove(source.getDataStoreByName("ws", "store"));
+        assertTrue(replicate());
+
+        assertNull(target.getDataStoreByName("ws", "store"));
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) instanceof CatalogRemoveEvent);
+
+        // removing again is harmless
+        CatalogDelta delta =
+                new CatalogDelta(
+                        CatalogDelta.Type.REMOVE, "missing", "store", DataStoreInfo.class, null);
+        assertTrue(receiver.apply(delta, l -> true));
+    }
+
+    @Test
+    public void testWorkspaceRenameRequiresReload() throws Exception {
+        WorkspaceInfo ws = source.getWorkspaceByName("ws");
+        ws.setName("ws2");
+        source.save(ws);
+        assertFalse(replicate());
+        assertNotNull(target.getWorkspaceByName("ws"));
+    }
+
+    @Test
+    public void testModifyMissingRequiresReload() throws Exception {
+        DataStoreInfo ds = source.getDataStoreByName("ws", "store");
+        target.remove(target.getDataStoreByName("ws", "store"));
+        ds.setDescription("changed");
+        source.save(ds);
+        assertFalse(replicate());
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        assertFalse(receiver.apply(CatalogDelta.reload("test"), l -> true));
+    }
+
+    @Test
+    public void testListenersFiltered() throws Exception {
+        DataStoreInfo ds = source.getDataStoreByName("ws", "store");
+        ds.setDescription("changed");
+        source.save(ds);
+        for (CatalogDelta delta : deltas) {
+            assertTrue(receiver.apply(delta, l -> !(l instanceof Listener)));
+        }
+        assertEquals("changed", target.getDataStoreByName("ws", "store").getDescription());
+        assertTrue(received.isEmpty());
+    }
+
+    /** Records the changes of the source catalog, as the synchronizer does */
+    class Recorder implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            deltas.add(encode(() -> sender.added(event.getSource())));
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            deltas.add(encode(() -> sender.removed(event.getSource())));
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {}
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            deltas.add(
+                    encode(() -> sender.modified(event.getSource(), event.getPropertyNames())));
+        }
+
+        @Override
+        public void reloaded() {}
+    }
+
+    interface Encoder {
+        CatalogDelta encode() throws IOException;
+    }
+
+    static CatalogDelta encode(Encoder encoder) {
+        try {
+            return encoder.encode();
+        } catch (IOException e) {
+            throw new CatalogException(e);
+        }
+    }
+
+    static class Listener implements CatalogListener {
+
+        List<Object> events;
+
+        Listener(List<Object> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            events.add(event);
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            events.add(event);
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            events.add(event);
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            events.add(event);
+        }
+
+        @Override
+        public void reloaded() {}
+    }
+}
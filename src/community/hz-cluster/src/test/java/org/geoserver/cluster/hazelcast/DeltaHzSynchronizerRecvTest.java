@@ -0,0 +1,183 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.StyleInfoImpl;
+import org.geoserver.cluster.CatalogDelta;
+import org.geoserver.cluster.CatalogDeltaEvent;
+import org.geoserver.cluster.Event;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks the received deltas are applied in place, reloading only when needed. */
+public class DeltaHzSynchronizerRecvTest extends HzSynchronizerTest {
+
+    static final String STYLE_ID = "Style-TEST";
+
+    /** the catalog of the node under test */
+    Catalog local;
+
+    /** the catalog of the node publishing the changes */
+    Catalog remote;
+
+    CatalogDeltaApplier remoteApplier;
+
+    UUID epoch = UUID.randomUUID();
+
+    DeltaHzSynchronizer sync;
+
+    @Before
+    public void setUpCatalogs() {
+        XStreamPersisterFactory xpf = new XStreamPersisterFactory();
+        local = new CatalogImpl();
+        remote = new CatalogImpl();
+        local.add(style(local));
+        remote.add(style(remote));
+        remoteApplier = new CatalogDeltaApplier(remote, xpf.createXMLPersister());
+    }
+
+    private StyleInfo style(Catalog catalog) {
+        StyleInfoImpl style = new StyleInfoImpl(catalog);
+        style.setId(STYLE_ID);
+        style.setName("testStyle");
+        style.setFilename("testStyle.sld");
+        return style;
+    }
+
+    @Override
+    protected HzSynchronizer getSynchronizer() {
+        return new DeltaHzSynchronizer(cluster, getGeoServer()) {
+
+            @Override
+            ScheduledExecutorService getNewExecutor() {
+                return getMockExecutor();
+            }
+
+            @Override
+            ScheduledExecutorService getNewPublisher() {
+                return createNiceMock(ScheduledExecutorService.class);
+            }
+
+            @Override
+            CatalogDeltaApplier getNewApplier() {
+                return new CatalogDeltaApplier(
+                        local, new XStreamPersisterFactory().createXMLPersister());
+            }
+
+            @Override
+            public boolean isStarted() {
+                return true;
+            }
+        };
+    }
+
+    /** Changes the style filename on the remote catalog and returns the matching delta */
+    private CatalogDelta modifyStyle(String filename) throws Exception {
+        StyleInfo style = remote.getStyle(STYLE_ID);
+        style.setFilename(filename);
+        remote.save(style);
+        return remoteApplier.modified(
+                remote.getStyle(STYLE_ID), Collections.singletonList("filename"));
+    }
+
+    private void mockMessage(long sequence, CatalogDelta... deltas) {
+        Event evt = new CatalogDeltaEvent(epoch, sequence, Arrays.asList(deltas));
+        evt.setSource(remoteAddress);
+        Message<Event> msg = new Message<Event>(TOPIC_NAME, evt, 0, null);
+        for (MessageListener<Event> listener : captureTopicListener.getValues()) {
+            listener.onMessage(msg);
+        }
+    }
+
+    @Test
+    public void testModifyAppliedInPlace() throws Exception {
+        // no reload expected
+        replay();
+        StyleInfo before = ModificationProxy.unwrap(local.getStyle(STYLE_ID));
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+        mockMessage(1, modifyStyle("first.sld"));
+        mockMessage(2, modifyStyle("second.sld"));
+        waitForSync();
+
+        StyleInfo after = local.getStyle(STYLE_ID);
+        assertEquals("second.sld", after.getFilename());
+        assertSame(before, ModificationProxy.unwrap(after));
+        assertEquals(2, sync.getAppliedDeltaCount());
+        assertEquals(0, sync.getReloadCount());
+        verify();
+    }
+
+    @Test
+    public void testMissedBatchReloads() throws Exception {
+        getGeoServer().reload();
+        expectLastCall();
+        replay();
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+        mockMessage(1, modifyStyle("first.sld"));
+        // batch 2 got lost
+        mockMessage(3, modifyStyle("third.sld"));
+        waitForSync();
+
+        assertEquals(1, sync.getMissedBatchCount());
+        assertEquals(1, sync.getReloadCount());
+        verify();
+    }
+
+    @Test
+    public void testBatchesCoveredByReloadSkipped() throws Exception {
+        getGeoServer().reload();
+        expectLastCall();
+        replay();
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+        mockMessage(1, modifyStyle("first.sld"));
+        // batch 2 is late, batch 3 triggers a reload that reads both from disk
+        mockMessage(3, modifyStyle("third.sld"));
+        mockMessage(2, modifyStyle("second.sld"));
+        mockMessage(4, modifyStyle("fourth.sld"));
+        waitForSync();
+
+        assertEquals(1, sync.getReloadCount());
+        assertEquals(2, sync.getAppliedDeltaCount());
+        assertEquals("fourth.sld", local.getStyle(STYLE_ID).getFilename());
+        verify();
+    }
+
+    @Test
+    public void testReloadDelta() throws Exception {
+        getGeoServer().reload();
+        expectLastCall();
+        replay();
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+        mockMessage(1, CatalogDelta.reload("settings changed"));
+        waitForSync();
+
+        assertEquals(1, sync.getReloadCount());
+        verify();
+    }
+}
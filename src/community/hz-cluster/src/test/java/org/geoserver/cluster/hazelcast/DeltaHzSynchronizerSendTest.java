@@ -0,0 +1,233 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import org.easymock.Capture;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.impl.CatalogAddEventImpl;
+import org.geoserver.catalog.event.impl.CatalogModifyEventImpl;
+import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
+import org.geoserver.catalog.impl.FeatureTypeInfoImpl;
+import org.geoserver.catalog.impl.LayerInfoImpl;
+import org.geoserver.catalog.impl.StyleInfoImpl;
+import org.geoserver.cluster.CatalogDelta;
+import org.geoserver.cluster.CatalogDeltaEvent;
+import org.geoserver.cluster.Event;
+import org.geoserver.config.ConfigurationListener;
+import org.geoserver.config.GeoServerInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks the catalog changes are published as deltas, and don't cause reloads. */
+public class DeltaHzSynchronizerSendTest extends HzSynchronizerTest {
+
+    ScheduledExecutorService publisher;
+
+    Capture<Event> published;
+
+    DeltaHzSynchronizer sync;
+
+    @Before
+    public void setUpPublisher() {
+        // batches are published explicitly by the tests
+        publisher = createNiceMock(ScheduledExecutorService.class);
+        published = new Capture<>();
+        topic.publish(capture(published));
+        expectLastCall();
+    }
+
+    @Override
+    protected HzSynchronizer getSynchronizer() {
+        return new DeltaHzSynchronizer(cluster, getGeoServer()) {
+
+            @Override
+            ScheduledExecutorService getNewExecutor() {
+                return getMockExecutor();
+            }
+
+            @Override
+            ScheduledExecutorService getNewPublisher() {
+                return publisher;
+            }
+
+            @Override
+            public boolean isStarted() {
+                return true;
+            }
+        };
+    }
+
+    private List<CatalogDelta> publish() {
+        sync.publish();
+        Event event = published.getValue();
+        assertTrue(event instanceof CatalogDeltaEvent);
+        assertEquals(localAddress, event.getSource());
+        return ((CatalogDeltaEvent) event).getDeltas();
+    }
+
+    /** Mocks the global configuration save done by the UpdateSequenceListener */
+    private void incrementUpdateSequence(GeoServerInfo global) {
+        for (ConfigurationListener listener : gsListenerCapture.getValues()) {
+            listener.handleGlobalChange(
+                    global,
+                    Arrays.asList("updateSequence"),
+                    Arrays.<Object>asList(1L),
+                    Arrays.<Object>asList(2L));
+        }
+        for (ConfigurationListener listener : gsListenerCapture.getValues()) {
+            listener.handlePostGlobalChange(global);
+        }
+    }
+
+    @Test
+    public void testStyleAdded() throws Exception {
+        GeoServerInfo global = createNiceMock(GeoServerInfo.class);
+        replay(publisher, global);
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+
+        StyleInfoImpl style = new StyleInfoImpl(catalog);
+        style.setId("Style-TEST");
+        style.setName("testStyle");
+        style.setFilename("testStyle.sld");
+
+        CatalogAddEventImpl event = new CatalogAddEventImpl();
+        event.setSource(style);
+        for (CatalogListener listener : catListenerCapture.getValues()) {
+            listener.handleAddEvent(event);
+        }
+        incrementUpdateSequence(global);
+
+        List<CatalogDelta> deltas = publish();
+        assertEquals(1, deltas.size());
+        CatalogDelta delta = deltas.get(0);
+        assertEquals(CatalogDelta.Type.ADD, delta.getType());
+        assertEquals(StyleInfo.class, delta.getObjectInterface());
+        assertEquals("Style-TEST", delta.getObjectId());
+        assertTrue(delta.getXml().contains("testStyle.sld"));
+        verify(publisher);
+    }
+
+    @Test
+    public void testSequenceOnlyFlagCleared() throws Exception {
+        GeoServerInfo global = createNiceMock(GeoServerInfo.class);
+        replay(publisher, global);
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+
+        // an update sequence change whose save failed, the post event never comes
+        sync.handleGlobalChange(
+                global,
+                Arrays.asList("updateSequence"),
+                Arrays.<Object>asList(1L),
+                Arrays.<Object>asList(2L));
+
+        StyleInfoImpl style = new StyleInfoImpl(catalog);
+        style.setId("Style-TEST");
+        style.setName("testStyle");
+        style.setFilename("testStyle.sld");
+        CatalogAddEventImpl event = new CatalogAddEventImpl();
+        event.setSource(style);
+        sync.handleAddEvent(event);
+
+        // a later global change is still replicated
+        sync.handlePostGlobalChange(global);
+
+        List<CatalogDelta> deltas = publish();
+        assertEquals(1, deltas.size());
+        assertEquals(CatalogDelta.Type.RELOAD, deltas.get(0).getType());
+        verify(publisher);
+    }
+
+    @Test
+    public void testLayerModified() throws Exception {
+        GeoServerInfo global = createNiceMock(GeoServerInfo.class);
+        replay(publisher, global);
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+
+        FeatureTypeInfoImpl resource = new FeatureTypeInfoImpl(catalog);
+        resource.setId("FeatureType-TEST");
+        resource.setName("testLayer");
+        LayerInfoImpl layer = new LayerInfoImpl();
+        layer.setId("Layer-TEST");
+        layer.setResource(resource);
+        layer.setEnabled(false);
+
+        // Mock the result of doing this:
+        // layer.setEnabled(false);
+        // getCatalog().save(layer);
+        CatalogModifyEventImpl preEvent = new CatalogModifyEventImpl();
+        preEvent.setSource(layer);
+        preEvent.setPropertyNames(Arrays.asList("enabled"));
+        preEvent.setOldValues(Arrays.<Object>asList(true));
+        preEvent.setNewValues(Arrays.<Object>asList(false));
+        for (CatalogListener listener : catListenerCapture.getValues()) {
+            listener.handleModifyEvent(preEvent);
+        }
+        CatalogPostModifyEventImpl postEvent = new CatalogPostModifyEventImpl();
+        postEvent.setSource(layer);
+        postEvent.setPropertyNames(preEvent.getPropertyNames());
+        postEvent.setOldValues(preEvent.getOldValues());
+        postEvent.setNewValues(preEvent.getNewValues());
+        for (CatalogListener listener : catListenerCapture.getValues()) {
+            listener.handlePostModifyEvent(postEvent);
+        }
+        incrementUpdateSequence(global);
+
+        List<CatalogDelta> deltas = publish();
+        assertEquals(1, deltas.size());
+        CatalogDelta delta = deltas.get(0);
+        assertEquals(CatalogDelta.Type.MODIFY, delta.getType());
+        assertEquals(LayerInfo.class, delta.getObjectInterface());
+        assertEquals("Layer-TEST", delta.getObjectId());
+        assertEquals(Arrays.asList("enabled"), delta.getPropertyNames());
+        verify(publisher);
+    }
+
+    @Test
+    public void testContactChangeReloads() throws Exception {
+        GeoServerInfo global = createNiceMock(GeoServerInfo.class);
+        expect(global.getId()).andStubReturn("GeoServer-TEST");
+        replay(publisher, global);
+
+        sync = (DeltaHzSynchronizer) getSynchronizer();
+        sync.initialize(configWatcher);
+
+        // Mock the result of doing this:
+        // gsInfo.getSettings().getContact().setAddress("42 Test Street");
+        // getGeoServer().save(gsInfo);
+        for (ConfigurationListener listener : gsListenerCapture.getValues()) {
+            listener.handleGlobalChange(
+                    global,
+                    Arrays.asList("contact.address"),
+                    Arrays.<Object>asList("69 Old Avenue"),
+                    Arrays.<Object>asList("42 Test Street"));
+        }
+        for (ConfigurationListener listener : gsListenerCapture.getValues()) {
+            listener.handlePostGlobalChange(global);
+        }
+
+        List<CatalogDelta> deltas = publish();
+        assertEquals(1, deltas.size());
+        assertEquals(CatalogDelta.Type.RELOAD, deltas.get(0).getType());
+        verify(publisher);
+    }
+}
@@ -16,7 +16,6 @@ import static org.geoserver.catalog.Predicates.isNull;
 import static org.geoserver.jdbcconfig.internal.DbUtils.logStatement;
 import static org.geoserver.jdbcconfig.internal.DbUtils.params;
 
-import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
@@ -52,6 +51,8 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -137,6 +138,15 @@ public class ConfigDatabase {
 
     private static final int LOCK_TIMEOUT_SECONDS = 60;
 
+    /** Default value of {@link #setPrefetchSize(int)} */
+    public static final int DEFAULT_PREFETCH_SIZE = 100;
+
+    /** How many levels of references are followed when prefetching */
+    private static final int MAX_PREFETCH_DEPTH = 4;
+
+    /** Maximum number of ids in a single {@code IN} clause, Oracle caps it at 1000 */
+    private static final int MAX_IN_CLAUSE_SIZE = 500;
+
     private Dialect dialect;
 
     private DataSource dataSource;
@@ -165,6 +175,19 @@ public class ConfigDatabase {
 
     private ConcurrentMap<String, Semaphore> locks;
 
+    /**
+     * Incremented, holding the object lock, each time a catalog object is modified or removed, so
+     * that the prefetch does not cache objects read before the change
+     */
+    private final AtomicLong catalogChanges = new AtomicLong();
+
+    /** Number of objects loaded with a single query when iterating over query results */
+    private int prefetchSize = DEFAULT_PREFETCH_SIZE;
+
+    private InfoRowMapper<CatalogInfo> prefetchRowMapper;
+
+    private final QueryStatistics statistics = new QueryStatistics();
+
     /** Protected default constructor needed by spring-jdbc instrumentation */
     protected ConfigDatabase() {
         //
@@ -187,6 +210,7 @@ public class ConfigDatabase {
 
         this.catalogRowMapper = new InfoRowMapper<CatalogInfo>(CatalogInfo.class, binding);
         this.configRowMapper = new InfoRowMapper<Info>(Info.class, binding);
+        this.prefetchRowMapper = new InfoRowMapper<CatalogInfo>(CatalogInfo.class, binding, 2);
 
         if (cacheProvider == null) {
             cacheProvider = DefaultCacheProvider.findProvider();
@@ -259,6 +283,42 @@ public class ConfigDatabase {
         return geoServer;
     }
 
+    /**
+     * Sets how many objects are loaded at once, together with the objects they reference, when
+     * iterating over the results of {@link #query}. Zero disables prefetching, loading each object
+     * with its own query.
+     */
+    public void setPrefetchSize(int prefetchSize) {
+        checkArgument(prefetchSize >= 0);
+        this.prefetchSize = prefetchSize;
+    }
+
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    /** @return the number of queries and time spent on them, by operation */
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    /** Runs a query recording its execution time under the given operation name */
+    private <R> R timed(final String operation, final Supplier<R> query) {
+        final long start = System.nanoTime();
+        int rows = 0;
+        try {
+            R result = query.get();
+            if (result instanceof Collection) {
+                rows = ((Collection<?>) result).size();
+            } else if (result != null) {
+                rows = 1;
+            }
+            return result;
+        } finally {
+            statistics.record(operation, rows, System.nanoTime() - start);
+        }
+    }
+
     public <T extends CatalogInfo> int count(final Class<T> of, final Filter filter) {
 
         QueryBuilder<T> sqlBuilder = QueryBuilder.forCount(dialect, of, dbMappings).filter(filter);
@@ -276,7 +336,12 @@ public class ConfigDatabase {
             final Map<String, Object> namedParameters = sqlBuilder.getNamedParameters();
             logStatement(sql, namedParameters);
 
-            count = template.queryForObject(sql.toString(), namedParameters, Integer.class);
+            count =
+                    timed(
+                            "count",
+                            () ->
+                                    template.queryForObject(
+                                            sql.toString(), namedParameters, Integer.class));
         } else {
             LOGGER.fine(
                     "Filter is not fully supported, doing scan of supported part to return the number of matches");
@@ -364,15 +429,19 @@ public class ConfigDatabase {
             // the oracle offset/limit implementation returns a two column result set
             // with rownum in the 2nd - queryForList will throw an exception
             ids =
-                    template.query(
-                            sql.toString(),
-                            namedParameters,
-                            new RowMapper<String>() {
-                                @Override
-                                public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-                                    return rs.getString(1);
-                                }
-                            });
+                    timed(
+                            "query",
+                            () ->
+                                    template.query(
+                                            sql.toString(),
+                                            namedParameters,
+                                            new RowMapper<String>() {
+                                                @Override
+                                                public String mapRow(ResultSet rs, int rowNum)
+                                                        throws SQLException {
+                                                    return rs.getString(1);
+                                                }
+                                            }));
             sw.stop();
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine(
@@ -385,21 +454,10 @@ public class ConfigDatabase {
             }
         }
 
-        List<T> lazyTransformed =
-                Lists.transform(
-                        ids,
-                        new Function<String, T>() {
-                            @Nullable
-                            @Override
-                            public T apply(String id) {
-                                return getById(id, of);
-                            }
-                        });
-
         CloseableIterator<T> result;
         Iterator<T> iterator =
                 Iterators.filter(
-                        lazyTransformed.iterator(), com.google.common.base.Predicates.notNull());
+                        prefetchingIterator(ids, of), com.google.common.base.Predicates.notNull());
 
         if (fullySupported) {
             result = new CloseableIteratorAdapter<T>(iterator);
@@ -439,15 +497,19 @@ public class ConfigDatabase {
         // the oracle offset/limit implementation returns a two column result set
         // with rownum in the 2nd - queryForList will throw an exception
         List<String> ids =
-                template.query(
-                        sql.toString(),
-                        namedParameters,
-                        new RowMapper<String>() {
-                            @Override
-                            public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-                                return rs.getString(1);
-                            }
-                        });
+                timed(
+                        "queryIds",
+                        () ->
+                                template.query(
+                                        sql.toString(),
+                                        namedParameters,
+                                        new RowMapper<String>() {
+                                            @Override
+                                            public String mapRow(ResultSet rs, int rowNum)
+                                                    throws SQLException {
+                                                return rs.getString(1);
+                                            }
+                                        }));
         sw.stop();
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("query returned " + ids.size() + " records in " + sw);
@@ -504,7 +566,8 @@ public class ConfigDatabase {
         try {
             ImmutableMap<String, String> params = ImmutableMap.of("key", key);
             logStatement(sql, params);
-            defaultObjectId = template.queryForObject(sql, params, String.class);
+            defaultObjectId =
+                    timed("getDefault", () -> template.queryForObject(sql, params, String.class));
         } catch (EmptyResultDataAccessException notFound) {
             return null;
         }
@@ -1223,24 +1286,17 @@ public class ConfigDatabase {
 
         logStatement(sql, params);
         Stopwatch sw = Stopwatch.createStarted();
-        List<String> ids = template.queryForList(sql, params, String.class);
+        List<String> ids =
+                timed("getAll", () -> template.queryForList(sql, params, String.class));
         sw.stop();
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("query returned " + ids.size() + " records in " + sw);
         }
 
-        List<T> transformed =
-                Lists.transform(
-                        ids,
-                        new Function<String, T>() {
-                            @Nullable
-                            @Override
-                            public T apply(String input) {
-                                return getById(input, clazz);
-                            }
-                        });
-        Iterable<T> filtered =
-                Iterables.filter(transformed, com.google.common.base.Predicates.notNull());
+        Iterator<T> filtered =
+                Iterators.filter(
+                        prefetchingIterator(ids, clazz),
+                        com.google.common.base.Predicates.notNull());
         return ImmutableList.copyOf(filtered);
     }
 
@@ -1258,6 +1314,124 @@ public class ConfigDatabase {
         return inValues;
     }
 
+    /**
+     * Iterates over the objects with the given ids. Catalog objects are loaded {@link
+     * #getPrefetchSize() prefetchSize} at a time, together with the objects they reference, instead
+     * of running a query for each of them.
+     */
+    private <T extends Info> Iterator<T> prefetchingIterator(
+            final List<String> ids, final Class<T> type) {
+        if (prefetchSize == 0 || ids.size() < 2 || !CatalogInfo.class.isAssignableFrom(type)) {
+            return Iterators.transform(ids.iterator(), id -> getById(id, type));
+        }
+        Iterator<List<String>> pages = Iterators.partition(ids.iterator(), prefetchSize);
+        return Iterators.concat(
+                Iterators.transform(
+                        pages,
+                        page -> {
+                            prefetch(page);
+                            return Iterators.transform(page.iterator(), id -> getById(id, type));
+                        }));
+    }
+
+    /**
+     * Loads into the cache the catalog objects with the given ids, and the objects they reference
+     * (resources, stores, namespaces, workspaces, styles), running a query per level of references
+     * rather than one per object. Objects already cached are skipped.
+     */
+    void prefetch(final Collection<String> ids) {
+        // each object goes to the deepest level it's referenced from, so that it's loaded before
+        // the objects referring to it, which then resolve it from the cache
+        final Map<String, Integer> levels = new HashMap<>();
+        Set<String> frontier = uncached(ids);
+        int depth = 0;
+        try {
+            for (String id : frontier) {
+                levels.put(id, depth);
+            }
+            while (!frontier.isEmpty() && depth < MAX_PREFETCH_DEPTH - 1) {
+                frontier = uncached(referencedIds(frontier));
+                depth++;
+                for (String id : frontier) {
+                    levels.put(id, depth);
+                }
+            }
+            for (int level = depth; level >= 0; level--) {
+                final int current = level;
+                Set<String> load =
+                        levels.entrySet()
+                                .stream()
+                                .filter(e -> e.getValue() == current)
+                                .map(Map.Entry::getKey)
+                                .collect(Collectors.toSet());
+                loadIntoCache(uncached(load));
+            }
+        } catch (RuntimeException e) {
+            // not fatal, the objects will be loaded one by one
+            LOGGER.log(Level.WARNING, "Failed to prefetch catalog objects", e);
+        }
+    }
+
+    private Set<String> uncached(Collection<String> ids) {
+        Set<String> uncached = new HashSet<>();
+        for (String id : ids) {
+            if (cache.getIfPresent(id) == null) {
+                uncached.add(id);
+            }
+        }
+        return uncached;
+    }
+
+    /** @return the ids of the objects referenced by the given ones */
+    private Set<String> referencedIds(final Set<String> ids) {
+        final String sql =
+                "select distinct r.id from object_property p "
+                        + "join object r on r.oid = p.related_oid where p.id in (:ids)";
+        Set<String> referenced = new HashSet<>();
+        for (List<String> chunk : Iterables.partition(ids, MAX_IN_CLAUSE_SIZE)) {
+            Map<String, ?> params = params("ids", chunk);
+            logStatement(sql, params);
+            referenced.addAll(
+                    timed(
+                            "prefetchReferences",
+                            () -> template.queryForList(sql, params, String.class)));
+        }
+        referenced.removeAll(ids);
+        return referenced;
+    }
+
+    /** Loads the given catalog objects with {@code IN} queries and caches them */
+    private void loadIntoCache(final Set<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        final String sql = "select id, blob from object where id in (:ids)";
+        for (List<String> chunk : Iterables.partition(ids, MAX_IN_CLAUSE_SIZE)) {
+            // objects changed after this point may have been read before the change
+            final long changes = catalogChanges.get();
+            final RowMapper<String> mapper =
+                    (rs, rowNum) -> {
+                        String id = rs.getString(1);
+                        CatalogInfo info = prefetchRowMapper.mapRow(rs, rowNum);
+                        Semaphore lock = locks.computeIfAbsent(id, x -> new Semaphore(1));
+                        // leave alone the objects being modified, as getById does
+                        if (info != null && lock.tryAcquire()) {
+                            try {
+                                if (catalogChanges.get() == changes) {
+                                    cache.asMap().putIfAbsent(id, info);
+                                }
+                            } finally {
+                                lock.release();
+                            }
+                        }
+                        return id;
+                    };
+            Map<String, ?> params = params("ids", chunk);
+            logStatement(sql, params);
+            timed("prefetch", () -> template.query(sql, params, mapper));
+        }
+    }
+
     @Transactional(
         transactionManager = "jdbcConfigTransactionManager",
         propagation = Propagation.REQUIRED,
@@ -1304,7 +1478,10 @@ public class ConfigDatabase {
                 String sql = "select blob from object where id = :id";
                 Map<String, String> params = ImmutableMap.of("id", id);
                 logStatement(sql, params);
-                info = template.queryForObject(sql, params, catalogRowMapper);
+                info =
+                        timed(
+                                "getById",
+                                () -> template.queryForObject(sql, params, catalogRowMapper));
             } catch (EmptyResultDataAccessException noSuchObject) {
                 return null;
             }
@@ -1470,7 +1647,10 @@ public class ConfigDatabase {
                 String sql = "select blob from object where id = :id";
                 Map<String, String> params = ImmutableMap.of("id", id);
                 logStatement(sql, params);
-                info = template.queryForObject(sql, params, configRowMapper);
+                info =
+                        timed(
+                                "getById",
+                                () -> template.queryForObject(sql, params, configRowMapper));
             } catch (EmptyResultDataAccessException noSuchObject) {
                 return null;
             }
@@ -1613,6 +1793,7 @@ public class ConfigDatabase {
                 clearCacheIfPresent(liId);
             }
             acquireWriteLock(event.getSource().getId());
+            catalogChanges.incrementAndGet();
             clearCache(event.getSource());
         }
 
@@ -1627,7 +1808,15 @@ public class ConfigDatabase {
         }
 
         public void handleRemoveEvent(CatalogRemoveEvent event) {
-            clearCache(event.getSource());
+            // don't let a concurrent prefetch bring the removed object back into the cache
+            String id = event.getSource().getId();
+            acquireWriteLock(id);
+            try {
+                catalogChanges.incrementAndGet();
+                clearCache(event.getSource());
+            } finally {
+                releaseWriteLock(id);
+            }
         }
 
         public void reloaded() {}
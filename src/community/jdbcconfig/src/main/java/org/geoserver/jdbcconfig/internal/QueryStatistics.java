@@ -0,0 +1,102 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of queries, rows and time spent by {@link ConfigDatabase} for each kind of database
+ * operation.
+ */
+public class QueryStatistics {
+
+    /** Statistics of a single operation */
+    public static class OperationStatistics {
+
+        private final LongAdder queries = new LongAdder();
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(int rowCount, long nanos) {
+            queries.increment();
+            rows.add(rowCount);
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /** Number of queries run */
+        public long getQueries() {
+            return queries.sum();
+        }
+
+        /** Number of rows returned */
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /** Total time spent running the queries, in milliseconds */
+        public long getTotalTime() {
+            return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+        }
+
+        /** Average time of a query, in milliseconds */
+        public double getAverageTime() {
+            long count = queries.sum();
+            return count == 0 ? 0 : totalNanos.sum() / (count * 1_000_000d);
+        }
+
+        /** Longest time of a query, in milliseconds */
+        public long getMaxTime() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "queries: %d, rows: %d, total: %dms, avg: %.2fms, max: %dms",
+                    getQueries(), getRows(), getTotalTime(), getAverageTime(), getMaxTime());
+        }
+    }
+
+    private final ConcurrentMap<String, OperationStatistics> operations =
+            new ConcurrentHashMap<>();
+
+    /** Records a query run for the given operation */
+    public void record(String operation, int rows, long nanos) {
+        operations
+                .computeIfAbsent(operation, k -> new OperationStatistics())
+                .record(rows, nanos);
+    }
+
+    /** @return the statistics of the given operation, or {@code null} if it never ran */
+    public OperationStatistics get(String operation) {
+        return operations.get(operation);
+    }
+
+    /** @return the statistics of all the operations run so far, sorted by operation name */
+    public Map<String, OperationStatistics> getOperations() {
+        return Collections.unmodifiableMap(new TreeMap<>(operations));
+    }
+
+    public void reset() {
+        operations.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStatistics" + getOperations();
+    }
+}
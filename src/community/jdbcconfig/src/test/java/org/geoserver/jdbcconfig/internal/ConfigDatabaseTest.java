@@ -34,6 +34,7 @@ import java.sql.Connection;
 import java.sql.Statement;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.IAnswer;
@@ -43,6 +44,7 @@ import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.Info;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.event.CatalogAddEvent;
 import org.geoserver.catalog.event.CatalogListener;
@@ -65,6 +67,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import org.opengis.filter.Filter;
 
 /** @author groldan */
 @RunWith(Parameterized.class)
@@ -357,6 +360,69 @@ public class ConfigDatabaseTest {
         assertEquals("rs2", layer2.getResource().getName());
     }
 
+    private List<LayerInfo> addLayers(int count) {
+        LayerInfo first = addLayer();
+        Catalog catalog = database.getCatalog();
+        StoreInfo ds = ModificationProxy.unwrap(first.getResource().getStore());
+        for (int i = 2; i <= count; i++) {
+            ResourceInfo ri = new FeatureTypeInfoImpl(catalog);
+            ((FeatureTypeInfoImpl) ri).setId("resourceid" + i);
+            ri.setName("ri" + i);
+            ri.setStore(ds);
+            ri = database.add(ri);
+
+            LayerInfo li = new LayerInfoImpl();
+            ((LayerInfoImpl) li).setId("layerid" + i);
+            li.setResource(ri);
+            database.add(li);
+        }
+        return database.getAll(LayerInfo.class);
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        addLayers(5);
+        // start from a cold cache
+        database.dispose();
+        database.getStatistics().reset();
+
+        List<LayerInfo> layers =
+                database.queryAsList(LayerInfo.class, Filter.INCLUDE, null, null, null);
+        assertEquals(5, layers.size());
+        for (LayerInfo layer : layers) {
+            assertNotNull(layer.getResource().getStore().getWorkspace());
+        }
+
+        QueryStatistics stats = database.getStatistics();
+        // layers, resources, store and workspace loaded in batches, no single object queries
+        assertNull(stats.get("getById"));
+        assertEquals(12, stats.get("prefetch").getRows());
+        assertTrue(stats.get("prefetch").getQueries() <= 4);
+        assertEquals(1, stats.get("query").getQueries());
+
+        // all cached now
+        stats.reset();
+        database.queryAsList(LayerInfo.class, Filter.INCLUDE, null, null, null);
+        assertNull(stats.get("prefetch"));
+        assertNull(stats.get("prefetchReferences"));
+        assertNull(stats.get("getById"));
+    }
+
+    @Test
+    public void testPrefetchDisabled() throws Exception {
+        addLayers(3);
+        database.dispose();
+        database.getStatistics().reset();
+        database.setPrefetchSize(0);
+
+        List<LayerInfo> layers =
+                database.queryAsList(LayerInfo.class, Filter.INCLUDE, null, null, null);
+        assertEquals(3, layers.size());
+        QueryStatistics stats = database.getStatistics();
+        assertNull(stats.get("prefetch"));
+        assertTrue(stats.get("getById").getQueries() >= 3);
+    }
+
     @Test
     public void testCacheConfig() throws Exception {
         // Simulates the situation where multiple GeoServer instances are sharing a database.
@@ -37,7 +37,8 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
             int maxFeatures,
             int count,
             FeatureCollectionResponse result,
-            Map<String, String> kvp) {
+            Map<String, String> kvp,
+            String seekAfter) {
         // can we build the links?
         List<Query> queries = request.getQueries();
         if (queries == null
@@ -68,6 +69,8 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
         // wait for the filtering/crs extensions to show up before deciding exactly what exactly to
         // do
         kvp = APIRequestInfo.get().getSimpleQueryMap();
+        // the previous page is always reached by offset
+        kvp.remove(SEEK_AFTER);
         // build prev link if needed
         if (offset > 0) {
             // previous offset calculated as the current offset - maxFeatures, or 0 if this is a
@@ -82,10 +85,20 @@ public class FeaturesGetFeature extends org.geoserver.wfs.GetFeature {
         if (count > 0 && offset > -1 && maxFeatures <= count) {
             kvp.put("startIndex", String.valueOf(offset > 0 ? offset + count : count));
             kvp.put("limit", String.valueOf(maxFeatures));
+            if (seekAfter != null) {
+                kvp.put(SEEK_AFTER, seekAfter);
+            }
             result.setNext(buildURL(itemsPath, kvp));
         }
     }
 
+    @Override
+    protected String getSeekAfter(GetFeatureRequest request) {
+        APIRequestInfo requestInfo = APIRequestInfo.get();
+        Map<String, String> kvp = requestInfo != null ? requestInfo.getSimpleQueryMap() : null;
+        return kvp != null ? kvp.get(SEEK_AFTER) : null;
+    }
+
     protected String getItemsPath(String collectionName) {
         return "ogc/features/collections/" + ResponseUtils.urlEncode(collectionName) + "/items";
     }
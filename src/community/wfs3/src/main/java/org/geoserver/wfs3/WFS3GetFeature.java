@@ -41,7 +41,8 @@ class WFS3GetFeature extends org.geoserver.wfs.GetFeature {
             int maxFeatures,
             int count,
             FeatureCollectionResponse result,
-            Map<String, String> kvp) {
+            Map<String, String> kvp,
+            String seekAfter) {
         // can we build the links?
         String typename = kvp.get("TYPENAME");
         if (typename == null) {
@@ -74,7 +75,8 @@ class WFS3GetFeature extends org.geoserver.wfs.GetFeature {
                         "COUNT",
                         "OUTPUTFORMAT",
                         "STARTINDEX",
-                        "LIMIT");
+                        "LIMIT",
+                        "SEEKAFTER");
         kvp = new CaseInsensitiveMap(kvp);
         for (String param : PARAMS_BLACKLIST) {
             kvp.remove(param);
@@ -110,6 +112,9 @@ class WFS3GetFeature extends org.geoserver.wfs.GetFeature {
         if (count > 0 && offset > -1 && maxFeatures <= count) {
             kvp.put("startIndex", String.valueOf(offset > 0 ? offset + count : count));
             kvp.put("limit", String.valueOf(maxFeatures));
+            if (seekAfter != null) {
+                kvp.put(SEEK_AFTER, seekAfter);
+            }
             result.setNext(buildURL(request, itemsPath, kvp));
         }
     }
@@ -98,6 +98,9 @@ public class ImportTask implements Serializable {
 
     int numberProcessed;
 
+    /** features loaded per second, while and after running an indirect import */
+    double throughput;
+
     String typeName;
 
     String typeSpec;
@@ -242,6 +245,14 @@ public class ImportTask implements Serializable {
         this.totalToProcess = totalToProcess;
     }
 
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
     public UpdateMode getUpdateMode() {
         return updateMode;
     }
@@ -24,6 +24,10 @@ import java.util.Map;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FilenameUtils;
@@ -80,13 +84,16 @@ import org.geotools.data.Transaction;
 import org.geotools.data.directory.DirectoryDataStore;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.filter.identity.FeatureIdImpl;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.referencing.CRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyledLayerDescriptor;
+import org.geotools.util.factory.Hints;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
 import org.opengis.coverage.grid.GridCoverageReader;
@@ -98,6 +105,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.context.request.RequestAttributes;
@@ -134,8 +142,18 @@ public class Importer implements DisposableBean, ApplicationListener {
 
     JobQueue synchronousJobs = new JobQueue();
 
-    ConcurrentHashMap<Long, ImportTask> currentlyProcessing =
-            new ConcurrentHashMap<Long, ImportTask>();
+    /** tasks loading data, by context id and task id */
+    ConcurrentHashMap<Long, Map<Long, ImportTask>> currentlyProcessing =
+            new ConcurrentHashMap<Long, Map<Long, ImportTask>>();
+
+    /** runs the indirect tasks of a context concurrently, lazily created */
+    ThreadPoolExecutor taskExecutor;
+
+    /** guards the unique name lookups against the concurrent tasks */
+    final Object namingLock = new Object();
+
+    /** guards the temporary changes of the JDBC stores batch insert size */
+    final Object batchSizeLock = new Object();
 
     ImporterInfo configuration;
 
@@ -232,8 +250,19 @@ public class Importer implements DisposableBean, ApplicationListener {
         return contextStore;
     }
 
+    /**
+     * Returns one of the tasks of the context currently loading data, or null if none is. Use
+     * {@link #getCurrentlyProcessingTask(long, long)} when running tasks concurrently.
+     */
     public ImportTask getCurrentlyProcessingTask(long contextId) {
-        return currentlyProcessing.get(Long.valueOf(contextId));
+        Map<Long, ImportTask> tasks = currentlyProcessing.get(Long.valueOf(contextId));
+        return tasks != null ? tasks.values().stream().findFirst().orElse(null) : null;
+    }
+
+    /** Returns the specified task if it's currently loading data, null otherwise */
+    public ImportTask getCurrentlyProcessingTask(long contextId, long taskId) {
+        Map<Long, ImportTask> tasks = currentlyProcessing.get(Long.valueOf(contextId));
+        return tasks != null ? tasks.get(Long.valueOf(taskId)) : null;
     }
 
     @Override
@@ -916,18 +945,27 @@ public class Importer implements DisposableBean, ApplicationListener {
             LOGGER.fine("Running import " + context.getId());
         }
 
-        for (ImportTask task : context.getTasks()) {
-            if (!filter.include(task)) {
-                continue;
-            }
-            if (!task.readyForImport()) {
-                continue;
-            }
+        List<Future<Void>> running = new ArrayList<>();
+        try {
+            for (ImportTask task : context.getTasks()) {
+                if (!filter.include(task)) {
+                    continue;
+                }
+                if (!task.readyForImport()) {
+                    continue;
+                }
 
-            if (context.progress().isCanceled()) {
-                break;
+                if (context.progress().isCanceled()) {
+                    break;
+                }
+                if (isParallelizable(task)) {
+                    running.add(getTaskExecutor().submit(new TaskJob(task)));
+                } else {
+                    run(task);
+                }
             }
-            run(task);
+        } finally {
+            waitFor(running);
         }
 
         context.updated();
@@ -953,6 +991,92 @@ public class Importer implements DisposableBean, ApplicationListener {
         }
     }
 
+    /**
+     * Returns true if the task can run along with the other tasks of the context, that is, if it
+     * loads vector data into a target store that's already configured
+     */
+    boolean isParallelizable(ImportTask task) {
+        return configuration.getMaxParallelTasks() > 1
+                && !task.isDirect()
+                && task.getData() != null
+                && task.getData().getFormat() instanceof VectorFormat;
+    }
+
+    private synchronized ThreadPoolExecutor getTaskExecutor() {
+        int threads = Math.max(1, configuration.getMaxParallelTasks());
+        if (taskExecutor == null) {
+            CustomizableThreadFactory threadFactory =
+                    new CustomizableThreadFactory("ImporterTask-");
+            threadFactory.setDaemon(true);
+            taskExecutor =
+                    new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            threadFactory);
+            taskExecutor.allowCoreThreadTimeOut(true);
+        } else if (threads > taskExecutor.getMaximumPoolSize()) {
+            // the configuration has been reloaded
+            taskExecutor.setMaximumPoolSize(threads);
+            taskExecutor.setCorePoolSize(threads);
+        } else if (threads < taskExecutor.getMaximumPoolSize()) {
+            taskExecutor.setCorePoolSize(threads);
+            taskExecutor.setMaximumPoolSize(threads);
+        }
+        return taskExecutor;
+    }
+
+    /**
+     * Waits for the tasks running in parallel to complete, throwing the first failure found, if
+     * any, only once all are done
+     */
+    private void waitFor(List<Future<Void>> running) throws IOException {
+        IOException error = null;
+        for (Future<Void> future : running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (error == null) {
+                    error = new IOException(e);
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (error == null) {
+                    error =
+                            cause instanceof IOException
+                                    ? (IOException) cause
+                                    : new IOException(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /** Runs a single task in the task executor, with the security context of the import */
+    class TaskJob extends SecurityContextCopyingJob<Void> {
+        final ImportTask task;
+
+        TaskJob(ImportTask task) {
+            this.task = task;
+        }
+
+        @Override
+        protected Void callInternal(ProgressMonitor monitor) throws Exception {
+            run(task);
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "Processing import task " + task;
+        }
+    }
+
     void run(ImportTask task) throws IOException {
         if (task.getState() == ImportTask.State.COMPLETE) {
             return;
@@ -1143,7 +1267,14 @@ public class Importer implements DisposableBean, ApplicationListener {
         DataFormat format = task.getData().getFormat();
         if (format instanceof VectorFormat) {
             try {
-                currentlyProcessing.put(task.getContext().getId(), task);
+                currentlyProcessing.compute(
+                        task.getContext().getId(),
+                        (id, tasks) -> {
+                            Map<Long, ImportTask> result =
+                                    tasks != null ? tasks : new ConcurrentHashMap<>();
+                            result.put(task.getId(), task);
+                            return result;
+                        });
                 loadIntoDataStore(
                         task,
                         (DataStoreInfo) task.getStore(),
@@ -1171,7 +1302,12 @@ public class Importer implements DisposableBean, ApplicationListener {
                 task.setState(ImportTask.State.ERROR);
                 return;
             } finally {
-                currentlyProcessing.remove(task.getContext().getId());
+                currentlyProcessing.computeIfPresent(
+                        task.getContext().getId(),
+                        (id, tasks) -> {
+                            tasks.remove(task.getId());
+                            return tasks.isEmpty() ? null : tasks;
+                        });
             }
         } else {
             // see if the store exposes a structured grid coverage reader
@@ -1344,36 +1480,40 @@ public class Importer implements DisposableBean, ApplicationListener {
             UpdateMode updateMode = task.getUpdateMode();
             final String uniquifiedFeatureTypeName;
             if (updateMode == UpdateMode.CREATE) {
-                // find a unique type name in the target store
-                uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
-
-                if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
-                    // update the metadata
-                    task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
-                    task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
-
-                    // retype
-                    SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
-                    typeBuilder.setName(uniquifiedFeatureTypeName);
-                    typeBuilder.addAll(featureType.getAttributeDescriptors());
-                    featureType = typeBuilder.buildFeatureType();
-                }
+                // other tasks might be looking for the same unique name
+                synchronized (namingLock) {
+                    // find a unique type name in the target store
+                    uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
+
+                    if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
+                        // update the metadata
+                        task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
+                        task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
+
+                        // retype
+                        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+                        typeBuilder.setName(uniquifiedFeatureTypeName);
+                        typeBuilder.addAll(featureType.getAttributeDescriptors());
+                        featureType = typeBuilder.buildFeatureType();
+                    }
 
-                // @todo HACK remove this at some point when timezone issues are fixed
-                // this will force postgis to create timezone w/ timestamp fields
-                if (dataStore instanceof JDBCDataStore) {
-                    JDBCDataStore ds = (JDBCDataStore) dataStore;
-                    // sniff for postgis (h2 is used in tests and will cause failure if this occurs)
-                    if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
-                        ds.getSqlTypeToSqlTypeNameOverrides()
-                                .put(java.sql.Types.TIMESTAMP, "timestamptz");
+                    // @todo HACK remove this at some point when timezone issues are fixed
+                    // this will force postgis to create timezone w/ timestamp fields
+                    if (dataStore instanceof JDBCDataStore) {
+                        JDBCDataStore ds = (JDBCDataStore) dataStore;
+                        // sniff for postgis (h2 is used in tests and will cause failure if this
+                        // occurs)
+                        if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
+                            ds.getSqlTypeToSqlTypeNameOverrides()
+                                    .put(java.sql.Types.TIMESTAMP, "timestamptz");
+                        }
                     }
-                }
 
-                // apply the feature type transform
-                featureType = tx.inline(task, dataStore, featureType);
+                    // apply the feature type transform
+                    featureType = tx.inline(task, dataStore, featureType);
 
-                dataStore.createSchema(featureType);
+                    dataStore.createSchema(featureType);
+                }
             } else {
                 // @todo what to do if featureType transform is present?
 
@@ -1473,21 +1613,41 @@ public class Importer implements DisposableBean, ApplicationListener {
             FeatureSource fs = format.getFeatureSource(data, task);
             FeatureCollection fc = fs.getFeatures();
 
-            FeatureStore featureStore =
-                    (FeatureStore) dataStoreDestination.getFeatureSource(uniquifiedFeatureTypeName);
-            featureStore.setTransaction(transaction);
+            SimpleFeatureType schema = dataStoreDestination.getSchema(uniquifiedFeatureTypeName);
 
             fc =
                     new ImportTransformFeatureCollection(
                             fc,
                             featureDataConverter,
-                            featureStore.getSchema(),
+                            schema,
                             tx,
                             task,
                             dataStoreDestination);
 
-            featureStore.addFeatures(fc);
-
+            // same as FeatureStore.addFeatures, but with a writer that sends the features in
+            // batches
+            long startTime = System.currentTimeMillis();
+            try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+                            getFeatureWriterAppend(
+                                    dataStoreDestination, uniquifiedFeatureTypeName, transaction);
+                    FeatureIterator it = fc.features()) {
+                while (it.hasNext()) {
+                    if (monitor.isCanceled()) {
+                        break;
+                    }
+                    SimpleFeature feature = (SimpleFeature) it.next();
+                    SimpleFeature next = writer.next();
+                    next.setAttributes(feature.getAttributes());
+                    // copy over the user data, and the fid if the source asked so
+                    next.getUserData().putAll(feature.getUserData());
+                    if (Boolean.TRUE.equals(feature.getUserData().get(Hints.USE_PROVIDED_FID))) {
+                        ((FeatureIdImpl) next.getIdentifier()).setID(feature.getID());
+                    }
+                    writer.write();
+                }
+            }
+            task.setThroughput(getThroughput(task.getNumberProcessed(), startTime));
+            LOGGER.info("load to target took " + (System.currentTimeMillis() - startTime));
         } catch (Throwable e) {
             error = e;
         }
@@ -1543,10 +1703,13 @@ public class Importer implements DisposableBean, ApplicationListener {
 
         task.setTotalToProcess(format.getFeatureCount(task.getData(), task));
 
+        // progress is reported once per batch
+        final int batchSize = Math.max(1, configuration.getBatchSize());
+
         LOGGER.fine("begining import - lowlevel api");
         try (FeatureWriter writer =
-                dataStoreDestination.getFeatureWriterAppend(
-                        uniquifiedFeatureTypeName, transaction)) {
+                getFeatureWriterAppend(
+                        dataStoreDestination, uniquifiedFeatureTypeName, transaction)) {
 
             while (reader.hasNext()) {
                 if (monitor.isCanceled()) {
@@ -1575,8 +1738,13 @@ public class Importer implements DisposableBean, ApplicationListener {
                 } else {
                     writer.write();
                 }
-                task.setNumberProcessed(++cnt);
+                if (++cnt % batchSize == 0) {
+                    task.setNumberProcessed(cnt);
+                    task.setThroughput(getThroughput(cnt, startTime));
+                }
             }
+            task.setNumberProcessed(cnt);
+            task.setThroughput(getThroughput(cnt, startTime));
             if (skipped > 0) {
                 task.addMessage(Level.WARNING, skipped + " features were skipped.");
             }
@@ -1607,6 +1775,38 @@ public class Importer implements DisposableBean, ApplicationListener {
         return error;
     }
 
+    /**
+     * Returns a writer appending to the specified type. The JDBC stores get their batch insert size
+     * raised to the configured batch size while the writer is created, as that's when the writer
+     * allocates its batch, so that the features are inserted in large batches, within the
+     * transaction.
+     */
+    FeatureWriter<SimpleFeatureType, SimpleFeature> getFeatureWriterAppend(
+            DataStore dataStore, String typeName, Transaction transaction) throws IOException {
+        int batchSize = configuration.getBatchSize();
+        if (dataStore instanceof JDBCDataStore) {
+            JDBCDataStore jdbcStore = (JDBCDataStore) dataStore;
+            synchronized (batchSizeLock) {
+                int storeBatchSize = jdbcStore.getBatchInsertSize();
+                if (storeBatchSize < batchSize) {
+                    jdbcStore.setBatchInsertSize(batchSize);
+                    try {
+                        return jdbcStore.getFeatureWriterAppend(typeName, transaction);
+                    } finally {
+                        jdbcStore.setBatchInsertSize(storeBatchSize);
+                    }
+                }
+            }
+        }
+        return dataStore.getFeatureWriterAppend(typeName, transaction);
+    }
+
+    /** Returns the number of features processed per second since the start time */
+    static double getThroughput(int processed, long startTime) {
+        long elapsed = System.currentTimeMillis() - startTime;
+        return elapsed > 0 ? processed * 1000d / elapsed : 0;
+    }
+
     StoreInfo lookupDefaultStore() {
         WorkspaceInfo ws = catalog.getDefaultWorkspace();
         if (ws == null) {
@@ -1617,28 +1817,30 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     void addToCatalog(ImportTask task) throws IOException {
-        LayerInfo layer = task.getLayer();
-        ResourceInfo resource = layer.getResource();
-        resource.setStore(task.getStore());
-
-        // add the resource
-        String name = findUniqueResourceName(resource);
-        resource.setName(name);
-
-        // JD: not setting a native name, it should actually already be set by this point and we
-        // don't want to blindly set it to the same name as the resource name, which might have
-        // changed to deal with name clashes
-        // resource.setNativeName(name);
-        resource.setEnabled(true);
-        catalog.add(resource);
+        synchronized (namingLock) {
+            LayerInfo layer = task.getLayer();
+            ResourceInfo resource = layer.getResource();
+            resource.setStore(task.getStore());
+
+            // add the resource
+            String name = findUniqueResourceName(resource);
+            resource.setName(name);
+
+            // JD: not setting a native name, it should actually already be set by this point and
+            // we don't want to blindly set it to the same name as the resource name, which might
+            // have changed to deal with name clashes
+            // resource.setNativeName(name);
+            resource.setEnabled(true);
+            catalog.add(resource);
+
+            // add the layer (and style)
+            if (layer.getDefaultStyle().getId() == null) {
+                catalog.add(layer.getDefaultStyle());
+            }
 
-        // add the layer (and style)
-        if (layer.getDefaultStyle().getId() == null) {
-            catalog.add(layer.getDefaultStyle());
+            layer.setEnabled(true);
+            catalog.add(layer);
         }
-
-        layer.setEnabled(true);
-        catalog.add(layer);
     }
 
     String findUniqueStoreName(StoreInfo store) {
@@ -1776,6 +1978,11 @@ public class Importer implements DisposableBean, ApplicationListener {
 
     public void destroy() throws Exception {
         asynchronousJobs.shutdown();
+        synchronized (this) {
+            if (taskExecutor != null) {
+                taskExecutor.shutdownNow();
+            }
+        }
         contextStore.destroy();
     }
 
@@ -18,6 +18,18 @@ public interface ImporterInfo extends Serializable {
     /** Maximum number of synchronous imports, negative or zero for no limit */
     public int getMaxAsynchronousImports();
 
+    /**
+     * Maximum number of import tasks loading data at the same time, the indirect vector tasks of a
+     * context are run concurrently up to this limit. One or less runs them sequentially
+     */
+    public int getMaxParallelTasks();
+
+    /**
+     * Number of features buffered before being sent to the target store of an indirect import, used
+     * as the batch insert size for JDBC stores. One or less writes features one by one
+     */
+    public int getBatchSize();
+
     /** @see #getUploadRoot() */
     public void setUploadRoot(String uploadRoot);
 
@@ -26,4 +38,10 @@ public interface ImporterInfo extends Serializable {
 
     /** @see #getMaxAsynchronousImports() */
     public void setMaxAsynchronousImports(int maxAsynchronousImports);
+
+    /** @see #getMaxParallelTasks() */
+    public void setMaxParallelTasks(int maxParallelTasks);
+
+    /** @see #getBatchSize() */
+    public void setBatchSize(int batchSize);
 }
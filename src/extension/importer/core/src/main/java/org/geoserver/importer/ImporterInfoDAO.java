@@ -30,6 +30,13 @@ public class ImporterInfoDAO {
 
     public static final String MAX_SYNCH_KEY = "importer.maxSynch";
 
+    public static final String MAX_PARALLEL_TASKS_KEY = "importer.maxParallelTasks";
+
+    public static final String BATCH_SIZE_KEY = "importer.batchSize";
+
+    /** Default number of features sent to the target store at once */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
     /**
      * Reads the importer configuration from the specified resource, or returns a default
      *
@@ -56,6 +63,9 @@ public class ImporterInfoDAO {
                 getConfig(props, MAX_ASYNCH_KEY, Integer.class, () -> processors));
         info.setMaxSynchronousImports(
                 getConfig(props, MAX_SYNCH_KEY, Integer.class, () -> processors));
+        info.setMaxParallelTasks(getConfig(props, MAX_PARALLEL_TASKS_KEY, Integer.class, () -> 1));
+        info.setBatchSize(
+                getConfig(props, BATCH_SIZE_KEY, Integer.class, () -> DEFAULT_BATCH_SIZE));
     }
 
     private <T> T getConfig(
@@ -98,6 +108,9 @@ public class ImporterInfoDAO {
         props.setProperty(MAX_SYNCH_KEY, String.valueOf(configuration.getMaxSynchronousImports()));
         props.setProperty(
                 MAX_ASYNCH_KEY, String.valueOf(configuration.getMaxAsynchronousImports()));
+        props.setProperty(
+                MAX_PARALLEL_TASKS_KEY, String.valueOf(configuration.getMaxParallelTasks()));
+        props.setProperty(BATCH_SIZE_KEY, String.valueOf(configuration.getBatchSize()));
         try (OutputStream os = resource.out()) {
             props.store(os, null);
         }
@@ -12,6 +12,8 @@ public class ImporterInfoImpl implements ImporterInfo {
     String uploadRoot;
     int maxSynchronousImports;
     int maxAsynchronousImports;
+    int maxParallelTasks;
+    int batchSize;
 
     public ImporterInfoImpl() {}
 
@@ -19,6 +21,8 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.uploadRoot = configuration.getUploadRoot();
         this.maxSynchronousImports = configuration.getMaxSynchronousImports();
         this.maxAsynchronousImports = configuration.getMaxAsynchronousImports();
+        this.maxParallelTasks = configuration.getMaxParallelTasks();
+        this.batchSize = configuration.getBatchSize();
     }
 
     public int getMaxSynchronousImports() {
@@ -38,6 +42,26 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.maxAsynchronousImports = maxAsynchronousImports;
     }
 
+    @Override
+    public int getMaxParallelTasks() {
+        return maxParallelTasks;
+    }
+
+    @Override
+    public void setMaxParallelTasks(int maxParallelTasks) {
+        this.maxParallelTasks = maxParallelTasks;
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public String getUploadRoot() {
         return uploadRoot;
@@ -54,11 +78,18 @@ public class ImporterInfoImpl implements ImporterInfo {
         ImporterInfoImpl that = (ImporterInfoImpl) o;
         return maxSynchronousImports == that.maxSynchronousImports
                 && maxAsynchronousImports == that.maxAsynchronousImports
+                && maxParallelTasks == that.maxParallelTasks
+                && batchSize == that.batchSize
                 && Objects.equals(uploadRoot, that.uploadRoot);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uploadRoot, maxSynchronousImports, maxAsynchronousImports);
+        return Objects.hash(
+                uploadRoot,
+                maxSynchronousImports,
+                maxAsynchronousImports,
+                maxParallelTasks,
+                batchSize);
     }
 }
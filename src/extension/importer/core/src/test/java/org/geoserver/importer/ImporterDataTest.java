@@ -489,6 +489,44 @@ public class ImporterDataTest extends ImporterTestSupport {
         runChecks("bugsites");
     }
 
+    @Test
+    public void testImportIntoDatabaseParallel() throws Exception {
+        ImporterInfo original = importer.getConfiguration();
+        ImporterInfo config = importer.getConfiguration();
+        config.setMaxParallelTasks(2);
+        config.setBatchSize(10);
+        importer.setConfiguration(config);
+        try {
+            Catalog cat = getCatalog();
+            DataStoreInfo ds =
+                    createH2DataStore(cat.getDefaultWorkspace().getName(), "spearfishParallel");
+
+            File dir = tmpDir();
+            unpack("shape/archsites_epsg_prj.zip", dir);
+            unpack("shape/bugsites_esri_prj.tar.gz", dir);
+
+            ImportContext context = importer.createContext(new Directory(dir), ds);
+            assertEquals(2, context.getTasks().size());
+            for (ImportTask task : context.getTasks()) {
+                assertTrue(importer.isParallelizable(task));
+            }
+
+            importer.run(context);
+
+            for (ImportTask task : context.getTasks()) {
+                assertEquals(ImportTask.State.COMPLETE, task.getState());
+                FeatureTypeInfo info = (FeatureTypeInfo) task.getLayer().getResource();
+                int count = info.getFeatureSource(null, null).getCount(Query.ALL);
+                assertEquals(count, task.getNumberProcessed());
+                assertTrue(task.getThroughput() >= 0);
+            }
+            assertNotNull(cat.getFeatureTypeByDataStore(ds, "archsites"));
+            assertNotNull(cat.getFeatureTypeByDataStore(ds, "bugsites"));
+        } finally {
+            importer.setConfiguration(original);
+        }
+    }
+
     @Test
     public void testImportIntoDatabaseWithEncoding() throws Exception {
         Catalog cat = getCatalog();
@@ -170,6 +170,8 @@ public class ImporterTest extends ImporterTestSupport {
         ImporterInfo config = new ImporterInfoImpl();
         config.setMaxAsynchronousImports(5);
         config.setMaxSynchronousImports(7);
+        config.setMaxParallelTasks(3);
+        config.setBatchSize(200);
         dao.write(config, props);
 
         // forcing the importer to reload manually, as we don't know how fast the polling thread
@@ -179,5 +181,7 @@ public class ImporterTest extends ImporterTestSupport {
         // make sure the importer picked up the change
         assertEquals(5, importer.asynchronousJobs.getMaximumPoolSize());
         assertEquals(7, importer.synchronousJobs.getMaximumPoolSize());
+        assertEquals(3, importer.getConfiguration().getMaxParallelTasks());
+        assertEquals(200, importer.getConfiguration().getBatchSize());
     }
 }
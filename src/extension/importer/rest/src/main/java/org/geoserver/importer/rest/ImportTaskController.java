@@ -99,11 +99,12 @@ public class ImportTaskController extends ImportBaseController {
     public ImportWrapper progressGet(@PathVariable Long id, @PathVariable Integer taskId) {
 
         JSONObject progress = new JSONObject();
-        ImportTask inProgress = importer.getCurrentlyProcessingTask(id);
+        ImportTask inProgress = importer.getCurrentlyProcessingTask(id, taskId);
         try {
             if (inProgress != null) {
                 progress.put("progress", inProgress.getNumberProcessed());
                 progress.put("total", inProgress.getTotalToProcess());
+                progress.put("throughput", inProgress.getThroughput());
                 progress.put("state", inProgress.getState().toString());
             } else {
                 ImportTask task = task(id, taskId);
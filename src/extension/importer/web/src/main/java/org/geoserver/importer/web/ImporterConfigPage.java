@@ -64,6 +64,20 @@ public class ImporterConfigPage extends GeoServerSecuredPage {
         maxAsync.add(threadValidator);
         form.add(maxAsync);
 
+        TextField maxParallelTasks =
+                new TextField(
+                        "maxParallelTasks",
+                        new PropertyModel<Integer>(model, "maxParallelTasks"),
+                        Integer.class);
+        maxParallelTasks.add(threadValidator);
+        form.add(maxParallelTasks);
+
+        TextField batchSize =
+                new TextField(
+                        "batchSize", new PropertyModel<Integer>(model, "batchSize"), Integer.class);
+        batchSize.add(new RangeValidator(1, Integer.MAX_VALUE));
+        form.add(batchSize);
+
         SubmitLink submit =
                 new SubmitLink("submit", form) {
                     @Override
@@ -32,6 +32,8 @@ public class ImporterConfigPageTest extends GeoServerWicketTestSupport {
         config.setUploadRoot(temp);
         config.setMaxSynchronousImports(4);
         config.setMaxAsynchronousImports(2);
+        config.setMaxParallelTasks(3);
+        config.setBatchSize(500);
         importer.setConfiguration(config);
 
         // make sure it's populated correctly
@@ -40,6 +42,8 @@ public class ImporterConfigPageTest extends GeoServerWicketTestSupport {
         tester.assertModelValue("form:uploadRoot:border:border_body:paramValue", temp);
         tester.assertModelValue("form:maxSync", 4);
         tester.assertModelValue("form:maxAsync", 2);
+        tester.assertModelValue("form:maxParallelTasks", 3);
+        tester.assertModelValue("form:batchSize", 500);
 
         // change and save
         FormTester form = tester.newFormTester("form");
@@ -47,12 +51,16 @@ public class ImporterConfigPageTest extends GeoServerWicketTestSupport {
         form.setValue("uploadRoot:border:border_body:paramValue", newUploadRoot);
         form.setValue("maxSync", "2");
         form.setValue("maxAsync", "1");
+        form.setValue("maxParallelTasks", "2");
+        form.setValue("batchSize", "100");
         form.submit("submit");
 
         ImporterInfo newConfiguration = importer.getConfiguration();
         assertEquals(newUploadRoot, newConfiguration.getUploadRoot());
         assertEquals(2, newConfiguration.getMaxSynchronousImports());
         assertEquals(1, newConfiguration.getMaxAsynchronousImports());
+        assertEquals(2, newConfiguration.getMaxParallelTasks());
+        assertEquals(100, newConfiguration.getBatchSize());
     }
 
     @Test
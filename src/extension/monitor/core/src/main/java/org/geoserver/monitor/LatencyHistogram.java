@@ -0,0 +1,101 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of request times, in milliseconds, with logarithmic buckets.
+ *
+ * <p>As in HDR histograms, each power of two range is split in {@link #SUB_BUCKETS} linear
+ * buckets, so that the values reported by {@link #getValueAtPercentile(double)} are within 12.5%
+ * of the recorded ones, while the histogram uses a fixed, small amount of memory. Times below
+ * {@link #SUB_BUCKETS} milliseconds are tracked exactly, times above {@link #MAX_VALUE} are
+ * recorded as {@link #MAX_VALUE}.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 3;
+
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** The largest value tracked, a bit more than 24 days */
+    public static final long MAX_VALUE = (1L << 31) - 1;
+
+    static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** Returns the index of the bucket containing the value */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /** Returns the largest value falling in the bucket */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /** Records a time, in milliseconds */
+    public void record(long value) {
+        counts.incrementAndGet(bucket(Math.min(value, MAX_VALUE)));
+    }
+
+    /** Returns the number of recorded values */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, or 0 if no
+     * value has been recorded
+     *
+     * @param percentile the percentile, between 0 and 100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    /** Returns the highest value recorded, within the histogram precision */
+    public long getMaxValue() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestValue(i);
+            }
+        }
+        return 0;
+    }
+}
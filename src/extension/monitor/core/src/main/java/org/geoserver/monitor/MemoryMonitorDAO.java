@@ -10,21 +10,28 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
 import org.geoserver.ows.util.OwsUtils;
 
+/**
+ * Keeps the running requests, and the most recent completed ones, in memory.
+ *
+ * <p>The running requests are indexed by id, the completed ones are kept in a lock free ring
+ * buffer, whose size can be set with the {@code memory.history} configuration property.
+ */
 public class MemoryMonitorDAO implements MonitorDAO {
 
     public static final String NAME = "memory";
 
-    Queue<RequestData> live = new ConcurrentLinkedQueue<RequestData>();
-    Queue<RequestData> history = new ConcurrentLinkedQueue<RequestData>();
+    /** Default number of completed requests kept in memory */
+    public static final int DEFAULT_HISTORY_SIZE = 100;
+
+    ConcurrentSkipListMap<Long, RequestData> live = new ConcurrentSkipListMap<>();
+    RequestRingBuffer history = new RequestRingBuffer(DEFAULT_HISTORY_SIZE);
 
     AtomicLong REQUEST_ID_GEN = new AtomicLong(1);
 
@@ -34,7 +41,12 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     @Override
-    public void init(MonitorConfig config) {}
+    public void init(MonitorConfig config) {
+        Integer size = config.getProperty(NAME, "history", Integer.class);
+        if (size != null && size > 0 && size != history.getCapacity()) {
+            history = new RequestRingBuffer(size);
+        }
+    }
 
     public RequestData init(RequestData data) {
         data.setId(REQUEST_ID_GEN.getAndIncrement());
@@ -42,18 +54,14 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     public void add(RequestData data) {
-        live.add(data);
+        live.put(data.getId(), data);
     }
 
     public void update(RequestData data) {}
 
     public void save(RequestData data) {
-        live.remove(data);
+        live.remove(data.getId());
         history.add(data);
-
-        if (history.size() > 100) {
-            history.poll();
-        }
     }
 
     public RequestData getRequest(long id) {
@@ -66,14 +74,15 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     public List<RequestData> getRequests() {
-        List<RequestData> requests = new LinkedList();
-        requests.addAll(live);
+        List<RequestData> history = this.history.getRequests();
+        List<RequestData> requests = new ArrayList<>(live.size() + history.size());
+        requests.addAll(live.values());
         requests.addAll(history);
         return requests;
     }
 
     public List<RequestData> getRequests(Query q) {
-        List<RequestData> requests = getRequests();
+        List<RequestData> requests = new ArrayList<>();
 
         List<Predicate> predicates = new ArrayList();
         if (q.getFilter() != null) {
@@ -87,23 +96,20 @@ public class MemoryMonitorDAO implements MonitorDAO {
         int i = 1, count = 0;
 
         O:
-        for (Iterator<RequestData> it = requests.iterator(); it.hasNext(); ) {
-            RequestData r = it.next();
+        for (RequestData r : getRequests()) {
             for (Predicate p : predicates) {
                 if (!p.matches(r)) {
-                    it.remove();
                     continue O;
                 }
             }
 
             if (q.getOffset() != null && q.getOffset() >= i++) {
-                it.remove();
                 continue;
             }
             if (q.getCount() != null && q.getCount() <= count) {
-                it.remove();
-                continue;
+                break;
             }
+            requests.add(r);
             count++;
         }
 
@@ -48,14 +48,23 @@ public class Monitor implements ApplicationListener<ApplicationEvent> {
     /** The set of listeners for the monitor */
     List<RequestDataListener> listeners = new ArrayList<RequestDataListener>();
 
+    /** The statistics of the completed requests */
+    RequestStatistics statistics;
+
     public Monitor(MonitorConfig config) {
         this.config = config;
         this.dao = config.createDAO();
+        Integer maxEntries = config.getProperty("statistics", "maxEntries", Integer.class);
+        this.statistics =
+                maxEntries != null && maxEntries > 0
+                        ? new RequestStatistics(maxEntries)
+                        : new RequestStatistics();
     }
 
     public Monitor(MonitorDAO dao) {
         this.config = new MonitorConfig();
         this.dao = dao;
+        this.statistics = new RequestStatistics();
     }
 
     public MonitorConfig getConfig() {
@@ -105,6 +114,7 @@ public class Monitor implements ApplicationListener<ApplicationEvent> {
         for (RequestDataListener listener : listeners) {
             listener.requestCompleted(data);
         }
+        statistics.add(data);
         // have the DAO persist/propagate the change
         dao.save(data);
         REQUEST.remove();
@@ -122,12 +132,21 @@ public class Monitor implements ApplicationListener<ApplicationEvent> {
     public void dispose() {
         dao.dispose();
         dao = null;
+        statistics.clear();
     }
 
     public MonitorDAO getDAO() {
         return dao;
     }
 
+    /**
+     * Returns the statistics of the requests completed since startup, aggregated by service,
+     * operation and resource
+     */
+    public RequestStatistics getStatistics() {
+        return statistics;
+    }
+
     public GeoServer getServer() {
         return server;
     }
@@ -0,0 +1,81 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size, lock free buffer of the most recent requests. Writers claim a sequence number and
+ * store the request in the slot it maps to, overwriting the oldest request once the buffer is full.
+ */
+class RequestRingBuffer {
+
+    /** A buffered request, along with the sequence it has been added with */
+    static final class Slot {
+        final long sequence;
+        final RequestData data;
+
+        Slot(long sequence, RequestData data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    final AtomicReferenceArray<Slot> slots;
+
+    final AtomicLong sequence = new AtomicLong();
+
+    RequestRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    int getCapacity() {
+        return slots.length();
+    }
+
+    void add(RequestData data) {
+        long seq = sequence.getAndIncrement();
+        int index = (int) (seq % slots.length());
+        Slot slot = new Slot(seq, data);
+        while (true) {
+            Slot current = slots.get(index);
+            // a slow writer must not overwrite a more recent request
+            if (current != null && current.sequence > seq) {
+                return;
+            }
+            if (slots.compareAndSet(index, current, slot)) {
+                return;
+            }
+        }
+    }
+
+    /** Returns the buffered requests, oldest first */
+    List<RequestData> getRequests() {
+        int capacity = slots.length();
+        long end = sequence.get();
+        long start = Math.max(0, end - capacity);
+        List<RequestData> result = new ArrayList<>((int) (end - start));
+        for (long seq = start; seq < end; seq++) {
+            Slot slot = slots.get((int) (seq % capacity));
+            // skip the slots not written yet, or already overwritten by a newer request
+            if (slot != null && slot.sequence == seq) {
+                result.add(slot.data);
+            }
+        }
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+}
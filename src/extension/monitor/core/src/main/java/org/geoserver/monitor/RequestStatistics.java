@@ -0,0 +1,185 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.geoserver.monitor.RequestData.Status;
+
+/**
+ * Request counters and time histograms, aggregated while the requests complete, so that summaries
+ * can be computed without scanning the stored requests.
+ *
+ * <p>Each request is accounted for in the entry of its service and operation, and in the entries
+ * of the service, operation and each of the resources it accessed. Requests without a service,
+ * like the REST and web UI ones, are tracked under a null service and operation.
+ *
+ * <p>Services, operations and resources come from the requests, so the number of entries is capped,
+ * the least recently used ones being dropped when the limit is reached.
+ */
+public class RequestStatistics {
+
+    /** Default maximum number of entries */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The aggregated statistics of a service, operation and resource combination */
+    public static class Entry {
+        final String service;
+        final String operation;
+        final String resource;
+
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder totalTime = new LongAdder();
+        final LongAdder responseLength = new LongAdder();
+        final LatencyHistogram times = new LatencyHistogram();
+
+        Entry(String service, String operation, String resource) {
+            this.service = service;
+            this.operation = operation;
+            this.resource = resource;
+        }
+
+        void add(RequestData data) {
+            count.increment();
+            if (data.getStatus() == Status.FAILED) {
+                errors.increment();
+            }
+            totalTime.add(data.getTotalTime());
+            if (data.getResponseLength() > 0) {
+                responseLength.add(data.getResponseLength());
+            }
+            times.record(data.getTotalTime());
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /** The resource name, or null for the entry covering all the operation requests */
+        public String getResource() {
+            return resource;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrorCount() {
+            return errors.sum();
+        }
+
+        /** Total request time, in milliseconds */
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        /** Mean request time, in milliseconds */
+        public double getMeanTime() {
+            long count = getCount();
+            return count > 0 ? (double) getTotalTime() / count : 0;
+        }
+
+        /** Total response length, in bytes */
+        public long getResponseLength() {
+            return responseLength.sum();
+        }
+
+        /** The request times histogram */
+        public LatencyHistogram getTimes() {
+            return times;
+        }
+    }
+
+    final int maxEntries;
+
+    final ConcurrentMap<List<String>, Entry> entries;
+
+    public RequestStatistics() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /** @param maxEntries the maximum number of entries kept */
+    public RequestStatistics(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries =
+                CacheBuilder.newBuilder()
+                        .maximumSize(maxEntries)
+                        .<List<String>, Entry>build()
+                        .asMap();
+    }
+
+    /** The maximum number of entries kept */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /** Accounts for a completed request */
+    public void add(RequestData data) {
+        String service = data.getService();
+        String operation = data.getOperation();
+        getOrCreate(service, operation, null).add(data);
+        List<String> resources = data.getResources();
+        if (resources != null) {
+            for (String resource : resources) {
+                if (resource != null) {
+                    getOrCreate(service, operation, resource).add(data);
+                }
+            }
+        }
+    }
+
+    private Entry getOrCreate(String service, String operation, String resource) {
+        List<String> key = Arrays.asList(service, operation, resource);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = entries.computeIfAbsent(key, k -> new Entry(service, operation, resource));
+        }
+        return entry;
+    }
+
+    /** Returns the entry for the given service, operation and resource, or null if not found */
+    public Entry getEntry(String service, String operation, String resource) {
+        return entries.get(Arrays.asList(service, operation, resource));
+    }
+
+    /**
+     * Returns the entries matching the given service, operation and resource, null values
+     * matching anything
+     *
+     * @param resources if false, only the entries covering all the operation requests are returned
+     */
+    public List<Entry> getEntries(
+            String service, String operation, String resource, boolean resources) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if ((service == null || service.equalsIgnoreCase(entry.service))
+                    && (operation == null || operation.equalsIgnoreCase(entry.operation))
+                    && (resource == null || resource.equals(entry.resource))
+                    && (resources || entry.resource == null)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /** Returns all the entries */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /** Drops all the statistics */
+    public void clear() {
+        entries.clear();
+    }
+}
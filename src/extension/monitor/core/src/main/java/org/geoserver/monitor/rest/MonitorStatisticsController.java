@@ -0,0 +1,102 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.geoserver.monitor.LatencyHistogram;
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestStatistics;
+import org.geoserver.rest.RestBaseController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Returns the request statistics aggregated by the {@link Monitor}, as JSON, optionally filtered
+ * by service, operation and resource. The per resource entries are returned only if requested.
+ */
+@RestController
+@RequestMapping(path = RestBaseController.ROOT_PATH + "/monitor/statistics")
+public class MonitorStatisticsController extends RestBaseController {
+
+    static final Comparator<String> NULLS_FIRST =
+            Comparator.nullsFirst(Comparator.<String>naturalOrder());
+
+    static final Comparator<RequestStatistics.Entry> ENTRY_ORDER =
+            Comparator.comparing(RequestStatistics.Entry::getService, NULLS_FIRST)
+                    .thenComparing(RequestStatistics.Entry::getOperation, NULLS_FIRST)
+                    .thenComparing(RequestStatistics.Entry::getResource, NULLS_FIRST);
+
+    Monitor monitor;
+
+    @Autowired
+    public MonitorStatisticsController(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public void statisticsGet(
+            @RequestParam(name = "service", required = false) String service,
+            @RequestParam(name = "operation", required = false) String operation,
+            @RequestParam(name = "resource", required = false) String resource,
+            @RequestParam(name = "resources", required = false, defaultValue = "false")
+                    boolean resources,
+            HttpServletResponse response)
+            throws IOException {
+        List<RequestStatistics.Entry> entries =
+                monitor.getStatistics()
+                        .getEntries(service, operation, resource, resources || resource != null);
+        entries.sort(ENTRY_ORDER);
+
+        JSONArray array = new JSONArray();
+        for (RequestStatistics.Entry entry : entries) {
+            array.add(toJSON(entry));
+        }
+        JSONObject result = new JSONObject();
+        result.put("statistics", array);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (Writer w =
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)) {
+            result.write(w);
+            w.flush();
+        }
+    }
+
+    JSONObject toJSON(RequestStatistics.Entry entry) {
+        JSONObject json = new JSONObject();
+        if (entry.getService() != null) {
+            json.put("service", entry.getService());
+        }
+        if (entry.getOperation() != null) {
+            json.put("operation", entry.getOperation());
+        }
+        if (entry.getResource() != null) {
+            json.put("resource", entry.getResource());
+        }
+        json.put("count", entry.getCount());
+        json.put("errors", entry.getErrorCount());
+        json.put("responseLength", entry.getResponseLength());
+        json.put("meanTime", entry.getMeanTime());
+        LatencyHistogram times = entry.getTimes();
+        json.put("p50", times.getValueAtPercentile(50));
+        json.put("p90", times.getValueAtPercentile(90));
+        json.put("p99", times.getValueAtPercentile(99));
+        json.put("maxTime", times.getMaxValue());
+        return json;
+    }
+}
@@ -7,11 +7,13 @@ package org.geoserver.monitor.web;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.geoserver.monitor.MemoryMonitorDAO;
 import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics;
 
 public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
 
@@ -28,6 +30,19 @@ public class OWSDetailsPanel extends OWSSummaryChartBasePanel {
 
     @Override
     protected Map<String, Integer> gatherData(Monitor monitor) {
+        if (monitor.getDAO() instanceof MemoryMonitorDAO) {
+            // the memory storage keeps only the recent requests, use the aggregated statistics
+            Map<String, Integer> data = new HashMap<String, Integer>();
+            RequestStatistics statistics = monitor.getStatistics();
+            for (RequestStatistics.Entry e : statistics.getEntries(owsService, null, null, false)) {
+                if (e.getService() != null && e.getOperation() != null) {
+                    String op = e.getOperation().toLowerCase();
+                    data.merge(op, (int) e.getCount(), Integer::sum);
+                }
+            }
+            return data;
+        }
+
         DataGatherer g = new DataGatherer();
         monitor.query(
                 new Query().properties("operation").filter("service", owsService, Comparison.EQ),
@@ -7,11 +7,13 @@ package org.geoserver.monitor.web;
 
 import java.util.HashMap;
 import java.util.Map;
+import org.geoserver.monitor.MemoryMonitorDAO;
 import org.geoserver.monitor.Monitor;
 import org.geoserver.monitor.Query;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.RequestData;
 import org.geoserver.monitor.RequestDataVisitor;
+import org.geoserver.monitor.RequestStatistics;
 
 public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
 
@@ -28,6 +30,17 @@ public class OWSOverviewPanel extends OWSSummaryChartBasePanel {
 
     @Override
     protected Map<String, Integer> gatherData(Monitor monitor) {
+        if (monitor.getDAO() instanceof MemoryMonitorDAO) {
+            // the memory storage keeps only the recent requests, use the aggregated statistics
+            Map<String, Integer> data = new HashMap<String, Integer>();
+            for (RequestStatistics.Entry e : monitor.getStatistics().getEntries()) {
+                if (e.getService() != null && e.getResource() == null) {
+                    data.merge(e.getService(), (int) e.getCount(), Integer::sum);
+                }
+            }
+            return data;
+        }
+
         Query q = new Query();
         q.properties("service").filter("service", null, Comparison.NEQ);
 
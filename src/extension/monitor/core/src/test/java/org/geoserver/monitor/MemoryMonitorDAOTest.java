@@ -5,7 +5,12 @@
  */
 package org.geoserver.monitor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
 
@@ -14,4 +19,33 @@ public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
         dao = new MemoryMonitorDAO();
         setUpData();
     }
+
+    @Test
+    public void testHistoryLimit() throws Exception {
+        MonitorConfig config = new MonitorConfig();
+        config.getProperties().put("memory.history", "5");
+        MemoryMonitorDAO memory = new MemoryMonitorDAO();
+        memory.init(config);
+
+        RequestData running = memory.init(new RequestData());
+        memory.add(running);
+        for (int i = 0; i < 12; i++) {
+            RequestData data = memory.init(new RequestData());
+            memory.add(data);
+            memory.save(data);
+        }
+
+        // the running request, and the last five completed ones, oldest first
+        List<RequestData> requests = memory.getRequests();
+        assertEquals(6, requests.size());
+        assertEquals(running.getId(), requests.get(0).getId());
+        for (int i = 1; i < 6; i++) {
+            assertEquals(running.getId() + 7 + i, requests.get(i).getId());
+        }
+        assertNull(memory.getRequest(running.getId() + 1));
+
+        memory.save(running);
+        assertEquals(5, memory.getRequests().size());
+        assertEquals(running.getId(), memory.getRequests().get(4).getId());
+    }
 }
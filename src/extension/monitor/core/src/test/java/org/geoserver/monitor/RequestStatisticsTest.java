@@ -0,0 +1,86 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.geoserver.monitor.RequestData.Status;
+import org.junit.Test;
+
+public class RequestStatisticsTest {
+
+    RequestData request(String service, String operation, long time, String... resources) {
+        RequestData data = new RequestData();
+        data.setService(service);
+        data.setOperation(operation);
+        data.setTotalTime(time);
+        data.setResources(Arrays.asList(resources));
+        data.setStatus(Status.FINISHED);
+        return data;
+    }
+
+    @Test
+    public void testAggregation() {
+        RequestStatistics statistics = new RequestStatistics();
+        statistics.add(request("WMS", "GetMap", 10, "topp:states", "sf:roads"));
+        statistics.add(request("WMS", "GetMap", 30, "topp:states"));
+        RequestData failed = request("WFS", "GetFeature", 100, "topp:states");
+        failed.setStatus(Status.FAILED);
+        statistics.add(failed);
+
+        RequestStatistics.Entry getMap = statistics.getEntry("WMS", "GetMap", null);
+        assertEquals(2, getMap.getCount());
+        assertEquals(0, getMap.getErrorCount());
+        assertEquals(40, getMap.getTotalTime());
+        assertEquals(20, getMap.getMeanTime(), 0d);
+        assertEquals(1, statistics.getEntry("WMS", "GetMap", "sf:roads").getCount());
+        assertEquals(2, statistics.getEntry("WMS", "GetMap", "topp:states").getCount());
+        assertEquals(1, statistics.getEntry("WFS", "GetFeature", null).getErrorCount());
+        assertNull(statistics.getEntry("WCS", "GetCoverage", null));
+
+        assertEquals(2, statistics.getEntries(null, null, null, false).size());
+        assertEquals(3, statistics.getEntries("wms", null, null, true).size());
+        assertEquals(2, statistics.getEntries(null, null, "topp:states", true).size());
+
+        statistics.clear();
+        assertTrue(statistics.getEntries().isEmpty());
+    }
+
+    @Test
+    public void testMaxEntries() {
+        RequestStatistics statistics = new RequestStatistics(10);
+        for (int i = 0; i < 100; i++) {
+            statistics.add(request("WMS", "GetMap", 10, "junk" + i));
+        }
+        assertEquals(10, statistics.getMaxEntries());
+        assertTrue(statistics.getEntries().size() <= 10);
+        // the most recently used entries are kept
+        assertNotNull(statistics.getEntry("WMS", "GetMap", null));
+        assertNotNull(statistics.getEntry("WMS", "GetMap", "junk99"));
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        // within the histogram precision
+        assertEquals(50, histogram.getValueAtPercentile(50), 50 / 8);
+        assertEquals(99, histogram.getValueAtPercentile(99), 99 / 8);
+        assertEquals(100, histogram.getMaxValue(), 100 / 8);
+        // small values are exact
+        assertEquals(1, histogram.getValueAtPercentile(1));
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxValue());
+    }
+}
@@ -0,0 +1,76 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.monitor.Monitor;
+import org.geoserver.monitor.RequestData;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MonitorStatisticsControllerTest extends GeoServerSystemTestSupport {
+
+    private Monitor monitor;
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        // no test data
+    }
+
+    @Before
+    public void setupStatistics() {
+        monitor = applicationContext.getBean(Monitor.class);
+        monitor.getStatistics().clear();
+        monitor.getStatistics().add(request("WMS", "GetMap", 2, "topp:states"));
+        monitor.getStatistics().add(request("WMS", "GetMap", 4, "topp:states", "sf:roads"));
+        monitor.getStatistics().add(request("WFS", "GetFeature", 5, "sf:roads"));
+    }
+
+    RequestData request(String service, String operation, long time, String... resources) {
+        RequestData data = new RequestData();
+        data.setService(service);
+        data.setOperation(operation);
+        data.setTotalTime(time);
+        data.setResources(Arrays.asList(resources));
+        return data;
+    }
+
+    @Test
+    public void testGetService() throws Exception {
+        JSONObject json =
+                (JSONObject)
+                        getAsJSON(RestBaseController.ROOT_PATH + "/monitor/statistics?service=WMS");
+        JSONArray statistics = json.getJSONArray("statistics");
+        assertEquals(1, statistics.size());
+        JSONObject getMap = statistics.getJSONObject(0);
+        assertEquals("GetMap", getMap.getString("operation"));
+        assertEquals(2, getMap.getLong("count"));
+        assertEquals(3, getMap.getDouble("meanTime"), 0d);
+        // exact, as below the first histogram magnitude
+        assertEquals(4, getMap.getLong("maxTime"));
+    }
+
+    @Test
+    public void testGetResources() throws Exception {
+        JSONObject json =
+                (JSONObject)
+                        getAsJSON(
+                                RestBaseController.ROOT_PATH
+                                        + "/monitor/statistics?resource=sf:roads");
+        JSONArray statistics = json.getJSONArray("statistics");
+        assertEquals(2, statistics.size());
+        // sorted by service
+        assertEquals("WFS", statistics.getJSONObject(0).getString("service"));
+        assertEquals("WMS", statistics.getJSONObject(1).getString("service"));
+        assertEquals(1, statistics.getJSONObject(1).getLong("count"));
+    }
+}
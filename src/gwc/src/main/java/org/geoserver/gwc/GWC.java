@@ -222,6 +222,11 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     private BlobStoreAggregator blobStoreAggregator;
 
+    /** Coalesces and runs in background the truncations issued by {@link #scheduleTruncate} */
+    private final TruncationQueue truncationQueue = new TruncationQueue(this::truncate);
+
+    private final TileETagCache tileETags = new TileETagCache();
+
     /**
      * Constructor for the GWC mediator
      *
@@ -323,6 +328,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
     /** @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet() */
     public void afterPropertiesSet() throws Exception {
         GWC.set(this);
+        truncationQueue.register();
     }
 
     /** @see org.springframework.beans.factory.DisposableBean#destroy() */
@@ -334,6 +340,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         if (this.catalogStyleChangeListener != null) {
             catalog.removeListener(this.catalogStyleChangeListener);
         }
+        truncationQueue.dispose();
         GWC.set(null);
     }
 
@@ -433,9 +440,7 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
                 continue;
             }
             try {
-                // This iterates over all cached parameters and all formats
-                new TruncateBboxRequest(layerName, intersectingBounds, gridSetId)
-                        .doTruncate(storageBroker, tileBreeder);
+                truncate(layerName, gridSetId, intersectingBounds);
             } catch (StorageException | GeoWebCacheException e) {
                 log.log(
                         Level.WARNING,
@@ -448,6 +453,42 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         }
     }
 
+    /**
+     * Same as {@link #truncate(String, ReferencedEnvelope)}, but the truncation is performed in
+     * background, by the {@link TruncationQueue}, merging it with the other ones scheduled for the
+     * same tile layer and gridset in a short time window
+     */
+    public void scheduleTruncate(final String layerName, final ReferencedEnvelope bounds)
+            throws GeoWebCacheException {
+
+        final TileLayer tileLayer = tld.getTileLayer(layerName);
+        for (String gridSetId : tileLayer.getGridSubsets()) {
+            GridSubset layerGrid = tileLayer.getGridSubset(gridSetId);
+            BoundingBox intersectingBounds = getIntersectingBounds(layerName, layerGrid, bounds);
+            if (intersectingBounds != null) {
+                truncationQueue.submit(layerName, gridSetId, intersectingBounds);
+            }
+        }
+    }
+
+    /** Truncates the tiles of the gridset within the given bounds, expressed in the gridset CRS */
+    private void truncate(String layerName, String gridSetId, BoundingBox bounds)
+            throws StorageException, GeoWebCacheException {
+        // This iterates over all cached parameters and all formats
+        new TruncateBboxRequest(layerName, bounds, gridSetId)
+                .doTruncate(storageBroker, tileBreeder);
+    }
+
+    /** The queue running the truncations issued by {@link #scheduleTruncate} */
+    public TruncationQueue getTruncationQueue() {
+        return truncationQueue;
+    }
+
+    /** The ETags of the tiles served by the direct WMS integration */
+    public TileETagCache getTileETags() {
+        return tileETags;
+    }
+
     public TruncateAllRequest truncateAll() throws GeoWebCacheException, StorageException {
         // creating a mock internal request
         TruncateAllRequest truncateAll = new TruncateAllRequest();
@@ -2675,6 +2716,19 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
                 org.apache.commons.httpclient.util.DateUtil.formatDate(new Date(tileTimeStamp));
         map.put("Last-Modified", lastModified);
 
+        checkModifiedSince(cachedTile, ifModSinceHeader);
+    }
+
+    /**
+     * Throws a HttpErrorCodeException with a 304 status code if the tile has not been modified
+     * since the If-Modified-Since header value. Only the tile timestamp is used, the tile contents
+     * are not read.
+     *
+     * @param cachedTile The tile
+     * @param ifModSinceHeader The if-Modified-Since header value
+     */
+    public static void checkModifiedSince(ConveyorTile cachedTile, String ifModSinceHeader) {
+        final long tileTimeStamp = cachedTile.getTSCreated();
         final Date ifModifiedSince;
         if (ifModSinceHeader != null && ifModSinceHeader.length() > 0) {
             try {
@@ -38,7 +38,8 @@ import org.opengis.referencing.operation.TransformException;
 
 /**
  * Listens to transactions (so far only issued by WFS) and truncates the cache for the affected area
- * of the layers involved in the transaction.
+ * of the layers involved in the transaction. Truncation happens in background, see {@link
+ * TruncationQueue}.
  *
  * <p>A Spring bean singleton of this class needs to be declared in order for GeoServer transactions
  * to pick it up automatically and forward transaction events to it.
@@ -57,6 +58,8 @@ public class GWCTransactionListener implements TransactionCallback {
 
     static final String GWC_TRANSACTION_INFO_PLACEHOLDER = "GWC_TRANSACTION_INFO_PLACEHOLDER";
 
+    static final String GWC_TRANSACTION_LAYERS_PLACEHOLDER = "GWC_TRANSACTION_LAYERS_PLACEHOLDER";
+
     /** @param gwc */
     public GWCTransactionListener(final GWC gwc) {
         this.gwc = gwc;
@@ -120,7 +123,7 @@ public class GWCTransactionListener implements TransactionCallback {
                 continue;
             }
             try {
-                gwc.truncate(tileLayerName, dirtyRegion);
+                gwc.scheduleTruncate(tileLayerName, dirtyRegion);
             } catch (GeoWebCacheException e) {
                 log.warning(
                         "Error truncating tile layer "
@@ -193,9 +196,8 @@ public class GWCTransactionListener implements TransactionCallback {
             return;
         }
         final QName featureTypeName = event.getLayerName();
-        final Set<String> affectedTileLayers =
-                gwc.getTileLayersByFeatureType(
-                        featureTypeName.getNamespaceURI(), featureTypeName.getLocalPart());
+        final TransactionType transaction = event.getRequest();
+        final Set<String> affectedTileLayers = getTileLayers(transaction, featureTypeName);
         if (affectedTileLayers.isEmpty()) {
             // event didn't touch a cached layer
             return;
@@ -204,7 +206,6 @@ public class GWCTransactionListener implements TransactionCallback {
         final SimpleFeatureCollection affectedFeatures = event.getAffectedFeatures();
         final ReferencedEnvelope affectedBounds = affectedFeatures.getBounds();
 
-        final TransactionType transaction = event.getRequest();
         TransactionRequest request = TransactionRequest.adapt(transaction);
 
         for (String tileLayerName : affectedTileLayers) {
@@ -212,6 +213,33 @@ public class GWCTransactionListener implements TransactionCallback {
         }
     }
 
+    /**
+     * Returns the tile layers affected by a change in the feature type, looking them up only once
+     * per transaction, as a transaction usually issues many events for the same feature type
+     */
+    @SuppressWarnings("unchecked")
+    private Set<String> getTileLayers(TransactionType transaction, QName featureTypeName) {
+        Map<QName, Set<String>> byTypeTileLayers = null;
+        if (transaction != null) {
+            Map<Object, Object> extendedProperties = transaction.getExtendedProperties();
+            byTypeTileLayers =
+                    (Map<QName, Set<String>>)
+                            extendedProperties.computeIfAbsent(
+                                    GWC_TRANSACTION_LAYERS_PLACEHOLDER, k -> new HashMap<>());
+            Set<String> tileLayers = byTypeTileLayers.get(featureTypeName);
+            if (tileLayers != null) {
+                return tileLayers;
+            }
+        }
+        Set<String> tileLayers =
+                gwc.getTileLayersByFeatureType(
+                        featureTypeName.getNamespaceURI(), featureTypeName.getLocalPart());
+        if (byTypeTileLayers != null) {
+            byTypeTileLayers.put(featureTypeName, tileLayers);
+        }
+        return tileLayers;
+    }
+
     @SuppressWarnings("unchecked")
     private Map<String, List<ReferencedEnvelope>> getByLayerDirtyRegions(
             final TransactionRequest transaction) {
@@ -0,0 +1,132 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.logging.Logger;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.io.Resource;
+
+/**
+ * Keeps the ETags of the served tiles, so that they are computed once per tile version instead of
+ * hashing the tile contents on every request, and conditional requests can be answered without
+ * reading the tile contents.
+ *
+ * <p>A tile version is identified by its creation timestamp and size, the same timestamp used for
+ * the {@code Last-Modified} header, so a cached ETag is never trusted more than the {@code
+ * If-Modified-Since} check. The number of cached ETags can be configured with the {@link #SIZE_KEY}
+ * property.
+ */
+public class TileETagCache {
+
+    static final Logger LOGGER = Logging.getLogger(TileETagCache.class);
+
+    /** System/environment property used to configure the number of cached ETags */
+    public static final String SIZE_KEY = "gwc.etag.cache.size";
+
+    static final int DEFAULT_SIZE = 100000;
+
+    private final Cache<TileKey, TileETag> etags;
+
+    public TileETagCache() {
+        this(getSize());
+    }
+
+    public TileETagCache(long size) {
+        this.etags = CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+
+    private static long getSize() {
+        String value = GeoServerExtensions.getProperty(SIZE_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + SIZE_KEY + " value " + value + ", using default");
+            }
+        }
+        return DEFAULT_SIZE;
+    }
+
+    /**
+     * Returns the ETag of the tile, if already known for the current version of the tile, or null
+     * otherwise. The tile contents are not read.
+     */
+    public String getETag(ConveyorTile tile) {
+        TileETag etag = etags.getIfPresent(new TileKey(tile));
+        if (etag != null && etag.timestamp == tile.getTSCreated() && etag.size == size(tile)) {
+            return etag.etag;
+        }
+        return null;
+    }
+
+    /** Computes the ETag of the tile from its contents, and caches it for the tile version */
+    public String computeETag(ConveyorTile tile, byte[] contents) throws NoSuchAlgorithmException {
+        String etag = GWC.getETag(contents);
+        etags.put(new TileKey(tile), new TileETag(tile.getTSCreated(), contents.length, etag));
+        return etag;
+    }
+
+    /** Drops all the cached ETags */
+    public void clear() {
+        etags.invalidateAll();
+    }
+
+    private static long size(ConveyorTile tile) {
+        Resource blob = tile.getBlob();
+        return blob == null ? -1 : blob.getSize();
+    }
+
+    static class TileETag {
+        final long timestamp;
+        final long size;
+        final String etag;
+
+        TileETag(long timestamp, long size, String etag) {
+            this.timestamp = timestamp;
+            this.size = size;
+            this.etag = etag;
+        }
+    }
+
+    static class TileKey {
+        final String layer;
+        final String gridSet;
+        final String format;
+        final String parameters;
+        final long[] index;
+
+        TileKey(ConveyorTile tile) {
+            this.layer = tile.getLayerId();
+            this.gridSet = tile.getGridSetId();
+            this.format = tile.getMimeType() == null ? null : tile.getMimeType().getFormat();
+            this.parameters = tile.getParametersId();
+            this.index = tile.getTileIndex().clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TileKey key = (TileKey) o;
+            return Objects.equals(layer, key.layer)
+                    && Objects.equals(gridSet, key.gridSet)
+                    && Objects.equals(format, key.format)
+                    && Objects.equals(parameters, key.parameters)
+                    && Arrays.equals(index, key.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layer, gridSet, format, parameters, Arrays.hashCode(index));
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.geowebcache.grid.BoundingBox;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Background queue for the truncation of the regions modified by transactions.
+ *
+ * <p>Dirty regions are coalesced by tile layer and gridset: the first region submitted for a
+ * layer/gridset starts a window, configurable in milliseconds with the {@link #WINDOW_KEY}
+ * property, and the regions submitted for the same layer/gridset during the window are merged
+ * into its bounds. Once the window expires a single truncation is executed for the merged bounds,
+ * on a pool whose size can be configured with the {@link #THREADS_KEY} property.
+ *
+ * <p>Pending truncations are executed in the calling thread on {@link #dispose()}, so that no
+ * stale tiles are left behind on shutdown.
+ */
+public class TruncationQueue implements TruncationQueueMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(TruncationQueue.class);
+
+    /** System/environment property used to configure the coalescing window, in milliseconds */
+    public static final String WINDOW_KEY = "gwc.truncate.window";
+
+    /** System/environment property used to configure the number of truncation threads */
+    public static final String THREADS_KEY = "gwc.truncate.threads";
+
+    static final long DEFAULT_WINDOW = 1000;
+
+    static final int DEFAULT_THREADS = 2;
+
+    /** Truncates the tiles of a layer and gridset within the given bounds */
+    @FunctionalInterface
+    public interface Truncator {
+        void truncate(String layerName, String gridSetId, BoundingBox bounds) throws Exception;
+    }
+
+    private final Truncator truncator;
+
+    private final long window;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ExecutorService executor;
+
+    /** The dirty regions waiting for their window to expire, guarded by this */
+    private final Map<Key, DirtyRegion> pending = new LinkedHashMap<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong executed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong lastLag = new AtomicLong();
+
+    private final AtomicLong maxLag = new AtomicLong();
+
+    /** Builds a queue configured by the {@link #WINDOW_KEY} and {@link #THREADS_KEY} properties */
+    public TruncationQueue(Truncator truncator) {
+        this(
+                truncator,
+                getProperty(WINDOW_KEY, DEFAULT_WINDOW),
+                (int) getProperty(THREADS_KEY, DEFAULT_THREADS));
+    }
+
+    public TruncationQueue(Truncator truncator, long window, int threads) {
+        this.truncator = truncator;
+        this.window = Math.max(0, window);
+        CustomizableThreadFactory schedulerThreads =
+                new CustomizableThreadFactory("GWCTruncateScheduler-");
+        schedulerThreads.setDaemon(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, schedulerThreads);
+        CustomizableThreadFactory truncateThreads = new CustomizableThreadFactory("GWCTruncate-");
+        truncateThreads.setDaemon(true);
+        int poolSize = Math.max(1, threads);
+        this.executor =
+                new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(),
+                        truncateThreads);
+    }
+
+    private static long getProperty(String key, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + key + " value " + value + ", using " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Queues the truncation of the given bounds, merging them with the ones already pending for the
+     * same layer and gridset
+     *
+     * @param bounds the bounds to truncate, in the gridset CRS
+     */
+    public void submit(String layerName, String gridSetId, BoundingBox bounds) {
+        submitted.incrementAndGet();
+        Key key = new Key(layerName, gridSetId);
+        synchronized (this) {
+            DirtyRegion region = pending.get(key);
+            if (region != null) {
+                region.add(bounds);
+                return;
+            }
+            pending.put(key, new DirtyRegion(bounds));
+            queued.incrementAndGet();
+        }
+        try {
+            scheduler.schedule(() -> execute(key), window, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // disposed, truncate right away
+            execute(key);
+        }
+    }
+
+    /** Moves the dirty region from the pending ones to the truncation pool */
+    private void execute(Key key) {
+        DirtyRegion region;
+        synchronized (this) {
+            region = pending.remove(key);
+        }
+        if (region == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> truncate(key, region));
+        } catch (RejectedExecutionException e) {
+            truncate(key, region);
+        }
+    }
+
+    private void truncate(Key key, DirtyRegion region) {
+        running.incrementAndGet();
+        queued.decrementAndGet();
+        try {
+            truncator.truncate(key.layerName, key.gridSetId, region.getBounds());
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOGGER.log(
+                    Level.WARNING,
+                    "Error truncating layer "
+                            + key.layerName
+                            + " gridset "
+                            + key.gridSetId
+                            + " within "
+                            + region.getBounds(),
+                    e);
+        } finally {
+            long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - region.created);
+            lastLag.set(lag);
+            maxLag.accumulateAndGet(lag, Math::max);
+            executed.incrementAndGet();
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops the queue, executing the pending truncations in the calling thread, and removes the
+     * bean from the platform MBean server
+     */
+    public void dispose() {
+        unregister();
+        scheduler.shutdownNow();
+        executor.shutdown();
+        List<Key> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(pending.keySet());
+        }
+        for (Key key : keys) {
+            execute(key);
+        }
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Registers the bean in the platform MBean server, replacing any previous registration */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the GWC truncation queue MBean", e);
+        }
+    }
+
+    /** Removes the bean from the platform MBean server */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.FINE, "Failed to unregister the GWC truncation queue MBean", e);
+        }
+    }
+
+    /** Returns true if there are no pending nor running truncations */
+    public boolean isIdle() {
+        return queued.get() == 0 && running.get() == 0;
+    }
+
+    @Override
+    public int getPendingTruncations() {
+        return queued.get();
+    }
+
+    @Override
+    public int getRunningTruncations() {
+        return running.get();
+    }
+
+    @Override
+    public long getSubmittedRegions() {
+        return submitted.get();
+    }
+
+    @Override
+    public long getExecutedTruncations() {
+        return executed.get();
+    }
+
+    @Override
+    public long getFailedTruncations() {
+        return failed.get();
+    }
+
+    @Override
+    public long getLastLag() {
+        return lastLag.get();
+    }
+
+    @Override
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    /** Union of the bounds submitted for a layer/gridset during a window */
+    static class DirtyRegion {
+
+        final long created = System.nanoTime();
+
+        double minX, minY, maxX, maxY;
+
+        DirtyRegion(BoundingBox bounds) {
+            minX = bounds.getMinX();
+            minY = bounds.getMinY();
+            maxX = bounds.getMaxX();
+            maxY = bounds.getMaxY();
+        }
+
+        void add(BoundingBox bounds) {
+            minX = Math.min(minX, bounds.getMinX());
+            minY = Math.min(minY, bounds.getMinY());
+            maxX = Math.max(maxX, bounds.getMaxX());
+            maxY = Math.max(maxY, bounds.getMaxY());
+        }
+
+        BoundingBox getBounds() {
+            return new BoundingBox(minX, minY, maxX, maxY);
+        }
+    }
+
+    static class Key {
+        final String layerName;
+        final String gridSetId;
+
+        Key(String layerName, String gridSetId) {
+            this.layerName = layerName;
+            this.gridSetId = gridSetId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(layerName, key.layerName)
+                    && Objects.equals(gridSetId, key.gridSetId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layerName, gridSetId);
+        }
+    }
+}
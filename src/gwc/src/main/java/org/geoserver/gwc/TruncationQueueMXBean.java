@@ -0,0 +1,36 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+/** Management interface exposing the depth and lag of the {@link TruncationQueue} */
+public interface TruncationQueueMXBean {
+
+    /** The name the queue is registered with in the platform MBean server */
+    String OBJECT_NAME = "org.geoserver:type=GWCTruncationQueue";
+
+    /** Number of coalesced truncations waiting for their window to expire, or for a thread */
+    int getPendingTruncations();
+
+    /** Number of truncations being executed */
+    int getRunningTruncations();
+
+    /** Number of dirty regions submitted to the queue */
+    long getSubmittedRegions();
+
+    /** Number of truncations executed, each one covering one or more dirty regions */
+    long getExecutedTruncations();
+
+    /** Number of truncations that failed */
+    long getFailedTruncations();
+
+    /**
+     * Milliseconds between the submission of the first dirty region of the last executed
+     * truncation, and its completion
+     */
+    long getLastLag();
+
+    /** The maximum lag observed, in milliseconds */
+    long getMaxLag();
+}
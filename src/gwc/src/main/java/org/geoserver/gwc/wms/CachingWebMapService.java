@@ -19,6 +19,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.geoserver.gwc.GWC;
+import org.geoserver.gwc.TileETagCache;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.HttpErrorCodeException;
@@ -84,6 +85,17 @@ public class CachingWebMapService implements MethodInterceptor {
             LOGGER.finest("GetMap request intercepted, serving cached content: " + request);
         }
 
+        // answer conditional requests without reading the tile, when possible
+        final String ifNoneMatch = request.getHttpRequestHeader("If-None-Match");
+        final String ifModifiedSince = request.getHttpRequestHeader("If-Modified-Since");
+        final TileETagCache etags = gwc.getTileETags();
+        String etag = etags.getETag(cachedTile);
+        if (etag != null && etag.equals(ifNoneMatch)) {
+            LOGGER.finer("Cached ETag matches, returning 304");
+            throw new HttpErrorCodeException(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        GWC.checkModifiedSince(cachedTile, ifModifiedSince);
+
         final byte[] tileBytes;
         {
             final Resource mapContents = cachedTile.getBlob();
@@ -97,8 +109,9 @@ public class CachingWebMapService implements MethodInterceptor {
         }
 
         // Handle Etags
-        final String ifNoneMatch = request.getHttpRequestHeader("If-None-Match");
-        final String etag = GWC.getETag(tileBytes);
+        if (etag == null) {
+            etag = etags.computeETag(cachedTile, tileBytes);
+        }
         if (etag.equals(ifNoneMatch)) {
             // Client already has the current version
             LOGGER.finer("ETag matches, returning 304");
@@ -115,8 +128,7 @@ public class CachingWebMapService implements MethodInterceptor {
 
         LinkedHashMap<String, String> headers = new LinkedHashMap<>();
         GWC.setCacheControlHeaders(headers, layer);
-        GWC.setConditionalGetHeaders(
-                headers, cachedTile, etag, request.getHttpRequestHeader("If-Modified-Since"));
+        GWC.setConditionalGetHeaders(headers, cachedTile, etag, ifModifiedSince);
         GWC.setCacheMetadataHeaders(headers, cachedTile, layer);
         headers.forEach((k, v) -> map.setResponseHeader(k, v));
 
@@ -985,7 +985,8 @@ public class GWCIntegrationTest extends GeoServerSystemTestSupport {
     private void waitTileBreederCompletion() throws InterruptedException {
         long start = System.currentTimeMillis();
         final int MAX_WAIT_SECS = 10;
-        while (GWC.get().getRunningAndPendingTasks().hasNext()) {
+        while (GWC.get().getRunningAndPendingTasks().hasNext()
+                || !GWC.get().getTruncationQueue().isIdle()) {
             Thread.sleep(10);
             long now = System.currentTimeMillis();
             if (now - start > MAX_WAIT_SECS * 1000) {
@@ -183,8 +183,8 @@ public class GWCTransactionListenerTest {
         ReferencedEnvelope expectedBounds =
                 new ReferencedEnvelope(transactionBounds, CRS.getHorizontalCRS(compoundCrs));
 
-        verify(mediator, times(1)).truncate(eq("theLayer"), eq(expectedBounds));
-        verify(mediator, times(1)).truncate(eq("theGroup"), eq(expectedBounds));
+        verify(mediator, times(1)).scheduleTruncate(eq("theLayer"), eq(expectedBounds));
+        verify(mediator, times(1)).scheduleTruncate(eq("theGroup"), eq(expectedBounds));
     }
 
     @Test
@@ -207,8 +207,17 @@ public class GWCTransactionListenerTest {
         ReferencedEnvelope expectedEnv = new ReferencedEnvelope(affectedBounds1);
         expectedEnv.expandToInclude(affectedBounds2);
 
-        verify(mediator, times(1)).truncate(eq("theLayer"), eq(expectedEnv));
-        verify(mediator, times(1)).truncate(eq("theGroup"), eq(expectedEnv));
+        verify(mediator, times(1)).scheduleTruncate(eq("theLayer"), eq(expectedEnv));
+        verify(mediator, times(1)).scheduleTruncate(eq("theGroup"), eq(expectedEnv));
+    }
+
+    @Test
+    public void testTileLayersLookedUpOncePerTransaction() throws Exception {
+        Map<Object, Object> extendedProperties = new HashMap<Object, Object>();
+        issueInsert(extendedProperties, new ReferencedEnvelope(-180, 0, 0, 90, WGS84));
+        issueInsert(extendedProperties, new ReferencedEnvelope(0, 180, 0, 90, WGS84));
+
+        verify(mediator, times(1)).getTileLayersByFeatureType(eq(""), eq("testType"));
     }
 
     /**
@@ -0,0 +1,51 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.geowebcache.conveyor.ConveyorTile;
+import org.geowebcache.io.ByteArrayResource;
+import org.geowebcache.mime.MimeType;
+import org.junit.Test;
+
+public class TileETagCacheTest {
+
+    ConveyorTile tile(long x, long timestamp, byte[] contents) throws Exception {
+        ConveyorTile tile = mock(ConveyorTile.class);
+        when(tile.getLayerId()).thenReturn("topp:states");
+        when(tile.getGridSetId()).thenReturn("EPSG:4326");
+        when(tile.getMimeType()).thenReturn(MimeType.createFromFormat("image/png"));
+        when(tile.getParametersId()).thenReturn(null);
+        when(tile.getTileIndex()).thenReturn(new long[] {x, 0, 3});
+        when(tile.getTSCreated()).thenReturn(timestamp);
+        when(tile.getBlob()).thenReturn(new ByteArrayResource(contents));
+        return tile;
+    }
+
+    @Test
+    public void testCachedPerTileVersion() throws Exception {
+        TileETagCache cache = new TileETagCache(10);
+        byte[] contents = {1, 2, 3, 4};
+        ConveyorTile tile = tile(0, 1000, contents);
+        assertNull(cache.getETag(tile));
+
+        String etag = cache.computeETag(tile, contents);
+        assertEquals(GWC.getETag(contents), etag);
+        assertEquals(etag, cache.getETag(tile(0, 1000, contents)));
+
+        // another tile
+        assertNull(cache.getETag(tile(1, 1000, contents)));
+        // same tile, but stored again
+        assertNull(cache.getETag(tile(0, 2000, contents)));
+        assertNull(cache.getETag(tile(0, 1000, new byte[] {1, 2, 3})));
+
+        cache.clear();
+        assertNull(cache.getETag(tile));
+    }
+}
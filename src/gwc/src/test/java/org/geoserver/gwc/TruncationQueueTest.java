@@ -0,0 +1,118 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.geowebcache.grid.BoundingBox;
+import org.junit.After;
+import org.junit.Test;
+
+public class TruncationQueueTest {
+
+    List<String> truncations = Collections.synchronizedList(new ArrayList<>());
+
+    TruncationQueue queue;
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.dispose();
+        }
+    }
+
+    void record(String layerName, String gridSetId, BoundingBox bounds) {
+        truncations.add(layerName + "/" + gridSetId + " " + bounds);
+    }
+
+    void waitIdle() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!queue.isIdle() && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        assertTrue(queue.isIdle());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        queue = new TruncationQueue(this::record, 200, 2);
+        queue.submit("layer", "EPSG:4326", new BoundingBox(0, 0, 10, 10));
+        queue.submit("layer", "EPSG:4326", new BoundingBox(5, -5, 20, 5));
+        queue.submit("layer", "EPSG:900913", new BoundingBox(0, 0, 1, 1));
+        queue.submit("other", "EPSG:4326", new BoundingBox(0, 0, 1, 1));
+        assertEquals(3, queue.getPendingTruncations());
+        waitIdle();
+
+        assertEquals(3, truncations.size());
+        assertTrue(truncations.contains("layer/EPSG:4326 " + new BoundingBox(0, -5, 20, 10)));
+        assertTrue(truncations.contains("layer/EPSG:900913 " + new BoundingBox(0, 0, 1, 1)));
+        assertTrue(truncations.contains("other/EPSG:4326 " + new BoundingBox(0, 0, 1, 1)));
+        assertEquals(4, queue.getSubmittedRegions());
+        assertEquals(3, queue.getExecutedTruncations());
+        assertEquals(0, queue.getFailedTruncations());
+        assertTrue(queue.getMaxLag() >= 200);
+
+        // a new window starts after the truncation
+        queue.submit("layer", "EPSG:4326", new BoundingBox(0, 0, 1, 1));
+        waitIdle();
+        assertEquals(4, truncations.size());
+    }
+
+    @Test
+    public void testFailures() throws Exception {
+        queue =
+                new TruncationQueue(
+                        (layer, gridSet, bounds) -> {
+                            throw new RuntimeException("fake");
+                        },
+                        0,
+                        1);
+        queue.submit("layer", "EPSG:4326", new BoundingBox(0, 0, 10, 10));
+        waitIdle();
+        assertEquals(1, queue.getExecutedTruncations());
+        assertEquals(1, queue.getFailedTruncations());
+    }
+
+    @Test
+    public void testDisposeRunsPending() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        queue =
+                new TruncationQueue(
+                        (layer, gridSet, bounds) -> {
+                            record(layer, gridSet, bounds);
+                            latch.countDown();
+                        },
+                        TimeUnit.HOURS.toMillis(1),
+                        1);
+        queue.submit("layer", "EPSG:4326", new BoundingBox(0, 0, 10, 10));
+        queue.dispose();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, truncations.size());
+        assertTrue(queue.isIdle());
+        queue = null;
+    }
+
+    @Test
+    public void testDisposeUnregisters() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(TruncationQueueMXBean.OBJECT_NAME);
+        queue = new TruncationQueue(this::record, 0, 1);
+        queue.register();
+        assertTrue(server.isRegistered(name));
+        queue.dispose();
+        assertFalse(server.isRegistered(name));
+        queue = null;
+    }
+}
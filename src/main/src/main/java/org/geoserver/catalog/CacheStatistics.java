@@ -0,0 +1,116 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * Point in time statistics of a cache, such as the {@link ResourcePool} ones.
+ *
+ * <p>Misses are counted once per load, regardless of how many threads were waiting for it. Load
+ * times are in nanoseconds.
+ */
+public class CacheStatistics implements Serializable {
+
+    private static final long serialVersionUID = 2582136571532896137L;
+
+    String name;
+    long size;
+    long maximumSize;
+    long hitCount;
+    long missCount;
+    long totalLoadTime;
+    long evictionCount;
+
+    @ConstructorProperties({
+        "name",
+        "size",
+        "maximumSize",
+        "hitCount",
+        "missCount",
+        "totalLoadTime",
+        "evictionCount"
+    })
+    public CacheStatistics(
+            String name,
+            long size,
+            long maximumSize,
+            long hitCount,
+            long missCount,
+            long totalLoadTime,
+            long evictionCount) {
+        this.name = name;
+        this.size = size;
+        this.maximumSize = maximumSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.totalLoadTime = totalLoadTime;
+        this.evictionCount = evictionCount;
+    }
+
+    /** The cache name */
+    public String getName() {
+        return name;
+    }
+
+    /** The number of entries currently in the cache */
+    public long getSize() {
+        return size;
+    }
+
+    /** The maximum total weight of the cache entries */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /** Total time spent loading the cache entries, in nanoseconds */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /** Number of entries evicted due to the size limit */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /** Ratio of the requests that found the entry in the cache, or 1 if there were no requests */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /** Average time spent loading a cache entry, in nanoseconds */
+    public double getAverageLoadPenalty() {
+        return missCount == 0 ? 0.0 : (double) totalLoadTime / missCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics [name="
+                + name
+                + ", size="
+                + size
+                + ", maximumSize="
+                + maximumSize
+                + ", hitCount="
+                + hitCount
+                + ", missCount="
+                + missCount
+                + ", totalLoadTime="
+                + totalLoadTime
+                + ", evictionCount="
+                + evictionCount
+                + "]";
+    }
+}
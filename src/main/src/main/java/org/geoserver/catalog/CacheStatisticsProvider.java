@@ -0,0 +1,18 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.List;
+
+/**
+ * Extension point for the caches living outside of the {@link ResourcePool}. The statistics of the
+ * providers found in the application context are reported along with the resource pool ones, over
+ * JMX by {@link ResourcePoolCaches} and over REST.
+ */
+public interface CacheStatisticsProvider {
+
+    /** Returns the statistics of the caches managed by this provider */
+    List<CacheStatistics> getCacheStatistics();
+}
@@ -4,6 +4,12 @@
  */
 package org.geoserver.catalog;
 
+import com.google.common.cache.AbstractCache.SimpleStatsCounter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ForwardingMap;
 import java.awt.RenderingHints;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
@@ -32,8 +38,15 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.measure.Unit;
@@ -108,7 +121,6 @@ import org.geotools.referencing.CRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyleImpl;
 import org.geotools.styling.StyledLayerDescriptor;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.URLs;
 import org.geotools.util.Utilities;
 import org.geotools.util.factory.Hints;
@@ -198,6 +210,37 @@ public class ResourcePool {
     /** Default number of hard references */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
 
+    /** Default size of the data store cache */
+    static int DATASTORE_CACHE_SIZE_DEFAULT = 1000;
+
+    /** Default size of the coverage reader cache */
+    static int READER_CACHE_SIZE_DEFAULT = 1000;
+
+    /** Default size of the WMS and WMTS server caches */
+    static int SERVER_CACHE_SIZE_DEFAULT = 100;
+
+    /** Default size of the CRS cache */
+    static int CRS_CACHE_SIZE_DEFAULT = 2000;
+
+    /** Default size of the SLD and style caches */
+    static int STYLE_CACHE_SIZE_DEFAULT = 1000;
+
+    /** Default load timeout, in seconds */
+    static long LOAD_TIMEOUT_DEFAULT = 60;
+
+    /**
+     * System variable configuring, in seconds, how long a thread waits for another one to load a
+     * data store or coverage reader
+     */
+    static final String LOAD_TIMEOUT_KEY = "org.geoserver.catalog.loadTimeout";
+
+    /**
+     * Prefix of the system variables configuring the cache sizes, e.g., {@code
+     * org.geoserver.catalog.cache.dataStores.size}. The feature type cache size is configured in
+     * the global settings instead.
+     */
+    static final String CACHE_SIZE_PREFIX = "org.geoserver.catalog.cache.";
+
     Catalog catalog;
     Map<String, CoordinateReferenceSystem> crsCache;
     DataStoreCache dataStoreCache;
@@ -212,6 +255,7 @@ public class ResourcePool {
     ThreadPoolExecutor coverageExecutor;
     CatalogRepository repository;
     EntityResolverProvider entityResolverProvider;
+    long loadTimeout = getLoadTimeoutDefault();
 
     /** Creates a new instance of the resource pool explicitly supplying the application context. */
     public static ResourcePool create(Catalog catalog, ApplicationContext appContext) {
@@ -278,7 +322,8 @@ public class ResourcePool {
     }
 
     protected Map<String, CoordinateReferenceSystem> createCrsCache() {
-        return new HashMap<String, CoordinateReferenceSystem>();
+        return new CatalogResourceCache<String, CoordinateReferenceSystem>(
+                "crs", getCacheSize("crs", CRS_CACHE_SIZE_DEFAULT)) {};
     }
 
     /**
@@ -360,7 +405,8 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, StyledLayerDescriptor> createSldCache() {
-        return new HashMap<StyleInfo, StyledLayerDescriptor>();
+        return new CatalogResourceCache<StyleInfo, StyledLayerDescriptor>(
+                "sld", getCacheSize("sld", STYLE_CACHE_SIZE_DEFAULT)) {};
     }
 
     /**
@@ -373,7 +419,8 @@ public class ResourcePool {
     }
 
     protected Map<StyleInfo, Style> createStyleCache() {
-        return new HashMap<StyleInfo, Style>();
+        return new CatalogResourceCache<StyleInfo, Style>(
+                "styles", getCacheSize("styles", STYLE_CACHE_SIZE_DEFAULT)) {};
     }
 
     /**
@@ -423,6 +470,122 @@ public class ResourcePool {
         }
     }
 
+    static long getLoadTimeoutDefault() {
+        String value = GeoServerExtensions.getProperty(LOAD_TIMEOUT_KEY);
+        if (value != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + LOAD_TIMEOUT_KEY + ": " + value);
+            }
+        }
+        return TimeUnit.SECONDS.toMillis(LOAD_TIMEOUT_DEFAULT);
+    }
+
+    /**
+     * Returns the configured size of a cache, looking up the {@link #CACHE_SIZE_PREFIX} system
+     * variable, or the default size if missing or invalid
+     */
+    static int getCacheSize(String cache, int defaultSize) {
+        String property = CACHE_SIZE_PREFIX + cache + ".size";
+        String value = GeoServerExtensions.getProperty(property);
+        if (value != null) {
+            try {
+                int size = Integer.parseInt(value.trim());
+                if (size > 0) {
+                    return size;
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            LOGGER.warning(
+                    "Invalid value for " + property + ": " + value + ", using " + defaultSize);
+        }
+        return defaultSize;
+    }
+
+    /**
+     * Returns the statistics of the caches in this pool. Caches replaced by subclasses with plain
+     * maps are not reported.
+     */
+    public List<CacheStatistics> getCacheStatistics() {
+        List<CacheStatistics> result = new ArrayList<>();
+        for (Map<?, ?> cache :
+                Arrays.asList(
+                        crsCache,
+                        dataStoreCache,
+                        featureTypeCache,
+                        featureTypeAttributeCache,
+                        hintCoverageReaderCache,
+                        wmsCache,
+                        wmtsCache,
+                        sldCache,
+                        styleCache)) {
+            if (cache instanceof CatalogResourceCache) {
+                result.add(((CatalogResourceCache<?, ?>) cache).getStatistics());
+            }
+        }
+        return result;
+    }
+
+    /** Records the load time of a cache entry, started at the given {@link System#nanoTime()} */
+    static void recordLoad(Map<?, ?> cache, long start) {
+        if (cache instanceof CatalogResourceCache) {
+            ((CatalogResourceCache<?, ?>) cache).recordLoad(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the cached value, or loads and caches it. When the cache is a {@link
+     * CatalogResourceCache} only one thread loads a given key, while the others wait for it, up to
+     * the {@link #getLoadTimeout() load timeout}, without blocking the loads of other keys. Null
+     * keys are loaded but not cached.
+     */
+    @SuppressWarnings("unchecked")
+    <K, V> V getOrLoad(Map<K, V> cache, K key, Callable<V> loader) throws IOException {
+        if (cache instanceof CatalogResourceCache) {
+            return ((CatalogResourceCache<K, V>) cache).getOrLoad(key, loader, loadTimeout);
+        }
+
+        // custom cache, fall back on coarse synchronization
+        V value = cache.get(key);
+        if (value == null) {
+            synchronized (cache) {
+                value = cache.get(key);
+                if (value == null) {
+                    value = call(loader);
+                    if (key != null) {
+                        cache.put(key, value);
+                    }
+                }
+            }
+        }
+        return value;
+    }
+
+    private static <V> V call(Callable<V> loader) throws IOException {
+        try {
+            return loader.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Returns how long, in milliseconds, a thread waits for another one to load a data store or
+     * coverage reader before giving up.
+     */
+    public long getLoadTimeout() {
+        return loadTimeout;
+    }
+
+    /** Sets the load timeout, in milliseconds. */
+    public void setLoadTimeout(long loadTimeout) {
+        this.loadTimeout = loadTimeout;
+    }
+
     /** Adds a pool listener. */
     public void addListener(Listener l) {
         listeners.add(l);
@@ -476,8 +639,10 @@ public class ResourcePool {
                 crs = crsCache.get(srsName);
                 if (crs == null) {
                     try {
+                        long start = System.nanoTime();
                         crs = CRS.decode(srsName);
                         crsCache.put(srsName, crs);
+                        recordLoad(crsCache, start);
                     } catch (Exception e) {
                         throw (IOException) new IOException().initCause(e);
                     }
@@ -533,122 +698,113 @@ public class ResourcePool {
 
         DataStoreInfo expandedStore = clone(info, true);
 
+        // cache only if the id is not null, no need to cache the stores returned from un-saved
+        // DataStoreInfo objects (it would be actually harmful, NPE when trying to dispose of them)
+        return getOrLoad(dataStoreCache, info.getId(), () -> createDataStore(info, expandedStore));
+    }
+
+    /** Creates a new {@link DataAccess} for the store, disposing it if anything goes wrong */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private DataAccess createDataStore(DataStoreInfo info, DataStoreInfo expandedStore)
+            throws IOException {
         DataAccess<? extends FeatureType, ? extends Feature> dataStore = null;
         try {
-            String id = info.getId();
-            dataStore = dataStoreCache.get(id);
-            if (dataStore == null) {
-                synchronized (dataStoreCache) {
-                    dataStore = dataStoreCache.get(id);
-                    if (dataStore == null) {
-                        // create data store
-                        Map<String, Serializable> connectionParameters =
-                                expandedStore.getConnectionParameters();
-
-                        // call this method to execute the hack which recognizes
-                        // urls which are relative to the data directory
-                        // TODO: find a better way to do this
-                        connectionParameters =
-                                ResourcePool.getParams(
-                                        connectionParameters, catalog.getResourceLoader());
-
-                        // obtain the factory
-                        DataAccessFactory factory = null;
-                        try {
-                            factory = getDataStoreFactory(info);
-                        } catch (IOException e) {
-                            throw new IOException(
-                                    "Failed to find the datastore factory for "
-                                            + info.getName()
-                                            + ", did you forget to install the store extension jar?");
-                        }
-                        if (factory == null) {
-                            throw new IOException(
-                                    "Failed to find the datastore factory for "
-                                            + info.getName()
-                                            + ", did you forget to install the store extension jar?");
-                        }
-                        Param[] params = factory.getParametersInfo();
-
-                        // ensure that the namespace parameter is set for the datastore
-                        if (!connectionParameters.containsKey("namespace") && params != null) {
-                            // if we grabbed the factory, check that the factory actually supports
-                            // a namespace parameter, if we could not get the factory, assume that
-                            // it does
-                            boolean supportsNamespace = true;
-                            supportsNamespace = false;
-
-                            for (Param p : params) {
-                                if ("namespace".equalsIgnoreCase(p.key)) {
-                                    supportsNamespace = true;
-                                    break;
-                                }
-                            }
-
-                            if (supportsNamespace) {
-                                WorkspaceInfo ws = info.getWorkspace();
-                                NamespaceInfo ns =
-                                        info.getCatalog().getNamespaceByPrefix(ws.getName());
-                                if (ns == null) {
-                                    ns = info.getCatalog().getDefaultNamespace();
-                                }
-                                if (ns != null) {
-                                    connectionParameters.put("namespace", ns.getURI());
-                                }
-                            }
-                        }
-
-                        // see if the store has a repository param, if so, pass the one wrapping
-                        // the store
-                        if (params != null) {
-                            for (Param p : params) {
-                                if (Repository.class.equals(p.getType())) {
-                                    connectionParameters.put(p.getName(), repository);
-                                }
-                            }
-                        }
-
-                        // see if the store has a entity resolver param, if so, pass it down
-                        EntityResolver resolver = getEntityResolver();
-                        if (resolver != null && params != null) {
-                            for (Param p : params) {
-                                if (EntityResolver.class.equals(p.getType())) {
-                                    if (!(resolver instanceof Serializable)) {
-                                        resolver = new SerializableEntityResolver(resolver);
-                                    }
-                                    connectionParameters.put(p.getName(), (Serializable) resolver);
-                                }
-                            }
-                        }
+            // create data store
+            Map<String, Serializable> connectionParameters =
+                    expandedStore.getConnectionParameters();
+
+            // call this method to execute the hack which recognizes
+            // urls which are relative to the data directory
+            // TODO: find a better way to do this
+            connectionParameters =
+                    ResourcePool.getParams(connectionParameters, catalog.getResourceLoader());
+
+            // obtain the factory
+            DataAccessFactory factory = null;
+            try {
+                factory = getDataStoreFactory(info);
+            } catch (IOException e) {
+                throw new IOException(
+                        "Failed to find the datastore factory for "
+                                + info.getName()
+                                + ", did you forget to install the store extension jar?");
+            }
+            if (factory == null) {
+                throw new IOException(
+                        "Failed to find the datastore factory for "
+                                + info.getName()
+                                + ", did you forget to install the store extension jar?");
+            }
+            Param[] params = factory.getParametersInfo();
+
+            // ensure that the namespace parameter is set for the datastore
+            if (!connectionParameters.containsKey("namespace") && params != null) {
+                // if we grabbed the factory, check that the factory actually supports
+                // a namespace parameter, if we could not get the factory, assume that
+                // it does
+                boolean supportsNamespace = true;
+                supportsNamespace = false;
+
+                for (Param p : params) {
+                    if ("namespace".equalsIgnoreCase(p.key)) {
+                        supportsNamespace = true;
+                        break;
+                    }
+                }
 
-                        dataStore = DataStoreUtils.getDataAccess(connectionParameters);
-                        if (dataStore == null) {
-                            /*
-                             * Preserve DataStore retyping behaviour by calling
-                             * DataAccessFinder.getDataStore after the call to
-                             * DataStoreUtils.getDataStore above.
-                             *
-                             * TODO: DataAccessFinder can also find DataStores, and when retyping is
-                             * supported for DataAccess, we can use a single mechanism.
-                             */
-                            dataStore = DataAccessFinder.getDataStore(connectionParameters);
-                        }
+                if (supportsNamespace) {
+                    WorkspaceInfo ws = info.getWorkspace();
+                    NamespaceInfo ns = info.getCatalog().getNamespaceByPrefix(ws.getName());
+                    if (ns == null) {
+                        ns = info.getCatalog().getDefaultNamespace();
+                    }
+                    if (ns != null) {
+                        connectionParameters.put("namespace", ns.getURI());
+                    }
+                }
+            }
 
-                        if (dataStore == null) {
-                            throw new NullPointerException(
-                                    "Could not acquire data access '" + info.getName() + "'");
-                        }
+            // see if the store has a repository param, if so, pass the one wrapping
+            // the store
+            if (params != null) {
+                for (Param p : params) {
+                    if (Repository.class.equals(p.getType())) {
+                        connectionParameters.put(p.getName(), repository);
+                    }
+                }
+            }
 
-                        // cache only if the id is not null, no need to cache the stores
-                        // returned from un-saved DataStoreInfo objects (it would be actually
-                        // harmful, NPE when trying to dispose of them)
-                        if (id != null) {
-                            dataStoreCache.put(id, dataStore);
+            // see if the store has a entity resolver param, if so, pass it down
+            EntityResolver resolver = getEntityResolver();
+            if (resolver != null && params != null) {
+                for (Param p : params) {
+                    if (EntityResolver.class.equals(p.getType())) {
+                        if (!(resolver instanceof Serializable)) {
+                            resolver = new SerializableEntityResolver(resolver);
                         }
+                        connectionParameters.put(p.getName(), (Serializable) resolver);
                     }
                 }
             }
 
+            dataStore = DataStoreUtils.getDataAccess(connectionParameters);
+            if (dataStore == null) {
+                /*
+                 * Preserve DataStore retyping behaviour by calling
+                 * DataAccessFinder.getDataStore after the call to
+                 * DataStoreUtils.getDataStore above.
+                 *
+                 * TODO: DataAccessFinder can also find DataStores, and when retyping is
+                 * supported for DataAccess, we can use a single mechanism.
+                 */
+                dataStore = DataAccessFinder.getDataStore(connectionParameters);
+            }
+
+            if (dataStore == null) {
+                throw new NullPointerException(
+                        "Could not acquire data access '" + info.getName() + "'");
+            }
+
             return dataStore;
         } catch (Exception e) {
             // if anything goes wrong we have to clean up the store anyways
@@ -772,6 +928,7 @@ public class ResourcePool {
                 atts = featureTypeAttributeCache.get(info.getId());
                 if (atts == null) {
                     // load from feature type
+                    long start = System.nanoTime();
                     atts = loadAttributes(info);
 
                     // check for a schema override
@@ -787,6 +944,7 @@ public class ResourcePool {
                     // cache attributes only if the id is not null -> the feature type is not new
                     if (info.getId() != null) {
                         featureTypeAttributeCache.put(info.getId(), atts);
+                        recordLoad(featureTypeAttributeCache, start);
                     }
                 }
             }
@@ -946,6 +1104,7 @@ public class ResourcePool {
             synchronized (featureTypeCache) {
                 ft = featureTypeCache.get(key);
                 if (ft == null) {
+                    long start = System.nanoTime();
 
                     // grab the underlying feature type
                     DataAccess<? extends FeatureType, ? extends Feature> dataAccess =
@@ -959,6 +1118,7 @@ public class ResourcePool {
                     ft = buildFeatureType(info, handleProjectionPolicy, ft);
 
                     featureTypeCache.put(key, ft);
+                    recordLoad(featureTypeCache, start);
                 }
             }
         }
@@ -1542,41 +1702,37 @@ public class ResourcePool {
         if (coverageExecutor != null) {
             hints.add(new RenderingHints(Hints.EXECUTOR_SERVICE, coverageExecutor));
         }
-        // look into the cache
-        Object key = new CoverageHintReaderKey(info.getId(), hints);
-        GridCoverageReader reader = hintCoverageReaderCache.get(key);
-
-        // if not found in cache, create it
-        if (reader == null) {
-            synchronized (hintCoverageReaderCache) {
-                if (key != null) {
-                    reader = hintCoverageReaderCache.get(key);
-                }
-                if (reader == null) {
-                    /////////////////////////////////////////////////////////
-                    //
-                    // Getting coverage reader using the format and the real path.
-                    //
-                    // /////////////////////////////////////////////////////////
-                    final String urlString = expandedStore.getURL();
-                    Object readObject =
-                            getObjectToRead(urlString, coverageInfo, expandedStore, hints);
-
-                    // readers might change the provided hints, pass down a defensive copy
-                    reader = gridFormat.getReader(readObject, hints);
-                    if (reader == null) {
-                        throw new IOException(
-                                "Failed to create reader from "
-                                        + urlString
-                                        + " and hints "
-                                        + hints);
-                    }
-                    if (key != null) {
-                        hintCoverageReaderCache.put((CoverageHintReaderKey) key, reader);
-                    }
-                }
-            }
-        }
+        // look into the cache, if not found create it
+        final Hints readerHints = hints;
+        final CoverageInfo readerCoverage = coverageInfo;
+        CoverageHintReaderKey key = new CoverageHintReaderKey(info.getId(), hints);
+        GridCoverageReader reader =
+                getOrLoad(
+                        hintCoverageReaderCache,
+                        key,
+                        () -> {
+                            /////////////////////////////////////////////////////////
+                            //
+                            // Getting coverage reader using the format and the real path.
+                            //
+                            // /////////////////////////////////////////////////////////
+                            final String urlString = expandedStore.getURL();
+                            Object readObject =
+                                    getObjectToRead(
+                                            urlString, readerCoverage, expandedStore, readerHints);
+
+                            // readers might change the provided hints, pass down a defensive copy
+                            GridCoverageReader created =
+                                    gridFormat.getReader(readObject, readerHints);
+                            if (created == null) {
+                                throw new IOException(
+                                        "Failed to create reader from "
+                                                + urlString
+                                                + " and hints "
+                                                + readerHints);
+                            }
+                            return created;
+                        });
 
         if (coverageInfo == null && coverageName != null) {
             coverageInfo = getCoverageInfo(coverageName, info);
@@ -1823,6 +1979,7 @@ public class ResourcePool {
                 synchronized (wmsCache) {
                     wms = wmsCache.get(id);
                     if (wms == null) {
+                        long start = System.nanoTime();
                         HTTPClient client = getHTTPClient(expandedStore);
                         String capabilitiesURL = expandedStore.getCapabilitiesURL();
                         URL serverURL = new URL(capabilitiesURL);
@@ -1838,6 +1995,7 @@ public class ResourcePool {
                         wms = new WebMapServer(serverURL, client, hints);
 
                         wmsCache.put(id, wms);
+                        recordLoad(wmsCache, start);
                     }
                 }
             }
@@ -1875,6 +2033,7 @@ public class ResourcePool {
                 synchronized (wmtsCache) {
                     wmts = (WebMapTileServer) wmtsCache.get(id);
                     if (wmts == null) {
+                        long start = System.nanoTime();
                         HTTPClient client = getHTTPClient(expandedStore);
                         String capabilitiesURL = expandedStore.getCapabilitiesURL();
                         URL serverURL = new URL(capabilitiesURL);
@@ -1886,6 +2045,7 @@ public class ResourcePool {
                         }
 
                         wmtsCache.put(id, wmts);
+                        recordLoad(wmtsCache, start);
                     }
                 }
             }
@@ -2014,9 +2174,11 @@ public class ResourcePool {
             synchronized (sldCache) {
                 sld = sldCache.get(info);
                 if (sld == null) {
+                    long start = System.nanoTime();
                     sld = dataDir().parsedSld(info);
 
                     sldCache.put(info, sld);
+                    recordLoad(sldCache, start);
 
                     final Resource styleResource = dataDir().style(info);
                     styleResource.addListener(
@@ -2050,6 +2212,7 @@ public class ResourcePool {
             synchronized (styleCache) {
                 style = styleCache.get(info);
                 if (style == null) {
+                    long start = System.nanoTime();
                     style = dataDir().parsedStyle(info);
 
                     if (style == null) {
@@ -2063,6 +2226,7 @@ public class ResourcePool {
                     // remove this when wms works off style info
                     style.setName(info.getName());
                     styleCache.put(info, style);
+                    recordLoad(styleCache, start);
 
                     final Resource styleResource = dataDir().style(info);
                     styleResource.addListener(
@@ -2233,58 +2397,177 @@ public class ResourcePool {
 
     /**
      * Base class for all the resource caches, ensures type safety and provides an easier way to
-     * handle with resource disposal
+     * handle with resource disposal.
+     *
+     * <p>The caches are bounded by weight, each entry weighs one unless {@link #weigh(Object,
+     * Object)} is overridden. Entries leaving the cache are disposed, whether removed, evicted or
+     * replaced, unless the same value has been put back under its key. Hits, loads and evictions
+     * are tracked and can be retrieved via {@link #getStatistics()}.
      *
      * @author Andrea Aime
      * @param <K>
      * @param <V>
      */
-    abstract class CatalogResourceCache<K, V> extends SoftValueHashMap<K, V> {
+    abstract class CatalogResourceCache<K, V> extends ForwardingMap<K, V> {
 
-        public CatalogResourceCache() {
-            this(100);
-        }
+        final String name;
 
-        public CatalogResourceCache(int hardReferences) {
-            super(hardReferences);
-            super.cleaner =
-                    new ValueCleaner() {
+        final long maximumSize;
 
-                        @Override
-                        public void clean(Object key, Object object) {
-                            dispose((K) key, (V) object);
-                        }
-                    };
+        final ConcurrentMap<K, V> map;
+
+        final SimpleStatsCounter stats = new SimpleStatsCounter();
+
+        /** The loads in progress */
+        final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+        public CatalogResourceCache(String name, long maximumSize) {
+            this.name = name;
+            this.maximumSize = maximumSize;
+            this.map =
+                    CacheBuilder.newBuilder()
+                            .maximumWeight(maximumSize)
+                            .<K, V>weigher(this::weigh)
+                            .<K, V>removalListener(this::onRemoval)
+                            .build()
+                            .asMap();
         }
 
         @Override
-        public V remove(Object key) {
-            V object = super.remove(key);
-            if (object != null) {
-                dispose((K) key, object);
-            }
-            return object;
+        protected Map<K, V> delegate() {
+            return map;
         }
 
         @Override
-        public void clear() {
-            for (Entry entry : entrySet()) {
-                try {
-                    dispose((K) entry.getKey(), (V) entry.getValue());
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Error dispoing entry: " + entry, e);
+        public V get(Object key) {
+            V value = map.get(key);
+            if (value != null) {
+                stats.recordHits(1);
+            }
+            return value;
+        }
+
+        /**
+         * Returns the cached value, or loads it making sure only one thread loads a given key at a
+         * time. Threads asking for the same key wait for the loading one, up to the given timeout,
+         * and get the same value or failure.
+         */
+        V getOrLoad(K key, Callable<V> loader, long timeout) throws IOException {
+            V value = get(key);
+            if (value != null) {
+                return value;
+            }
+            if (key == null) {
+                return call(loader);
+            }
+
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> running = loading.putIfAbsent(key, future);
+            if (running != null) {
+                return await(key, running, timeout);
+            }
+            try {
+                // the value might have been loaded between the first check and the registration
+                value = map.get(key);
+                if (value == null) {
+                    long start = System.nanoTime();
+                    value = call(loader);
+                    map.put(key, value);
+                    recordLoad(System.nanoTime() - start);
                 }
+                future.complete(value);
+                return value;
+            } catch (Throwable t) {
+                // errors too, waiting threads would otherwise hang until the timeout
+                future.completeExceptionally(t);
+                throw t;
+            } finally {
+                loading.remove(key, future);
             }
-            super.clear();
         }
 
-        protected abstract void dispose(K key, V object);
+        private V await(K key, CompletableFuture<V> future, long timeout) throws IOException {
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new IOException(
+                        "Timed out after "
+                                + timeout
+                                + "ms waiting for "
+                                + key
+                                + " to be loaded in the "
+                                + name
+                                + " cache");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for " + key + " to be loaded", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause.getMessage(), cause);
+            }
+        }
+
+        /**
+         * Records a cache miss, and the time it took to load the value, in nanoseconds. To be
+         * called once the value has been created.
+         */
+        void recordLoad(long loadTime) {
+            stats.recordMisses(1);
+            stats.recordLoadSuccess(loadTime);
+        }
+
+        private void onRemoval(RemovalNotification<K, V> notification) {
+            if (notification.wasEvicted()) {
+                stats.recordEviction();
+            }
+            // a value put again under its own key is still the cached one
+            if (notification.getCause() == RemovalCause.REPLACED
+                    && notification.getValue() == map.get(notification.getKey())) {
+                return;
+            }
+            try {
+                dispose(notification.getKey(), notification.getValue());
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error disposing entry: " + notification, e);
+            }
+        }
+
+        /** The weight of a cache entry, one by default */
+        protected int weigh(K key, V value) {
+            return 1;
+        }
+
+        /** The maximum weight of the entries in the cache */
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        /** Returns a snapshot of the cache statistics */
+        public CacheStatistics getStatistics() {
+            CacheStats snapshot = stats.snapshot();
+            return new CacheStatistics(
+                    name,
+                    map.size(),
+                    maximumSize,
+                    snapshot.hitCount(),
+                    snapshot.missCount(),
+                    snapshot.totalLoadTime(),
+                    snapshot.evictionCount());
+        }
+
+        /** Disposes a value removed from the cache, does nothing by default */
+        protected void dispose(K key, V object) {}
     }
 
     class FeatureTypeCache extends CatalogResourceCache<String, FeatureType> {
 
         public FeatureTypeCache(int maxSize) {
-            super(maxSize);
+            super("featureTypes", maxSize);
         }
 
         protected void dispose(String key, FeatureType featureType) {
@@ -2312,6 +2595,11 @@ public class ResourcePool {
      */
     @SuppressWarnings("rawtypes")
     class DataStoreCache extends CatalogResourceCache<String, DataAccess> {
+
+        public DataStoreCache() {
+            super("dataStores", getCacheSize("dataStores", DATASTORE_CACHE_SIZE_DEFAULT));
+        }
+
         /**
          * Ensure data access entry is removed from catalog, and ensure DataAccess dispose is called
          * to return system resources.
@@ -2346,6 +2634,10 @@ public class ResourcePool {
 
     class CoverageReaderCache extends CatalogResourceCache<String, GridCoverageReader> {
 
+        public CoverageReaderCache() {
+            super("coverageReaders", getCacheSize("coverageReaders", READER_CACHE_SIZE_DEFAULT));
+        }
+
         protected void dispose(String id, GridCoverageReader reader) {
             CoverageStoreInfo info = catalog.getCoverageStore(id);
             if (info != null) {
@@ -2366,6 +2658,12 @@ public class ResourcePool {
     class CoverageHintReaderCache
             extends CatalogResourceCache<CoverageHintReaderKey, GridCoverageReader> {
 
+        public CoverageHintReaderCache() {
+            super(
+                    "coverageHintReaders",
+                    getCacheSize("coverageHintReaders", READER_CACHE_SIZE_DEFAULT));
+        }
+
         protected void dispose(CoverageHintReaderKey key, GridCoverageReader reader) {
             CoverageStoreInfo info = catalog.getCoverageStore(key.id);
             if (info != null) {
@@ -2425,7 +2723,7 @@ public class ResourcePool {
     class FeatureTypeAttributeCache extends CatalogResourceCache<String, List<AttributeTypeInfo>> {
 
         FeatureTypeAttributeCache(int size) {
-            super(size);
+            super("featureTypeAttributes", size);
         }
 
         @Override
@@ -2436,6 +2734,10 @@ public class ResourcePool {
 
     class WMSCache extends CatalogResourceCache<String, WebMapServer> {
 
+        public WMSCache() {
+            super("wms", getCacheSize("wms", SERVER_CACHE_SIZE_DEFAULT));
+        }
+
         @Override
         protected void dispose(String key, WebMapServer server) {
             HTTPClient client = server.getHTTPClient();
@@ -2459,6 +2761,10 @@ public class ResourcePool {
 
     class WMTSCache extends CatalogResourceCache<String, WebMapTileServer> {
 
+        public WMTSCache() {
+            super("wmts", getCacheSize("wmts", SERVER_CACHE_SIZE_DEFAULT));
+        }
+
         @Override
         protected void dispose(String key, WebMapTileServer server) {
             HTTPClient client = server.getHTTPClient();
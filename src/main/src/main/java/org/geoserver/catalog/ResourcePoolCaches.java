@@ -0,0 +1,78 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Exposes the statistics of the catalog {@link ResourcePool} caches, and of the caches of the
+ * {@link CacheStatisticsProvider} extensions, over JMX. The pool is looked up on each call, as it
+ * can be replaced at runtime.
+ */
+public class ResourcePoolCaches implements ResourcePoolCachesMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(ResourcePoolCaches.class);
+
+    Catalog catalog;
+
+    public ResourcePoolCaches(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public List<CacheStatistics> getCaches() {
+        return getCacheStatistics(catalog);
+    }
+
+    /**
+     * Returns the statistics of the resource pool caches of the given catalog, followed by the ones
+     * of the {@link CacheStatisticsProvider} extensions
+     */
+    public static List<CacheStatistics> getCacheStatistics(Catalog catalog) {
+        List<CacheStatistics> result =
+                new ArrayList<>(catalog.getResourcePool().getCacheStatistics());
+        for (CacheStatisticsProvider provider :
+                GeoServerExtensions.extensions(CacheStatisticsProvider.class)) {
+            result.addAll(provider.getCacheStatistics());
+        }
+        return result;
+    }
+
+    /** Registers the bean in the platform MBean server, replacing any previous registration */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the resource pool caches MBean", e);
+        }
+    }
+
+    /** Removes the bean from the platform MBean server */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.FINE, "Failed to unregister the resource pool caches MBean", e);
+        }
+    }
+}
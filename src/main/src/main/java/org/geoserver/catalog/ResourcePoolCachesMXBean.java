@@ -0,0 +1,17 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.List;
+
+/** JMX view of the {@link ResourcePool} and {@link CacheStatisticsProvider} cache statistics */
+public interface ResourcePoolCachesMXBean {
+
+    /** The object name the bean is registered with */
+    String OBJECT_NAME = "org.geoserver:type=ResourcePoolCaches";
+
+    /** Returns the statistics of the caches of the catalog resource pool and of the providers */
+    List<CacheStatistics> getCaches();
+}
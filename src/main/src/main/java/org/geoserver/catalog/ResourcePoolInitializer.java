@@ -11,16 +11,18 @@ import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.GeoServerReinitializer;
 import org.geoserver.util.EntityResolverProvider;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * Initializes parameters of the {@link ResourcePool} class from configuration.
  *
  * @author Justin Deoliveira, OpenGeo
  */
-public class ResourcePoolInitializer implements GeoServerReinitializer {
+public class ResourcePoolInitializer implements GeoServerReinitializer, DisposableBean {
 
     GeoServer gs;
     EntityResolverProvider resolverProvider;
+    ResourcePoolCaches caches;
 
     public ResourcePoolInitializer(EntityResolverProvider resolverProvider) {
         this.resolverProvider = resolverProvider;
@@ -58,5 +60,19 @@ public class ResourcePoolInitializer implements GeoServerReinitializer {
                 });
 
         gs.getCatalog().getResourcePool().setEntityResolverProvider(resolverProvider);
+
+        if (caches != null) {
+            caches.unregister();
+        }
+        caches = new ResourcePoolCaches(gs.getCatalog());
+        caches.register();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (caches != null) {
+            caches.unregister();
+            caches = null;
+        }
     }
 }
@@ -4,12 +4,17 @@
  */
 package org.geoserver.catalog.impl;
 
+import com.google.common.collect.Iterators;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
@@ -29,6 +34,11 @@ import org.opengis.feature.type.Name;
  * <p>The lookups by predicate have been tested and optimized for performance, in particular the
  * current for loops turned out to be significantly faster than building and returning streams
  *
+ * <p>Secondary indexes can be registered with {@link #addIndex(String, Function)} to answer
+ * queries like "all the resources in a given store" without scanning all the values. The indexes
+ * are maintained on add, remove and update, and rely on concurrent maps only, so that readers are
+ * never blocked.
+ *
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
@@ -39,11 +49,106 @@ class CatalogInfoLookup<T extends CatalogInfo> {
     Function<T, Name> nameMapper;
     static final Predicate TRUE = x -> true;
 
+    /** Index key used for values whose referenced object is null (e.g., global styles) */
+    static final String NULL_KEY = "\u0000null";
+
+    /** The secondary indexes, by index name */
+    ConcurrentHashMap<String, SecondaryIndex<T>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Index of the values by local name, that is, the local part of the name returned by the
+     * {@link #nameMapper}. Allows to look up objects by name regardless of their workspace or
+     * namespace. Maintained along with the name maps, hence not part of {@link #indexes}.
+     */
+    SecondaryIndex<T> localNames = new SecondaryIndex<>(null);
+
+    /**
+     * A secondary index, mapping a key (usually the id of a referenced object) to the values
+     * referring to it. Values sharing the same key are kept sorted by name, like in the primary
+     * name maps.
+     */
+    static class SecondaryIndex<T extends CatalogInfo> {
+        /** Extracts the keys from a value, can be null if the index is maintained explicitly */
+        final Function<T, Set<String>> keysMapper;
+
+        final ConcurrentHashMap<String, Map<Name, T>> entries = new ConcurrentHashMap<>();
+
+        SecondaryIndex(Function<T, Set<String>> keysMapper) {
+            this.keysMapper = keysMapper;
+        }
+
+        void add(Set<String> keys, Name name, T value) {
+            for (String key : keys) {
+                entries.compute(
+                        key,
+                        (k, values) -> {
+                            if (values == null) {
+                                values = new ConcurrentSkipListMap<>();
+                            }
+                            values.put(name, value);
+                            return values;
+                        });
+            }
+        }
+
+        void remove(Set<String> keys, Name name) {
+            for (String key : keys) {
+                entries.computeIfPresent(
+                        key,
+                        (k, values) -> {
+                            values.remove(name);
+                            return values.isEmpty() ? null : values;
+                        });
+            }
+        }
+
+        Collection<T> get(String key) {
+            Map<Name, T> values = entries.get(key);
+            return values == null ? Collections.emptyList() : values.values();
+        }
+    }
+
     public CatalogInfoLookup(Function<T, Name> nameMapper) {
         super();
         this.nameMapper = nameMapper;
     }
 
+    /**
+     * Registers a secondary index. Must be called before any value is added to the lookup.
+     *
+     * @param name the index name, used in {@link #list(String, String, Class, Predicate)}
+     * @param keysMapper extracts the index keys from a value, see {@link #key(CatalogInfo)}
+     * @return this lookup, allowing to chain calls
+     */
+    public CatalogInfoLookup<T> addIndex(String name, Function<T, Set<String>> keysMapper) {
+        indexes.put(name, new SecondaryIndex<>(keysMapper));
+        return this;
+    }
+
+    /** Returns the index key for the given referenced object, handling nulls */
+    static String id(CatalogInfo info) {
+        if (info == null || info.getId() == null) {
+            return NULL_KEY;
+        }
+        return info.getId();
+    }
+
+    /** Returns the index keys for the given referenced object, handling nulls */
+    static Set<String> key(CatalogInfo info) {
+        return Collections.singleton(id(info));
+    }
+
+    /** Returns the index keys for the given referenced objects, skipping nulls */
+    static Set<String> keys(Collection<? extends CatalogInfo> infos) {
+        Set<String> result = new LinkedHashSet<>();
+        for (CatalogInfo info : infos) {
+            if (info != null && info.getId() != null) {
+                result.add(info.getId());
+            }
+        }
+        return result;
+    }
+
     <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, T value) {
         Class<T> vc;
         if (Proxy.isProxyClass(value.getClass())) {
@@ -74,7 +179,34 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         nameMap.put(name, value);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.put(value.getId(), value);
+        T previous = idMap.put(value.getId(), value);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(value, name);
+        return previous;
+    }
+
+    /** Adds the value to the local names and secondary indexes */
+    private void index(T value, Name name) {
+        localNames.add(localKey(name), name, value);
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.add(index.keysMapper.apply(value), name, value);
+        }
+    }
+
+    /** Removes the value from the local names and secondary indexes */
+    private void unindex(T value) {
+        Name name = nameMapper.apply(value);
+        localNames.remove(localKey(name), name);
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.remove(index.keysMapper.apply(value), name);
+        }
+    }
+
+    static Set<String> localKey(Name name) {
+        String localPart = name.getLocalPart();
+        return Collections.singleton(localPart == null ? NULL_KEY : localPart);
     }
 
     public Collection<T> values() {
@@ -91,7 +223,11 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
         nameMap.remove(name);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.remove(value.getId());
+        T removed = idMap.remove(value.getId());
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
     }
 
     /** Updates the value in the name map. The new value must be a ModificationProxy */
@@ -106,11 +242,39 @@ class CatalogInfoLookup<T extends CatalogInfo> {
             nameMap.remove(oldName);
             nameMap.put(newName, actualValue);
         }
+        reindex(actualValue, proxiedValue, oldName, newName);
+    }
+
+    /**
+     * Updates the secondary indexes for a value about to be modified
+     *
+     * @param actualValue the value as stored in this lookup, before the modification
+     * @param newValue the value after the modification (usually, the modification proxy)
+     * @param oldName the name of the value before the modification
+     * @param newName the name of the value after the modification
+     */
+    protected void reindex(T actualValue, T newValue, Name oldName, Name newName) {
+        if (!oldName.equals(newName)) {
+            localNames.remove(localKey(oldName), oldName);
+            localNames.add(localKey(newName), newName, actualValue);
+        }
+        for (SecondaryIndex<T> index : indexes.values()) {
+            Set<String> oldKeys = index.keysMapper.apply(actualValue);
+            Set<String> newKeys = index.keysMapper.apply(newValue);
+            if (!oldName.equals(newName) || !oldKeys.equals(newKeys)) {
+                index.remove(oldKeys, oldName);
+                index.add(newKeys, newName, actualValue);
+            }
+        }
     }
 
     public void clear() {
         idMultiMap.clear();
         nameMultiMap.clear();
+        localNames.entries.clear();
+        for (SecondaryIndex<T> index : indexes.values()) {
+            index.entries.clear();
+        }
     }
 
     /**
@@ -140,6 +304,82 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         return result;
     }
 
+    /**
+     * Looks up objects by class and matching predicate among the ones having the given key in the
+     * specified secondary index. The cost is proportional to the number of values sharing the
+     * key, rather than to the total number of values.
+     *
+     * @param indexName the name of an index registered via {@link #addIndex(String, Function)}
+     * @param key the index key, see {@link #key(CatalogInfo)}
+     */
+    <U extends CatalogInfo> List<U> list(
+            String indexName, String key, Class<U> clazz, Predicate<U> predicate) {
+        SecondaryIndex<T> index = indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown index " + indexName);
+        }
+        ArrayList<U> result = new ArrayList<U>();
+        for (T v : index.get(key)) {
+            if (clazz.isInstance(v)) {
+                final U u = (U) v;
+                if (predicate == TRUE || predicate.test(u)) {
+                    result.add(u);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a lazy iterator over the objects matching the given class and predicate. The
+     * iteration is weakly consistent, it does not fail if the lookup is modified concurrently.
+     */
+    <U extends CatalogInfo> Iterator<U> iterator(Class<U> clazz, Predicate<U> predicate) {
+        List<Iterator<T>> iterators = new ArrayList<>();
+        for (Map.Entry<Class<T>, Map<Name, T>> entry : nameMultiMap.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey())) {
+                iterators.add(entry.getValue().values().iterator());
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Iterator<U> all = (Iterator<U>) Iterators.concat(iterators.iterator());
+        if (predicate == TRUE) {
+            return all;
+        }
+        return Iterators.filter(all, u -> predicate.test(u));
+    }
+
+    /**
+     * Looks up objects by class and local name (e.g., the name of a resource, regardless of its
+     * namespace), and matching predicate.
+     */
+    <U extends CatalogInfo> List<U> listByLocalName(
+            String localName, Class<U> clazz, Predicate<U> predicate) {
+        ArrayList<U> result = new ArrayList<U>();
+        for (T v : localNames.get(localName == null ? NULL_KEY : localName)) {
+            if (clazz.isInstance(v)) {
+                final U u = (U) v;
+                if (predicate == TRUE || predicate.test(u)) {
+                    result.add(u);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /** Looks up the first object matching the given class and local name */
+    <U extends CatalogInfo> U findFirstByLocalName(String localName, Class<U> clazz) {
+        for (T v : localNames.get(localName == null ? NULL_KEY : localName)) {
+            if (clazz.isInstance(v)) {
+                return (U) v;
+            }
+        }
+
+        return null;
+    }
+
     /** Looks up a CatalogInfo by class and identifier */
     public <U extends CatalogInfo> U findById(String id, Class<U> clazz) {
         for (Class<T> key : idMultiMap.keySet()) {
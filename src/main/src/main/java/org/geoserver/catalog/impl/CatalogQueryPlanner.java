@@ -0,0 +1,418 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geotools.feature.NameImpl;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+/**
+ * Plans the execution of {@link DefaultCatalogFacade#list} and {@link DefaultCatalogFacade#count}
+ * queries.
+ *
+ * <p>The planner looks for case sensitive equality comparisons against a literal, either at the top
+ * level of the filter or as a child of a top level {@link And}, on properties that can be served by
+ * the facade lookups (id, name, prefixedName, workspace, namespace and store names). When found,
+ * the candidates are collected from the lookups, and the full filter is then evaluated only against
+ * them. When multiple comparisons can be used, the one returning the least candidates wins.
+ * Everything else, including comparisons on {@code enabled}, which are not selective, is left to
+ * the in memory filter evaluation over a full scan.
+ */
+class CatalogQueryPlanner {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogQueryPlanner.class);
+
+    /** How the candidates for a query are collected */
+    enum Strategy {
+        /** Direct lookup by id */
+        ID,
+        /** Direct lookup by qualified name */
+        NAME,
+        /** Secondary index lookup */
+        INDEX,
+        /** Full scan of the objects of the requested type */
+        SCAN
+    }
+
+    /** The outcome of the planning */
+    static class Plan {
+        static final Plan SCAN = new Plan(Strategy.SCAN, null, null);
+
+        final Strategy strategy;
+
+        final String property;
+
+        /** The candidates, or null if a full scan is needed */
+        final List<CatalogInfo> candidates;
+
+        Plan(Strategy strategy, String property, List<? extends CatalogInfo> candidates) {
+            this.strategy = strategy;
+            this.property = property;
+            this.candidates =
+                    candidates == null
+                            ? null
+                            : Collections.<CatalogInfo>unmodifiableList(candidates);
+        }
+
+        @Override
+        public String toString() {
+            if (strategy == Strategy.SCAN) {
+                return "SCAN";
+            }
+            return strategy + " on " + property + " (" + candidates.size() + " candidates)";
+        }
+    }
+
+    final DefaultCatalogFacade facade;
+
+    /** Number of planned queries per strategy, for instrumentation purposes */
+    final Map<Strategy, LongAdder> statistics = new EnumMap<>(Strategy.class);
+
+    CatalogQueryPlanner(DefaultCatalogFacade facade) {
+        this.facade = facade;
+        for (Strategy strategy : Strategy.values()) {
+            statistics.put(strategy, new LongAdder());
+        }
+    }
+
+    /** Returns the number of queries planned with the given strategy */
+    long getCount(Strategy strategy) {
+        return statistics.get(strategy).sum();
+    }
+
+    /** Returns the number of queries planned so far, keyed by strategy name */
+    Map<String, Long> getStatistics() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Strategy, LongAdder> entry : statistics.entrySet()) {
+            result.put(entry.getKey().name(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Plans the query for the given type and filter */
+    Plan plan(Class<? extends CatalogInfo> of, Filter filter) {
+        Plan best = null;
+        if (filter != null) {
+            List<PropertyIsEqualTo> equalities = new ArrayList<>();
+            collectEqualities(filter, equalities);
+            for (PropertyIsEqualTo equality : equalities) {
+                Plan plan = plan(of, equality);
+                if (plan != null
+                        && (best == null || plan.candidates.size() < best.candidates.size())) {
+                    best = plan;
+                }
+            }
+        }
+        if (best == null) {
+            best = Plan.SCAN;
+        }
+
+        statistics.get(best.strategy).increment();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(
+                    "Query on " + of.getSimpleName() + " with filter " + filter + ": " + best);
+        }
+        return best;
+    }
+
+    private void collectEqualities(Filter filter, List<PropertyIsEqualTo> equalities) {
+        if (filter instanceof PropertyIsEqualTo) {
+            equalities.add((PropertyIsEqualTo) filter);
+        } else if (filter instanceof And) {
+            for (Filter child : ((And) filter).getChildren()) {
+                collectEqualities(child, equalities);
+            }
+        }
+    }
+
+    private Plan plan(Class<? extends CatalogInfo> of, PropertyIsEqualTo equality) {
+        if (!equality.isMatchingCase()) {
+            return null;
+        }
+        Expression e1 = equality.getExpression1();
+        Expression e2 = equality.getExpression2();
+        if (e1 instanceof Literal && e2 instanceof PropertyName) {
+            Expression tmp = e1;
+            e1 = e2;
+            e2 = tmp;
+        }
+        if (!(e1 instanceof PropertyName) || !(e2 instanceof Literal)) {
+            return null;
+        }
+        Object value = ((Literal) e2).getValue();
+        if (!(value instanceof String)) {
+            return null;
+        }
+        return plan(of, ((PropertyName) e1).getPropertyName(), (String) value);
+    }
+
+    /** Returns the plan for an equality on the given property, or null if not supported */
+    Plan plan(Class<? extends CatalogInfo> of, String property, String value) {
+        if ("id".equals(property)) {
+            List<CatalogInfo> result = new ArrayList<>();
+            for (CatalogInfoLookup<?> lookup : lookups(of)) {
+                CatalogInfo match = lookup.findById(value, of);
+                if (match != null) {
+                    result.add(match);
+                }
+            }
+            return lookups(of).isEmpty() ? null : new Plan(Strategy.ID, property, result);
+        }
+
+        if (PublishedInfo.class.equals(of)) {
+            // union of the layers and layer group plans, if both are supported
+            Plan layers = plan(LayerInfo.class, property, value);
+            if (layers == null || property.startsWith("resource.")) {
+                // layer groups have no resource, they cannot match
+                return layers;
+            }
+            Plan groups = plan(LayerGroupInfo.class, property, value);
+            if (groups == null) {
+                return null;
+            }
+            List<CatalogInfo> result = new ArrayList<>(layers.candidates);
+            result.addAll(groups.candidates);
+            return new Plan(layers.strategy, property, result);
+        }
+
+        if ("name".equals(property)
+                || ("prefix".equals(property) && NamespaceInfo.class.isAssignableFrom(of))) {
+            // the local part of the lookup names is the object name (the prefix for namespaces)
+            List<CatalogInfo> result = new ArrayList<>();
+            for (CatalogInfoLookup<?> lookup : lookups(of)) {
+                result.addAll(lookup.listByLocalName(value, of, CatalogInfoLookup.TRUE));
+            }
+            return lookups(of).isEmpty() ? null : new Plan(Strategy.INDEX, property, result);
+        }
+
+        if (ResourceInfo.class.isAssignableFrom(of)) {
+            return planResources(of, property, value);
+        } else if (LayerInfo.class.isAssignableFrom(of)) {
+            return planLayers(of, property, value);
+        } else if (StoreInfo.class.isAssignableFrom(of)
+                || LayerGroupInfo.class.isAssignableFrom(of)
+                || StyleInfo.class.isAssignableFrom(of)) {
+            return planWorkspaceScoped(of, property, value);
+        }
+
+        return null;
+    }
+
+    private Plan planResources(Class<? extends CatalogInfo> of, String property, String value) {
+        CatalogInfoLookup<ResourceInfo> resources = facade.resources;
+        switch (property) {
+            case "prefixedName":
+                {
+                    int colon = value.indexOf(':');
+                    if (colon == -1) {
+                        return null;
+                    }
+                    NamespaceInfo ns = namespace(value.substring(0, colon));
+                    ResourceInfo match =
+                            ns == null
+                                    ? null
+                                    : resources.findByName(
+                                            new NameImpl(ns.getId(), value.substring(colon + 1)),
+                                            of.asSubclass(ResourceInfo.class));
+                    return new Plan(Strategy.NAME, property, singletonOrEmpty(match));
+                }
+            case "namespace.prefix":
+                {
+                    NamespaceInfo ns = namespace(value);
+                    List<CatalogInfo> result = new ArrayList<>();
+                    if (ns != null) {
+                        result.addAll(
+                                resources.list(
+                                        DefaultCatalogFacade.BY_NAMESPACE,
+                                        ns.getId(),
+                                        of,
+                                        CatalogInfoLookup.TRUE));
+                    }
+                    return new Plan(Strategy.INDEX, property, result);
+                }
+            case "store.id":
+                return new Plan(
+                        Strategy.INDEX,
+                        property,
+                        resources.list(
+                                DefaultCatalogFacade.BY_STORE, value, of, CatalogInfoLookup.TRUE));
+            case "store.name":
+                return new Plan(
+                        Strategy.INDEX,
+                        property,
+                        resourcesInStores(
+                                of,
+                                facade.stores.listByLocalName(
+                                        value, StoreInfo.class, CatalogInfoLookup.TRUE)));
+            case "store.workspace.name":
+                {
+                    WorkspaceInfo ws = workspace(value);
+                    List<StoreInfo> stores = Collections.emptyList();
+                    if (ws != null) {
+                        stores =
+                                facade.stores.list(
+                                        DefaultCatalogFacade.BY_WORKSPACE,
+                                        ws.getId(),
+                                        StoreInfo.class,
+                                        CatalogInfoLookup.TRUE);
+                    }
+                    return new Plan(Strategy.INDEX, property, resourcesInStores(of, stores));
+                }
+            default:
+                return null;
+        }
+    }
+
+    private List<CatalogInfo> resourcesInStores(
+            Class<? extends CatalogInfo> of, List<StoreInfo> stores) {
+        List<CatalogInfo> result = new ArrayList<>();
+        for (StoreInfo store : stores) {
+            result.addAll(
+                    facade.resources.list(
+                            DefaultCatalogFacade.BY_STORE,
+                            store.getId(),
+                            of,
+                            CatalogInfoLookup.TRUE));
+        }
+        return result;
+    }
+
+    private Plan planLayers(Class<? extends CatalogInfo> of, String property, String value) {
+        if ("prefixedName".equals(property)) {
+            int colon = value.indexOf(':');
+            if (colon == -1) {
+                return null;
+            }
+            NamespaceInfo ns = namespace(value.substring(0, colon));
+            LayerInfo match =
+                    ns == null
+                            ? null
+                            : facade.layers.findByName(
+                                    new NameImpl(ns.getId(), value.substring(colon + 1)),
+                                    LayerInfo.class);
+            return new Plan(Strategy.NAME, property, singletonOrEmpty(match));
+        } else if (property.startsWith("resource.")) {
+            // find the resources, and then the associated layers, which share the same name
+            Plan resources =
+                    plan(ResourceInfo.class, property.substring("resource.".length()), value);
+            if (resources == null) {
+                return null;
+            }
+            List<CatalogInfo> result = new ArrayList<>();
+            for (CatalogInfo resource : resources.candidates) {
+                LayerInfo layer =
+                        facade.layers.findByName(
+                                DefaultCatalogFacade.RESOURCE_NAME_MAPPER.apply(
+                                        (ResourceInfo) resource),
+                                LayerInfo.class);
+                if (layer != null) {
+                    result.add(layer);
+                }
+            }
+            return new Plan(resources.strategy, property, result);
+        }
+        return null;
+    }
+
+    private Plan planWorkspaceScoped(
+            Class<? extends CatalogInfo> of, String property, String value) {
+        CatalogInfoLookup<?> lookup = lookups(of).get(0);
+        String wsId;
+        if ("workspace.name".equals(property)) {
+            WorkspaceInfo ws = workspace(value);
+            if (ws == null) {
+                return new Plan(Strategy.INDEX, property, Collections.emptyList());
+            }
+            wsId = ws.getId();
+        } else if ("workspace.id".equals(property)) {
+            wsId = value;
+        } else if ("prefixedName".equals(property)
+                && LayerGroupInfo.class.isAssignableFrom(of)) {
+            // global groups have no prefix, workspace specific ones are prefixed by the workspace
+            List<CatalogInfo> result = new ArrayList<>();
+            int colon = value.indexOf(':');
+            WorkspaceInfo ws = colon == -1 ? null : workspace(value.substring(0, colon));
+            if (ws != null) {
+                addIfNotNull(
+                        result,
+                        facade.layerGroups.findByName(
+                                new NameImpl(ws.getId(), value.substring(colon + 1)), of));
+            }
+            addIfNotNull(result, facade.layerGroups.findByName(new NameImpl(null, value), of));
+            return new Plan(Strategy.NAME, property, result);
+        } else {
+            return null;
+        }
+        return new Plan(
+                Strategy.INDEX,
+                property,
+                lookup.list(DefaultCatalogFacade.BY_WORKSPACE, wsId, of, CatalogInfoLookup.TRUE));
+    }
+
+    private NamespaceInfo namespace(String prefix) {
+        return facade.namespaces.findByName(new NameImpl(prefix), NamespaceInfo.class);
+    }
+
+    private WorkspaceInfo workspace(String name) {
+        return facade.workspaces.findByName(new NameImpl(name), WorkspaceInfo.class);
+    }
+
+    private static void addIfNotNull(List<CatalogInfo> list, CatalogInfo info) {
+        if (info != null) {
+            list.add(info);
+        }
+    }
+
+    private static List<CatalogInfo> singletonOrEmpty(CatalogInfo info) {
+        return info == null ? Collections.emptyList() : Collections.singletonList(info);
+    }
+
+    /** Returns the lookups holding objects of the given type */
+    List<CatalogInfoLookup<?>> lookups(Class<? extends CatalogInfo> of) {
+        List<CatalogInfoLookup<?>> result = new ArrayList<>();
+        if (NamespaceInfo.class.isAssignableFrom(of)) {
+            result.add(facade.namespaces);
+        } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
+            result.add(facade.workspaces);
+        } else if (StoreInfo.class.isAssignableFrom(of)) {
+            result.add(facade.stores);
+        } else if (ResourceInfo.class.isAssignableFrom(of)) {
+            result.add(facade.resources);
+        } else if (LayerInfo.class.isAssignableFrom(of)) {
+            result.add(facade.layers);
+        } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
+            result.add(facade.layerGroups);
+        } else if (PublishedInfo.class.isAssignableFrom(of)) {
+            result.add(facade.layers);
+            result.add(facade.layerGroups);
+        } else if (StyleInfo.class.isAssignableFrom(of)) {
+            result.add(facade.styles);
+        }
+        return result;
+    }
+}
@@ -5,8 +5,8 @@
  */
 package org.geoserver.catalog.impl;
 
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
@@ -14,8 +14,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
@@ -91,10 +94,32 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                             s.getWorkspace() != null ? s.getWorkspace().getId() : null,
                             s.getName());
 
+    /** Index name for lookups by workspace (stores, layer groups, styles) */
+    static final String BY_WORKSPACE = "workspace";
+
+    /** Index name for resource lookups by namespace */
+    static final String BY_NAMESPACE = "namespace";
+
+    /** Index name for resource lookups by store */
+    static final String BY_STORE = "store";
+
+    /** Index name for layer lookups by style (either default or alternate) */
+    static final String BY_STYLE = "style";
+
     static final class LayerInfoLookup extends CatalogInfoLookup<LayerInfo> {
 
         public LayerInfoLookup() {
             super(LAYER_NAME_MAPPER);
+            addIndex(BY_STYLE, LayerInfoLookup::styleKeys);
+        }
+
+        static Set<String> styleKeys(LayerInfo layer) {
+            Set<String> keys = new LinkedHashSet<>();
+            keys.addAll(CatalogInfoLookup.keys(Collections.singleton(layer.getDefaultStyle())));
+            if (layer.getStyles() != null) {
+                keys.addAll(CatalogInfoLookup.keys(layer.getStyles()));
+            }
+            return keys;
         }
 
         public void update(ResourceInfo proxiedValue) {
@@ -109,6 +134,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                 // handle case of feature type without a corresponding layer
                 if (value != null) {
                     nameMap.put(newName, value);
+                    reindex(value, value, oldName, newName);
                 }
             }
         }
@@ -121,15 +147,14 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     /** Contains the stores keyed by implementation class */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = newStoreLookup();
 
     /** The default store keyed by workspace id */
     protected Map<String, DataStoreInfo> defaultStores =
             new ConcurrentHashMap<String, DataStoreInfo>();
 
     /** resources */
-    protected CatalogInfoLookup<ResourceInfo> resources =
-            new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = newResourceLookup();
 
     /** The default namespace */
     protected volatile NamespaceInfo defaultNamespace;
@@ -152,15 +177,17 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     protected List<MapInfo> maps = new CopyOnWriteArrayList<MapInfo>();
 
     /** layer groups */
-    protected CatalogInfoLookup<LayerGroupInfo> layerGroups =
-            new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+    protected CatalogInfoLookup<LayerGroupInfo> layerGroups = newLayerGroupLookup();
 
     /** styles */
-    protected CatalogInfoLookup<StyleInfo> styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+    protected CatalogInfoLookup<StyleInfo> styles = newStyleLookup();
 
     /** the catalog */
     private CatalogImpl catalog;
 
+    /** Plans the {@link #list} and {@link #count} queries */
+    transient CatalogQueryPlanner planner = new CatalogQueryPlanner(this);
+
     public DefaultCatalogFacade(Catalog catalog) {
         setCatalog(catalog);
     }
@@ -173,6 +200,27 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return catalog;
     }
 
+    static CatalogInfoLookup<StoreInfo> newStoreLookup() {
+        return new CatalogInfoLookup<>(STORE_NAME_MAPPER)
+                .addIndex(BY_WORKSPACE, s -> CatalogInfoLookup.key(s.getWorkspace()));
+    }
+
+    static CatalogInfoLookup<ResourceInfo> newResourceLookup() {
+        return new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER)
+                .addIndex(BY_STORE, r -> CatalogInfoLookup.key(r.getStore()))
+                .addIndex(BY_NAMESPACE, r -> CatalogInfoLookup.key(r.getNamespace()));
+    }
+
+    static CatalogInfoLookup<LayerGroupInfo> newLayerGroupLookup() {
+        return new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER)
+                .addIndex(BY_WORKSPACE, lg -> CatalogInfoLookup.key(lg.getWorkspace()));
+    }
+
+    static CatalogInfoLookup<StyleInfo> newStyleLookup() {
+        return new CatalogInfoLookup<>(STYLE_NAME_MAPPER)
+                .addIndex(BY_WORKSPACE, s -> CatalogInfoLookup.key(s.getWorkspace()));
+    }
+
     //
     // Stores
     //
@@ -218,7 +266,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         T result;
         if (workspace == ANY_WORKSPACE) {
-            result = stores.findFirst(clazz, s -> name.equals(s.getName()));
+            result = stores.findFirstByLocalName(name, clazz);
         } else {
             Name qname = new NameImpl((workspace != null) ? workspace.getId() : null, name);
             result = stores.findByName(qname, clazz);
@@ -237,7 +285,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ws = workspace;
         }
 
-        List<T> matches = stores.list(clazz, s -> ws.equals(s.getWorkspace()));
+        String key = CatalogInfoLookup.id(ws);
+        List<T> matches = stores.list(BY_WORKSPACE, key, clazz, s -> ws.equals(s.getWorkspace()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -326,7 +375,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             NamespaceInfo namespace, String name, Class<T> clazz) {
         T result;
         if (namespace == ANY_NAMESPACE) {
-            result = resources.findFirst(clazz, r -> name.equals(r.getName()));
+            result = resources.findFirstByLocalName(name, clazz);
         } else {
             Name qname = new NameImpl(namespace != null ? namespace.getId() : null, name);
             result = resources.findByName(qname, clazz);
@@ -349,7 +398,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ns = namespace;
         }
 
-        List<T> matches = resources.list(clazz, r -> ns.equals(r.getNamespace()));
+        String key = CatalogInfoLookup.id(ns);
+        List<T> matches =
+                resources.list(BY_NAMESPACE, key, clazz, r -> ns.equals(r.getNamespace()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -368,9 +419,9 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             // should not happen, but some broken test code sets up namespaces without equivalent
             // workspaces
             // or stores without workspaces
-            resource =
-                    resources.findFirst(
-                            clazz, r -> name.equals(r.getName()) && store.equals(r.getStore()));
+            List<T> matches =
+                    resources.listByLocalName(name, clazz, r -> store.equals(r.getStore()));
+            resource = matches.isEmpty() ? null : matches.get(0);
         }
         return wrapInModificationProxy(resource, clazz);
     }
@@ -384,7 +435,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public <T extends ResourceInfo> List<T> getResourcesByStore(StoreInfo store, Class<T> clazz) {
-        List<T> matches = resources.list(clazz, r -> store.equals(r.getStore()));
+        String key = CatalogInfoLookup.id(store);
+        List<T> matches = resources.list(BY_STORE, key, clazz, r -> store.equals(r.getStore()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -426,7 +478,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public LayerInfo getLayerByName(String name) {
-        LayerInfo result = layers.findFirst(LayerInfo.class, li -> name.equals(li.getName()));
+        LayerInfo result = layers.findFirstByLocalName(name, LayerInfo.class);
         return wrapInModificationProxy(result, LayerInfo.class);
     }
 
@@ -454,6 +506,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public List<LayerInfo> getLayers(StyleInfo style) {
         List<LayerInfo> matches =
                 layers.list(
+                        BY_STYLE,
+                        CatalogInfoLookup.id(style),
                         LayerInfo.class,
                         li -> style.equals(li.getDefaultStyle()) || li.getStyles().contains(style));
         return ModificationProxy.createList(matches, LayerInfo.class);
@@ -578,13 +632,17 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ws = workspace;
         }
         Predicate<LayerGroupInfo> predicate;
+        String key;
         if (workspace == NO_WORKSPACE) {
             predicate = lg -> lg.getWorkspace() == null;
+            key = CatalogInfoLookup.NULL_KEY;
         } else {
             predicate = lg -> ws.equals(lg.getWorkspace());
+            key = CatalogInfoLookup.id(ws);
         }
 
-        List<LayerGroupInfo> matches = layerGroups.list(LayerGroupInfo.class, predicate);
+        List<LayerGroupInfo> matches =
+                layerGroups.list(BY_WORKSPACE, key, LayerGroupInfo.class, predicate);
         return ModificationProxy.createList(matches, LayerGroupInfo.class);
     }
 
@@ -604,7 +662,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         if (workspace == NO_WORKSPACE) {
             match = layerGroups.findByName(new NameImpl(null, name), LayerGroupInfo.class);
         } else if (ANY_WORKSPACE == workspace) {
-            match = layerGroups.findFirst(LayerGroupInfo.class, lg -> name.equals(lg.getName()));
+            match = layerGroups.findFirstByLocalName(name, LayerGroupInfo.class);
         } else {
             match =
                     layerGroups.findByName(
@@ -827,7 +885,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     public StyleInfo getStyleByName(String name) {
         StyleInfo match = styles.findByName(new NameImpl(null, name), StyleInfo.class);
         if (match == null) {
-            match = styles.findFirst(StyleInfo.class, s -> name.equals(s.getName()));
+            match = styles.findFirstByLocalName(name, StyleInfo.class);
         }
         return wrapInModificationProxy(match, StyleInfo.class);
     }
@@ -857,7 +915,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         // TODO: support ANY_WORKSPACE?
         List<StyleInfo> matches;
         if (workspace == NO_WORKSPACE) {
-            matches = styles.list(StyleInfo.class, s -> s.getWorkspace() == null);
+            matches =
+                    styles.list(
+                            BY_WORKSPACE,
+                            CatalogInfoLookup.NULL_KEY,
+                            StyleInfo.class,
+                            s -> s.getWorkspace() == null);
         } else {
             WorkspaceInfo ws;
             if (workspace == null) {
@@ -866,7 +929,12 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                 ws = workspace;
             }
 
-            matches = styles.list(StyleInfo.class, s -> ws.equals(s.getWorkspace()));
+            matches =
+                    styles.list(
+                            BY_WORKSPACE,
+                            CatalogInfoLookup.id(ws),
+                            StyleInfo.class,
+                            s -> ws.equals(s.getWorkspace()));
         }
 
         return ModificationProxy.createList(matches, StyleInfo.class);
@@ -906,7 +974,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // stores
         if (stores == null) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = newStoreLookup();
         }
         for (Object o : stores.values()) {
             resolve((StoreInfoImpl) o);
@@ -914,7 +982,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // styles
         if (styles == null) {
-            styles = new CatalogInfoLookup<>(STYLE_NAME_MAPPER);
+            styles = newStyleLookup();
         }
         for (StyleInfo s : styles.values()) {
             resolve(s);
@@ -922,7 +990,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // resources
         if (resources == null) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = newResourceLookup();
         }
         for (Object o : resources.values()) {
             resolve((ResourceInfo) o);
@@ -938,7 +1006,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // layer groups
         if (layerGroups == null) {
-            layerGroups = new CatalogInfoLookup<>(LAYERGROUP_NAME_MAPPER);
+            layerGroups = newLayerGroupLookup();
         }
         for (LayerGroupInfo lg : layerGroups.values()) {
             resolve(lg);
@@ -1014,7 +1082,8 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
     @Override
     public <T extends CatalogInfo> int count(final Class<T> of, final Filter filter) {
-        return Iterables.size(iterable(of, filter, null));
+        // no need to wrap the matches in modification proxies just to count them
+        return Iterators.size(candidates(of, filter));
     }
 
     /**
@@ -1068,62 +1137,146 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             }
         }
 
-        Iterable<T> iterable = iterable(of, filter, sortOrder);
-
-        if (offset != null && offset.intValue() > 0) {
-            iterable = Iterables.skip(iterable, offset.intValue());
+        Iterator<T> iterator = candidates(of, filter);
+        int skip = offset == null ? 0 : Math.max(0, offset.intValue());
+        int limit = count == null || count.intValue() < 0 ? -1 : count.intValue();
+
+        if (sortOrder != null && sortOrder.length > 0) {
+            Comparator<Object> comparator = comparator(sortOrder);
+            List<T> sorted;
+            if (limit >= 0) {
+                // only keep the objects that can end up in the requested page
+                long k = Math.min((long) skip + limit, Integer.MAX_VALUE);
+                sorted = sortedHead(iterator, comparator, (int) k);
+            } else {
+                sorted = Lists.newArrayList(iterator);
+                sorted.sort(comparator);
+            }
+            iterator = sorted.iterator();
         }
 
-        if (count != null && count.intValue() >= 0) {
-            iterable = Iterables.limit(iterable, count.intValue());
+        if (skip > 0) {
+            Iterators.advance(iterator, skip);
+        }
+        if (limit >= 0) {
+            iterator = Iterators.limit(iterator, limit);
         }
 
-        Iterator<T> iterator = iterable.iterator();
-
-        return new CloseableIteratorAdapter<T>(iterator);
+        // wrap lazily, only the objects actually returned need a modification proxy
+        return new CloseableIteratorAdapter<T>(
+                Iterators.transform(iterator, o -> ModificationProxy.create(o, of)));
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends CatalogInfo> Iterable<T> iterable(
             final Class<T> of, final Filter filter, final SortBy[] sortByList) {
-        List<T> all;
-
-        if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) namespaces.list(of, toPredicate(filter));
-        } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) workspaces.list(of, toPredicate(filter));
-        } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) stores.list(of, toPredicate(filter));
-        } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) resources.list(of, toPredicate(filter));
-        } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layers.list(of, toPredicate(filter));
-        } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layerGroups.list(of, toPredicate(filter));
-        } else if (PublishedInfo.class.isAssignableFrom(of)) {
-            all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
-        } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) styles.list(of, toPredicate(filter));
-        } else if (MapInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) new ArrayList<>(maps);
-        } else {
+        List<T> all = Lists.newArrayList(candidates(of, filter));
+        if (sortByList != null && sortByList.length > 0) {
+            all.sort(comparator(sortByList));
+        }
+
+        return ModificationProxy.createList(all, of);
+    }
+
+    /**
+     * Returns the (unwrapped) objects of the given type matching the filter. The candidates are
+     * collected by the {@link CatalogQueryPlanner}, which may use the lookup indexes instead of
+     * scanning all the objects of the requested type.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends CatalogInfo> Iterator<T> candidates(final Class<T> of, final Filter filter) {
+        if (MapInfo.class.isAssignableFrom(of)) {
+            return (Iterator<T>) new ArrayList<>(maps).iterator();
+        }
+        CatalogQueryPlanner planner = getPlanner();
+        List<CatalogInfoLookup<?>> lookups = planner.lookups(of);
+        if (lookups.isEmpty()) {
             throw new IllegalArgumentException("Unknown type: " + of);
         }
+        if (filter == Filter.EXCLUDE) {
+            return Collections.emptyIterator();
+        }
 
-        if (null != sortByList) {
-            for (int i = sortByList.length - 1; i >= 0; i--) {
-                SortBy sortBy = sortByList[i];
-                Ordering<Object> ordering = Ordering.from(comparator(sortBy));
-                if (SortOrder.DESCENDING.equals(sortBy.getSortOrder())) {
-                    ordering = ordering.reverse();
-                }
-                all = ordering.sortedCopy(all);
+        CatalogQueryPlanner.Plan plan = planner.plan(of, filter);
+        if (plan.candidates != null) {
+            Predicate<T> predicate = toPredicate(filter);
+            Iterator<CatalogInfo> matches =
+                    Iterators.filter(
+                            plan.candidates.iterator(),
+                            c -> of.isInstance(c) && predicate.test((T) c));
+            return (Iterator<T>) (Iterator<?>) matches;
+        }
+
+        List<Iterator<T>> iterators = new ArrayList<>();
+        for (CatalogInfoLookup<?> lookup : lookups) {
+            iterators.add(lookup.iterator(of, toPredicate(filter)));
+        }
+        return iterators.size() == 1 ? iterators.get(0) : Iterators.concat(iterators.iterator());
+    }
+
+    /** Returns the query planner, creating it if needed (e.g., after XStream depersistence) */
+    CatalogQueryPlanner getPlanner() {
+        CatalogQueryPlanner result = planner;
+        if (result == null) {
+            result = planner = new CatalogQueryPlanner(this);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of {@link #list} and {@link #count} queries planned so far, keyed by the
+     * strategy used to collect the candidates: {@code ID} and {@code NAME} for direct lookups,
+     * {@code INDEX} for secondary index lookups and {@code SCAN} for full scans.
+     */
+    public Map<String, Long> getQueryStatistics() {
+        return getPlanner().getStatistics();
+    }
+
+    /**
+     * Returns the first {@code k} objects according to the comparator, sorted, keeping only
+     * {@code k} objects in memory. Objects comparing as equal keep their iteration order, same as
+     * a full stable sort would.
+     */
+    static <T> List<T> sortedHead(Iterator<T> iterator, Comparator<Object> comparator, int k) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Ranked<T>> ranking =
+                (r1, r2) -> {
+                    int result = comparator.compare(r1.value, r2.value);
+                    return result != 0 ? result : Long.compare(r1.sequence, r2.sequence);
+                };
+        // a max heap, the head is the first object to be discarded
+        PriorityQueue<Ranked<T>> heap = new PriorityQueue<>(ranking.reversed());
+        long sequence = 0;
+        while (iterator.hasNext()) {
+            T value = iterator.next();
+            if (heap.size() < k) {
+                heap.add(new Ranked<>(value, sequence));
+            } else if (comparator.compare(value, heap.peek().value) < 0) {
+                heap.poll();
+                heap.add(new Ranked<>(value, sequence));
             }
+            sequence++;
         }
 
-        return ModificationProxy.createList(all, of);
+        List<Ranked<T>> ranked = new ArrayList<>(heap);
+        ranked.sort(ranking);
+        List<T> result = new ArrayList<>(ranked.size());
+        for (Ranked<T> r : ranked) {
+            result.add(r.value);
+        }
+        return result;
+    }
+
+    /** An object along with its position in the iteration, used to keep sorting stable */
+    private static class Ranked<T> {
+        final T value;
+        final long sequence;
+
+        Ranked(T value, long sequence) {
+            this.value = value;
+            this.sequence = sequence;
+        }
     }
 
     private <T> Predicate<T> toPredicate(Filter filter) {
@@ -1134,6 +1287,19 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         }
     }
 
+    /** Builds a comparator honoring all the sort specifications, in order */
+    private Comparator<Object> comparator(final SortBy[] sortByList) {
+        Comparator<Object> result = null;
+        for (SortBy sortBy : sortByList) {
+            Comparator<Object> comparator = comparator(sortBy);
+            if (SortOrder.DESCENDING.equals(sortBy.getSortOrder())) {
+                comparator = comparator.reversed();
+            }
+            result = result == null ? comparator : result.thenComparing(comparator);
+        }
+        return result;
+    }
+
     private Comparator<Object> comparator(final SortBy sortOrder) {
         return new Comparator<Object>() {
             @Override
@@ -0,0 +1,397 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import com.google.common.base.Stopwatch;
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.apache.commons.io.IOUtils;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Paths;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resource.Type;
+import org.geoserver.platform.resource.Resources;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A binary snapshot of the catalog, allowing {@link GeoServerLoader} to restart without parsing
+ * again all the XML files in the data directory.
+ *
+ * <p>The snapshot contains the catalog objects encoded with the same {@link XStreamPersister}
+ * used for the XML files, but using the XStream binary format, grouped by tier in the same order
+ * used by the XML load. The snapshot also contains a manifest, a digest of the paths and last
+ * modification times of the catalog configuration files, and is used only if the manifest still
+ * matches the data directory contents. Any modification to the catalog, either through GeoServer
+ * or by hand, will invalidate it, and GeoServer will load the XML files and write a new snapshot.
+ *
+ * <p>The store passwords are encrypted by the {@link XStreamPersister} as in the XML files, which
+ * requires the security manager to be initialized, see {@link GeoServerLoader}.
+ *
+ * <p>The snapshot is disabled by default, it can be enabled setting the {@code
+ * org.geoserver.catalog.snapshot} system property to {@code true}.
+ */
+final class CatalogSnapshot {
+
+    static final Logger LOGGER = Logging.getLogger(CatalogSnapshot.class);
+
+    /** The system property enabling the snapshot */
+    static final String ENABLED_PROPERTY = "org.geoserver.catalog.snapshot";
+
+    /** Location of the snapshot in the data directory */
+    static final String LOCATION = Paths.path("temp", "catalog.snapshot");
+
+    /** "GSCS", the magic number at the beginning of the snapshot */
+    static final int MAGIC = 0x47534353;
+
+    /** The snapshot format version, to be increased on any incompatible change */
+    static final int VERSION = 2;
+
+    /** The catalog tiers, in load order */
+    enum Tier {
+        WORKSPACES,
+        NAMESPACES,
+        STYLES,
+        STORES,
+        RESOURCES,
+        LAYERS,
+        WORKSPACE_LAYER_GROUPS,
+        GLOBAL_LAYER_GROUPS
+    }
+
+    final String defaultWorkspace;
+
+    final String defaultNamespace;
+
+    /** Ids of the stores disabled by the startup connection checks, enabled in the XML files */
+    final Set<String> disabledStores;
+
+    final Map<Tier, List<ByteBuffer>> records;
+
+    CatalogSnapshot(
+            String defaultWorkspace,
+            String defaultNamespace,
+            Set<String> disabledStores,
+            Map<Tier, List<ByteBuffer>> records) {
+        this.defaultWorkspace = defaultWorkspace;
+        this.defaultNamespace = defaultNamespace;
+        this.disabledStores = disabledStores;
+        this.records = records;
+    }
+
+    /** Returns true if the snapshot has been enabled */
+    static boolean isEnabled() {
+        return Boolean.parseBoolean(GeoServerExtensions.getProperty(ENABLED_PROPERTY));
+    }
+
+    /** Returns the encoded objects of the given tier */
+    List<ByteBuffer> getRecords(Tier tier) {
+        List<ByteBuffer> result = records.get(tier);
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Computes the manifest of the catalog configuration files found in the data directory, that
+     * is, a digest of their paths and last modification times.
+     */
+    static byte[] manifest(GeoServerResourceLoader loader) throws IOException {
+        List<String> entries = new ArrayList<>();
+        collect(loader.get("styles"), 1, entries);
+        collect(loader.get("layergroups"), 1, entries);
+        Resource workspaces = loader.get("workspaces");
+        if (Resources.exists(workspaces)) {
+            // workspaces/<workspace>/<store>/<resource>/<file>.xml
+            entries.addAll(
+                    workspaces
+                            .list()
+                            .parallelStream()
+                            .flatMap(
+                                    r -> {
+                                        List<String> result = new ArrayList<>();
+                                        if (r.getType() == Type.DIRECTORY) {
+                                            collect(r, 3, result);
+                                        } else if (GeoServerLoader.XML_FILTER.accept(r)) {
+                                            result.add(entry(r));
+                                        }
+                                        return result.stream();
+                                    })
+                            .collect(Collectors.toList()));
+        }
+        Collections.sort(entries);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(header().getBytes(StandardCharsets.UTF_8));
+            for (String entry : entries) {
+                digest.update(entry.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Failed to compute the catalog manifest", e);
+        }
+    }
+
+    /** Binds the manifest to the format and GeoServer version, as the class layout might change */
+    private static String header() {
+        String version = GeoServer.class.getPackage().getImplementationVersion();
+        return VERSION + ":" + version + "\n";
+    }
+
+    private static void collect(Resource directory, int depth, List<String> entries) {
+        for (Resource r : directory.list()) {
+            if (r.getType() == Type.DIRECTORY) {
+                if (depth > 1) {
+                    collect(r, depth - 1, entries);
+                }
+            } else if (GeoServerLoader.XML_FILTER.accept(r)) {
+                entries.add(entry(r));
+            }
+        }
+    }
+
+    private static String entry(Resource r) {
+        return r.path() + ":" + r.lastmodified();
+    }
+
+    /**
+     * Writes a snapshot of the catalog. The stores disabled by the startup connection checks are
+     * encoded as they are, and listed separately so that they can be restored in the same state as
+     * the XML configuration.
+     */
+    static void write(Catalog catalog, XStreamPersister xp, byte[] manifest, Resource target)
+            throws IOException {
+        WorkspaceInfo ws = catalog.getDefaultWorkspace();
+        NamespaceInfo ns = catalog.getDefaultNamespace();
+        List<LayerGroupInfo> groups = catalog.getLayerGroups();
+        // the startup check disables the stores it cannot connect to, setting the error
+        List<String> disabledStores =
+                catalog.getStores(StoreInfo.class)
+                        .stream()
+                        .filter(s -> !s.isEnabled() && s.getError() != null)
+                        .map(StoreInfo::getId)
+                        .collect(Collectors.toList());
+
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(target.out(), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeBytes(out, manifest);
+            writeString(out, ws == null ? null : ws.getName());
+            writeString(out, ns == null ? null : ns.getPrefix());
+            out.writeInt(disabledStores.size());
+            for (String id : disabledStores) {
+                writeString(out, id);
+            }
+            for (Tier tier : Tier.values()) {
+                List<? extends CatalogInfo> infos;
+                switch (tier) {
+                    case WORKSPACES:
+                        infos = catalog.getWorkspaces();
+                        break;
+                    case NAMESPACES:
+                        infos = catalog.getNamespaces();
+                        break;
+                    case STYLES:
+                        infos = catalog.getStyles();
+                        break;
+                    case STORES:
+                        infos = catalog.getStores(StoreInfo.class);
+                        break;
+                    case RESOURCES:
+                        infos = catalog.getResources(ResourceInfo.class);
+                        break;
+                    case LAYERS:
+                        infos = catalog.getLayers();
+                        break;
+                    case WORKSPACE_LAYER_GROUPS:
+                        infos = filterGroups(groups, true);
+                        break;
+                    default:
+                        infos = filterGroups(groups, false);
+                }
+
+                List<byte[]> encoded =
+                        infos.parallelStream().map(i -> encode(xp, i)).collect(Collectors.toList());
+                out.writeInt(encoded.size());
+                for (byte[] bytes : encoded) {
+                    writeBytes(out, bytes);
+                }
+            }
+        }
+    }
+
+    private static List<LayerGroupInfo> filterGroups(
+            List<LayerGroupInfo> groups, boolean workspaceSpecific) {
+        return groups.stream()
+                .filter(g -> (g.getWorkspace() != null) == workspaceSpecific)
+                .collect(Collectors.toList());
+    }
+
+    private static byte[] encode(XStreamPersister xp, CatalogInfo info) {
+        Object unwrapped = XStreamPersister.unwrapProxies(info);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        xp.getXStream().marshal(unwrapped, new BinaryStreamWriter(bos));
+        return bos.toByteArray();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Reads the snapshot in memory. Returns null if the snapshot is missing, or was built from a
+     * different data directory state than the one described by the manifest.
+     */
+    static CatalogSnapshot read(Resource source, byte[] manifest) throws IOException {
+        if (source.getType() != Type.RESOURCE) {
+            return null;
+        }
+        File file = source.file();
+        if (file.length() > Integer.MAX_VALUE) {
+            LOGGER.warning("Catalog snapshot " + file + " is too large, ignoring it");
+            return null;
+        }
+        // read through a stream rather than mapping it, so that the file is not kept locked
+        ByteBuffer buffer;
+        try (InputStream in = source.in()) {
+            buffer = ByteBuffer.wrap(IOUtils.toByteArray(in));
+        }
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            LOGGER.info("Catalog snapshot " + file + " has an unsupported format, ignoring it");
+            return null;
+        }
+        byte[] snapshotManifest = new byte[buffer.getInt()];
+        buffer.get(snapshotManifest);
+        if (!Arrays.equals(manifest, snapshotManifest)) {
+            LOGGER.info("The data directory changed since the catalog snapshot was taken");
+            return null;
+        }
+
+        String defaultWorkspace = readString(buffer);
+        String defaultNamespace = readString(buffer);
+        int disabledCount = buffer.getInt();
+        Set<String> disabledStores = new HashSet<>();
+        for (int i = 0; i < disabledCount; i++) {
+            disabledStores.add(readString(buffer));
+        }
+        Map<Tier, List<ByteBuffer>> records = new EnumMap<>(Tier.class);
+        for (Tier tier : Tier.values()) {
+            int count = buffer.getInt();
+            List<ByteBuffer> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                list.add(record);
+            }
+            records.put(tier, list);
+        }
+
+        return new CatalogSnapshot(defaultWorkspace, defaultNamespace, disabledStores, records);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Decodes a catalog object from one of the snapshot records */
+    static <T> T decode(XStreamPersister xp, ByteBuffer record, Class<T> clazz) {
+        try (InputStream in = new ByteBufferInputStream(record.duplicate())) {
+            return clazz.cast(xp.getXStream().unmarshal(new BinaryStreamReader(in)));
+        } catch (IOException e) {
+            // cannot happen, the input stream is memory based
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Writes the snapshot, logging failures as the snapshot is just an optimization */
+    static void writeQuietly(Catalog catalog, XStreamPersister xp, byte[] manifest, Resource to) {
+        try {
+            Stopwatch sw = Stopwatch.createStarted();
+            write(catalog, xp, manifest, to);
+            LOGGER.info("Wrote catalog snapshot in " + sw.stop());
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to write the catalog snapshot", e);
+            to.delete();
+        }
+    }
+
+    /** A minimal input stream reading from a byte buffer */
+    static final class ByteBufferInputStream extends InputStream {
+
+        final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, buffer.remaining());
+            buffer.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
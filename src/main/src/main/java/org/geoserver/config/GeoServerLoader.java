@@ -12,13 +12,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.DataStoreInfo;
@@ -28,6 +36,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.ResourcePool;
+import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
@@ -40,6 +49,7 @@ import org.geoserver.catalog.util.LegacyCatalogImporter;
 import org.geoserver.catalog.util.LegacyCatalogReader;
 import org.geoserver.catalog.util.LegacyFeatureTypeInfoReader;
 import org.geoserver.config.AsynchResourceIterator.ResourceMapper;
+import org.geoserver.config.CatalogSnapshot.Tier;
 import org.geoserver.config.util.LegacyConfigurationImporter;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.config.util.XStreamPersisterFactory;
@@ -51,6 +61,8 @@ import org.geoserver.platform.resource.Resource;
 import org.geoserver.platform.resource.Resource.Type;
 import org.geoserver.platform.resource.Resources;
 import org.geoserver.platform.resource.Resources.ExtensionFilter;
+import org.geoserver.security.GeoServerSecurityManager;
+import org.geoserver.security.SecurityManagerListener;
 import org.geoserver.util.Filter;
 import org.geoserver.util.IOUtils;
 import org.geotools.util.decorate.Wrapper;
@@ -152,6 +164,11 @@ public abstract class GeoServerLoader {
         }
     }
 
+    /** The store configuration files, in lookup order */
+    static final String[] STORE_FILE_NAMES = {
+        "datastore.xml", "coveragestore.xml", "wmsstore.xml", "wmtsstore.xml"
+    };
+
     /** Feature Type IO resource mapper */
     static final ResourceLayerMapper FEATURE_LAYER_MAPPER =
             new ResourceLayerMapper("featuretype.xml", "feature type");
@@ -228,10 +245,33 @@ public abstract class GeoServerLoader {
 
     static final ExtensionFilter XML_FILTER = new Resources.ExtensionFilter("XML");
 
+    /**
+     * Number of threads parsing and adding catalog objects during the load, by default the number
+     * of available processors. Can be set with the {@code org.geoserver.catalog.loadingParallelism}
+     * system property, a value of 1 makes the load sequential.
+     */
+    static final int LOADING_PARALLELISM = getLoadingParallelism();
+
+    static int getLoadingParallelism() {
+        String value = GeoServerExtensions.getProperty("org.geoserver.catalog.loadingParallelism");
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value));
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid catalog loading parallelism: " + value);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     protected GeoServerResourceLoader resourceLoader;
     GeoServer geoserver;
+    int loadingParallelism = LOADING_PARALLELISM;
     XStreamPersisterFactory xpf = new XStreamPersisterFactory();
 
+    /** The catalog snapshot waiting for the security manager initialization, if any */
+    SnapshotWriter pendingSnapshot;
+
     // JD: this is a hack for the moment, it is used only to maintain tests since the test setup
     // relies
     // on the old data directory structure, once the tests have been ported to the new structure
@@ -444,193 +484,549 @@ public abstract class GeoServerLoader {
         return true;
     }
 
-    /** Reads the catalog from disk. */
+    /**
+     * Reads the catalog from disk, from the binary snapshot if enabled and up to date, from the XML
+     * configuration files otherwise.
+     */
     Catalog readCatalog(XStreamPersister xp) throws Exception {
+        // see if we really need to verify stores on startup
+        boolean checkStores = checkStoresOnStartup(xp);
+
+        // the catalog is loaded one tier at a time, as each tier references the previous ones,
+        // while the objects in the same tier are parsed and added in parallel
+        ForkJoinPool pool = new ForkJoinPool(loadingParallelism);
+        try {
+            byte[] manifest = null;
+            Resource snapshotResource = resourceLoader.get(CatalogSnapshot.LOCATION);
+            CatalogImpl catalog = null;
+            if (CatalogSnapshot.isEnabled()) {
+                try {
+                    manifest = CatalogSnapshot.manifest(resourceLoader);
+                    CatalogSnapshot snapshot = CatalogSnapshot.read(snapshotResource, manifest);
+                    if (snapshot != null) {
+                        catalog = newCatalog(xp, checkStores);
+                        restoreSnapshot(snapshot, catalog, xp, pool, checkStores);
+                        LOGGER.info("Catalog restored from snapshot " + snapshotResource.path());
+                    }
+                } catch (Exception e) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            "Failed to restore the catalog snapshot, will read the XML files",
+                            e);
+                    catalog = null;
+                }
+            }
+
+            boolean fromXML = catalog == null;
+            if (fromXML) {
+                catalog = newCatalog(xp, checkStores);
+                readXMLCatalog(catalog, xp, pool, checkStores);
+            }
+
+            xp.setUnwrapNulls(true);
+            Stopwatch sw = Stopwatch.createStarted();
+            catalog.resolve();
+            LOGGER.config("Resolved catalog references in " + sw.stop());
+
+            if (fromXML && manifest != null) {
+                writeSnapshot(catalog, xp, manifest, snapshotResource);
+            }
+
+            // re-enable extended validation
+            if (!checkStores) {
+                catalog.setExtendedValidation(true);
+            }
+            return catalog;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Writes the catalog snapshot. The persister encrypts the store passwords only once the
+     * security manager is initialized, which happens after the catalog load on startup, so in that
+     * case the write is delayed until the security manager is ready.
+     */
+    void writeSnapshot(Catalog catalog, XStreamPersister xp, byte[] manifest, Resource target) {
+        cancelPendingSnapshot();
+        GeoServerSecurityManager securityManager =
+                xp.isEncryptPasswordFields() ? xp.getSecurityManager() : null;
+        if (securityManager == null || securityManager.isInitialized()) {
+            CatalogSnapshot.writeQuietly(catalog, xp, manifest, target);
+        } else {
+            // make sure no stale snapshot is used in the meantime
+            target.delete();
+            pendingSnapshot = new SnapshotWriter(securityManager, catalog, xp, manifest, target);
+            securityManager.addListener(pendingSnapshot);
+        }
+    }
+
+    void cancelPendingSnapshot() {
+        SnapshotWriter writer = pendingSnapshot;
+        if (writer != null) {
+            writer.cancel();
+            pendingSnapshot = null;
+        }
+    }
+
+    /** Writes the catalog snapshot once the security manager is initialized */
+    static final class SnapshotWriter implements SecurityManagerListener {
+
+        final GeoServerSecurityManager securityManager;
+
+        Catalog catalog;
+
+        XStreamPersister xp;
+
+        byte[] manifest;
+
+        Resource target;
+
+        SnapshotWriter(
+                GeoServerSecurityManager securityManager,
+                Catalog catalog,
+                XStreamPersister xp,
+                byte[] manifest,
+                Resource target) {
+            this.securityManager = securityManager;
+            this.catalog = catalog;
+            this.xp = xp;
+            this.manifest = manifest;
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void handlePostChanged(GeoServerSecurityManager securityManager) {
+            if (catalog != null && securityManager.isInitialized()) {
+                CatalogSnapshot.writeQuietly(catalog, xp, manifest, target);
+                release();
+            }
+        }
+
+        synchronized void cancel() {
+            release();
+            securityManager.removeListener(this);
+        }
+
+        /** Drops the references to the loaded catalog, the listener stays until cancelled */
+        private void release() {
+            catalog = null;
+            xp = null;
+            manifest = null;
+            target = null;
+        }
+    }
+
+    /** Creates the catalog to be loaded, and sets up the persister for the load */
+    CatalogImpl newCatalog(XStreamPersister xp, boolean checkStores) {
         CatalogImpl catalog = new CatalogImpl();
         catalog.setResourceLoader(resourceLoader);
         xp.setCatalog(catalog);
         xp.setUnwrapNulls(false);
-
-        // see if we really need to verify stores on startup
-        boolean checkStores = checkStoresOnStartup(xp);
         if (!checkStores) {
             catalog.setExtendedValidation(false);
         }
+        return catalog;
+    }
 
-        // global styles
-        loadStyles(resourceLoader.get("styles"), catalog, xp);
-
-        // workspaces, stores, and resources
+    /** Reads the catalog contents from the XML configuration files */
+    void readXMLCatalog(
+            CatalogImpl catalog, XStreamPersister xp, ForkJoinPool pool, boolean checkStores)
+            throws Exception {
+        // workspaces and namespaces
         Resource workspaces = resourceLoader.get("workspaces");
+        List<Resource> workspaceList = Collections.emptyList();
+        List<Resource> loadedWorkspaces = new ArrayList<>();
         if (Resources.exists(workspaces)) {
-            // do a first quick scan over all workspaces, setting the default
-            Resource dws = workspaces.get("default.xml");
-            WorkspaceInfo defaultWorkspace = null;
-            if (Resources.exists(dws)) {
-                try {
-                    defaultWorkspace = depersist(xp, dws, WorkspaceInfo.class);
-                    LOGGER.info("Loaded default workspace " + defaultWorkspace.getName());
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load default workspace", e);
-                }
-            } else {
-                LOGGER.warning("No default workspace was found.");
-            }
-
-            List<Resource> workspaceList =
+            workspaceList =
                     workspaces
                             .list()
                             .parallelStream()
                             .filter(r -> Resources.DirectoryFilter.INSTANCE.accept(r))
                             .collect(Collectors.toList());
-
-            try (AsynchResourceIterator<WorkspaceContents> it =
-                    new AsynchResourceIterator<>(
-                            workspaces,
-                            Resources.DirectoryFilter.INSTANCE,
-                            new WorkspaceMapper())) {
-                while (it.hasNext()) {
-                    WorkspaceContents wc = it.next();
-                    WorkspaceInfo ws;
-                    final Resource workspaceResource = wc.resource;
-                    try {
-                        ws = depersist(xp, wc.contents, WorkspaceInfo.class);
-                        catalog.add(ws);
-                        if (LOGGER.isLoggable(Level.INFO)) {
-                            LOGGER.info("Loaded workspace '" + ws.getName() + "'");
+            Map<String, WorkspaceInfo> loaded = new ConcurrentHashMap<>();
+            Map<String, NamespaceInfo> namespaces = new ConcurrentHashMap<>();
+            runPhase(
+                    pool,
+                    "workspaces",
+                    workspaceList,
+                    wsd -> {
+                        WorkspaceInfo ws = loadWorkspace(wsd, catalog, xp, namespaces);
+                        if (ws != null) {
+                            loaded.put(wsd.path(), ws);
                         }
-                    } catch (Exception e) {
-                        LOGGER.log(
-                                Level.WARNING,
-                                "Failed to load workspace '" + workspaceResource.name() + "'",
-                                e);
-                        continue;
-                    }
+                    });
+            // the catalog defaults to the first workspace and namespace added, which is random
+            // when adding in parallel, use the directory order the sequential load followed
+            List<WorkspaceInfo> ordered = new ArrayList<>();
+            for (Resource wsd : workspaceList) {
+                WorkspaceInfo ws = loaded.get(wsd.path());
+                if (ws != null) {
+                    ordered.add(ws);
+                    loadedWorkspaces.add(wsd);
+                }
+            }
+            setFirstDefaults(catalog, ordered, namespaces);
+            setDefaultWorkspace(workspaces.get("default.xml"), catalog, xp, namespaces);
+        } else {
+            LOGGER.warning("No 'workspaces' directory found, unable to load any stores.");
+        }
 
-                    // load the namespace
-                    NamespaceInfo ns = null;
-                    try {
-                        ns = depersist(xp, wc.nsContents, NamespaceInfo.class);
-                        catalog.add(ns);
-                    } catch (Exception e) {
-                        LOGGER.log(
-                                Level.WARNING,
-                                "Failed to load namespace for '" + workspaceResource.name() + "'",
-                                e);
-                    }
+        // global and workspace styles
+        List<Resource> styles = new ArrayList<>(listStyles(resourceLoader.get("styles")));
+        for (Resource wsd : loadedWorkspaces) {
+            styles.addAll(listStyles(wsd.get("styles")));
+        }
+        runPhase(pool, "styles", styles, r -> loadStyle(r, catalog, xp));
+
+        // stores, collecting the directories that might contain resources and layers
+        List<Resource> storeList =
+                listChildren(pool, workspaceList, Resources.DirectoryFilter.INSTANCE);
+        Queue<LayerDirectory> layerDirectories = new ConcurrentLinkedQueue<>();
+        runPhase(
+                pool,
+                "stores",
+                storeList,
+                sd -> loadStore(sd, catalog, xp, checkStores, layerDirectories));
+
+        // resources and their layers, each layer is loaded right after its own resource
+        runPhase(
+                pool,
+                "resources and layers",
+                new ArrayList<>(layerDirectories),
+                LayerDirectory::load);
+
+        // layer groups, workspace specific ones first, as global ones can contain them
+        List<Resource> workspaceGroupDirs =
+                workspaceList
+                        .stream()
+                        .map(wsd -> wsd.get("layergroups"))
+                        .collect(Collectors.toList());
+        runPhase(
+                pool,
+                "workspace layer groups",
+                listChildren(pool, workspaceGroupDirs, XML_FILTER),
+                r -> loadLayerGroup(r, catalog, xp));
+        runPhase(
+                pool,
+                "global layer groups",
+                listChildren(
+                        pool,
+                        Collections.singletonList(resourceLoader.get("layergroups")),
+                        XML_FILTER),
+                r -> loadLayerGroup(r, catalog, xp));
+    }
 
-                    // set the default workspace, this value might be null in the case of coming
-                    // from a
-                    // 2.0.0 data directory. See https://osgeo-org.atlassian.net/browse/GEOS-3440
-                    if (defaultWorkspace != null) {
-                        if (ws.getName().equals(defaultWorkspace.getName())) {
-                            catalog.setDefaultWorkspace(ws);
-                            if (ns != null) {
-                                catalog.setDefaultNamespace(ns);
-                            }
-                        }
-                    } else {
-                        // create the default.xml file
-                        defaultWorkspace = catalog.getDefaultWorkspace();
-                        if (defaultWorkspace != null) {
-                            try {
-                                persist(xp, defaultWorkspace, dws);
-                            } catch (Exception e) {
-                                LOGGER.log(
-                                        Level.WARNING,
-                                        "Failed to persist default workspace '"
-                                                + workspaceResource.name()
-                                                + "'",
-                                        e);
-                            }
-                        }
+    /**
+     * Restores the catalog contents from the snapshot, using the same tiers as the XML load.
+     * Differently from the XML load, any failure stops the restore, as it means the snapshot
+     * cannot be trusted.
+     */
+    void restoreSnapshot(
+            CatalogSnapshot snapshot,
+            CatalogImpl catalog,
+            XStreamPersister xp,
+            ForkJoinPool pool,
+            boolean checkStores)
+            throws Exception {
+        restoreTier(snapshot, Tier.WORKSPACES, WorkspaceInfo.class, catalog::add, xp, pool);
+        restoreTier(snapshot, Tier.NAMESPACES, NamespaceInfo.class, catalog::add, xp, pool);
+        if (snapshot.defaultWorkspace != null) {
+            catalog.setDefaultWorkspace(catalog.getWorkspaceByName(snapshot.defaultWorkspace));
+        }
+        if (snapshot.defaultNamespace != null) {
+            catalog.setDefaultNamespace(catalog.getNamespaceByPrefix(snapshot.defaultNamespace));
+        }
+        restoreTier(snapshot, Tier.STYLES, StyleInfo.class, catalog::add, xp, pool);
+        Consumer<StoreInfo> storeAdder =
+                store -> {
+                    if (snapshot.disabledStores.contains(store.getId())) {
+                        // disabled by the previous startup check, enabled in the configuration
+                        store.setEnabled(true);
                     }
-
-                    // load the styles for the workspace
-                    Resource styles = workspaceResource.get("styles");
-                    if (styles != null) {
-                        loadStyles(styles, catalog, xp);
+                    if (checkStores && store instanceof DataStoreInfo) {
+                        checkDataStore((DataStoreInfo) store);
                     }
-                }
+                    catalog.add(store);
+                };
+        restoreTier(snapshot, Tier.STORES, StoreInfo.class, storeAdder, xp, pool);
+        restoreTier(snapshot, Tier.RESOURCES, ResourceInfo.class, catalog::add, xp, pool);
+        restoreTier(snapshot, Tier.LAYERS, LayerInfo.class, catalog::add, xp, pool);
+        Consumer<LayerGroupInfo> groupAdder = catalog::add;
+        restoreTier(
+                snapshot, Tier.WORKSPACE_LAYER_GROUPS, LayerGroupInfo.class, groupAdder, xp, pool);
+        restoreTier(snapshot, Tier.GLOBAL_LAYER_GROUPS, LayerGroupInfo.class, groupAdder, xp, pool);
+    }
+
+    private <T extends CatalogInfo> void restoreTier(
+            CatalogSnapshot snapshot,
+            Tier tier,
+            Class<T> clazz,
+            Consumer<T> adder,
+            XStreamPersister xp,
+            ForkJoinPool pool)
+            throws Exception {
+        String phase = tier.name().toLowerCase().replace('_', ' ') + " from snapshot";
+        int failures =
+                runPhase(
+                        pool,
+                        phase,
+                        snapshot.getRecords(tier),
+                        record -> adder.accept(CatalogSnapshot.decode(xp, record, clazz)));
+        if (failures > 0) {
+            throw new IOException("Failed to restore " + failures + " " + phase);
+        }
+    }
+
+    /** Loads a single catalog object, or a group of related ones */
+    @FunctionalInterface
+    interface ItemLoader<T> {
+        void load(T item) throws Exception;
+    }
+
+    /**
+     * Runs the loader on all the items using the given pool, waiting for completion. Failures are
+     * logged and do not stop the load of the other items.
+     *
+     * @return the number of items that failed to load
+     */
+    <T> int runPhase(ForkJoinPool pool, String phase, List<T> items, ItemLoader<T> loader)
+            throws InterruptedException, ExecutionException {
+        Stopwatch sw = Stopwatch.createStarted();
+        LongAdder failures = new LongAdder();
+        pool.submit(
+                        () ->
+                                items.parallelStream()
+                                        .forEach(
+                                                item -> {
+                                                    try {
+                                                        loader.load(item);
+                                                    } catch (Exception e) {
+                                                        failures.increment();
+                                                        LOGGER.log(
+                                                                Level.WARNING,
+                                                                "Failed to load " + item,
+                                                                e);
+                                                    }
+                                                }))
+                .get();
+        LOGGER.info("Loaded " + phase + " (" + items.size() + " entries) in " + sw.stop());
+        return failures.intValue();
+    }
+
+    /** Lists, in parallel, the children of the given directories accepted by the filter */
+    List<Resource> listChildren(
+            ForkJoinPool pool, List<Resource> directories, Filter<Resource> filter)
+            throws InterruptedException, ExecutionException {
+        return pool.submit(
+                        () ->
+                                directories
+                                        .parallelStream()
+                                        .filter(d -> Resources.exists(d))
+                                        .flatMap(d -> d.list().stream())
+                                        .filter(r -> filter.accept(r))
+                                        .collect(Collectors.toList()))
+                .get();
+    }
+
+    /**
+     * Sets the first workspace, and the first namespace found, as the defaults, as the catalog does
+     * when the objects are added sequentially
+     */
+    void setFirstDefaults(
+            Catalog catalog,
+            List<WorkspaceInfo> workspaces,
+            Map<String, NamespaceInfo> namespaces) {
+        if (!workspaces.isEmpty()) {
+            catalog.setDefaultWorkspace(workspaces.get(0));
+        }
+        for (WorkspaceInfo ws : workspaces) {
+            NamespaceInfo ns = namespaces.get(ws.getName());
+            if (ns != null) {
+                catalog.setDefaultNamespace(ns);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Loads the workspace and namespace found in the given directory, returns the workspace, or
+     * null if it could not be loaded
+     */
+    WorkspaceInfo loadWorkspace(
+            Resource directory,
+            Catalog catalog,
+            XStreamPersister xp,
+            Map<String, NamespaceInfo> namespaces)
+            throws IOException {
+        WorkspaceContents wc = new WorkspaceMapper().apply(directory);
+        if (wc == null) {
+            return null;
+        }
+
+        WorkspaceInfo ws;
+        try {
+            ws = depersist(xp, wc.contents, WorkspaceInfo.class);
+            catalog.add(ws);
+            if (LOGGER.isLoggable(Level.INFO)) {
+                LOGGER.info("Loaded workspace '" + ws.getName() + "'");
             }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load workspace '" + directory.name() + "'", e);
+            return null;
+        }
 
-            // maps each store into a StoreContents
-            ResourceMapper<StoreContents> storeMapper =
-                    sd -> {
-                        Resource f = sd.get("datastore.xml");
-                        if (Resources.exists(f)) {
-                            return new StoreContents(f, f.getContents());
-                        }
-                        f = sd.get("coveragestore.xml");
-                        if (Resources.exists(f)) {
-                            return new StoreContents(f, f.getContents());
-                        }
-                        f = sd.get("wmsstore.xml");
-                        if (Resources.exists(f)) {
-                            return new StoreContents(f, f.getContents());
-                        }
-                        f = sd.get("wmtsstore.xml");
-                        if (Resources.exists(f)) {
-                            return new StoreContents(f, f.getContents());
-                        }
-                        if (!isConfigDirectory(sd)) {
-                            LOGGER.warning("Ignoring store directory '" + sd.name() + "'");
-                        }
-                        // nothing found
-                        return null;
-                    };
+        // load the namespace
+        try {
+            NamespaceInfo ns = depersist(xp, wc.nsContents, NamespaceInfo.class);
+            catalog.add(ns);
+            namespaces.put(ws.getName(), ns);
+        } catch (Exception e) {
+            LOGGER.log(
+                    Level.WARNING, "Failed to load namespace for '" + directory.name() + "'", e);
+        }
+        return ws;
+    }
 
-            for (Resource wsd : workspaceList) {
-                // load the stores for this workspace
-                try (AsynchResourceIterator<StoreContents> it =
-                        new AsynchResourceIterator<>(
-                                wsd, Resources.DirectoryFilter.INSTANCE, storeMapper)) {
-                    while (it.hasNext()) {
-                        StoreContents storeContents = it.next();
-                        final String resourceName = storeContents.resource.name();
-                        if ("datastore.xml".equals(resourceName)) {
-                            loadDataStore(storeContents, catalog, xp, checkStores);
-                        } else if ("coveragestore.xml".equals(resourceName)) {
-                            loadCoverageStore(storeContents, catalog, xp);
-                        } else if ("wmsstore.xml".equals(resourceName)) {
-                            loadWmsStore(storeContents, catalog, xp);
-                        } else if ("wmtsstore.xml".equals(resourceName)) {
-                            loadWmtsStore(storeContents, catalog, xp);
-                        } else if (!isConfigDirectory(storeContents.resource)) {
-                            LOGGER.warning(
-                                    "Ignoring store directory '"
-                                            + storeContents.resource.name()
-                                            + "'");
-                            continue;
-                        }
-                    }
-                }
+    /**
+     * Sets the default workspace and namespace from the default.xml file, or creates it if missing
+     */
+    void setDefaultWorkspace(
+            Resource dws,
+            Catalog catalog,
+            XStreamPersister xp,
+            Map<String, NamespaceInfo> namespaces) {
+        WorkspaceInfo defaultWorkspace = null;
+        if (Resources.exists(dws)) {
+            try {
+                defaultWorkspace = depersist(xp, dws, WorkspaceInfo.class);
+                LOGGER.info("Loaded default workspace " + defaultWorkspace.getName());
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to load default workspace", e);
+            }
+        } else {
+            LOGGER.warning("No default workspace was found.");
+        }
 
-                // load the layer groups for this workspace
-                Resource layergroups = wsd.get("layergroups");
-                if (layergroups != null) {
-                    loadLayerGroups(layergroups, catalog, xp);
+        // this value might be null in the case of coming from a 2.0.0 data directory.
+        // See https://osgeo-org.atlassian.net/browse/GEOS-3440
+        if (defaultWorkspace != null) {
+            WorkspaceInfo ws = catalog.getWorkspaceByName(defaultWorkspace.getName());
+            if (ws != null) {
+                catalog.setDefaultWorkspace(ws);
+                NamespaceInfo ns = namespaces.get(ws.getName());
+                if (ns != null) {
+                    catalog.setDefaultNamespace(ns);
                 }
             }
         } else {
-            LOGGER.warning("No 'workspaces' directory found, unable to load any stores.");
+            // create the default.xml file
+            defaultWorkspace = catalog.getDefaultWorkspace();
+            if (defaultWorkspace != null) {
+                try {
+                    persist(xp, defaultWorkspace, dws);
+                } catch (Exception e) {
+                    LOGGER.log(
+                            Level.WARNING,
+                            "Failed to persist default workspace '"
+                                    + defaultWorkspace.getName()
+                                    + "'",
+                            e);
+                }
+            }
         }
+    }
 
-        // layergroups
-        Resource layergroups = resourceLoader.get("layergroups");
-        if (layergroups != null) {
-            loadLayerGroups(layergroups, catalog, xp);
+    /**
+     * Loads the store found in the given directory, if any, adding the directories that might
+     * contain its resources to the queue
+     */
+    void loadStore(
+            Resource directory,
+            CatalogImpl catalog,
+            XStreamPersister xp,
+            boolean checkStores,
+            Queue<LayerDirectory> layerDirectories)
+            throws IOException {
+        StoreContents storeContents = null;
+        for (String name : STORE_FILE_NAMES) {
+            Resource f = directory.get(name);
+            if (Resources.exists(f)) {
+                storeContents = new StoreContents(f, f.getContents());
+                break;
+            }
         }
-        xp.setUnwrapNulls(true);
-        catalog.resolve();
-        // re-enable extended validation
-        if (!checkStores) {
-            catalog.setExtendedValidation(true);
+        if (storeContents == null) {
+            if (!isConfigDirectory(directory)) {
+                LOGGER.warning("Ignoring store directory '" + directory.name() + "'");
+            }
+            return;
+        }
+
+        final String resourceName = storeContents.resource.name();
+        ResourceLayerMapper mapper;
+        LayerLoader<?> loader;
+        if ("datastore.xml".equals(resourceName)) {
+            if (!loadDataStore(storeContents, catalog, xp, checkStores)) {
+                return;
+            }
+            mapper = FEATURE_LAYER_MAPPER;
+            loader = new LayerLoader<>(FeatureTypeInfo.class, xp, catalog);
+        } else if ("coveragestore.xml".equals(resourceName)) {
+            if (!loadCoverageStore(storeContents, catalog, xp)) {
+                return;
+            }
+            mapper = COVERAGE_LAYER_MAPPER;
+            loader = new LayerLoader<>(CoverageInfo.class, xp, catalog);
+        } else if ("wmsstore.xml".equals(resourceName)) {
+            if (!loadWmsStore(storeContents, catalog, xp)) {
+                return;
+            }
+            mapper = WMS_LAYER_MAPPER;
+            loader = new LayerLoader<>(WMSLayerInfo.class, xp, catalog);
+        } else if ("wmtsstore.xml".equals(resourceName)) {
+            if (!loadWmtsStore(storeContents, catalog, xp)) {
+                return;
+            }
+            mapper = WMTS_LAYER_MAPPER;
+            loader = new LayerLoader<>(WMTSLayerInfo.class, xp, catalog);
+        } else {
+            return;
+        }
+
+        for (Resource rd : directory.list()) {
+            if (Resources.DirectoryFilter.INSTANCE.accept(rd)) {
+                layerDirectories.add(new LayerDirectory(rd, mapper, loader));
+            }
         }
-        return catalog;
     }
 
-    private void loadWmsStore(
+    /** A directory that might contain a resource and its layer, along with the means to load it */
+    static final class LayerDirectory {
+        final Resource directory;
+        final ResourceLayerMapper mapper;
+        final LayerLoader<?> loader;
+
+        LayerDirectory(Resource directory, ResourceLayerMapper mapper, LayerLoader<?> loader) {
+            this.directory = directory;
+            this.mapper = mapper;
+            this.loader = loader;
+        }
+
+        void load() throws IOException {
+            LayerContents lc = mapper.apply(directory);
+            if (lc != null) {
+                loader.accept(lc);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return directory.path();
+        }
+    }
+
+    private boolean loadWmsStore(
             StoreContents storeContents, CatalogImpl catalog, XStreamPersister xp) {
         final Resource storeResource = storeContents.resource;
         WMSStoreInfo wms = null;
@@ -643,27 +1039,14 @@ public abstract class GeoServerLoader {
                             + wms.getName()
                             + "', "
                             + (wms.isEnabled() ? "enabled" : "disabled"));
+            return true;
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to load wms store '" + storeResource.name() + "'", e);
-            return;
-        }
-
-        // load wms layers
-        LayerLoader<WMSLayerInfo> coverageLoader =
-                new LayerLoader<>(WMSLayerInfo.class, xp, catalog);
-        try (AsynchResourceIterator<LayerContents> it =
-                new AsynchResourceIterator<>(
-                        storeResource.parent(),
-                        Resources.DirectoryFilter.INSTANCE,
-                        WMS_LAYER_MAPPER)) {
-            while (it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
+            return false;
         }
     }
 
-    private void loadWmtsStore(
+    private boolean loadWmtsStore(
             StoreContents storeContents, CatalogImpl catalog, XStreamPersister xp) {
         final Resource storeResource = storeContents.resource;
         WMTSStoreInfo wmts = null;
@@ -672,28 +1055,15 @@ public abstract class GeoServerLoader {
             catalog.add(wmts);
 
             LOGGER.info("Loaded wmtsstore '" + wmts.getName() + "'");
+            return true;
         } catch (Exception e) {
             LOGGER.log(
                     Level.WARNING, "Failed to load wmts store '" + storeResource.name() + "'", e);
-            return;
-        }
-
-        // load wmts layers
-        LayerLoader<WMTSLayerInfo> coverageLoader =
-                new LayerLoader<>(WMTSLayerInfo.class, xp, catalog);
-        try (AsynchResourceIterator<LayerContents> it =
-                new AsynchResourceIterator<>(
-                        storeResource.parent(),
-                        Resources.DirectoryFilter.INSTANCE,
-                        WMTS_LAYER_MAPPER)) {
-            while (it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
+            return false;
         }
     }
 
-    private void loadCoverageStore(
+    private boolean loadCoverageStore(
             StoreContents storeContents, CatalogImpl catalog, XStreamPersister xp) {
         CoverageStoreInfo cs = null;
         final Resource storeResource = storeContents.resource;
@@ -708,30 +1078,17 @@ public abstract class GeoServerLoader {
                                 + "', "
                                 + (cs.isEnabled() ? "enabled" : "disabled"));
             }
+            return true;
         } catch (Exception e) {
             LOGGER.log(
                     Level.WARNING,
                     "Failed to load coverage store '" + storeResource.name() + "'",
                     e);
-            return;
-        }
-
-        // load coverages
-        LayerLoader<CoverageInfo> coverageLoader =
-                new LayerLoader<>(CoverageInfo.class, xp, catalog);
-        try (AsynchResourceIterator<LayerContents> it =
-                new AsynchResourceIterator<>(
-                        storeResource.parent(),
-                        Resources.DirectoryFilter.INSTANCE,
-                        COVERAGE_LAYER_MAPPER)) {
-            while (it.hasNext()) {
-                LayerContents lc = it.next();
-                coverageLoader.accept(lc);
-            }
+            return false;
         }
     }
 
-    private void loadDataStore(
+    private boolean loadDataStore(
             StoreContents storeContents,
             CatalogImpl catalog,
             XStreamPersister xp,
@@ -750,37 +1107,30 @@ public abstract class GeoServerLoader {
                                 + (ds.isEnabled() ? "enabled" : "disabled"));
             }
 
-            if (checkStores && ds.isEnabled()) {
-                // connect to the datastore to determine if we should disable it
-                try {
-                    ds.getDataStore(null);
-                } catch (Throwable t) {
-                    LOGGER.warning("Error connecting to '" + ds.getName() + "'. Disabling.");
-                    LOGGER.log(Level.INFO, "", t);
-
-                    ds.setError(t);
-                    ds.setEnabled(false);
-                }
+            if (checkStores) {
+                checkDataStore(ds);
             }
+            return true;
         } catch (Exception e) {
             LOGGER.log(
                     Level.WARNING,
                     "Failed to load data store '" + storeResource.parent().name() + "'",
                     e);
-            return;
+            return false;
         }
+    }
 
-        // load feature types
-        LayerLoader<FeatureTypeInfo> featureLoader =
-                new LayerLoader<>(FeatureTypeInfo.class, xp, catalog);
-        try (AsynchResourceIterator<LayerContents> it =
-                new AsynchResourceIterator<>(
-                        storeResource.parent(),
-                        Resources.DirectoryFilter.INSTANCE,
-                        FEATURE_LAYER_MAPPER)) {
-            while (it.hasNext()) {
-                LayerContents lc = it.next();
-                featureLoader.accept(lc);
+    /** Connects to the data store, disabling it if the connection fails */
+    void checkDataStore(DataStoreInfo ds) {
+        if (ds.isEnabled()) {
+            try {
+                ds.getDataStore(null);
+            } catch (Throwable t) {
+                LOGGER.warning("Error connecting to '" + ds.getName() + "'. Disabling.");
+                LOGGER.log(Level.INFO, "", t);
+
+                ds.setError(t);
+                ds.setEnabled(false);
             }
         }
     }
@@ -957,44 +1307,43 @@ public abstract class GeoServerLoader {
         }
     }
 
-    void loadStyles(Resource styles, Catalog catalog, XStreamPersister xp) throws IOException {
-        Filter<Resource> styleFilter =
-                r -> XML_FILTER.accept(r) && !Resources.exists(styles.get(r.name() + ".xml"));
-        try (AsynchResourceIterator<byte[]> it =
-                new AsynchResourceIterator<>(styles, styleFilter, r -> r.getContents())) {
-            while (it.hasNext()) {
-                try {
-                    StyleInfo s = depersist(xp, it.next(), StyleInfo.class);
-                    catalog.add(s);
+    /** Lists the style configuration files in the given directory */
+    List<Resource> listStyles(Resource styles) {
+        if (!Resources.exists(styles)) {
+            return Collections.emptyList();
+        }
+        return styles.list()
+                .stream()
+                .filter(r -> XML_FILTER.accept(r))
+                .filter(r -> !Resources.exists(styles.get(r.name() + ".xml")))
+                .collect(Collectors.toList());
+    }
 
-                    if (LOGGER.isLoggable(Level.INFO)) {
-                        LOGGER.info("Loaded style '" + s.getName() + "'");
-                    }
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load style", e);
-                }
+    void loadStyle(Resource r, Catalog catalog, XStreamPersister xp) {
+        try {
+            StyleInfo s = depersist(xp, r.getContents(), StyleInfo.class);
+            catalog.add(s);
+
+            if (LOGGER.isLoggable(Level.INFO)) {
+                LOGGER.info("Loaded style '" + s.getName() + "'");
             }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load style", e);
         }
     }
 
-    void loadLayerGroups(Resource layerGroups, Catalog catalog, XStreamPersister xp) {
-        try (AsynchResourceIterator<byte[]> it =
-                new AsynchResourceIterator<>(layerGroups, XML_FILTER, r -> r.getContents())) {
-            while (it.hasNext()) {
-                try {
-                    LayerGroupInfo lg = depersist(xp, it.next(), LayerGroupInfo.class);
-                    if (lg.getLayers() == null || lg.getLayers().size() == 0) {
-                        LOGGER.warning(
-                                "Skipping empty layer group '" + lg.getName() + "', it is invalid");
-                        continue;
-                    }
-                    catalog.add(lg);
-
-                    LOGGER.info("Loaded layer group '" + lg.getName() + "'");
-                } catch (Exception e) {
-                    LOGGER.log(Level.WARNING, "Failed to load layer group", e);
-                }
+    void loadLayerGroup(Resource r, Catalog catalog, XStreamPersister xp) {
+        try {
+            LayerGroupInfo lg = depersist(xp, r.getContents(), LayerGroupInfo.class);
+            if (lg.getLayers() == null || lg.getLayers().size() == 0) {
+                LOGGER.warning("Skipping empty layer group '" + lg.getName() + "', it is invalid");
+                return;
             }
+            catalog.add(lg);
+
+            LOGGER.info("Loaded layer group '" + lg.getName() + "'");
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load layer group", e);
         }
     }
 
@@ -1059,6 +1408,7 @@ public abstract class GeoServerLoader {
     }
 
     public void destroy() throws Exception {
+        cancelPendingSnapshot();
         // dispose
         geoserver.dispose();
     }
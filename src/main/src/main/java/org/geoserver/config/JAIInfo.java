@@ -19,7 +19,9 @@ public interface JAIInfo extends Cloneable, Serializable {
     static enum PngEncoderType {
         JDK,
         NATIVE,
-        PNGJ
+        PNGJ,
+        /** PNGJ with per image filter and compression selection */
+        ADAPTIVE
     };
 
     /** Flag controlling image interpolation. */
@@ -63,6 +63,7 @@ import org.opengis.feature.type.Name;
 import org.opengis.filter.Filter;
 import org.opengis.filter.sort.SortBy;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -74,7 +75,8 @@ import org.springframework.util.Assert;
  *
  * @author Andrea Aime - GeoSolutions
  */
-public class SecureCatalogImpl extends AbstractDecorator<Catalog> implements Catalog {
+public class SecureCatalogImpl extends AbstractDecorator<Catalog>
+        implements Catalog, DisposableBean {
 
     /**
      * How to behave in case of mixed mode catalog access, hide the resource or challenge the user
@@ -121,6 +123,18 @@ public class SecureCatalogImpl extends AbstractDecorator<Catalog> implements Cat
         this.accessManager = manager;
     }
 
+    /** Releases the default access manager, which listens to the raw catalog changes */
+    @Override
+    public void destroy() {
+        ResourceAccessManager manager = accessManager;
+        while (manager instanceof ResourceAccessManagerWrapper) {
+            manager = ((ResourceAccessManagerWrapper) manager).delegate;
+        }
+        if (manager instanceof DefaultResourceAccessManager) {
+            ((DefaultResourceAccessManager) manager).destroy();
+        }
+    }
+
     // -------------------------------------------------------------------
     // SECURED METHODS
     // -------------------------------------------------------------------
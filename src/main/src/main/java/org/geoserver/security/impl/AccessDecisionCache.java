@@ -0,0 +1,142 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.security.GeoServerSecurityFilterChainProxy;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Caches the access decisions of the {@link DefaultResourceAccessManager} by role set: the
+ * decisions only depend on the names of the authorities granted to the user, so all the users
+ * sharing the same roles share the same decisions, and the rule tree and layer group containment
+ * logic are evaluated once per role set and catalog object.
+ *
+ * <p>The owner is responsible for calling {@link #invalidate()} when the rules or the catalog
+ * change. The number of cached decisions can be configured with the {@link #SIZE_KEY} property, 0
+ * disables the cache.
+ */
+class AccessDecisionCache {
+
+    static final Logger LOGGER = Logging.getLogger(AccessDecisionCache.class);
+
+    /** System/environment property used to configure the number of cached decisions */
+    public static final String SIZE_KEY = "org.geoserver.security.accessDecisionCache.size";
+
+    static final long DEFAULT_SIZE = 100000;
+
+    private final Cache<DecisionKey, Boolean> decisions;
+
+    /** Incremented by each invalidation, part of the cache keys */
+    private final AtomicLong generation = new AtomicLong();
+
+    AccessDecisionCache() {
+        this(getSize());
+    }
+
+    AccessDecisionCache(long size) {
+        this.decisions = size > 0 ? CacheBuilder.newBuilder().maximumSize(size).build() : null;
+    }
+
+    private static long getSize() {
+        String value = GeoServerExtensions.getProperty(SIZE_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + SIZE_KEY + " value " + value + ", using default");
+            }
+        }
+        return DEFAULT_SIZE;
+    }
+
+    /**
+     * Returns the cached decision for the user roles and the given key elements, computing it with
+     * the supplier if missing. The cache is skipped if security is disabled for the current
+     * request, as in that case everything is accessible regardless of the roles
+     */
+    boolean canAccess(Authentication user, BooleanSupplier decision, Object... key) {
+        if (decisions == null
+                || !GeoServerSecurityFilterChainProxy.isSecurityEnabledForCurrentRequest()) {
+            return decision.getAsBoolean();
+        }
+        // read the generation before computing, a decision computed while the rules or the
+        // catalog change ends up under a stale generation, and is never returned
+        DecisionKey decisionKey = new DecisionKey(generation.get(), getRoles(user), key);
+        Boolean result = decisions.getIfPresent(decisionKey);
+        if (result == null) {
+            result = decision.getAsBoolean();
+            decisions.put(decisionKey, result);
+        }
+        return result;
+    }
+
+    /** Drops all the cached decisions, including the ones being computed */
+    void invalidate() {
+        if (decisions != null) {
+            generation.incrementAndGet();
+            decisions.invalidateAll();
+        }
+    }
+
+    /** Number of cached decisions */
+    long size() {
+        return decisions == null ? 0 : decisions.size();
+    }
+
+    private static Set<String> getRoles(Authentication user) {
+        if (user == null || user.getAuthorities() == null) {
+            return Collections.emptySet();
+        }
+        Set<String> roles = new HashSet<>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return roles;
+    }
+
+    static class DecisionKey {
+        final long generation;
+        final Set<String> roles;
+        final Object[] key;
+        final int hashCode;
+
+        DecisionKey(long generation, Set<String> roles, Object[] key) {
+            this.generation = generation;
+            this.roles = roles;
+            this.key = key;
+            this.hashCode =
+                    31 * (31 * Long.hashCode(generation) + roles.hashCode())
+                            + Arrays.hashCode(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DecisionKey other = (DecisionKey) o;
+            return hashCode == other.hashCode
+                    && generation == other.generation
+                    && roles.equals(other.roles)
+                    && Arrays.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -8,6 +8,7 @@ package org.geoserver.security.impl;
 import static org.geoserver.security.impl.DataAccessRule.ANY;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -17,6 +18,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
@@ -30,6 +32,11 @@ import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMTSLayerInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
 import org.geoserver.security.AccessMode;
@@ -48,6 +55,7 @@ import org.geoserver.security.WorkspaceAccessLimits;
 import org.geoserver.security.impl.LayerGroupContainmentCache.LayerGroupSummary;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.security.core.Authentication;
 
 /**
@@ -79,7 +87,7 @@ import org.springframework.security.core.Authentication;
  *
  * @author Andrea Aime - TOPP
  */
-public class DefaultResourceAccessManager implements ResourceAccessManager {
+public class DefaultResourceAccessManager implements ResourceAccessManager, DisposableBean {
     static final Logger LOGGER = Logging.getLogger(DefaultResourceAccessManager.class);
 
     /** A {@link LayerGroupSummary} extended with the associated secure tree node */
@@ -111,6 +119,10 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     LayerGroupContainmentCache groupsCache;
 
+    AccessDecisionCache decisions = new AccessDecisionCache();
+
+    DecisionsInvalidator invalidator = new DecisionsInvalidator();
+
     /**
      * Pass a reference to the raw, unsecured catalog. The reference is used to evaluate the
      * relationship between layers and the groups containing them
@@ -120,6 +132,13 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
         this.rawCatalog = rawCatalog;
         this.root = buildAuthorizationTree(dao);
         this.groupsCache = new LayerGroupContainmentCache(rawCatalog);
+        rawCatalog.addListener(invalidator);
+    }
+
+    /** Stops listening to the catalog changes */
+    @Override
+    public void destroy() {
+        rawCatalog.removeListener(invalidator);
     }
 
     public CatalogMode getMode() {
@@ -128,6 +147,16 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     public boolean canAccess(Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         checkPropertyFile();
+        return decisions.canAccess(
+                user,
+                () -> canAccessWorkspace(user, workspace, mode),
+                WorkspaceInfo.class,
+                workspace.getName(),
+                mode);
+    }
+
+    private boolean canAccessWorkspace(
+            Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         SecureTreeNode node = root.getDeepestNode(new String[] {workspace.getName()});
         if (node.canAccess(user, mode)) {
             return true;
@@ -194,6 +223,29 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
             return true;
         }
 
+        String id = resource.getId();
+        if (id == null) {
+            return canAccessResource(user, resource, workspace, mode, directAccess);
+        }
+        return decisions.canAccess(
+                user,
+                () -> canAccessResource(user, resource, workspace, mode, directAccess),
+                ResourceInfo.class,
+                id,
+                workspace,
+                resourceName,
+                mode,
+                directAccess,
+                layerGroupContainmentCheckRequired());
+    }
+
+    private boolean canAccessResource(
+            Authentication user,
+            ResourceInfo resource,
+            String workspace,
+            AccessMode mode,
+            boolean directAccess) {
+        final String resourceName = resource.getName();
         // if we have a catalog rule that is at resource level, it's the most specific type,
         // it wins. Or it could be that we do not need to check layer groups at all
         SecureTreeNode securityNode = root.getDeepestNode(new String[] {workspace, resourceName});
@@ -325,6 +377,7 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
         if (lastLoaded < daoLastModified || force) {
             root = buildAuthorizationTree(dao);
             lastLoaded = daoLastModified;
+            decisions.invalidate();
         }
     }
 
@@ -460,6 +513,21 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     private boolean canAccess(
             Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
+        String id = layerGroup.getId();
+        if (id == null) {
+            return canAccessGroup(user, layerGroup, directAccess);
+        }
+        return decisions.canAccess(
+                user,
+                () -> canAccessGroup(user, layerGroup, directAccess),
+                LayerGroupInfo.class,
+                id,
+                Arrays.asList(getLayerGroupPath(layerGroup)),
+                directAccess);
+    }
+
+    private boolean canAccessGroup(
+            Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
         String[] path = getLayerGroupPath(layerGroup);
         SecureTreeNode node = root.getDeepestNode(path);
         boolean catalogNodeAllowsAccess = node.canAccess(user, AccessMode.READ);
@@ -677,4 +745,36 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
     public LayerGroupAccessLimits getAccessLimits(Authentication user, LayerGroupInfo layerGroup) {
         return getAccessLimits(user, layerGroup, Collections.emptyList());
     }
+
+    /**
+     * Drops the cached decisions on any catalog change, as renames, moves and layer group changes
+     * can all alter the outcome of the rules
+     */
+    final class DecisionsInvalidator implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+            decisions.invalidate();
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+            decisions.invalidate();
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+            decisions.invalidate();
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+            decisions.invalidate();
+        }
+
+        @Override
+        public void reloaded() {
+            decisions.invalidate();
+        }
+    }
 }
@@ -4,16 +4,19 @@
  */
 package org.geoserver.security.impl;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogInfo;
@@ -31,16 +34,19 @@ import org.geoserver.catalog.event.CatalogRemoveEvent;
 
 /**
  * A cache for layer group containment, it speeds up looking up layer groups containing a particular
- * layer (recursively). * The class is thread safe.
+ * layer (recursively). The class is thread safe.
+ *
+ * <p>The containment graph is kept as two maps of immutable values, the group summaries (each
+ * listing the ids of the groups directly containing it) and the ids of the groups directly
+ * containing each resource. Catalog changes replace only the affected entries with updated copies,
+ * so readers never lock and never see a partially updated value, and a change costs as much as the
+ * number of edges it touches, regardless of the size and depth of the group tree. Only a catalog
+ * reload rebuilds the graph, off line, swapping it in once complete.
  *
  * @author Andrea Aime - GeoSolutions
  */
 class LayerGroupContainmentCache {
 
-    /** Builds a concurrent set wrapping a {@link ConcurrentHashMap} */
-    static final Function<? super String, ? extends Set<LayerGroupSummary>> CONCURRENT_SET_BUILDER =
-            k -> Collections.newSetFromMap(new ConcurrentHashMap<LayerGroupSummary, Boolean>());
-
     /** Verifies a certain {@link PublishedInfo} is actually a {@link LayerInfo} */
     static final Predicate<PublishedInfo> IS_LAYER =
             p ->
@@ -54,13 +60,16 @@ class LayerGroupContainmentCache {
             p -> p != null && p.getId() != null && p instanceof LayerGroupInfo;
 
     /** Lookup from layer group id to group parent information */
-    Map<String, LayerGroupSummary> groupCache = new ConcurrentHashMap<>();
+    volatile Map<String, LayerGroupSummary> groupCache = new ConcurrentHashMap<>();
 
     /**
-     * Lookup from {@link ResourceInfo} id to groups directly containing its associated layers (the
-     * transitive containment is computed by suing {@link LayerGroupSummary}
+     * Lookup from {@link ResourceInfo} id to the ids of the groups directly containing its
+     * associated layers (the transitive containment is computed by using {@link LayerGroupSummary}
      */
-    Map<String, Set<LayerGroupSummary>> resourceContainmentCache = new ConcurrentHashMap<>();
+    volatile Map<String, Set<String>> resourceContainmentCache = new ConcurrentHashMap<>();
+
+    /** Serializes the writers, readers do not need it */
+    private final Object writeLock = new Object();
 
     private Catalog catalog;
 
@@ -71,89 +80,117 @@ class LayerGroupContainmentCache {
     }
 
     private void buildLayerGroupCaches() {
-        groupCache.clear();
-        resourceContainmentCache.clear();
-        List<LayerGroupInfo> groups = catalog.getLayerGroups();
+        synchronized (writeLock) {
+            List<LayerGroupInfo> groups = catalog.getLayerGroups();
+
+            // collect the containment edges
+            Map<String, Set<String>> groupContainers = new HashMap<>();
+            Map<String, Set<String>> resourceContainers = new HashMap<>();
+            Set<String> groupIds = new HashSet<>();
+            for (LayerGroupInfo lg : groups) {
+                groupIds.add(lg.getId());
+            }
+            for (LayerGroupInfo lg : groups) {
+                for (PublishedInfo p : lg.getLayers()) {
+                    if (IS_LAYER.test(p)) {
+                        String rid = ((LayerInfo) p).getResource().getId();
+                        resourceContainers
+                                .computeIfAbsent(rid, k -> new HashSet<>())
+                                .add(lg.getId());
+                    } else if (IS_GROUP.test(p) && groupIds.contains(p.getId())) {
+                        groupContainers
+                                .computeIfAbsent(p.getId(), k -> new HashSet<>())
+                                .add(lg.getId());
+                    }
+                }
+            }
 
-        // first populate the basic structure
-        for (LayerGroupInfo lg : groups) {
-            addGroupInfo(lg);
+            // build the new graph and swap it in, readers keep using the old one meanwhile
+            Map<String, LayerGroupSummary> newGroups = new ConcurrentHashMap<>();
+            for (LayerGroupInfo lg : groups) {
+                Set<String> containers = groupContainers.get(lg.getId());
+                newGroups.put(lg.getId(), new LayerGroupSummary(lg, immutable(containers)));
+            }
+            Map<String, Set<String>> newResources = new ConcurrentHashMap<>();
+            resourceContainers.forEach((rid, ids) -> newResources.put(rid, immutable(ids)));
+            groupCache = newGroups;
+            resourceContainmentCache = newResources;
         }
+    }
 
-        // now populate the containment structure
-        for (LayerGroupInfo lg : groups) {
-            registerContainedGroups(lg);
+    private static Set<String> immutable(Set<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptySet();
         }
+        return Collections.unmodifiableSet(ids);
     }
 
-    private void registerContainedGroups(LayerGroupInfo lg) {
-        lg.getLayers()
-                .stream()
-                .filter(IS_GROUP)
-                .forEach(
-                        p -> {
-                            String containerId = lg.getId();
-                            String containedId = p.getId();
-                            LayerGroupSummary container = groupCache.get(containerId);
-                            LayerGroupSummary contained = groupCache.get(containedId);
-                            if (container != null && contained != null) {
-                                contained.containerGroups.add(container);
-                            }
-                        });
+    /** Returns a copy of the set with the id added or removed, or null if it ends up empty */
+    private static Set<String> update(Set<String> ids, String id, boolean add) {
+        if (ids != null && ids.contains(id) == add) {
+            return ids.isEmpty() ? null : ids;
+        }
+        Set<String> result = ids == null ? new HashSet<>() : new HashSet<>(ids);
+        if (add) {
+            result.add(id);
+        } else {
+            result.remove(id);
+        }
+        return result.isEmpty() ? null : Collections.unmodifiableSet(result);
+    }
+
+    /** Adds or removes the containment edge between the resource and the group */
+    private void updateResourceContainer(String resourceId, String groupId, boolean add) {
+        resourceContainmentCache.compute(resourceId, (k, ids) -> update(ids, groupId, add));
+    }
+
+    /** Adds or removes the containment edge between the child and the container group */
+    private void updateGroupContainer(String childId, String containerId, boolean add) {
+        groupCache.computeIfPresent(
+                childId,
+                (k, s) -> s.withContainerGroupIds(update(s.containerGroupIds, containerId, add)));
     }
 
     private void addGroupInfo(LayerGroupInfo lg) {
-        LayerGroupSummary groupData = new LayerGroupSummary(lg);
-        groupCache.put(lg.getId(), groupData);
-        lg.getLayers()
-                .stream()
-                .filter(IS_LAYER)
-                .forEach(
-                        p -> {
-                            String id = ((LayerInfo) p).getResource().getId();
-                            Set<LayerGroupSummary> containers =
-                                    resourceContainmentCache.computeIfAbsent(
-                                            id, CONCURRENT_SET_BUILDER);
-                            containers.add(groupData);
-                        });
+        synchronized (writeLock) {
+            groupCache.put(lg.getId(), new LayerGroupSummary(lg, Collections.emptySet()));
+            for (PublishedInfo p : lg.getLayers()) {
+                if (IS_LAYER.test(p)) {
+                    String rid = ((LayerInfo) p).getResource().getId();
+                    updateResourceContainer(rid, lg.getId(), true);
+                } else if (IS_GROUP.test(p)) {
+                    updateGroupContainer(p.getId(), lg.getId(), true);
+                }
+            }
+        }
     }
 
     private void clearGroupInfo(LayerGroupInfo lg) {
-        LayerGroupSummary data = groupCache.remove(lg.getId());
-        // clear the resource containment cache
-        lg.getLayers()
-                .stream()
-                .filter(IS_LAYER)
-                .forEach(
-                        p -> {
-                            String rid = ((LayerInfo) p).getResource().getId();
-                            synchronized (rid) {
-                                Set<LayerGroupSummary> containers =
-                                        resourceContainmentCache.get(rid);
-                                if (containers != null) {
-                                    containers.remove(data);
-                                }
-                            }
-                        });
-        // this group does not contain anything anymore, remove from containment
-        for (LayerGroupSummary d : groupCache.values()) {
-            // will be removed by equality
-            d.containerGroups.remove(new LayerGroupSummary(lg));
+        synchronized (writeLock) {
+            groupCache.remove(lg.getId());
+            // this group does not contain anything anymore, remove it from containment
+            for (PublishedInfo p : lg.getLayers()) {
+                if (IS_LAYER.test(p)) {
+                    String rid = ((LayerInfo) p).getResource().getId();
+                    updateResourceContainer(rid, lg.getId(), false);
+                } else if (IS_GROUP.test(p)) {
+                    updateGroupContainer(p.getId(), lg.getId(), false);
+                }
+            }
         }
     }
 
     /** Returns all groups containing directly or indirectly containing the resource */
     public Collection<LayerGroupSummary> getContainerGroupsFor(ResourceInfo resource) {
         String id = resource.getId();
-        Set<LayerGroupSummary> groups = resourceContainmentCache.get(id);
-        if (groups == null) {
+        if (id == null) {
             return Collections.emptyList();
         }
-        Set<LayerGroupSummary> result = new HashSet<>();
-        for (LayerGroupSummary lg : groups) {
-            collectContainers(lg, result);
+        Set<String> groups = resourceContainmentCache.get(id);
+        if (groups == null) {
+            return Collections.emptyList();
         }
-        return result;
+        return collectContainers(groups, groupCache);
     }
 
     /**
@@ -165,30 +202,39 @@ class LayerGroupContainmentCache {
         if (id == null) {
             return Collections.emptyList();
         }
-        LayerGroupSummary summary = groupCache.get(id);
+        Map<String, LayerGroupSummary> groups = groupCache;
+        LayerGroupSummary summary = groups.get(id);
         if (summary == null) {
             return Collections.emptyList();
         }
-
-        Set<LayerGroupSummary> result = new HashSet<>();
-        for (LayerGroupSummary container : summary.getContainerGroups()) {
-            collectContainers(container, result);
-        }
-        return result;
+        return collectContainers(summary.containerGroupIds, groups);
     }
 
     /**
-     * Recursively collects the group and all its containers in the <data>groups</data> collection
+     * Collects the groups with the given ids and all their containers, walking up the graph
+     * breadth first, each group being visited once. {@link LayerGroupInfo.Mode#SINGLE} groups are
+     * traversed, but not returned
      */
-    private void collectContainers(LayerGroupSummary lg, Set<LayerGroupSummary> groups) {
-        if (!groups.contains(lg)) {
+    private Set<LayerGroupSummary> collectContainers(
+            Set<String> ids, Map<String, LayerGroupSummary> groups) {
+        Set<LayerGroupSummary> result = new HashSet<>();
+        Set<String> visited = new HashSet<>(ids);
+        Deque<String> queue = new ArrayDeque<>(ids);
+        while (!queue.isEmpty()) {
+            LayerGroupSummary lg = groups.get(queue.poll());
+            if (lg == null) {
+                continue;
+            }
             if (lg.getMode() != LayerGroupInfo.Mode.SINGLE) {
-                groups.add(lg);
+                result.add(lg);
             }
-            for (LayerGroupSummary container : lg.containerGroups) {
-                collectContainers(container, groups);
+            for (String container : lg.containerGroupIds) {
+                if (visited.add(container)) {
+                    queue.add(container);
+                }
             }
         }
+        return result;
     }
 
     /**
@@ -196,30 +242,62 @@ class LayerGroupContainmentCache {
      * searches against the catalog to match against rules and scan layer containment upwards
      */
     static class LayerGroupSummary {
-        String id;
+        final String id;
 
-        String workspace;
+        final String workspace;
 
-        String name;
+        final String name;
 
-        LayerGroupInfo.Mode mode;
+        final LayerGroupInfo.Mode mode;
 
-        Set<LayerGroupSummary> containerGroups;
+        /** Ids of the groups directly containing this one, immutable */
+        final Set<String> containerGroupIds;
 
         LayerGroupSummary(LayerGroupInfo lg) {
-            this.id = lg.getId();
-            this.workspace = lg.getWorkspace() != null ? lg.getWorkspace().getName() : null;
-            this.name = lg.getName();
-            this.mode = lg.getMode();
-            containerGroups = CONCURRENT_SET_BUILDER.apply(null);
+            this(lg, Collections.emptySet());
+        }
+
+        LayerGroupSummary(LayerGroupInfo lg, Set<String> containerGroupIds) {
+            this(
+                    lg.getId(),
+                    lg.getWorkspace() != null ? lg.getWorkspace().getName() : null,
+                    lg.getName(),
+                    lg.getMode(),
+                    containerGroupIds);
         }
 
         LayerGroupSummary(LayerGroupSummary other) {
-            this.id = other.id;
-            this.workspace = other.workspace;
-            this.name = other.name;
-            this.mode = other.mode;
-            containerGroups = other.containerGroups;
+            this(other.id, other.workspace, other.name, other.mode, other.containerGroupIds);
+        }
+
+        private LayerGroupSummary(
+                String id,
+                String workspace,
+                String name,
+                LayerGroupInfo.Mode mode,
+                Set<String> containerGroupIds) {
+            this.id = id;
+            this.workspace = workspace;
+            this.name = name;
+            this.mode = mode;
+            this.containerGroupIds =
+                    containerGroupIds == null ? Collections.emptySet() : containerGroupIds;
+        }
+
+        LayerGroupSummary withName(String name) {
+            return new LayerGroupSummary(id, workspace, name, mode, containerGroupIds);
+        }
+
+        LayerGroupSummary withWorkspace(String workspace) {
+            return new LayerGroupSummary(id, workspace, name, mode, containerGroupIds);
+        }
+
+        LayerGroupSummary withMode(LayerGroupInfo.Mode mode) {
+            return new LayerGroupSummary(id, workspace, name, mode, containerGroupIds);
+        }
+
+        LayerGroupSummary withContainerGroupIds(Set<String> containerGroupIds) {
+            return new LayerGroupSummary(id, workspace, name, mode, containerGroupIds);
         }
 
         public String getId() {
@@ -238,8 +316,9 @@ class LayerGroupContainmentCache {
             return mode;
         }
 
-        public Set<LayerGroupSummary> getContainerGroups() {
-            return containerGroups;
+        /** Returns the ids of the groups directly containing this one */
+        public Set<String> getContainerGroupIds() {
+            return containerGroupIds;
         }
 
         @Override
@@ -278,8 +357,8 @@ class LayerGroupContainmentCache {
                     + name
                     + ", mode="
                     + mode
-                    + ", containerGroups="
-                    + containerGroups
+                    + ", containerGroupIds="
+                    + containerGroupIds
                     + "]";
         }
 
@@ -303,7 +382,6 @@ class LayerGroupContainmentCache {
             if (event.getSource() instanceof LayerGroupInfo) {
                 LayerGroupInfo lg = (LayerGroupInfo) event.getSource();
                 addGroupInfo(lg);
-                registerContainedGroups(lg);
             }
         }
 
@@ -339,7 +417,7 @@ class LayerGroupContainmentCache {
                             (List<PublishedInfo>) event.getOldValues().get(layerIdx);
                     List<PublishedInfo> newLayers =
                             (List<PublishedInfo>) event.getNewValues().get(layerIdx);
-                    updateContainedLayers(groupCache.get(lg.getId()), oldLayers, newLayers);
+                    updateContainedLayers(lg.getId(), oldLayers, newLayers);
                 }
                 int modeIdx = event.getPropertyNames().indexOf("mode");
                 if (modeIdx != -1) {
@@ -357,81 +435,61 @@ class LayerGroupContainmentCache {
         }
 
         private void updateGroupMode(String id, Mode newMode) {
-            LayerGroupSummary summary = groupCache.get(id);
-            summary.mode = newMode;
+            updateGroup(id, s -> s.withMode(newMode));
         }
 
         private void updateContainedLayers(
-                LayerGroupSummary groupSummary,
-                List<PublishedInfo> oldLayers,
-                List<PublishedInfo> newLayers) {
-
-            // process layers that are no more contained
-            final HashSet<PublishedInfo> removedLayers = new HashSet<>(oldLayers);
-            removedLayers.removeAll(newLayers);
-            for (PublishedInfo removed : removedLayers) {
-                if (removed instanceof LayerInfo) {
-                    String resourceId = ((LayerInfo) removed).getResource().getId();
-                    Set<LayerGroupSummary> containers = resourceContainmentCache.get(resourceId);
-                    if (containers != null) {
-                        synchronized (resourceId) {
-                            containers.remove(groupSummary);
-                            if (containers.isEmpty()) {
-                                resourceContainmentCache.remove(resourceId, containers);
-                            }
-                        }
-                    }
-                } else {
-                    LayerGroupInfo child = (LayerGroupInfo) removed;
-                    LayerGroupSummary summary = groupCache.get(child.getId());
-                    if (summary != null) {
-                        summary.containerGroups.remove(groupSummary);
+                String groupId, List<PublishedInfo> oldLayers, List<PublishedInfo> newLayers) {
+            synchronized (writeLock) {
+                // process layers that are no more contained
+                final HashSet<PublishedInfo> removedLayers = new HashSet<>(oldLayers);
+                removedLayers.removeAll(newLayers);
+                for (PublishedInfo removed : removedLayers) {
+                    if (IS_LAYER.test(removed)) {
+                        String resourceId = ((LayerInfo) removed).getResource().getId();
+                        updateResourceContainer(resourceId, groupId, false);
+                    } else if (IS_GROUP.test(removed)) {
+                        updateGroupContainer(removed.getId(), groupId, false);
                     }
                 }
-            }
 
-            // add the layers that are newly contained
-            final HashSet<PublishedInfo> addedLayers = new HashSet<>(newLayers);
-            addedLayers.removeAll(oldLayers);
-            for (PublishedInfo added : addedLayers) {
-                if (added instanceof LayerInfo) {
-                    String resourceId = ((LayerInfo) added).getResource().getId();
-                    synchronized (resourceId) {
-                        Set<LayerGroupSummary> containers =
-                                resourceContainmentCache.computeIfAbsent(
-                                        resourceId, CONCURRENT_SET_BUILDER);
-                        containers.add(groupSummary);
-                    }
-                } else {
-                    LayerGroupInfo child = (LayerGroupInfo) added;
-                    LayerGroupSummary summary = groupCache.get(child.getId());
-                    if (summary != null) {
-                        summary.containerGroups.add(groupSummary);
+                // add the layers that are newly contained
+                final HashSet<PublishedInfo> addedLayers = new HashSet<>(newLayers);
+                addedLayers.removeAll(oldLayers);
+                for (PublishedInfo added : addedLayers) {
+                    if (IS_LAYER.test(added)) {
+                        String resourceId = ((LayerInfo) added).getResource().getId();
+                        updateResourceContainer(resourceId, groupId, true);
+                    } else if (IS_GROUP.test(added)) {
+                        updateGroupContainer(added.getId(), groupId, true);
                     }
                 }
             }
         }
 
         private void updateGroupWorkspace(String id, WorkspaceInfo newWorkspace) {
-            LayerGroupSummary summary = groupCache.get(id);
-            if (summary != null) {
-                summary.workspace = newWorkspace == null ? null : newWorkspace.getName();
-            }
+            String workspace = newWorkspace == null ? null : newWorkspace.getName();
+            updateGroup(id, s -> s.withWorkspace(workspace));
         }
 
         private void updateGroupName(String id, String newName) {
-            LayerGroupSummary summary = groupCache.get(id);
-            if (summary != null) {
-                summary.name = newName;
+            updateGroup(id, s -> s.withName(newName));
+        }
+
+        private void updateGroup(String id, UnaryOperator<LayerGroupSummary> update) {
+            synchronized (writeLock) {
+                groupCache.computeIfPresent(id, (k, s) -> update.apply(s));
             }
         }
 
         private void updateWorkspaceNames(String oldName, String newName) {
-            groupCache
-                    .values()
-                    .stream()
-                    .filter(lg -> Objects.equals(lg.workspace, oldName))
-                    .forEach(lg -> lg.workspace = newName);
+            synchronized (writeLock) {
+                groupCache.replaceAll(
+                        (id, lg) ->
+                                Objects.equals(lg.workspace, oldName)
+                                        ? lg.withWorkspace(newName)
+                                        : lg);
+            }
         }
 
         @Override
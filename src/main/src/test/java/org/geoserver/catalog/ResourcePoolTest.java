@@ -22,6 +22,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -33,12 +34,24 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.media.jai.PlanarImage;
 import javax.xml.namespace.QName;
 import javax.xml.transform.TransformerFactory;
@@ -89,7 +102,6 @@ import org.geotools.styling.AbstractStyleVisitor;
 import org.geotools.styling.Mark;
 import org.geotools.styling.PolygonSymbolizer;
 import org.geotools.styling.Style;
-import org.geotools.util.SoftValueHashMap;
 import org.geotools.util.URLs;
 import org.geotools.util.Version;
 import org.geotools.util.factory.GeoTools;
@@ -326,8 +338,195 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         // twice as big
         assertEquals(
                 400,
-                ((SoftValueHashMap) catalog.getResourcePool().getFeatureTypeCache())
-                        .getHardReferencesCount());
+                ((ResourcePool.CatalogResourceCache<?, ?>)
+                                catalog.getResourcePool().getFeatureTypeCache())
+                        .getMaximumSize());
+    }
+
+    @Test
+    public void testCacheEvictionAndStatistics() {
+        List<String> disposed = new ArrayList<>();
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache =
+                pool.new CatalogResourceCache<String, String>("test", 2) {
+                    @Override
+                    protected void dispose(String key, String value) {
+                        disposed.add(key);
+                    }
+                };
+
+        assertNull(cache.get("a"));
+        cache.put("a", "A");
+        cache.recordLoad(1000);
+        cache.put("b", "B");
+        cache.recordLoad(3000);
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a"));
+        // putting back the same value does not dispose it
+        cache.put("b", "B");
+        assertTrue(disposed.isEmpty());
+        // replacing disposes the old value
+        cache.put("b", "B2");
+        assertEquals(Arrays.asList("b"), disposed);
+        // going beyond the limit evicts and disposes one entry
+        cache.put("c", "C");
+        assertEquals(2, cache.size());
+        assertEquals(2, disposed.size());
+        // explicit removal and clear dispose too
+        cache.clear();
+        assertEquals(4, disposed.size());
+
+        CacheStatistics stats = cache.getStatistics();
+        assertEquals("test", stats.getName());
+        assertEquals(0, stats.getSize());
+        assertEquals(2, stats.getMaximumSize());
+        assertEquals(2, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(4000, stats.getTotalLoadTime());
+        assertEquals(2000, stats.getAverageLoadPenalty(), 0d);
+        assertEquals(1, stats.getEvictionCount());
+        assertEquals(0.5, stats.getHitRate(), 0d);
+    }
+
+    @Test
+    public void testCachesMBeanUnregistered() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ResourcePoolCachesMXBean.OBJECT_NAME);
+        ResourcePoolInitializer initializer =
+                GeoServerExtensions.bean(ResourcePoolInitializer.class);
+        assertTrue(server.isRegistered(name));
+        try {
+            initializer.destroy();
+            assertFalse(server.isRegistered(name));
+        } finally {
+            initializer.initialize(getGeoServer());
+        }
+        assertTrue(server.isRegistered(name));
+    }
+
+    @Test
+    public void testSingleFlightLoading() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache =
+                pool.new CatalogResourceCache<String, String>("test", 10) {};
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> slowLoader =
+                () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    release.await();
+                    return "A";
+                };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> cache.getOrLoad("a", slowLoader, 10000));
+            loading.await();
+            List<Future<String>> waiting = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiting.add(executor.submit(() -> cache.getOrLoad("a", slowLoader, 10000)));
+            }
+            // other keys are not blocked by the slow load
+            assertEquals("B", cache.getOrLoad("b", () -> "B", 10000));
+            // waiting for too long fails, without affecting the load in progress
+            try {
+                cache.getOrLoad("a", slowLoader, 10);
+                fail("Should have timed out");
+            } catch (IOException e) {
+                assertThat(e.getMessage(), containsString("Timed out"));
+            }
+
+            release.countDown();
+            assertEquals("A", first.get());
+            for (Future<String> future : waiting) {
+                assertEquals("A", future.get());
+            }
+            assertEquals(1, loads.get());
+            assertEquals("A", cache.get("a"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSingleFlightFailure() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache =
+                pool.new CatalogResourceCache<String, String>("test", 10) {};
+        try {
+            cache.getOrLoad(
+                    "a",
+                    () -> {
+                        throw new IOException("Cannot connect");
+                    },
+                    1000);
+            fail("Should have failed");
+        } catch (IOException e) {
+            assertEquals("Cannot connect", e.getMessage());
+        }
+        // failures are not cached, the next call tries again
+        assertEquals("A", cache.getOrLoad("a", () -> "A", 1000));
+        // null keys are loaded, but not cached
+        assertEquals("N", cache.getOrLoad(null, () -> "N", 1000));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSingleFlightError() throws Exception {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        ResourcePool.CatalogResourceCache<String, String> cache =
+                pool.new CatalogResourceCache<String, String>("test", 10) {};
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<String> failingLoader =
+                () -> {
+                    loading.countDown();
+                    release.await();
+                    throw new NoClassDefFoundError("org/geotools/Missing");
+                };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first =
+                    executor.submit(() -> cache.getOrLoad("a", failingLoader, 10000));
+            loading.await();
+            Future<String> waiting =
+                    executor.submit(() -> cache.getOrLoad("a", failingLoader, 10000));
+            release.countDown();
+            for (Future<String> future : Arrays.asList(first, waiting)) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    fail("Should have failed");
+                } catch (ExecutionException e) {
+                    // the waiting thread gets the error instead of timing out
+                    assertThat(e.getCause(), instanceOf(NoClassDefFoundError.class));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // the failed load does not linger, the next call tries again
+        assertEquals("A", cache.getOrLoad("a", () -> "A", 1000));
+    }
+
+    @Test
+    public void testStyleCacheStatistics() throws IOException {
+        ResourcePool pool = ResourcePool.create(getCatalog());
+        StyleInfo si = getCatalog().getStyleByName(StyleInfo.DEFAULT_POINT);
+        pool.getStyle(si);
+        pool.getStyle(si);
+        CacheStatistics stats =
+                pool.getCacheStatistics()
+                        .stream()
+                        .filter(s -> "styles".equals(s.getName()))
+                        .findFirst()
+                        .get();
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertThat(stats.getTotalLoadTime(), greaterThan(0L));
     }
 
     @Test
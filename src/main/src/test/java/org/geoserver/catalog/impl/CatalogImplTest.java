@@ -932,6 +932,29 @@ public class CatalogImplTest extends GeoServerSystemTestSupport {
         assertNotNull(catalog.getDataStoreByName(ws2, ds2.getName()));
     }
 
+    @Test
+    public void testGetStoresByWorkspaceAfterWorkspaceChange() throws Exception {
+        addDataStore();
+
+        WorkspaceInfo ws2 = catalog.getFactory().createWorkspace();
+        ws2.setName("newWorkspace");
+        catalog.add(ws2);
+        ws2 = catalog.getWorkspaceByName(ws2.getName());
+        assertTrue(catalog.getStoresByWorkspace(ws2, DataStoreInfo.class).isEmpty());
+
+        DataStoreInfo ds2 = catalog.getDataStoreByName(ds.getName());
+        ds2.setWorkspace(ws2);
+        catalog.save(ds2);
+
+        assertTrue(catalog.getStoresByWorkspace(ws, DataStoreInfo.class).isEmpty());
+        List<DataStoreInfo> stores = catalog.getStoresByWorkspace(ws2, DataStoreInfo.class);
+        assertEquals(1, stores.size());
+        assertEquals(ds2.getId(), stores.get(0).getId());
+
+        catalog.remove(stores.get(0));
+        assertTrue(catalog.getStoresByWorkspace(ws2, DataStoreInfo.class).isEmpty());
+    }
+
     @Test
     public void testDataStoreEvents() {
         addWorkspace();
@@ -1187,6 +1210,27 @@ public class CatalogImplTest extends GeoServerSystemTestSupport {
         assertTrue(r.contains(ft2));
     }
 
+    @Test
+    public void testGetFeatureTypesByStoreAfterStoreChange() {
+        addFeatureType();
+
+        DataStoreInfo ds2 = catalog.getFactory().createDataStore();
+        ds2.setName("ds2");
+        ds2.setWorkspace(ws);
+        catalog.add(ds2);
+        ds2 = catalog.getDataStoreByName(ws.getName(), "ds2");
+
+        FeatureTypeInfo ft2 = catalog.getFeatureTypeByName(ft.getName());
+        ft2.setStore(ds2);
+        catalog.save(ft2);
+
+        assertTrue(catalog.getResourcesByStore(ds, ResourceInfo.class).isEmpty());
+        List<FeatureTypeInfo> r = catalog.getResourcesByStore(ds2, FeatureTypeInfo.class);
+        assertEquals(1, r.size());
+        assertEquals(ft.getName(), r.get(0).getName());
+        assertTrue(catalog.getResourcesByStore(ds2, CoverageInfo.class).isEmpty());
+    }
+
     @Test
     public void testModifyFeatureType() {
         addFeatureType();
@@ -1614,6 +1658,47 @@ public class CatalogImplTest extends GeoServerSystemTestSupport {
         assertEquals(l3, l4);
     }
 
+    @Test
+    public void testGetLayersByStyle() {
+        CatalogFactory factory = catalog.getFactory();
+        StyleInfo s2 = factory.createStyle();
+        s2.setName("styleName2");
+        s2.setFilename("styleFilename2");
+        catalog.add(s2);
+        s2 = catalog.getStyleByName("styleName2");
+
+        addLayer();
+        StyleInfo style = catalog.getStyleByName(s.getName());
+        assertEquals(1, catalog.getLayers(style).size());
+        assertTrue(catalog.getLayers(s2).isEmpty());
+
+        // add as an alternate style
+        LayerInfo l2 = catalog.getLayerByName(l.getName());
+        l2.getStyles().add(s2);
+        catalog.save(l2);
+        assertEquals(1, catalog.getLayers(style).size());
+        assertEquals(1, catalog.getLayers(s2).size());
+
+        // switch default style
+        l2 = catalog.getLayerByName(l.getName());
+        l2.getStyles().clear();
+        l2.setDefaultStyle(s2);
+        catalog.save(l2);
+        assertTrue(catalog.getLayers(style).isEmpty());
+        assertEquals(1, catalog.getLayers(s2).size());
+
+        // renaming the resource renames the layer, the style lookup must keep on working
+        FeatureTypeInfo ft2 = catalog.getFeatureTypeByName(ft.getName());
+        ft2.setName("ftRenamed");
+        catalog.save(ft2);
+        List<LayerInfo> layers = catalog.getLayers(s2);
+        assertEquals(1, layers.size());
+        assertEquals("ftRenamed", layers.get(0).getName());
+
+        catalog.remove(layers.get(0));
+        assertTrue(catalog.getLayers(s2).isEmpty());
+    }
+
     @Test
     public void testEnableLayer() {
         addLayer();
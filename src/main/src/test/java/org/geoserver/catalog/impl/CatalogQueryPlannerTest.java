@@ -0,0 +1,309 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.impl;
+
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.asc;
+import static org.geoserver.catalog.Predicates.desc;
+import static org.geoserver.catalog.Predicates.equal;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogQueryPlanner.Strategy;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.factory.CommonFactoryFinder;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.sort.SortBy;
+
+public class CatalogQueryPlannerTest {
+
+    static final FilterFactory FF = CommonFactoryFinder.getFilterFactory();
+
+    CatalogImpl catalog;
+
+    DefaultCatalogFacade facade;
+
+    @Before
+    public void setUp() {
+        catalog = new CatalogImpl();
+        facade = new DefaultCatalogFacade(catalog);
+        catalog.setFacade(facade);
+        catalog.setResourceLoader(new GeoServerResourceLoader());
+
+        CatalogFactory factory = catalog.getFactory();
+        StyleInfo style = factory.createStyle();
+        style.setName("point");
+        style.setFilename("point.sld");
+        catalog.add(style);
+
+        // three workspaces with two stores each, and the same layer names in every store
+        for (int i = 0; i < 3; i++) {
+            WorkspaceInfo ws = factory.createWorkspace();
+            ws.setName("ws" + i);
+            catalog.add(ws);
+            NamespaceInfo ns = factory.createNamespace();
+            ns.setPrefix("ws" + i);
+            ns.setURI("http://www.geoserver.org/ws" + i);
+            catalog.add(ns);
+            for (int j = 0; j < 2; j++) {
+                DataStoreInfo ds = factory.createDataStore();
+                ds.setName("store" + j);
+                ds.setWorkspace(ws);
+                ds.setEnabled(true);
+                catalog.add(ds);
+                for (int k = 0; k < 3; k++) {
+                    FeatureTypeInfo ft = factory.createFeatureType();
+                    ft.setName("layer" + j + "_" + k);
+                    ft.setNamespace(ns);
+                    ft.setStore(ds);
+                    ft.setEnabled(k != 0);
+                    catalog.add(ft);
+                    LayerInfo layer = factory.createLayer();
+                    layer.setResource(ft);
+                    layer.setDefaultStyle(style);
+                    catalog.add(layer);
+                }
+            }
+        }
+
+        LayerGroupInfo group = factory.createLayerGroup();
+        group.setName("layer0_0");
+        group.getLayers().add(catalog.getLayerByName("ws1:layer0_0"));
+        group.getStyles().add(null);
+        catalog.add(group);
+    }
+
+    /** Returns the names of the objects matching the query, using the planner */
+    <T extends CatalogInfo> List<String> list(
+            Class<T> type, Filter filter, Integer offset, Integer count, SortBy... sortBy) {
+        List<String> result = new ArrayList<>();
+        try (CloseableIterator<T> it = catalog.list(type, filter, offset, count, sortBy)) {
+            while (it.hasNext()) {
+                result.add(name(it.next()));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the names of the objects matching the filter, computed with a plain scan */
+    <T extends CatalogInfo> List<String> scan(Class<T> type, Filter filter) {
+        List<T> all = new ArrayList<>();
+        for (CatalogInfoLookup<?> lookup : facade.getPlanner().lookups(type)) {
+            all.addAll(lookup.list(type, CatalogInfoLookup.TRUE));
+        }
+        return all.stream().filter(filter::evaluate).map(this::name).collect(Collectors.toList());
+    }
+
+    String name(CatalogInfo info) {
+        if (info instanceof ResourceInfo) {
+            return ((ResourceInfo) info).prefixedName();
+        } else if (info instanceof PublishedInfo) {
+            return ((PublishedInfo) info).prefixedName();
+        } else if (info instanceof StoreInfo) {
+            StoreInfo store = (StoreInfo) info;
+            return store.getWorkspace().getName() + ":" + store.getName();
+        }
+        return info.getId();
+    }
+
+    <T extends CatalogInfo> void assertPlanned(
+            Strategy strategy, Class<T> type, Filter filter, String... expected) {
+        long before = facade.getPlanner().getCount(strategy);
+        List<String> actual = list(type, filter, null, null);
+        assertEquals(before + 1, facade.getPlanner().getCount(strategy));
+        assertEquals(Sets.newHashSet(expected), Sets.newHashSet(actual));
+        assertEquals(Sets.newHashSet(scan(type, filter)), Sets.newHashSet(actual));
+        assertEquals(expected.length, catalog.count(type, filter));
+    }
+
+    @Test
+    public void testLookupByName() {
+        assertPlanned(
+                Strategy.INDEX,
+                LayerInfo.class,
+                equal("name", "layer1_2"),
+                "ws0:layer1_2",
+                "ws1:layer1_2",
+                "ws2:layer1_2");
+        assertPlanned(
+                Strategy.NAME,
+                LayerInfo.class,
+                equal("prefixedName", "ws2:layer1_2"),
+                "ws2:layer1_2");
+        assertPlanned(
+                Strategy.NAME,
+                FeatureTypeInfo.class,
+                equal("prefixedName", "ws2:layer1_2"),
+                "ws2:layer1_2");
+        assertPlanned(Strategy.NAME, LayerInfo.class, equal("prefixedName", "ws9:layer1_2"));
+        assertPlanned(Strategy.INDEX, LayerInfo.class, equal("name", "notThere"));
+    }
+
+    @Test
+    public void testLookupById() {
+        LayerInfo layer = catalog.getLayerByName("ws1:layer0_1");
+        assertPlanned(
+                Strategy.ID, PublishedInfo.class, equal("id", layer.getId()), "ws1:layer0_1");
+        assertPlanned(Strategy.ID, StyleInfo.class, equal("id", layer.getId()));
+    }
+
+    @Test
+    public void testPublishedByName() {
+        assertPlanned(
+                Strategy.INDEX,
+                PublishedInfo.class,
+                equal("name", "layer0_0"),
+                "ws0:layer0_0",
+                "ws1:layer0_0",
+                "ws2:layer0_0",
+                "layer0_0");
+    }
+
+    @Test
+    public void testIndexedProperties() {
+        assertPlanned(
+                Strategy.INDEX,
+                StoreInfo.class,
+                equal("workspace.name", "ws1"),
+                "ws1:store0",
+                "ws1:store1");
+        assertPlanned(
+                Strategy.INDEX,
+                ResourceInfo.class,
+                equal("store.workspace.name", "ws2"),
+                "ws2:layer0_0",
+                "ws2:layer0_1",
+                "ws2:layer0_2",
+                "ws2:layer1_0",
+                "ws2:layer1_1",
+                "ws2:layer1_2");
+        assertPlanned(
+                Strategy.INDEX,
+                LayerInfo.class,
+                equal("resource.namespace.prefix", "ws0"),
+                "ws0:layer0_0",
+                "ws0:layer0_1",
+                "ws0:layer0_2",
+                "ws0:layer1_0",
+                "ws0:layer1_1",
+                "ws0:layer1_2");
+    }
+
+    @Test
+    public void testMostSelectiveConditionWins() {
+        // the residual condition on enabled is evaluated on the candidates
+        Filter filter =
+                and(
+                        equal("resource.store.workspace.name", "ws1"),
+                        equal("resource.store.name", "store1"),
+                        equal("resource.name", "layer1_0"),
+                        equal("resource.enabled", Boolean.TRUE));
+        assertPlanned(Strategy.INDEX, LayerInfo.class, filter);
+
+        filter =
+                and(
+                        equal("resource.store.workspace.name", "ws1"),
+                        equal("resource.name", "layer1_2"),
+                        equal("resource.enabled", Boolean.TRUE));
+        assertPlanned(Strategy.INDEX, LayerInfo.class, filter, "ws1:layer1_2");
+    }
+
+    @Test
+    public void testNotPlanned() {
+        // not case sensitive
+        Filter filter = FF.equal(FF.property("name"), FF.literal("LAYER1_2"), false);
+        assertPlanned(
+                Strategy.SCAN,
+                LayerInfo.class,
+                filter,
+                "ws0:layer1_2",
+                "ws1:layer1_2",
+                "ws2:layer1_2");
+        // not an equality
+        filter = FF.or(equal("name", "layer1_2"), equal("name", "layer1_1"));
+        assertEquals(6, list(LayerInfo.class, filter, null, null).size());
+        assertPlanned(Strategy.SCAN, LayerInfo.class, Filter.INCLUDE, allLayers());
+    }
+
+    @Test
+    public void testQueryStatistics() {
+        Map<String, Long> before = facade.getQueryStatistics();
+        assertEquals(
+                Lists.newArrayList("ID", "NAME", "INDEX", "SCAN"),
+                new ArrayList<>(before.keySet()));
+        list(LayerInfo.class, equal("resource.name", "layer1_2"), null, null);
+        list(LayerInfo.class, Filter.INCLUDE, null, null);
+
+        Map<String, Long> after = facade.getQueryStatistics();
+        assertEquals(before.get("INDEX") + 1, (long) after.get("INDEX"));
+        assertEquals(before.get("SCAN") + 1, (long) after.get("SCAN"));
+        assertEquals(before.get("ID"), after.get("ID"));
+    }
+
+    private String[] allLayers() {
+        return scan(LayerInfo.class, Filter.INCLUDE).toArray(new String[0]);
+    }
+
+    @Test
+    public void testSortedPaging() {
+        Filter filter = equal("resource.enabled", Boolean.TRUE);
+        SortBy byName = asc("resource.name");
+        SortBy byWorkspace = desc("resource.store.workspace.name");
+        List<String> all = list(LayerInfo.class, filter, null, null, byName, byWorkspace);
+        assertEquals(12, all.size());
+        assertEquals("ws2:layer0_1", all.get(0));
+        assertEquals("ws1:layer0_1", all.get(1));
+        assertEquals("ws0:layer1_2", all.get(11));
+
+        List<String> paged = new ArrayList<>();
+        for (int offset = 0; offset < all.size(); offset += 5) {
+            List<String> page = list(LayerInfo.class, filter, offset, 5, byName, byWorkspace);
+            assertTrue(page.size() <= 5);
+            paged.addAll(page);
+        }
+        assertEquals(all, paged);
+        assertEquals(Collections.emptyList(), list(LayerInfo.class, filter, 20, 5, byName));
+        assertEquals(Collections.emptyList(), list(LayerInfo.class, filter, 0, 0, byName));
+    }
+
+    @Test
+    public void testSortedHeadIsStable() {
+        List<String> values = Lists.newArrayList("b1", "a1", "b2", "a2", "c1", "a3", "b3");
+        List<String> sorted =
+                DefaultCatalogFacade.sortedHead(values.iterator(), (o1, o2) -> 0, 4);
+        // all compare equal, iteration order is preserved
+        assertEquals(values.subList(0, 4), sorted);
+
+        sorted =
+                DefaultCatalogFacade.sortedHead(
+                        values.iterator(),
+                        (o1, o2) -> ((String) o1).charAt(0) - ((String) o2).charAt(0),
+                        4);
+        assertEquals(Lists.newArrayList("a1", "a2", "a3", "b1"), sorted);
+    }
+}
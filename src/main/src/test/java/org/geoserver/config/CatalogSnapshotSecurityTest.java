@@ -0,0 +1,141 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.easymock.Capture;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.config.CatalogSnapshot.Tier;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resources;
+import org.geoserver.security.GeoServerSecurityManager;
+import org.geoserver.security.SecurityManagerListener;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks the store passwords are encrypted in the catalog snapshot, as in the XML files */
+public class CatalogSnapshotSecurityTest extends GeoServerSystemTestSupport {
+
+    static final String PASSWORD = "s3cr3tPassw0rd";
+
+    @Override
+    protected void setUpTestData(SystemTestData testData) throws Exception {
+        // no test data needed
+    }
+
+    @Before
+    public void addWmsStore() {
+        Catalog catalog = getCatalog();
+        if (catalog.getStoreByName("snapshotWms", WMSStoreInfo.class) != null) {
+            return;
+        }
+        CatalogFactory factory = catalog.getFactory();
+        WorkspaceInfo ws = catalog.getWorkspaceByName("snapshot");
+        if (ws == null) {
+            ws = factory.createWorkspace();
+            ws.setName("snapshot");
+            catalog.add(ws);
+        }
+        WMSStoreInfo wms = factory.createWebMapServer();
+        wms.setName("snapshotWms");
+        wms.setWorkspace(ws);
+        wms.setCapabilitiesURL("http://fake.host/wms?request=GetCapabilities&service=wms");
+        wms.setUsername("user");
+        wms.setPassword(PASSWORD);
+        catalog.add(wms);
+    }
+
+    XStreamPersister persister(Supplier<GeoServerSecurityManager> securityManager) {
+        XStreamPersister xp =
+                new XStreamPersister() {
+                    @Override
+                    public GeoServerSecurityManager getSecurityManager() {
+                        return securityManager.get();
+                    }
+                };
+        xp.setEncryptPasswordFields(true);
+        xp.setCatalog(getCatalog());
+        return xp;
+    }
+
+    void assertEncrypted(Resource target, byte[] manifest, XStreamPersister xp) throws Exception {
+        assertTrue(Resources.exists(target));
+        String contents = new String(target.getContents(), StandardCharsets.ISO_8859_1);
+        assertFalse(contents.contains(PASSWORD));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(target, manifest);
+        assertNotNull(snapshot);
+        List<ByteBuffer> stores = snapshot.getRecords(Tier.STORES);
+        WMSStoreInfo restored = null;
+        for (ByteBuffer record : stores) {
+            StoreInfo store = CatalogSnapshot.decode(xp, record, StoreInfo.class);
+            if ("snapshotWms".equals(store.getName())) {
+                restored = (WMSStoreInfo) store;
+            }
+        }
+        assertNotNull(restored);
+        assertEquals(PASSWORD, restored.getPassword());
+    }
+
+    @Test
+    public void testPasswordEncrypted() throws Exception {
+        DefaultGeoServerLoader loader = new DefaultGeoServerLoader(getResourceLoader());
+        byte[] manifest = CatalogSnapshot.manifest(getResourceLoader());
+        Resource target = getResourceLoader().get("snapshot-test/encrypted.bin");
+        XStreamPersister xp = persister(this::getSecurityManager);
+
+        loader.writeSnapshot(getCatalog(), xp, manifest, target);
+        assertEncrypted(target, manifest, xp);
+    }
+
+    @Test
+    public void testWriteDelayedUntilSecurityInitialized() throws Exception {
+        AtomicBoolean initialized = new AtomicBoolean(false);
+        GeoServerSecurityManager pending = createNiceMock(GeoServerSecurityManager.class);
+        expect(pending.isInitialized()).andAnswer(initialized::get).anyTimes();
+        Capture<SecurityManagerListener> listener = newCapture();
+        pending.addListener(capture(listener));
+        expectLastCall().once();
+        replay(pending);
+
+        GeoServerSecurityManager securityManager = getSecurityManager();
+        XStreamPersister xp = persister(() -> initialized.get() ? securityManager : pending);
+
+        DefaultGeoServerLoader loader = new DefaultGeoServerLoader(getResourceLoader());
+        byte[] manifest = CatalogSnapshot.manifest(getResourceLoader());
+        Resource target = getResourceLoader().get("snapshot-test/delayed.bin");
+        loader.writeSnapshot(getCatalog(), xp, manifest, target);
+
+        // nothing written while the passwords cannot be encrypted
+        assertFalse(Resources.exists(target));
+        assertTrue(listener.hasCaptured());
+
+        initialized.set(true);
+        listener.getValue().handlePostChanged(pending);
+        assertEncrypted(target, manifest, xp);
+    }
+}
@@ -0,0 +1,172 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.CatalogSnapshot.Tier;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogSnapshotTest {
+
+    File root;
+
+    GeoServerResourceLoader loader;
+
+    CatalogImpl catalog;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("snapshot", "data", new File("target"));
+        root.delete();
+        root.mkdirs();
+        loader = new GeoServerResourceLoader(root);
+        FileUtils.write(
+                new File(root, "workspaces/ws/ds/ft/featuretype.xml"), "<featureType/>", "UTF-8");
+
+        catalog = new CatalogImpl();
+        catalog.setResourceLoader(loader);
+        CatalogFactory factory = catalog.getFactory();
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("ws");
+        catalog.add(ws);
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("ws");
+        ns.setURI("http://www.geoserver.org/ws");
+        catalog.add(ns);
+        StyleInfo style = factory.createStyle();
+        style.setName("point");
+        style.setFilename("point.sld");
+        catalog.add(style);
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("ds");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+        FeatureTypeInfo ft = factory.createFeatureType();
+        ft.setName("ft");
+        ft.setNativeName("ft");
+        ft.setNamespace(ns);
+        ft.setStore(ds);
+        catalog.add(ft);
+        LayerInfo layer = factory.createLayer();
+        layer.setResource(ft);
+        layer.setDefaultStyle(style);
+        catalog.add(layer);
+        LayerGroupInfo group = factory.createLayerGroup();
+        group.setName("group");
+        group.getLayers().add(layer);
+        group.getStyles().add(null);
+        catalog.add(group);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(root);
+    }
+
+    XStreamPersister persister(CatalogImpl catalog) {
+        XStreamPersister xp = new XStreamPersisterFactory().createXMLPersister();
+        xp.setCatalog(catalog);
+        return xp;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        byte[] manifest = CatalogSnapshot.manifest(loader);
+        Resource resource = loader.get(CatalogSnapshot.LOCATION);
+        CatalogSnapshot.write(catalog, persister(catalog), manifest, resource);
+
+        CatalogSnapshot snapshot = CatalogSnapshot.read(resource, manifest);
+        assertNotNull(snapshot);
+        assertEquals("ws", snapshot.defaultWorkspace);
+        assertEquals("ws", snapshot.defaultNamespace);
+
+        CatalogImpl restored = new CatalogImpl();
+        restored.setResourceLoader(loader);
+        XStreamPersister xp = persister(restored);
+        xp.setUnwrapNulls(false);
+        for (ByteBuffer r : snapshot.getRecords(Tier.WORKSPACES)) {
+            restored.add(CatalogSnapshot.decode(xp, r, WorkspaceInfo.class));
+        }
+        for (ByteBuffer r : snapshot.getRecords(Tier.NAMESPACES)) {
+            restored.add(CatalogSnapshot.decode(xp, r, NamespaceInfo.class));
+        }
+        for (ByteBuffer r : snapshot.getRecords(Tier.STYLES)) {
+            restored.add(CatalogSnapshot.decode(xp, r, StyleInfo.class));
+        }
+        for (ByteBuffer r : snapshot.getRecords(Tier.STORES)) {
+            restored.add(CatalogSnapshot.decode(xp, r, StoreInfo.class));
+        }
+        for (ByteBuffer r : snapshot.getRecords(Tier.RESOURCES)) {
+            restored.add(CatalogSnapshot.decode(xp, r, ResourceInfo.class));
+        }
+        for (ByteBuffer r : snapshot.getRecords(Tier.LAYERS)) {
+            restored.add(CatalogSnapshot.decode(xp, r, LayerInfo.class));
+        }
+        assertEquals(0, snapshot.getRecords(Tier.WORKSPACE_LAYER_GROUPS).size());
+        for (ByteBuffer r : snapshot.getRecords(Tier.GLOBAL_LAYER_GROUPS)) {
+            restored.add(CatalogSnapshot.decode(xp, r, LayerGroupInfo.class));
+        }
+        xp.setUnwrapNulls(true);
+        restored.resolve();
+
+        LayerInfo layer = restored.getLayerByName("ws:ft");
+        assertNotNull(layer);
+        assertEquals(catalog.getLayerByName("ws:ft").getId(), layer.getId());
+        assertEquals("point", layer.getDefaultStyle().getName());
+        assertEquals("ds", layer.getResource().getStore().getName());
+        LayerGroupInfo group = restored.getLayerGroupByName("group");
+        assertEquals(layer.getId(), group.getLayers().get(0).getId());
+    }
+
+    @Test
+    public void testManifestMismatch() throws Exception {
+        byte[] manifest = CatalogSnapshot.manifest(loader);
+        Resource resource = loader.get(CatalogSnapshot.LOCATION);
+        CatalogSnapshot.write(catalog, persister(catalog), manifest, resource);
+
+        File config = new File(root, "workspaces/ws/ds/ft/featuretype.xml");
+        config.setLastModified(config.lastModified() - 10000);
+        byte[] changed = CatalogSnapshot.manifest(loader);
+        assertFalse(Arrays.equals(manifest, changed));
+        assertNull(CatalogSnapshot.read(resource, changed));
+    }
+
+    @Test
+    public void testMissingOrCorrupted() throws IOException {
+        byte[] manifest = CatalogSnapshot.manifest(loader);
+        Resource resource = loader.get(CatalogSnapshot.LOCATION);
+        assertNull(CatalogSnapshot.read(resource, manifest));
+
+        FileUtils.write(resource.file(), "not a snapshot", "UTF-8");
+        assertNull(CatalogSnapshot.read(resource, manifest));
+    }
+}
@@ -0,0 +1,163 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensionsHelper;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geoserver.platform.resource.Resources;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Checks the parallel catalog load gives the same catalog as the sequential one */
+public class GeoServerLoaderParallelTest {
+
+    static final int WORKSPACES = 32;
+
+    File root;
+
+    GeoServerResourceLoader resourceLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("parallel", "data", new File("target"));
+        root.delete();
+        root.mkdirs();
+        resourceLoader = new GeoServerResourceLoader(root);
+        GeoServerExtensionsHelper.singleton(
+                "resourceLoader", resourceLoader, GeoServerResourceLoader.class);
+
+        CatalogImpl catalog = new CatalogImpl();
+        XStreamPersister xp = new XStreamPersisterFactory().createXMLPersister();
+        xp.setCatalog(catalog);
+        CatalogFactory factory = catalog.getFactory();
+        for (int i = 0; i < WORKSPACES; i++) {
+            String name = "ws" + i;
+            WorkspaceInfo ws = factory.createWorkspace();
+            ws.setName(name);
+            catalog.add(ws);
+            write(xp, ws, "workspaces/" + name + "/workspace.xml");
+            NamespaceInfo ns = factory.createNamespace();
+            ns.setPrefix(name);
+            ns.setURI("http://www.geoserver.org/" + name);
+            catalog.add(ns);
+            write(xp, ns, "workspaces/" + name + "/namespace.xml");
+            DataStoreInfo ds = factory.createDataStore();
+            ds.setName("store" + i);
+            ds.setWorkspace(ws);
+            ds.setEnabled(true);
+            catalog.add(ds);
+            write(xp, ds, "workspaces/" + name + "/store" + i + "/datastore.xml");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        GeoServerExtensionsHelper.clear();
+        FileUtils.deleteQuietly(root);
+    }
+
+    void write(XStreamPersister xp, CatalogInfo info, String path) throws Exception {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            xp.save(info, out);
+        }
+    }
+
+    Catalog load(int parallelism) throws Exception {
+        DefaultGeoServerLoader loader = new DefaultGeoServerLoader(resourceLoader);
+        loader.loadingParallelism = parallelism;
+        return loader.readCatalog(new XStreamPersisterFactory().createXMLPersister());
+    }
+
+    /** The workspace directories, in the order the sequential load follows */
+    List<String> workspaceDirectories() {
+        return resourceLoader
+                .get("workspaces")
+                .list()
+                .stream()
+                .filter(r -> Resources.DirectoryFilter.INSTANCE.accept(r))
+                .map(Resource::name)
+                .collect(Collectors.toList());
+    }
+
+    Set<String> ids(List<? extends CatalogInfo> infos) {
+        return infos.stream()
+                .map(CatalogInfo::getId)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    void assertSameCatalog(Catalog expected, Catalog actual) {
+        assertEquals(ids(expected.getWorkspaces()), ids(actual.getWorkspaces()));
+        assertEquals(ids(expected.getNamespaces()), ids(actual.getNamespaces()));
+        assertEquals(
+                ids(expected.getStores(DataStoreInfo.class)),
+                ids(actual.getStores(DataStoreInfo.class)));
+        assertEquals(expected.getDefaultWorkspace().getId(), actual.getDefaultWorkspace().getId());
+        assertEquals(expected.getDefaultNamespace().getId(), actual.getDefaultNamespace().getId());
+    }
+
+    @Test
+    public void testDefaultsWithoutDefaultFile() throws Exception {
+        String first = workspaceDirectories().get(0);
+        File defaultFile = new File(root, "workspaces/default.xml");
+
+        Catalog sequential = load(1);
+        assertEquals(first, sequential.getDefaultWorkspace().getName());
+        assertEquals(first, sequential.getDefaultNamespace().getPrefix());
+        assertEquals(WORKSPACES, sequential.getStores(DataStoreInfo.class).size());
+
+        for (int i = 0; i < 5; i++) {
+            // the load creates the default file, remove it to have the catalog pick the defaults
+            FileUtils.forceDelete(defaultFile);
+            Catalog parallel = load(8);
+            assertSameCatalog(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void testDefaultNamespaceMissing() throws Exception {
+        List<String> directories = workspaceDirectories();
+        String first = directories.get(0);
+        String last = directories.get(directories.size() - 1);
+        // the default workspace namespace cannot be loaded
+        Catalog source = load(1);
+        XStreamPersister xp = new XStreamPersisterFactory().createXMLPersister();
+        xp.setCatalog(source);
+        write(xp, source.getWorkspaceByName(last), "workspaces/default.xml");
+        FileUtils.write(
+                new File(root, "workspaces/" + last + "/namespace.xml"), "<namespace>", "UTF-8");
+
+        Catalog sequential = load(1);
+        assertEquals(last, sequential.getDefaultWorkspace().getName());
+        assertNotNull(sequential.getDefaultNamespace());
+        assertEquals(first, sequential.getDefaultNamespace().getPrefix());
+        for (int i = 0; i < 5; i++) {
+            assertSameCatalog(sequential, load(8));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+public class AccessDecisionCacheTest {
+
+    Authentication user =
+            new UsernamePasswordAuthenticationToken(
+                    "user", "pwd", AuthorityUtils.createAuthorityList("ROLE_A"));
+
+    @Test
+    public void testCached() {
+        AccessDecisionCache cache = new AccessDecisionCache(10);
+        AtomicInteger computed = new AtomicInteger();
+        assertTrue(cache.canAccess(user, () -> computed.incrementAndGet() > 0, "layer"));
+        assertTrue(cache.canAccess(user, () -> computed.incrementAndGet() > 0, "layer"));
+        assertEquals(1, computed.get());
+
+        cache.invalidate();
+        assertTrue(cache.canAccess(user, () -> computed.incrementAndGet() > 0, "layer"));
+        assertEquals(2, computed.get());
+    }
+
+    @Test
+    public void testInvalidateWhileComputing() throws Exception {
+        AccessDecisionCache cache = new AccessDecisionCache(10);
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // computed against the old rules, granting access
+            Future<Boolean> stale =
+                    executor.submit(
+                            () ->
+                                    cache.canAccess(
+                                            user,
+                                            () -> {
+                                                computing.countDown();
+                                                try {
+                                                    invalidated.await(10, TimeUnit.SECONDS);
+                                                } catch (InterruptedException e) {
+                                                    Thread.currentThread().interrupt();
+                                                }
+                                                return true;
+                                            },
+                                            "layer"));
+            assertTrue(computing.await(10, TimeUnit.SECONDS));
+            // the rules revoke the access in the meantime
+            cache.invalidate();
+            invalidated.countDown();
+            assertTrue(stale.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the stale decision is not served
+        assertFalse(cache.canAccess(user, () -> false, "layer"));
+    }
+}
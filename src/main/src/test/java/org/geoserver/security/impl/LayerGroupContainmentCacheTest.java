@@ -192,7 +192,7 @@ public class LayerGroupContainmentCacheTest {
         LayerGroupSummary summary = natureContainers.iterator().next();
         assertNull(summary.getWorkspace());
         assertEquals(CONTAINER_GROUP, summary.getName());
-        assertThat(summary.getContainerGroups(), empty());
+        assertThat(summary.getContainerGroupIds(), empty());
 
         // container has no contaning groups
         assertThat(cc.getContainerGroupsFor(container), empty());
@@ -377,4 +377,35 @@ public class LayerGroupContainmentCacheTest {
         summary = cc.groupCache.get(nature.getId());
         assertEquals(Mode.OPAQUE_CONTAINER, summary.getMode());
     }
+
+    @Test
+    public void testDeepNesting() throws Exception {
+        LayerInfo neatline = catalog.getLayerByName(getLayerId(MockData.MAP_NEATLINE));
+        LayerGroupInfo[] chain = new LayerGroupInfo[4];
+        chain[0] = addLayerGroup("chain0", Mode.CONTAINER, null, neatline);
+        for (int i = 1; i < chain.length; i++) {
+            chain[i] = addLayerGroup("chain" + i, Mode.CONTAINER, null, chain[i - 1]);
+        }
+        assertThat(
+                containerNamesForResource(MockData.MAP_NEATLINE),
+                equalTo(set("chain0", "chain1", "chain2", "chain3")));
+        assertThat(containerNamesForGroup(chain[1]), equalTo(set("chain2", "chain3")));
+
+        // renaming an ancestor is reflected in the containment of the nested items
+        chain[3].setName("top");
+        catalog.save(chain[3]);
+        assertThat(
+                containerNamesForResource(MockData.MAP_NEATLINE),
+                equalTo(set("chain0", "chain1", "chain2", "top")));
+
+        // cutting the chain in the middle detaches all the ancestors above the cut
+        LayerInfo lakes = catalog.getLayerByName(getLayerId(MockData.LAKES));
+        chain[2].getLayers().set(0, lakes);
+        catalog.save(chain[2]);
+        assertThat(
+                containerNamesForResource(MockData.MAP_NEATLINE),
+                equalTo(set("chain0", "chain1")));
+        assertThat(containerNamesForGroup(chain[1]), empty());
+        assertThat(containerNamesForGroup(chain[0]), equalTo(set("chain1")));
+    }
 }
@@ -897,94 +897,7 @@ public class Dispatcher extends AbstractController {
     void response(Object result, Request req, Operation opDescriptor) throws Throwable {
         // step 6: write response
         if (result != null) {
-            // look up respones
-            List responses = GeoServerExtensions.extensions(Response.class);
-
-            // first filter by binding, and canHandle
-            O:
-            for (Iterator itr = responses.iterator(); itr.hasNext(); ) {
-                Response response = (Response) itr.next();
-
-                Class binding = response.getBinding();
-
-                if (!binding.isAssignableFrom(result.getClass())
-                        || !response.canHandle(opDescriptor)) {
-                    itr.remove();
-
-                    continue;
-                }
-
-                // filter by output format
-                Set outputFormats = response.getOutputFormats();
-
-                if ((req.getOutputFormat() != null)
-                        && (!outputFormats.isEmpty())
-                        && !outputFormats.contains(req.getOutputFormat())) {
-
-                    // must do a case insensitive check
-                    for (Iterator of = outputFormats.iterator(); of.hasNext(); ) {
-                        String outputFormat = (String) of.next();
-                        if (req.getOutputFormat().equalsIgnoreCase(outputFormat)) {
-                            continue O;
-                        }
-                    }
-
-                    itr.remove();
-                }
-            }
-
-            if (responses.isEmpty()) {
-                if (req.getOutputFormat() != null) {
-                    throw new ServiceException(
-                            "Failed to find response for output format " + req.getOutputFormat(),
-                            ServiceException.INVALID_PARAMETER_VALUE,
-                            "outputFormat");
-                } else {
-                    String msg = "No response: ( object = " + result.getClass();
-
-                    if (req.getOutputFormat() != null) {
-                        msg += (", outputFormat = " + req.getOutputFormat());
-                    }
-
-                    msg += " )";
-
-                    throw new RuntimeException(msg);
-                }
-            }
-
-            if (responses.size() > 1) {
-                // sort by class hierarchy
-                Collections.sort(
-                        responses,
-                        new Comparator() {
-                            public int compare(Object o1, Object o2) {
-                                Class c1 = ((Response) o1).getBinding();
-                                Class c2 = ((Response) o2).getBinding();
-
-                                if (c1.equals(c2)) {
-                                    return 0;
-                                }
-
-                                if (c1.isAssignableFrom(c2)) {
-                                    return 1;
-                                }
-
-                                return -1;
-                            }
-                        });
-
-                // check first two and make sure bindings are not equal
-                Response r1 = (Response) responses.get(0);
-                Response r2 = (Response) responses.get(1);
-
-                if (r1.getBinding().equals(r2.getBinding())) {
-                    String msg =
-                            "Multiple responses: (" + result.getClass() + "): " + r1 + ", " + r2;
-                    throw new RuntimeException(msg);
-                }
-            }
-
-            Response response = (Response) responses.get(0);
+            Response response = findResponse(req, opDescriptor, result);
             response = fireResponseDispatchedCallback(req, opDescriptor, result, response);
 
             // load the output strategy to be used
@@ -1052,6 +965,79 @@ public class Dispatcher extends AbstractController {
         }
     }
 
+    /**
+     * Finds the response for the operation result, among the ones whose binding can handle it,
+     * that can handle the operation and the requested output format
+     */
+    Response findResponse(Request req, Operation opDescriptor, Object result) {
+        // look up the responses whose binding can handle the result, most specific first
+        DispatcherTables tables = DispatcherTables.get();
+        List responses = new ArrayList(tables.getResponses(result.getClass()));
+
+        // first filter by canHandle
+        O:
+        for (Iterator itr = responses.iterator(); itr.hasNext(); ) {
+            Response response = (Response) itr.next();
+
+            if (!response.canHandle(opDescriptor)) {
+                itr.remove();
+
+                continue;
+            }
+
+            // filter by output format
+            Set outputFormats = response.getOutputFormats();
+
+            if ((req.getOutputFormat() != null)
+                    && (!outputFormats.isEmpty())
+                    && !outputFormats.contains(req.getOutputFormat())) {
+
+                // must do a case insensitive check
+                for (Iterator of = outputFormats.iterator(); of.hasNext(); ) {
+                    String outputFormat = (String) of.next();
+                    if (req.getOutputFormat().equalsIgnoreCase(outputFormat)) {
+                        continue O;
+                    }
+                }
+
+                itr.remove();
+            }
+        }
+
+        if (responses.isEmpty()) {
+            if (req.getOutputFormat() != null) {
+                throw new ServiceException(
+                        "Failed to find response for output format " + req.getOutputFormat(),
+                        ServiceException.INVALID_PARAMETER_VALUE,
+                        "outputFormat");
+            } else {
+                String msg = "No response: ( object = " + result.getClass();
+
+                if (req.getOutputFormat() != null) {
+                    msg += (", outputFormat = " + req.getOutputFormat());
+                }
+
+                msg += " )";
+
+                throw new RuntimeException(msg);
+            }
+        }
+
+        if (responses.size() > 1) {
+            // already sorted by class hierarchy, check first two and make sure bindings are not
+            // equal
+            Response r1 = (Response) responses.get(0);
+            Response r2 = (Response) responses.get(1);
+
+            if (r1.getBinding().equals(r2.getBinding())) {
+                String msg = "Multiple responses: (" + result.getClass() + "): " + r1 + ", " + r2;
+                throw new RuntimeException(msg);
+            }
+        }
+
+        return tables.instance((Response) responses.get(0));
+    }
+
     void setHeaders(Request req, Operation opDescriptor, Object result, Response response) {
         // get the basics using the new api
         Map rawKvp = req.getRawKvp();
@@ -1135,6 +1121,10 @@ public class Dispatcher extends AbstractController {
     }
 
     Collection loadServices() {
+        return DispatcherTables.get().getServices();
+    }
+
+    static Collection lookupServices() {
         Collection services = GeoServerExtensions.extensions(Service.class);
 
         if (!(new HashSet(services).size() == services.size())) {
@@ -1147,7 +1137,6 @@ public class Dispatcher extends AbstractController {
 
     Service findService(String id, String ver, String namespace) throws ServiceException {
         Version version = (ver != null) ? new Version(ver) : null;
-        Collection services = loadServices();
 
         // the id is actually the pathinfo, in case workspace specific services
         // are active we want to skip the workspace part in the path and go directly to the
@@ -1155,6 +1144,7 @@ public class Dispatcher extends AbstractController {
         if (id.contains("/")) {
             id = id.substring(id.indexOf("/") + 1);
         }
+        Collection services = DispatcherTables.get().getServices(id);
 
         // first just match on service,request
         List matches = new ArrayList();
@@ -1251,8 +1241,11 @@ public class Dispatcher extends AbstractController {
     }
 
     public static KvpRequestReader findKvpRequestReader(Class type) {
-        Collection kvpReaders = loadKvpRequestReaders();
+        return DispatcherTables.get()
+                .getKvpRequestReader(type, readers -> findKvpRequestReader(type, readers));
+    }
 
+    static KvpRequestReader findKvpRequestReader(Class type, Collection kvpReaders) {
         List matches = new ArrayList();
 
         for (Iterator itr = kvpReaders.iterator(); itr.hasNext(); ) {
@@ -1289,7 +1282,7 @@ public class Dispatcher extends AbstractController {
         return (KvpRequestReader) matches.get(0);
     }
 
-    static Collection loadXmlReaders() {
+    static Collection<XmlRequestReader> loadXmlReaders() {
         List<XmlRequestReader> xmlReaders = GeoServerExtensions.extensions(XmlRequestReader.class);
 
         if (!(new HashSet<XmlRequestReader>(xmlReaders).size() == xmlReaders.size())) {
@@ -1324,7 +1317,8 @@ public class Dispatcher extends AbstractController {
      */
     public static XmlRequestReader findXmlReader(
             String namespace, String element, String serviceId, String ver) {
-        Collection xmlReaders = loadXmlReaders();
+        // only the readers with a matching element name, ignoring case
+        Collection xmlReaders = DispatcherTables.get().getXmlReaders(element);
 
         // first just match on namespace, element
         List matches = new ArrayList();
@@ -0,0 +1,266 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Service;
+
+/**
+ * Precompiled lookup tables used by the {@link Dispatcher} to route requests, replacing the
+ * extension lookups and linear scans it used to perform on each request:
+ *
+ * <ul>
+ *   <li>services and XML readers are indexed by (case insensitive) id and element name
+ *   <li>KVP readers are resolved once per request type
+ *   <li>response candidates are resolved once per result type, already sorted from the most to the
+ *       least specific binding
+ * </ul>
+ *
+ * Each table is built lazily, from the same extension lookups the dispatcher used to perform, and
+ * all of them are discarded when the {@link GeoServerExtensions} generation changes, e.g., on
+ * application context refresh, or when an {@link org.geoserver.platform.ExtensionFilter} changes
+ * its mind, like the JSONP one. Response beans declared as prototypes are still instantiated on
+ * each request.
+ */
+final class DispatcherTables {
+
+    static volatile DispatcherTables current;
+
+    /** Returns the tables for the current extensions, building new ones if needed */
+    static DispatcherTables get() {
+        long generation = GeoServerExtensions.getGeneration();
+        DispatcherTables tables = current;
+        if (tables == null || tables.generation != generation) {
+            tables = new DispatcherTables(generation);
+            current = tables;
+        }
+        return tables;
+    }
+
+    final long generation;
+
+    final Supplier<Collection<Service>> services;
+
+    final Supplier<Map<String, List<Service>>> servicesById;
+
+    final Supplier<Collection<KvpRequestReader>> kvpReaders;
+
+    final Map<Class<?>, Optional<KvpRequestReader>> kvpReadersByType = new ConcurrentHashMap<>();
+
+    final Supplier<Map<String, List<XmlRequestReader>>> xmlReadersByElement;
+
+    final Supplier<ResponseTable> responses;
+
+    @SuppressWarnings("unchecked") // the dispatcher lookups return raw collections
+    DispatcherTables(long generation) {
+        this.generation = generation;
+        // memoized suppliers are not memoized when failing, so a broken extension point
+        // (e.g., duplicate beans) keeps on failing only the lookups using it
+        this.services = Suppliers.memoize(Dispatcher::lookupServices);
+        this.servicesById = Suppliers.memoize(() -> index(services.get(), Service::getId));
+        this.kvpReaders = Suppliers.memoize(Dispatcher::loadKvpRequestReaders);
+        this.xmlReadersByElement =
+                Suppliers.memoize(
+                        () ->
+                                index(
+                                        Dispatcher.loadXmlReaders(),
+                                        r -> r.getElement().getLocalPart()));
+        this.responses = Suppliers.memoize(ResponseTable::new);
+    }
+
+    /** Indexes the items by lower case key, preserving their order */
+    static <T> Map<String, List<T>> index(Collection<T> items, Function<T, String> key) {
+        Map<String, List<T>> result = new HashMap<>();
+        for (T item : items) {
+            String k = key.apply(item);
+            if (k != null) {
+                result.computeIfAbsent(k.toLowerCase(Locale.ENGLISH), x -> new ArrayList<>())
+                        .add(item);
+            }
+        }
+        return result;
+    }
+
+    static <T> List<T> lookup(Map<String, List<T>> index, String key) {
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        List<T> result = index.get(key.toLowerCase(Locale.ENGLISH));
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /** All the registered services */
+    Collection<Service> getServices() {
+        return services.get();
+    }
+
+    /** The services whose id matches, ignoring case, the given one */
+    List<Service> getServices(String id) {
+        return lookup(servicesById.get(), id);
+    }
+
+    /** The XML readers whose element local name matches, ignoring case, the given one */
+    List<XmlRequestReader> getXmlReaders(String element) {
+        return lookup(xmlReadersByElement.get(), element);
+    }
+
+    /** Returns the KVP reader for the given request type, computing it on first use */
+    KvpRequestReader getKvpRequestReader(
+            Class<?> type, Function<Collection<KvpRequestReader>, KvpRequestReader> finder) {
+        Optional<KvpRequestReader> reader = kvpReadersByType.get(type);
+        if (reader == null) {
+            reader = Optional.ofNullable(finder.apply(kvpReaders.get()));
+            kvpReadersByType.put(type, reader);
+        }
+        return reader.orElse(null);
+    }
+
+    /**
+     * Returns the responses whose binding can handle the result type, from the most to the least
+     * specific binding. The order of responses with the same binding, or unrelated bindings, is the
+     * extension priority one.
+     */
+    List<Response> getResponses(Class<?> resultType) {
+        return responses.get().getResponses(resultType);
+    }
+
+    /** Returns the response to use, which is a new instance for prototype beans */
+    Response instance(Response response) {
+        return responses.get().instance(response);
+    }
+
+    /** Response candidates by result type */
+    static class ResponseTable {
+
+        /** The responses, or null if they cannot be cached and must be looked up every time */
+        final List<Response> responses;
+
+        /** Bean names of the prototype responses */
+        final Map<Response, String> prototypes = new IdentityHashMap<>();
+
+        final Map<Class<?>, List<Response>> responsesByType = new ConcurrentHashMap<>();
+
+        ResponseTable() {
+            List<Response> first = GeoServerExtensions.extensions(Response.class);
+            List<Response> second = GeoServerExtensions.extensions(Response.class);
+            this.responses = findPrototypes(first, second) ? first : null;
+        }
+
+        /**
+         * Compares two lookups to find the prototype beans, which get a new instance each time.
+         * Returns false if the prototypes cannot be told apart, or the lookups are not consistent
+         */
+        boolean findPrototypes(List<Response> first, List<Response> second) {
+            if (first.size() != second.size()) {
+                return false;
+            }
+            for (int i = 0; i < first.size(); i++) {
+                Response r1 = first.get(i);
+                Response r2 = second.get(i);
+                if (r1 != r2) {
+                    String name = r1.getClass() == r2.getClass() ? prototypeName(r1) : null;
+                    if (name == null) {
+                        return false;
+                    }
+                    prototypes.put(r1, name);
+                }
+            }
+            return true;
+        }
+
+        /** The name of the only prototype bean of the same class as the response, if any */
+        static String prototypeName(Response response) {
+            String result = null;
+            for (String name : GeoServerExtensions.extensionNames(Response.class)) {
+                Object bean = GeoServerExtensions.bean(name);
+                if (bean != null
+                        && bean.getClass() == response.getClass()
+                        && bean != GeoServerExtensions.bean(name)) {
+                    if (result != null) {
+                        return null;
+                    }
+                    result = name;
+                }
+            }
+            return result;
+        }
+
+        List<Response> getResponses(Class<?> resultType) {
+            if (responses == null) {
+                return sort(filter(GeoServerExtensions.extensions(Response.class), resultType));
+            }
+            List<Response> result = responsesByType.get(resultType);
+            if (result == null) {
+                result = Collections.unmodifiableList(sort(filter(responses, resultType)));
+                responsesByType.put(resultType, result);
+            }
+            return result;
+        }
+
+        Response instance(Response response) {
+            String name = prototypes.get(response);
+            return name == null ? response : (Response) GeoServerExtensions.bean(name);
+        }
+
+        static List<Response> filter(List<Response> responses, Class<?> resultType) {
+            List<Response> result = new ArrayList<>();
+            for (Response response : responses) {
+                if (response.getBinding().isAssignableFrom(resultType)) {
+                    result.add(response);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Sorts by decreasing number of supertypes of the binding, a subclass or subinterface has
+         * more supertypes than its parents so it is sorted first. The sort is stable.
+         */
+        static List<Response> sort(List<Response> responses) {
+            if (responses.size() > 1) {
+                Map<Class<?>, Integer> depths = new HashMap<>();
+                Comparator<Response> comparator =
+                        Comparator.comparing(
+                                r ->
+                                        depths.computeIfAbsent(
+                                                r.getBinding(), c -> supertypes(c).size()));
+                responses.sort(comparator.reversed());
+            }
+            return responses;
+        }
+
+        static Set<Class<?>> supertypes(Class<?> type) {
+            Set<Class<?>> result = new HashSet<>();
+            collectSupertypes(type, result);
+            return result;
+        }
+
+        private static void collectSupertypes(Class<?> type, Set<Class<?>> result) {
+            if (type == null || !result.add(type)) {
+                return;
+            }
+            collectSupertypes(type.getSuperclass(), result);
+            for (Class<?> i : type.getInterfaces()) {
+                collectSupertypes(i, result);
+            }
+        }
+    }
+}
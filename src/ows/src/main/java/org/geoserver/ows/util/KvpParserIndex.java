@@ -0,0 +1,122 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows.util;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.geoserver.ows.KvpParser;
+import org.geoserver.platform.GeoServerExtensions;
+
+/**
+ * Case insensitive index of the registered {@link KvpParser}, keyed by service, version, request
+ * and parameter key. For each service/version/request combination the parsers are purged and
+ * matched against the parameter keys once, with the same logic as {@link
+ * KvpUtils#purgeParsers(List, String, String, String)} and {@link KvpUtils#findParser(String,
+ * String, String, String, java.util.Collection)}, and the outcome is reused by the following
+ * requests.
+ *
+ * <p>The index is discarded when the {@link GeoServerExtensions} caches are reset, e.g., on
+ * application context refresh. The number of indexed combinations is bounded, as they come from
+ * the request parameters: the least recently used ones are evicted, so that junk values sent by
+ * clients cannot take the place of the actual services and operations.
+ */
+public final class KvpParserIndex {
+
+    /** Maximum number of service/version/request combinations indexed */
+    static final int MAX_CONTEXTS = 256;
+
+    static volatile KvpParserIndex current;
+
+    /** Returns the index for the current extensions, building a new one if needed */
+    public static KvpParserIndex get() {
+        long generation = GeoServerExtensions.getGeneration();
+        KvpParserIndex index = current;
+        if (index == null || index.generation != generation) {
+            index = new KvpParserIndex(generation);
+            current = index;
+        }
+        return index;
+    }
+
+    final long generation;
+
+    final Supplier<List<KvpParser>> parsers;
+
+    final Cache<List<String>, Map<String, Object>> contexts =
+            CacheBuilder.newBuilder().maximumSize(MAX_CONTEXTS).build();
+
+    KvpParserIndex(long generation) {
+        this.generation = generation;
+        this.parsers =
+                Suppliers.memoize(
+                        () ->
+                                Collections.unmodifiableList(
+                                        GeoServerExtensions.extensions(KvpParser.class)));
+    }
+
+    /**
+     * Returns the parser for the given parameter key
+     *
+     * @param key the key matching the value to parse
+     * @param service the service parameter from the kvp (can be null)
+     * @param request the request parameter from the kvp (can be null)
+     * @param version the version parameter from the kvp (can be null)
+     * @return the found parser or null (if no parser is found)
+     * @throws IllegalStateException if more than one candidate parser is found
+     */
+    public KvpParser findParser(String key, String service, String request, String version) {
+        Object parser = getParsers(service, request, version).get(lowerCase(key));
+        if (parser instanceof IllegalStateException) {
+            throw new IllegalStateException(((IllegalStateException) parser).getMessage());
+        }
+        return (KvpParser) parser;
+    }
+
+    /**
+     * Returns the parsers, or the ambiguity errors, by lower case key for the given
+     * service/request/version
+     */
+    Map<String, Object> getParsers(String service, String request, String version) {
+        List<String> context = Arrays.asList(lowerCase(service), lowerCase(request), version);
+        Map<String, Object> result = contexts.getIfPresent(context);
+        if (result == null) {
+            result = index(service, request, version);
+            contexts.put(context, result);
+        }
+        return result;
+    }
+
+    private Map<String, Object> index(String service, String request, String version) {
+        List<KvpParser> purged = new ArrayList<>(parsers.get());
+        KvpUtils.purgeParsers(purged, service, version, request);
+
+        Map<String, Object> result = new HashMap<>();
+        for (KvpParser parser : purged) {
+            String key = lowerCase(parser.getKey());
+            if (key == null || result.containsKey(key)) {
+                continue;
+            }
+            try {
+                result.put(key, KvpUtils.findParser(key, service, request, version, purged));
+            } catch (IllegalStateException e) {
+                result.put(key, e);
+            }
+        }
+        return result;
+    }
+
+    private static String lowerCase(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ENGLISH);
+    }
+}
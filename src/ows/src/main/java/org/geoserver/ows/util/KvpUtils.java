@@ -350,7 +350,8 @@ public class KvpUtils {
      *
      * <p>Important: This method modifies the map, overriding original values with parsed values.
      *
-     * <p>This routine performs a lookup of {@link KvpParser} to parse the kvp entries.
+     * <p>This routine performs a lookup of {@link KvpParser} to parse the kvp entries, through the
+     * {@link KvpParserIndex}.
      *
      * <p>If an individual parse fails, this method saves the exception, and adds it to the list
      * that is returned.
@@ -360,15 +361,12 @@ public class KvpUtils {
      */
     public static List<Throwable> parse(Map kvp) {
 
-        // look up parser objects
-        List<KvpParser> parsers = GeoServerExtensions.extensions(KvpParser.class);
-
-        // strip out parsers which do not match current service/request/version
+        // look up the parsers matching the current service/request/version
         String service = KvpUtils.getSingleValue(kvp, "service");
         String version = KvpUtils.getSingleValue(kvp, "version");
         String request = KvpUtils.getSingleValue(kvp, "request");
 
-        purgeParsers(parsers, service, version, request);
+        KvpParserIndex parsers = KvpParserIndex.get();
 
         // parser the kvp's
         ArrayList<Throwable> errors = new ArrayList<Throwable>();
@@ -377,7 +375,7 @@ public class KvpUtils {
             String key = (String) entry.getKey();
 
             // find the parser for this key value pair
-            KvpParser parser = findParser(key, service, request, version, parsers);
+            KvpParser parser = parsers.findParser(key, service, request, version);
 
             // parse the value
             Object parsed = null;
@@ -0,0 +1,163 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geotools.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+public class DispatcherTablesTest {
+
+    StaticApplicationContext context;
+
+    @Before
+    public void setUp() {
+        context = new StaticApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+        context.close();
+    }
+
+    void refresh() {
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+    }
+
+    @Test
+    public void testResponsesSortedByBinding() {
+        context.registerSingleton("object", ObjectResponse.class);
+        context.registerSingleton("string", StringResponse.class);
+        context.registerSingleton("charSequence", CharSequenceResponse.class);
+        refresh();
+
+        List<Response> responses = DispatcherTables.get().getResponses(String.class);
+        assertEquals(3, responses.size());
+        assertEquals(String.class, responses.get(0).getBinding());
+        assertEquals(CharSequence.class, responses.get(1).getBinding());
+        assertEquals(Object.class, responses.get(2).getBinding());
+
+        responses = DispatcherTables.get().getResponses(StringBuilder.class);
+        assertEquals(2, responses.size());
+        assertEquals(CharSequence.class, responses.get(0).getBinding());
+
+        Response response = new Dispatcher().findResponse(new Request(), null, "test");
+        assertEquals(String.class, response.getBinding());
+    }
+
+    @Test
+    public void testPrototypeResponses() {
+        context.registerSingleton("object", ObjectResponse.class);
+        context.registerPrototype("string", StringResponse.class);
+        refresh();
+
+        Dispatcher dispatcher = new Dispatcher();
+        Response r1 = dispatcher.findResponse(new Request(), null, "test");
+        Response r2 = dispatcher.findResponse(new Request(), null, "test");
+        assertTrue(r1 instanceof StringResponse);
+        assertTrue(r2 instanceof StringResponse);
+        assertNotSame(r1, r2);
+
+        Response o1 = dispatcher.findResponse(new Request(), null, 10);
+        Response o2 = dispatcher.findResponse(new Request(), null, 10);
+        assertTrue(o1 instanceof ObjectResponse);
+        assertSame(o1, o2);
+    }
+
+    @Test
+    public void testServicesIgnoreCase() throws Exception {
+        Service hello = service("hello", "1.0.0");
+        context.getBeanFactory().registerSingleton("hello", hello);
+        context.getBeanFactory().registerSingleton("hello2", service("HELLO", "2.0.0"));
+        refresh();
+
+        List<Service> services = DispatcherTables.get().getServices("Hello");
+        assertEquals(2, services.size());
+        assertTrue(DispatcherTables.get().getServices("other").isEmpty());
+        assertTrue(DispatcherTables.get().getServices(null).isEmpty());
+
+        assertSame(hello, new Dispatcher().findService("HeLLo", "1.0.0", null));
+    }
+
+    @Test
+    public void testRebuiltOnContextChange() throws Exception {
+        context.getBeanFactory().registerSingleton("hello", service("hello", "1.0.0"));
+        refresh();
+        DispatcherTables tables = DispatcherTables.get();
+        assertSame(tables, DispatcherTables.get());
+        assertEquals(1, tables.getServices().size());
+        assertNull(Dispatcher.findKvpRequestReader(Message.class));
+
+        StaticApplicationContext other = new StaticApplicationContext();
+        try {
+            other.getBeanFactory().registerSingleton("hello", service("hello", "1.0.0"));
+            other.getBeanFactory().registerSingleton("world", service("world", "1.0.0"));
+            other.getBeanFactory().registerSingleton("reader", new MessageKvpRequestReader());
+            other.refresh();
+            new GeoServerExtensions().setApplicationContext(other);
+
+            assertNotSame(tables, DispatcherTables.get());
+            assertEquals(2, DispatcherTables.get().getServices().size());
+            assertTrue(
+                    Dispatcher.findKvpRequestReader(Message.class)
+                            instanceof MessageKvpRequestReader);
+        } finally {
+            other.close();
+        }
+    }
+
+    Service service(String id, String version) {
+        return new Service(id, new HelloWorld(), new Version(version), Arrays.asList("hello"));
+    }
+
+    public abstract static class TestResponse extends Response {
+
+        protected TestResponse(Class<?> binding) {
+            super(binding);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) {
+            return "text/plain";
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation) {}
+    }
+
+    public static class ObjectResponse extends TestResponse {
+        public ObjectResponse() {
+            super(Object.class);
+        }
+    }
+
+    public static class CharSequenceResponse extends TestResponse {
+        public CharSequenceResponse() {
+            super(CharSequence.class);
+        }
+    }
+
+    public static class StringResponse extends TestResponse {
+        public StringResponse() {
+            super(String.class);
+        }
+    }
+}
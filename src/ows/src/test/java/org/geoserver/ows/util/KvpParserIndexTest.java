@@ -0,0 +1,157 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.geoserver.ows.KvpParser;
+import org.geoserver.ows.kvp.BooleanKvpParser;
+import org.geoserver.ows.kvp.IntegerKvpParser;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.Version;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+public class KvpParserIndexTest {
+
+    StaticApplicationContext context;
+
+    KvpParser generic;
+
+    KvpParser wms;
+
+    KvpParser wms130;
+
+    @Before
+    public void setUp() {
+        context = new StaticApplicationContext();
+        generic = parser("width", null, null);
+        wms = parser("width", "WMS", null);
+        wms130 = parser("width", "WMS", "1.3.0");
+        register("generic", generic);
+        register("wms", wms);
+        register("wms130", wms130);
+        register("transparent", new BooleanKvpParser("transparent"));
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+    }
+
+    @After
+    public void tearDown() {
+        new GeoServerExtensions().setApplicationContext(null);
+        context.close();
+    }
+
+    KvpParser parser(String key, String service, String version) {
+        KvpParser parser = new IntegerKvpParser(key);
+        parser.setService(service);
+        if (version != null) {
+            parser.setVersion(new Version(version));
+        }
+        return parser;
+    }
+
+    void register(String name, KvpParser parser) {
+        context.getBeanFactory().registerSingleton(name, parser);
+    }
+
+    @Test
+    public void testFindParser() {
+        KvpParserIndex index = KvpParserIndex.get();
+        assertSame(generic, index.findParser("width", "WFS", "GetFeature", "2.0.0"));
+        assertSame(wms, index.findParser("WIDTH", "wms", "GetMap", "1.1.1"));
+        assertSame(wms130, index.findParser("Width", "WMS", "GetMap", "1.3.0"));
+        assertNull(index.findParser("height", "WMS", "GetMap", "1.3.0"));
+        assertTrue(index.findParser("TRANSPARENT", null, null, null) instanceof BooleanKvpParser);
+
+        // same outcome as the linear scan
+        List<KvpParser> parsers = GeoServerExtensions.extensions(KvpParser.class);
+        KvpUtils.purgeParsers(parsers, "WMS", "1.3.0", "GetMap");
+        assertSame(
+                KvpUtils.findParser("width", "WMS", "GetMap", "1.3.0", parsers),
+                index.findParser("width", "WMS", "GetMap", "1.3.0"));
+    }
+
+    @Test
+    public void testAmbiguousParsers() {
+        context.close();
+        context = new StaticApplicationContext();
+        register("wms1", parser("width", "WMS", null));
+        register("wms2", parser("width", "WMS", null));
+        context.refresh();
+        new GeoServerExtensions().setApplicationContext(context);
+
+        // the error is reported on each lookup
+        for (int i = 0; i < 2; i++) {
+            try {
+                KvpParserIndex.get().findParser("width", "WMS", "GetMap", "1.1.1");
+                fail("Should have failed, two parsers match");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().startsWith("Multiple kvp parsers"));
+            }
+        }
+    }
+
+    @Test
+    public void testRebuiltOnContextChange() {
+        KvpParserIndex index = KvpParserIndex.get();
+        assertSame(index, KvpParserIndex.get());
+
+        StaticApplicationContext other = new StaticApplicationContext();
+        try {
+            KvpParser height = parser("height", null, null);
+            other.getBeanFactory().registerSingleton("height", height);
+            other.refresh();
+            new GeoServerExtensions().setApplicationContext(other);
+
+            assertNotSame(index, KvpParserIndex.get());
+            assertSame(height, KvpParserIndex.get().findParser("height", "WMS", "GetMap", null));
+            assertNull(KvpParserIndex.get().findParser("width", "WMS", "GetMap", null));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void testBoundedContexts() {
+        KvpParserIndex index = KvpParserIndex.get();
+        for (int i = 0; i < KvpParserIndex.MAX_CONTEXTS * 2; i++) {
+            assertSame(generic, index.findParser("width", "WFS", "GetFeature", "1." + i));
+        }
+        assertTrue(index.contexts.size() <= KvpParserIndex.MAX_CONTEXTS);
+
+        // the junk versions do not prevent the actual requests from being indexed
+        assertSame(wms130, index.findParser("width", "WMS", "GetMap", "1.3.0"));
+        assertNotNull(index.contexts.getIfPresent(Arrays.asList("wms", "getmap", "1.3.0")));
+        assertTrue(index.contexts.size() <= KvpParserIndex.MAX_CONTEXTS);
+    }
+
+    @Test
+    public void testParse() {
+        Map<String, Object> kvp = new HashMap<>();
+        kvp.put("service", "WMS");
+        kvp.put("version", "1.3.0");
+        kvp.put("request", "GetMap");
+        kvp.put("width", "256");
+        kvp.put("transparent", "true");
+        kvp.put("other", "value");
+        assertTrue(KvpUtils.parse(kvp).isEmpty());
+        assertEquals(256, kvp.get("width"));
+        assertEquals(Boolean.TRUE, kvp.get("transparent"));
+        assertEquals("value", kvp.get("other"));
+    }
+}
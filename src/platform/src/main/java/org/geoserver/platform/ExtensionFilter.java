@@ -9,6 +9,9 @@ package org.geoserver.platform;
  * Pluggable extension that can be used to filter out an extension point implementation before it
  * gets returned by {@link GeoServerExtensions#extensions(Class)}
  *
+ * <p>Filters whose decisions depend on state that can change at runtime must call {@link
+ * GeoServerExtensions#extensionFiltersChanged()} when it does.
+ *
  * @author Andrea Aime - OpenGeo
  */
 public interface ExtensionFilter {
@@ -12,6 +12,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.ServletContext;
@@ -76,6 +77,9 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
     static SoftValueHashMap<Class, List<Object>> spiCache =
             new SoftValueHashMap<Class, List<Object>>(40);
 
+    /** Incremented every time the caches are reset, see {@link #getGeneration()} */
+    static final AtomicLong generation = new AtomicLong();
+
     /**
      * Flag to identify use of spring context via {@link #setApplicationContext(ApplicationContext)}
      * an enable additional consistency checks for missing extensions.
@@ -101,6 +105,25 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
         extensionsCache.clear();
         singletonBeanCache.clear();
         propertyCache.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Returns a counter that changes every time the extension caches are reset, because the
+     * application context has been set or refreshed. Classes that build their own lookup
+     * structures out of the extensions can use it to know when they have to be rebuilt.
+     */
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Increments the {@link #getGeneration() generation}, to be called when an {@link
+     * ExtensionFilter} changes its mind about the extensions it excludes, so that the lookup
+     * structures built out of the filtered extensions are rebuilt.
+     */
+    public static void extensionFiltersChanged() {
+        generation.incrementAndGet();
     }
 
     /**
@@ -332,6 +355,7 @@ public class GeoServerExtensions implements ApplicationContextAware, Application
         if (event instanceof ContextRefreshedEvent) {
             extensionsCache.clear();
             singletonBeanCache.clear();
+            generation.incrementAndGet();
         }
     }
 
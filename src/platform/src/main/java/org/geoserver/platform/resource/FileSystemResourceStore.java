@@ -24,6 +24,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geotools.util.logging.Logging;
 
 /** Implementation of ResourceStore backed by the file system. */
@@ -39,6 +40,12 @@ public class FileSystemResourceStore implements ResourceStore {
     protected static final Boolean TRACE_ENABLED =
             "true".equalsIgnoreCase(System.getProperty(GS_LOCK_TRACE));
 
+    /**
+     * Selects how file system changes are detected: {@code polling} (the default) uses {@link
+     * FileSystemWatcher}, {@code nio} uses the event driven {@link NioFileSystemWatcher}.
+     */
+    public static final String WATCHER_PROPERTY = "org.geoserver.platform.resource.watcher";
+
     /** LockProvider used to secure resources for exclusive access */
     protected LockProvider lockProvider = new NullLockProvider();
 
@@ -46,7 +53,7 @@ public class FileSystemResourceStore implements ResourceStore {
     protected File baseDirectory = null;
 
     // lazily initialized by getResourceNotificationDispatcher()
-    final AtomicReference<FileSystemWatcher> watcher = new AtomicReference<>(null);
+    final AtomicReference<ResourceNotificationDispatcher> watcher = new AtomicReference<>(null);
 
     protected FileSystemResourceStore() {
         // Used by Spring, baseDirectory set by subclass
@@ -565,18 +572,23 @@ public class FileSystemResourceStore implements ResourceStore {
 
     @Override
     public ResourceNotificationDispatcher getResourceNotificationDispatcher() {
-        FileSystemWatcher instance = this.watcher.get();
+        ResourceNotificationDispatcher instance = this.watcher.get();
         if (instance == null) {
             // lazily initialize the FileSystemWatcher in a thread contention free way,
             // creating a single instance
-            instance =
-                    watcher.updateAndGet(
-                            v ->
-                                    v == null
-                                            ? new FileSystemWatcher(
-                                                    path -> Paths.toFile(baseDirectory, path))
-                                            : v);
+            instance = watcher.updateAndGet(v -> v == null ? createWatcher() : v);
         }
         return instance;
     }
+
+    private ResourceNotificationDispatcher createWatcher() {
+        String type = GeoServerExtensions.getProperty(WATCHER_PROPERTY);
+        if ("nio".equalsIgnoreCase(type)) {
+            return new NioFileSystemWatcher(path -> Paths.toFile(baseDirectory, path));
+        }
+        if (type != null && !"polling".equalsIgnoreCase(type)) {
+            LOGGER.warning("Unknown " + WATCHER_PROPERTY + " value " + type + ", using polling");
+        }
+        return new FileSystemWatcher(path -> Paths.toFile(baseDirectory, path));
+    }
 }
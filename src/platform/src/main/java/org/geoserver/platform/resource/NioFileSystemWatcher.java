@@ -0,0 +1,820 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Event driven alternative to {@link FileSystemWatcher}, backed by a {@link WatchService}.
+ *
+ * <p>Instead of polling the watched files, the parent directory of each watched resource and, for
+ * directories, the directory itself and its sub directories (up to {@link #setDepth(int) depth}
+ * levels) are registered with the operating system. Events are coalesced per watch until no new
+ * event has been received for the {@link #setCoalesceDelay(long, TimeUnit) coalesce delay}, so
+ * that a burst of changes (e.g. a REST upload or a configuration save) results in a single
+ * notification. Should the operating system drop events ({@link
+ * java.nio.file.StandardWatchEventKinds#OVERFLOW}) only the directory that overflowed is
+ * rescanned.
+ *
+ * <p>Notifications have the same shape as the ones sent by {@link FileSystemWatcher}: a change to
+ * a watched directory is reported with the names of the children created, removed or modified,
+ * while a change deeper in the tree is reported as a modification of the child containing it.
+ *
+ * @see FileSystemResourceStore#WATCHER_PROPERTY
+ */
+public class NioFileSystemWatcher implements ResourceNotificationDispatcher, DisposableBean {
+
+    private static final Logger LOGGER = Logging.getLogger(NioFileSystemWatcher.class);
+
+    /** Statistics about the notifications sent for a watched resource */
+    public static class WatchStatistics {
+        final String path;
+
+        final long notifications;
+
+        final long events;
+
+        final long totalLatency;
+
+        final long maxLatency;
+
+        WatchStatistics(
+                String path, long notifications, long events, long totalLatency, long maxLatency) {
+            this.path = path;
+            this.notifications = notifications;
+            this.events = events;
+            this.totalLatency = totalLatency;
+            this.maxLatency = maxLatency;
+        }
+
+        /** Path of the watched resource */
+        public String getPath() {
+            return path;
+        }
+
+        /** Number of notifications sent to the listeners */
+        public long getNotifications() {
+            return notifications;
+        }
+
+        /** Number of file system events received, before coalescing */
+        public long getEvents() {
+            return events;
+        }
+
+        /**
+         * Average time, in milliseconds, between the first event of a notification being received
+         * and all the listeners having been notified.
+         */
+        public double getAverageLatency() {
+            return notifications == 0
+                    ? 0
+                    : TimeUnit.NANOSECONDS.toMicros(totalLatency) / 1000d / notifications;
+        }
+
+        /** Maximum notification latency, in milliseconds */
+        public double getMaxLatency() {
+            return TimeUnit.NANOSECONDS.toMicros(maxLatency) / 1000d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "WatchStatistics [path=%s, notifications=%,d, events=%,d, avgLatency=%.1fms, maxLatency=%.1fms]",
+                    path, notifications, events, getAverageLatency(), getMaxLatency());
+        }
+    }
+
+    /** Record of the ResourceListeners that wish to be notified of changes to a path. */
+    private class Watch {
+        /** File being watched */
+        final File file;
+
+        /** Normalized path of the file being watched */
+        final Path target;
+
+        /** Path to use during notification */
+        final String path;
+
+        final List<ResourceListener> listeners = new CopyOnWriteArrayList<>();
+
+        /** Whether the file existed when the last notification was sent */
+        boolean exists;
+
+        /** When last notification was sent, or the watch created */
+        long last;
+
+        /** Names of the directory children, null if a file is being watched */
+        Set<String> children;
+
+        /** Pending change to the watched file itself */
+        Kind pending;
+
+        /** Pending changes to the directory children, by name */
+        final Map<String, Kind> pendingChildren = new LinkedHashMap<>();
+
+        /** System.nanoTime() of the first and last pending events, 0 if none is pending */
+        long firstEvent, lastEvent;
+
+        final AtomicLong notifications = new AtomicLong();
+
+        final AtomicLong events = new AtomicLong();
+
+        final AtomicLong totalLatency = new AtomicLong();
+
+        final AtomicLong maxLatency = new AtomicLong();
+
+        Watch(File file, String path) {
+            this.file = file;
+            this.target = file.toPath().toAbsolutePath().normalize();
+            this.path = path;
+            this.exists = file.exists();
+            this.last = System.currentTimeMillis();
+            if (file.isDirectory()) {
+                this.children = list(target);
+            }
+        }
+
+        boolean isMatch(File file, String path) {
+            return this.file.equals(file) && this.path.equals(path);
+        }
+
+        /** Whether the watched file is known to exist, including the pending changes */
+        boolean seen() {
+            return pending == null ? exists : pending != Kind.ENTRY_DELETE;
+        }
+
+        boolean isPending() {
+            return firstEvent != 0;
+        }
+
+        void changed(Kind kind, long now) {
+            pending = merge(pending, kind);
+            touched(now);
+        }
+
+        void childChanged(String name, Kind kind, long now) {
+            if (children == null) {
+                children = new HashSet<>();
+            }
+            if (kind == Kind.ENTRY_CREATE) {
+                children.add(name);
+            } else if (kind == Kind.ENTRY_DELETE) {
+                children.remove(name);
+            }
+            Kind merged = merge(pendingChildren.remove(name), kind);
+            if (merged != null) {
+                pendingChildren.put(name, merged);
+            }
+            touched(now);
+        }
+
+        private void touched(long now) {
+            events.incrementAndGet();
+            if (firstEvent == 0) {
+                firstEvent = now;
+            }
+            lastEvent = now;
+        }
+
+        /** Whether the pending changes should be sent */
+        boolean isDue(long now) {
+            return isPending() && now >= dueTime();
+        }
+
+        long dueTime() {
+            return Math.min(lastEvent + coalesceDelay, firstEvent + maxDelay);
+        }
+
+        /** Turns the pending changes into a notification, or null if nothing actually changed */
+        ResourceNotification flush() {
+            final boolean existsNow = file.exists();
+            final boolean directory = children != null || file.isDirectory();
+            ResourceNotification notification = null;
+            if (!directory) {
+                Kind kind = null;
+                if (!exists && existsNow) {
+                    kind = Kind.ENTRY_CREATE;
+                } else if (exists && !existsNow) {
+                    kind = Kind.ENTRY_DELETE;
+                } else if (exists && pending != null) {
+                    kind = Kind.ENTRY_MODIFY;
+                }
+                if (kind != null) {
+                    notification = notification(kind, Collections.emptyList());
+                }
+            } else if (exists && !existsNow) {
+                // report all the children known at the last notification as removed
+                Set<String> removed = new LinkedHashSet<>(children);
+                for (Map.Entry<String, Kind> e : pendingChildren.entrySet()) {
+                    if (e.getValue() == Kind.ENTRY_CREATE) removed.remove(e.getKey());
+                    else if (e.getValue() == Kind.ENTRY_DELETE) removed.add(e.getKey());
+                }
+                children.clear();
+                notification =
+                        notification(
+                                Kind.ENTRY_DELETE,
+                                ResourceNotification.delta(
+                                        file, null, new ArrayList<>(removed), null));
+            } else if (existsNow && !pendingChildren.isEmpty()) {
+                List<String> created = new ArrayList<>();
+                List<String> removed = new ArrayList<>();
+                List<String> modified = new ArrayList<>();
+                for (Map.Entry<String, Kind> e : pendingChildren.entrySet()) {
+                    switch (e.getValue()) {
+                        case ENTRY_CREATE:
+                            created.add(e.getKey());
+                            break;
+                        case ENTRY_DELETE:
+                            removed.add(e.getKey());
+                            break;
+                        default:
+                            modified.add(e.getKey());
+                    }
+                }
+                // as in FileSystemWatcher, empty directories are not reported as created
+                Kind kind = exists ? Kind.ENTRY_MODIFY : Kind.ENTRY_CREATE;
+                notification =
+                        notification(
+                                kind,
+                                ResourceNotification.delta(file, created, removed, modified));
+            }
+            if (notification != null) {
+                this.exists = existsNow;
+            } else if (!existsNow) {
+                this.exists = false;
+            }
+            pending = null;
+            pendingChildren.clear();
+            return notification;
+        }
+
+        private ResourceNotification notification(Kind kind, List<ResourceNotification.Event> e) {
+            this.last = System.currentTimeMillis();
+            return new ResourceNotification(path, kind, last, e);
+        }
+
+        void record(long latency) {
+            notifications.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+        }
+
+        WatchStatistics getStatistics() {
+            return new WatchStatistics(
+                    path,
+                    notifications.get(),
+                    events.get(),
+                    totalLatency.get(),
+                    maxLatency.get());
+        }
+
+        @Override
+        public String toString() {
+            return "Watch [path="
+                    + path
+                    + ", file="
+                    + file
+                    + ", listeners="
+                    + listeners.size()
+                    + "]";
+        }
+    }
+
+    private static CustomizableThreadFactory tFactory;
+
+    static {
+        tFactory = new CustomizableThreadFactory("NioFileSystemWatcher-");
+        tFactory.setDaemon(true);
+    }
+
+    private final Function<String, File> fileExtractor;
+
+    private final List<Watch> watchers = new CopyOnWriteArrayList<>();
+
+    /** Registered directories, guarded by this */
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /** Active watch service, null when nothing is watched */
+    private WatchService service;
+
+    private Thread thread;
+
+    private long coalesceDelay = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private long maxDelay = TimeUnit.SECONDS.toNanos(1);
+
+    private int depth = 1;
+
+    private final AtomicLong overflows = new AtomicLong();
+
+    /**
+     * NioFileSystemWatcher used to track file changes.
+     *
+     * <p>Internally a single thread is used to receive the events, started when the first listener
+     * is added and stopped when the last one is removed.
+     */
+    NioFileSystemWatcher(Function<String, File> fileExtractor) {
+        Objects.requireNonNull(fileExtractor);
+        this.fileExtractor = fileExtractor;
+    }
+
+    NioFileSystemWatcher() {
+        this(path -> new File(path.replace('/', File.separatorChar)));
+    }
+
+    @Override
+    public synchronized void addListener(String path, ResourceListener listener) {
+        Objects.requireNonNull(path, "Path for notification is required");
+        File file = fileExtractor.apply(path);
+        Objects.requireNonNull(file, "File to watch is required");
+        Watch watch = watch(file, path);
+        if (watch == null) {
+            watch = new Watch(file, path);
+            watchers.add(watch);
+            try {
+                start();
+                arm(watch, System.nanoTime());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to watch " + file, e);
+            }
+        }
+        watch.listeners.add(listener);
+    }
+
+    @Override
+    public synchronized boolean removeListener(String path, ResourceListener listener) {
+        Objects.requireNonNull(path, "Path for notification is required");
+        File file = fileExtractor.apply(path);
+        Objects.requireNonNull(file, "File to watch is required");
+
+        Watch watch = watch(file, path);
+        boolean removed = false;
+        if (watch != null) {
+            watch.listeners.remove(listener);
+            if (watch.listeners.isEmpty()) {
+                removed = watchers.remove(watch);
+            }
+        }
+        if (removed && watchers.isEmpty()) {
+            stop(); // stop watching nobody is looking
+        }
+        return removed;
+    }
+
+    @Override
+    public void changed(ResourceNotification notification) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Sets how long to wait for further events before notifying the listeners. Notifications are
+     * never delayed for more than ten times this value, even if events keep coming.
+     */
+    public synchronized void setCoalesceDelay(long delay, TimeUnit unit) {
+        this.coalesceDelay = unit.toNanos(delay);
+        this.maxDelay = 10 * coalesceDelay;
+    }
+
+    /**
+     * Sets how many levels of sub directories are registered below a watched directory. With the
+     * default of 1 the direct children of a watched directory are registered, which matches what
+     * {@link FileSystemWatcher} detects; higher values also report changes deeper in the tree, at
+     * the cost of more operating system watches.
+     */
+    public synchronized void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must be zero or positive: " + depth);
+        }
+        this.depth = depth;
+    }
+
+    /** Statistics of the watched resources */
+    public List<WatchStatistics> getStatistics() {
+        List<WatchStatistics> result = new ArrayList<>();
+        for (Watch watch : watchers) {
+            result.add(watch.getStatistics());
+        }
+        return result;
+    }
+
+    /** Number of times the operating system reported lost events */
+    public long getOverflowCount() {
+        return overflows.get();
+    }
+
+    /** Number of directories registered with the operating system */
+    public synchronized int getRegisteredDirectoryCount() {
+        return keys.size();
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        watchers.clear();
+        stop();
+    }
+
+    private Watch watch(File file, String path) {
+        for (Watch watch : watchers) {
+            if (watch.isMatch(file, path)) {
+                return watch;
+            }
+        }
+        return null; // not found
+    }
+
+    private void start() throws IOException {
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            final WatchService ws = service;
+            thread = tFactory.newThread(() -> run(ws));
+            thread.start();
+        }
+    }
+
+    private void stop() {
+        if (service != null) {
+            try {
+                service.close(); // cancels all keys and ends the event loop
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error closing watch service", e);
+            }
+            service = null;
+            thread = null;
+            keys.clear();
+            directories.clear();
+        }
+    }
+
+    /** Event loop, running until the watch service gets closed */
+    private void run(WatchService ws) {
+        try {
+            while (true) {
+                long timeout = nextFlush();
+                WatchKey key =
+                        timeout == Long.MAX_VALUE
+                                ? ws.take()
+                                : ws.poll(timeout, TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    if (ws != service) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    while (key != null) {
+                        process(key, now);
+                        key = ws.poll();
+                    }
+                    flush(System.nanoTime());
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            LOGGER.fine("Stopped watching the file system");
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "File system watcher stopped unexpectedly", e);
+        }
+    }
+
+    /** Nanoseconds until the next notification is due, Long.MAX_VALUE if none is pending */
+    private synchronized long nextFlush() {
+        long next = Long.MAX_VALUE;
+        for (Watch watch : watchers) {
+            if (watch.isPending()) {
+                next = Math.min(next, watch.dueTime());
+            }
+        }
+        return next == Long.MAX_VALUE ? next : Math.max(1, next - System.nanoTime());
+    }
+
+    private void process(WatchKey key, long now) {
+        Path dir = directories.get(key);
+        boolean matched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                continue;
+            }
+            if (event.kind() == OVERFLOW) {
+                overflows.incrementAndGet();
+                LOGGER.fine("Events lost for " + dir + ", rescanning it");
+                matched |= rescan(dir, now);
+            } else {
+                Path child = dir.resolve((Path) event.context());
+                matched |= dispatch(dir, child, kind(event.kind()), now);
+            }
+        }
+        if (dir == null || !key.reset()) {
+            // directory removed, the parent directory events will have been dispatched
+            forget(key);
+        } else if (!matched && !isNeeded(dir)) {
+            key.cancel();
+            forget(key);
+        }
+    }
+
+    /** Routes a single event to the interested watches, returns whether there was any */
+    private boolean dispatch(Path dir, Path child, Kind kind, long now) {
+        boolean matched = false;
+        for (Watch watch : watchers) {
+            final Path target = watch.target;
+            if (child.equals(target)) {
+                matched = true;
+                if (kind == Kind.ENTRY_DELETE) {
+                    watch.changed(Kind.ENTRY_DELETE, now);
+                } else if (kind == Kind.ENTRY_CREATE) {
+                    arm(watch, now);
+                } else if (watch.children == null) {
+                    // directory modification times are reported through their children
+                    watch.changed(Kind.ENTRY_MODIFY, now);
+                }
+            } else if (dir.equals(target)) {
+                matched = true;
+                watch.childChanged(child.getFileName().toString(), kind, now);
+                if (kind == Kind.ENTRY_CREATE && depth > 0) {
+                    registerTree(child, depth - 1);
+                }
+            } else if (dir.startsWith(target)) {
+                Path relative = target.relativize(dir);
+                int level = relative.getNameCount();
+                if (level <= depth) {
+                    matched = true;
+                    watch.childChanged(relative.getName(0).toString(), Kind.ENTRY_MODIFY, now);
+                    if (kind == Kind.ENTRY_CREATE && level < depth) {
+                        registerTree(child, depth - level - 1);
+                    }
+                }
+            } else if (target.startsWith(child)) {
+                // a directory on the way to the watched file was created or removed
+                matched = true;
+                if (kind == Kind.ENTRY_DELETE && watch.seen()) {
+                    watch.changed(Kind.ENTRY_DELETE, now);
+                }
+                arm(watch, now);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Compares the contents of a directory the operating system lost events for with what the
+     * watches last saw, returns whether any watch is interested in it.
+     */
+    private boolean rescan(Path dir, long now) {
+        boolean matched = false;
+        for (Watch watch : watchers) {
+            final Path target = watch.target;
+            if (dir.equals(target)) {
+                matched = true;
+                Set<String> current = list(dir);
+                Set<String> known =
+                        watch.children == null
+                                ? Collections.emptySet()
+                                : new HashSet<>(watch.children);
+                for (String name : current) {
+                    if (!known.contains(name)) {
+                        watch.childChanged(name, Kind.ENTRY_CREATE, now);
+                    } else if (dir.resolve(name).toFile().lastModified() > watch.last) {
+                        watch.childChanged(name, Kind.ENTRY_MODIFY, now);
+                    }
+                }
+                for (String name : known) {
+                    if (!current.contains(name)) {
+                        watch.childChanged(name, Kind.ENTRY_DELETE, now);
+                    }
+                }
+                registerTree(dir, depth);
+            } else if (target.startsWith(dir)) {
+                matched = true;
+                boolean existsNow = watch.file.exists();
+                if (watch.seen() && !existsNow) {
+                    watch.changed(Kind.ENTRY_DELETE, now);
+                } else if (existsNow
+                        && watch.children == null
+                        && watch.file.lastModified() > watch.last) {
+                    watch.changed(Kind.ENTRY_MODIFY, now);
+                }
+                arm(watch, now);
+            } else if (dir.startsWith(target)) {
+                Path relative = target.relativize(dir);
+                int level = relative.getNameCount();
+                if (level <= depth) {
+                    matched = true;
+                    watch.childChanged(relative.getName(0).toString(), Kind.ENTRY_MODIFY, now);
+                    registerTree(dir, depth - level);
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Registers the directories needed to follow a watch: the parent of the watched file (or its
+     * closest existing ancestor) and, for directories, the directory tree itself.
+     */
+    private void arm(Watch watch, long now) {
+        Path parent = watch.target.getParent();
+        while (parent != null && !Files.isDirectory(parent)) {
+            parent = parent.getParent();
+        }
+        if (parent != null) {
+            register(parent);
+        }
+        if (watch.file.exists()) {
+            boolean directory = watch.file.isDirectory();
+            if (directory) {
+                registerTree(watch.target, depth);
+            }
+            if (!watch.seen()) {
+                watch.changed(Kind.ENTRY_CREATE, now);
+                if (directory) {
+                    // contents created before the registration took place
+                    for (String name : list(watch.target)) {
+                        watch.childChanged(name, Kind.ENTRY_CREATE, now);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Whether any watch still needs events about the given directory */
+    private boolean isNeeded(Path dir) {
+        for (Watch watch : watchers) {
+            Path target = watch.target;
+            if (target.startsWith(dir)) {
+                return true;
+            }
+            if (dir.startsWith(target) && target.relativize(dir).getNameCount() <= depth) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void registerTree(Path root, int levels) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try {
+            Files.walkFileTree(
+                    root,
+                    EnumSet.noneOf(FileVisitOption.class),
+                    levels + 1,
+                    new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(
+                                Path dir, BasicFileAttributes attrs) {
+                            register(dir);
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException e) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to register " + root, e);
+        }
+    }
+
+    private void register(Path dir) {
+        if (service == null || keys.containsKey(dir)) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            keys.put(dir, key);
+            directories.put(key, dir);
+        } catch (IOException e) {
+            // removed in the meantime, the parent directory events will tell
+            LOGGER.log(Level.FINE, "Unable to register " + dir, e);
+        }
+    }
+
+    private void forget(WatchKey key) {
+        Path dir = directories.remove(key);
+        if (dir != null) {
+            keys.remove(dir);
+        }
+    }
+
+    /** Sends the due notifications */
+    private void flush(long now) {
+        for (Watch watch : watchers) {
+            if (watch.isDue(now)) {
+                final long first = watch.firstEvent;
+                watch.firstEvent = watch.lastEvent = 0;
+                ResourceNotification notification = watch.flush();
+                if (notification != null) {
+                    notify(watch, notification, first);
+                }
+            }
+        }
+    }
+
+    private void notify(Watch watch, ResourceNotification notification, long first) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(
+                    String.format(
+                            "Notifying %s change on %s. Events: %,d",
+                            notification.getKind(),
+                            watch.file,
+                            notification.events().size()));
+        }
+        // do not call listeners on the watch thread, they may take a
+        // considerable amount of time to process the events
+        CompletableFuture.runAsync(
+                () -> {
+                    for (ResourceListener listener : watch.listeners) {
+                        try {
+                            listener.changed(notification);
+                        } catch (Throwable t) {
+                            Logger logger =
+                                    Logger.getLogger(listener.getClass().getPackage().getName());
+                            logger.log(
+                                    Level.FINE,
+                                    "Unable to notify " + watch + ":" + t.getMessage(),
+                                    t);
+                        }
+                    }
+                    watch.record(System.nanoTime() - first);
+                });
+    }
+
+    private static Set<String> list(Path dir) {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                names.add(child.getFileName().toString());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unable to list " + dir, e);
+        }
+        return names;
+    }
+
+    private static Kind kind(WatchEvent.Kind<?> kind) {
+        if (kind == ENTRY_CREATE) return Kind.ENTRY_CREATE;
+        if (kind == ENTRY_DELETE) return Kind.ENTRY_DELETE;
+        return Kind.ENTRY_MODIFY;
+    }
+
+    /** Coalesces two consecutive changes of the same file, null if they cancel each other */
+    static Kind merge(Kind previous, Kind kind) {
+        if (previous == null || previous == kind) {
+            return kind;
+        }
+        switch (previous) {
+            case ENTRY_CREATE:
+                // created and then removed, nothing to report
+                return kind == Kind.ENTRY_DELETE ? null : Kind.ENTRY_CREATE;
+            case ENTRY_DELETE:
+                // removed and then created again
+                return Kind.ENTRY_MODIFY;
+            default:
+                return kind == Kind.ENTRY_DELETE ? Kind.ENTRY_DELETE : Kind.ENTRY_MODIFY;
+        }
+    }
+}
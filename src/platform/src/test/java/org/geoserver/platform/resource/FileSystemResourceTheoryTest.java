@@ -42,6 +42,7 @@ import org.junit.experimental.theories.DataPoints;
 import org.junit.function.ThrowingRunnable;
 import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
+import org.springframework.beans.factory.DisposableBean;
 
 public class FileSystemResourceTheoryTest extends ResourceTheoryTest {
 
@@ -83,8 +84,8 @@ public class FileSystemResourceTheoryTest extends ResourceTheoryTest {
 
     @After
     public void after() throws Exception {
-        if (store != null && store.watcher.get() != null) {
-            store.watcher.get().destroy();
+        if (store != null && store.watcher.get() instanceof DisposableBean) {
+            ((DisposableBean) store.watcher.get()).destroy();
         }
     }
 
@@ -0,0 +1,208 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.awaitility.Awaitility;
+import org.geoserver.platform.resource.ResourceNotification.Event;
+import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NioFileSystemWatcherTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    NioFileSystemWatcher watcher;
+
+    List<ResourceNotification> notifications = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        folder.newFile("FileA");
+        File c = folder.newFolder("DirC");
+        new File(c, "FileD").createNewFile();
+        folder.newFolder("DirC", "DirE");
+        watcher = new NioFileSystemWatcher(path -> Paths.toFile(folder.getRoot(), path));
+        watcher.setCoalesceDelay(50, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.destroy();
+    }
+
+    /**
+     * Whether the platform watch service is backed by native events, rather than polling the
+     * directories every few seconds (e.g., on macOS)
+     */
+    private static boolean isNativeWatchService() throws IOException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            return !service.getClass().getName().endsWith("PollingWatchService");
+        }
+    }
+
+    private ResourceNotification await() {
+        // long enough for the polling watch services, which check the directories every 10s
+        Awaitility.await()
+                .pollInterval(5, TimeUnit.MILLISECONDS)
+                .atMost(30, TimeUnit.SECONDS)
+                .until(() -> !notifications.isEmpty());
+        return notifications.remove(0);
+    }
+
+    @Test
+    public void testFileEvents() throws Exception {
+        File fileD = new File(folder.getRoot(), "DirC/FileD");
+        watcher.addListener("DirC/FileD", notifications::add);
+
+        java.nio.file.Files.write(fileD.toPath(), "changed".getBytes());
+        ResourceNotification n = await();
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        assertEquals("DirC/FileD", n.getPath());
+        assertTrue(n.events().isEmpty());
+
+        assertTrue(fileD.delete());
+        n = await();
+        assertEquals(Kind.ENTRY_DELETE, n.getKind());
+
+        assertTrue(fileD.createNewFile());
+        n = await();
+        assertEquals(Kind.ENTRY_CREATE, n.getKind());
+    }
+
+    @Test
+    public void testDirectoryEvents() throws Exception {
+        watcher.addListener("DirC", notifications::add);
+
+        new File(folder.getRoot(), "DirC/FileF").createNewFile();
+        ResourceNotification n = await();
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        assertEquals("DirC", n.getPath());
+        assertEquals(1, n.events().size());
+        Event e = n.events().get(0);
+        assertEquals(Kind.ENTRY_CREATE, e.getKind());
+        assertEquals("FileF", e.getPath());
+
+        assertTrue(new File(folder.getRoot(), "DirC/FileD").delete());
+        n = await();
+        e = n.events().get(0);
+        assertEquals(Kind.ENTRY_DELETE, e.getKind());
+        assertEquals("FileD", e.getPath());
+    }
+
+    @Test
+    public void testNestedChangeReportedAsChildModification() throws Exception {
+        watcher.addListener("DirC", notifications::add);
+
+        new File(folder.getRoot(), "DirC/DirE/FileG").createNewFile();
+        ResourceNotification n = await();
+        assertEquals(Kind.ENTRY_MODIFY, n.getKind());
+        assertEquals(1, n.events().size());
+        Event e = n.events().get(0);
+        assertEquals(Kind.ENTRY_MODIFY, e.getKind());
+        assertEquals("DirE", e.getPath());
+    }
+
+    @Test
+    public void testBurstCoalesced() throws Exception {
+        // a polling watch service might report the burst across two polls
+        assumeTrue(isNativeWatchService());
+        watcher.setCoalesceDelay(200, TimeUnit.MILLISECONDS);
+        watcher.addListener("DirC", notifications::add);
+
+        File dir = new File(folder.getRoot(), "DirC");
+        for (int i = 0; i < 20; i++) {
+            new File(dir, "File" + i).createNewFile();
+        }
+        // created and removed before the notification, not reported
+        File temp = new File(dir, "temp");
+        temp.createNewFile();
+        temp.delete();
+
+        ResourceNotification n = await();
+        Set<String> created = new HashSet<>();
+        for (Event e : n.events()) {
+            assertEquals(Kind.ENTRY_CREATE, e.getKind());
+            created.add(e.getPath());
+        }
+        assertEquals(20, created.size());
+
+        Thread.sleep(300);
+        assertTrue(notifications.isEmpty());
+        assertEquals(1, watcher.getStatistics().get(0).getNotifications());
+    }
+
+    @Test
+    public void testDirectoryCreateEventWithContents() throws Exception {
+        File watchedDir = new File(folder.getRoot(), "NewDir/Nested");
+        watcher.addListener("NewDir/Nested", notifications::add);
+
+        assertTrue(watchedDir.mkdirs());
+        new File(watchedDir, "FileA").createNewFile();
+
+        ResourceNotification n = await();
+        assertEquals("NewDir/Nested", n.getPath());
+        assertEquals(Kind.ENTRY_CREATE, n.getKind());
+        assertEquals(1, n.events().size());
+        assertEquals("FileA", n.events().get(0).getPath());
+        assertEquals(Kind.ENTRY_CREATE, n.events().get(0).getKind());
+    }
+
+    @Test
+    public void testRemoveListener() throws Exception {
+        ResourceListener listener = notifications::add;
+        watcher.addListener("DirC", listener);
+        assertTrue(watcher.getRegisteredDirectoryCount() > 0);
+
+        assertTrue(watcher.removeListener("DirC", listener));
+        assertEquals(0, watcher.getRegisteredDirectoryCount());
+        assertTrue(watcher.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testMerge() {
+        assertEquals(Kind.ENTRY_CREATE, NioFileSystemWatcher.merge(null, Kind.ENTRY_CREATE));
+        assertEquals(
+                Kind.ENTRY_CREATE,
+                NioFileSystemWatcher.merge(Kind.ENTRY_CREATE, Kind.ENTRY_MODIFY));
+        assertNull(NioFileSystemWatcher.merge(Kind.ENTRY_CREATE, Kind.ENTRY_DELETE));
+        assertEquals(
+                Kind.ENTRY_MODIFY,
+                NioFileSystemWatcher.merge(Kind.ENTRY_DELETE, Kind.ENTRY_CREATE));
+        assertEquals(
+                Kind.ENTRY_DELETE,
+                NioFileSystemWatcher.merge(Kind.ENTRY_MODIFY, Kind.ENTRY_DELETE));
+    }
+
+    @Test
+    public void testSelectedByStore() throws Exception {
+        System.setProperty(FileSystemResourceStore.WATCHER_PROPERTY, "nio");
+        try {
+            FileSystemResourceStore store = new FileSystemResourceStore(folder.getRoot());
+            ResourceNotificationDispatcher dispatcher = store.getResourceNotificationDispatcher();
+            assertTrue(dispatcher instanceof NioFileSystemWatcher);
+            ((NioFileSystemWatcher) dispatcher).destroy();
+        } finally {
+            System.clearProperty(FileSystemResourceStore.WATCHER_PROPERTY);
+        }
+    }
+}
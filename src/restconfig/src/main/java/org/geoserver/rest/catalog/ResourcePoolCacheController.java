@@ -0,0 +1,65 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest.catalog;
+
+import com.thoughtworks.xstream.XStream;
+import java.lang.reflect.Type;
+import java.util.List;
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.CacheStatisticsProvider;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.ResourcePoolCaches;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.rest.converters.XStreamMessageConverter;
+import org.geoserver.rest.wrapper.RestWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Reports the statistics of the catalog resource pool caches, followed by the ones of the {@link
+ * CacheStatisticsProvider} extensions
+ */
+@RestController
+@RequestMapping(
+    path = RestBaseController.ROOT_PATH + "/about/resourcepool",
+    produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE}
+)
+public class ResourcePoolCacheController extends RestBaseController {
+
+    Catalog catalog;
+
+    @Autowired
+    public ResourcePoolCacheController(@Qualifier("catalog") Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @GetMapping
+    protected RestWrapper<CacheStatistics> cachesGet() {
+        List<CacheStatistics> caches = ResourcePoolCaches.getCacheStatistics(catalog);
+        return wrapList(caches, CacheStatistics.class);
+    }
+
+    @Override
+    public void configurePersister(XStreamPersister persister, XStreamMessageConverter converter) {
+        XStream xs = persister.getXStream();
+        xs.alias("caches", List.class);
+        xs.alias("cache", CacheStatistics.class);
+    }
+
+    @Override
+    public boolean supports(
+            MethodParameter methodParameter,
+            Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType) {
+        return CacheStatistics.class.isAssignableFrom(methodParameter.getParameterType());
+    }
+}
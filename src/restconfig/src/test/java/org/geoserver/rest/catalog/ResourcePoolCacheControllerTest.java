@@ -0,0 +1,68 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.rest.catalog;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathExists;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.ResourcePoolCaches;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.rest.RestBaseController;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class ResourcePoolCacheControllerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testGetCachesXML() throws Exception {
+        StyleInfo style = getCatalog().getStyleByName(StyleInfo.DEFAULT_POINT);
+        getCatalog().getResourcePool().getStyle(style);
+
+        Document dom = getAsDOM(RestBaseController.ROOT_PATH + "/about/resourcepool.xml");
+        assertXpathExists("/caches/cache[name='dataStores']", dom);
+        assertXpathExists("/caches/cache[name='featureTypes']/maximumSize", dom);
+        assertXpathEvaluatesTo("1", "count(/caches/cache[name='styles'])", dom);
+    }
+
+    @Test
+    public void testGetCachesJSON() throws Exception {
+        StyleInfo style = getCatalog().getStyleByName(StyleInfo.DEFAULT_POINT);
+        getCatalog().getResourcePool().getStyle(style);
+
+        JSON json = getAsJSON(RestBaseController.ROOT_PATH + "/about/resourcepool.json");
+        JSONArray caches = ((JSONObject) json).getJSONObject("caches").getJSONArray("cache");
+        Map<String, JSONObject> byName = new HashMap<>();
+        for (int i = 0; i < caches.size(); i++) {
+            JSONObject cache = caches.getJSONObject(i);
+            byName.put(cache.getString("name"), cache);
+        }
+
+        // every cache is reported once, under its own name
+        assertEquals(caches.size(), byName.size());
+        for (CacheStatistics expected : getCatalog().getResourcePool().getCacheStatistics()) {
+            JSONObject cache = byName.get(expected.getName());
+            assertNotNull(expected.getName(), cache);
+            assertEquals(expected.getMaximumSize(), cache.getLong("maximumSize"));
+        }
+        // along with the ones of the other modules caches
+        assertEquals(ResourcePoolCaches.getCacheStatistics(getCatalog()).size(), byName.size());
+        assertTrue(byName.containsKey("coverageHintReaders"));
+
+        JSONObject styles = byName.get("styles");
+        assertTrue(styles.getLong("maximumSize") > 0);
+        assertTrue(styles.getLong("size") >= 1);
+        assertTrue(styles.getLong("size") <= styles.getLong("maximumSize"));
+    }
+}
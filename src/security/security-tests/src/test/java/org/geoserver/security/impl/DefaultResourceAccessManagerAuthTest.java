@@ -5,14 +5,29 @@
  */
 package org.geoserver.security.impl;
 
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.impl.CatalogModifyEventImpl;
 import org.geoserver.security.AccessMode;
 import org.geoserver.security.CatalogMode;
 import org.geoserver.security.DataAccessLimits;
@@ -23,7 +38,9 @@ import org.geoserver.security.WorkspaceAccessLimits;
 import org.junit.Before;
 import org.junit.Test;
 import org.opengis.filter.Filter;
+import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationTest {
 
@@ -313,6 +330,80 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         assertTrue(canAccess(manager, milUser, arcGridLayer, AccessMode.READ));
     }
 
+    @Test
+    public void testDecisionsSharedByRoleSet() throws Exception {
+        DefaultResourceAccessManager manager = buildAccessManager("complex.properties");
+        assertTrue(canAccess(manager, roUser, statesLayer, AccessMode.READ));
+        long cached = manager.decisions.size();
+        assertTrue(cached > 0);
+
+        // another user with the same roles gets the same decisions
+        Authentication otherReader =
+                new TestingAuthenticationToken(
+                        "ro2",
+                        "secret",
+                        Arrays.asList(new GrantedAuthority[] {new GeoServerRole("READER")}));
+        assertTrue(canAccess(manager, otherReader, statesLayer, AccessMode.READ));
+        assertEquals(cached, manager.decisions.size());
+
+        // different roles, different decisions
+        assertFalse(canAccess(manager, anonymous, statesLayer, AccessMode.READ));
+        assertTrue(manager.decisions.size() > cached);
+    }
+
+    @Test
+    public void testDecisionsInvalidatedOnRuleChange() throws Exception {
+        Properties props = new Properties();
+        props.load(getClass().getResourceAsStream("complex.properties"));
+        DataAccessRuleDAO dao =
+                new DataAccessRuleDAO(catalog, null) {
+                    @Override
+                    protected void checkPropertyFile(boolean force) {
+                        // rules are modified in memory only
+                    }
+                };
+        dao.loadRules(props);
+        DefaultResourceAccessManager manager = new DefaultResourceAccessManager(dao, catalog);
+        assertFalse(canAccess(manager, anonymous, statesLayer, AccessMode.READ));
+
+        // drop the states specific rule, the topp one (everybody can read) applies
+        dao.removeRule(new DataAccessRule("topp", "states", AccessMode.READ));
+        assertTrue(canAccess(manager, anonymous, statesLayer, AccessMode.READ));
+    }
+
+    @Test
+    public void testDecisionsInvalidatedOnCatalogChange() throws Exception {
+        DefaultResourceAccessManager manager = buildAccessManager("complex.properties");
+        assertTrue(canAccess(manager, roUser, statesLayer, AccessMode.READ));
+        assertTrue(manager.decisions.size() > 0);
+
+        manager.new DecisionsInvalidator().handleModifyEvent(new CatalogModifyEventImpl());
+        assertEquals(0, manager.decisions.size());
+    }
+
+    @Test
+    public void testDestroyRemovesInvalidator() throws Exception {
+        Catalog rawCatalog = createNiceMock(Catalog.class);
+        expect(rawCatalog.getLayerGroups()).andReturn(Collections.emptyList()).anyTimes();
+        Capture<CatalogListener> added = newCapture(CaptureType.ALL);
+        rawCatalog.addListener(capture(added));
+        expectLastCall().anyTimes();
+        Capture<CatalogListener> removed = newCapture();
+        rawCatalog.removeListener(capture(removed));
+        expectLastCall().once();
+        replay(rawCatalog);
+
+        Properties props = new Properties();
+        props.load(getClass().getResourceAsStream("wideOpen.properties"));
+        DefaultResourceAccessManager manager =
+                new DefaultResourceAccessManager(
+                        new MemoryDataAccessRuleDAO(catalog, props), rawCatalog);
+        assertTrue(added.getValues().contains(manager.invalidator));
+
+        manager.destroy();
+        assertSame(manager.invalidator, removed.getValue());
+    }
+
     private boolean canAccess(
             ResourceAccessManager manager,
             Authentication user,
@@ -322,6 +413,29 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         return canAccess(mode, limits);
     }
 
+    @Test
+    public void testDestroyRemovesInvalidator() throws Exception {
+        Catalog rawCatalog = createNiceMock(Catalog.class);
+        expect(rawCatalog.getLayerGroups()).andReturn(Collections.emptyList()).anyTimes();
+        Capture<CatalogListener> added = newCapture(CaptureType.ALL);
+        rawCatalog.addListener(capture(added));
+        expectLastCall().anyTimes();
+        Capture<CatalogListener> removed = newCapture();
+        rawCatalog.removeListener(capture(removed));
+        expectLastCall().once();
+        replay(rawCatalog);
+
+        Properties props = new Properties();
+        props.load(getClass().getResourceAsStream("wideOpen.properties"));
+        DefaultResourceAccessManager manager =
+                new DefaultResourceAccessManager(
+                        new MemoryDataAccessRuleDAO(catalog, props), rawCatalog);
+        assertTrue(added.getValues().contains(manager.invalidator));
+
+        manager.destroy();
+        assertSame(manager.invalidator, removed.getValue());
+    }
+
     private boolean canAccess(
             ResourceAccessManager manager,
             Authentication user,
@@ -347,6 +461,29 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         }
     }
 
+    @Test
+    public void testDestroyRemovesInvalidator() throws Exception {
+        Catalog rawCatalog = createNiceMock(Catalog.class);
+        expect(rawCatalog.getLayerGroups()).andReturn(Collections.emptyList()).anyTimes();
+        Capture<CatalogListener> added = newCapture(CaptureType.ALL);
+        rawCatalog.addListener(capture(added));
+        expectLastCall().anyTimes();
+        Capture<CatalogListener> removed = newCapture();
+        rawCatalog.removeListener(capture(removed));
+        expectLastCall().once();
+        replay(rawCatalog);
+
+        Properties props = new Properties();
+        props.load(getClass().getResourceAsStream("wideOpen.properties"));
+        DefaultResourceAccessManager manager =
+                new DefaultResourceAccessManager(
+                        new MemoryDataAccessRuleDAO(catalog, props), rawCatalog);
+        assertTrue(added.getValues().contains(manager.invalidator));
+
+        manager.destroy();
+        assertSame(manager.invalidator, removed.getValue());
+    }
+
     private boolean canAccess(
             ResourceAccessManager manager,
             Authentication user,
@@ -356,6 +493,29 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         return canAccess(mode, limits);
     }
 
+    @Test
+    public void testDestroyRemovesInvalidator() throws Exception {
+        Catalog rawCatalog = createNiceMock(Catalog.class);
+        expect(rawCatalog.getLayerGroups()).andReturn(Collections.emptyList()).anyTimes();
+        Capture<CatalogListener> added = newCapture(CaptureType.ALL);
+        rawCatalog.addListener(capture(added));
+        expectLastCall().anyTimes();
+        Capture<CatalogListener> removed = newCapture();
+        rawCatalog.removeListener(capture(removed));
+        expectLastCall().once();
+        replay(rawCatalog);
+
+        Properties props = new Properties();
+        props.load(getClass().getResourceAsStream("wideOpen.properties"));
+        DefaultResourceAccessManager manager =
+                new DefaultResourceAccessManager(
+                        new MemoryDataAccessRuleDAO(catalog, props), rawCatalog);
+        assertTrue(added.getValues().contains(manager.invalidator));
+
+        manager.destroy();
+        assertSame(manager.invalidator, removed.getValue());
+    }
+
     private boolean canAccess(
             ResourceAccessManager manager,
             Authentication user,
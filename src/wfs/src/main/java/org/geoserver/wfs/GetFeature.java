@@ -137,6 +137,15 @@ public class GetFeature {
     static final String GET_FEATURE_BY_ID =
             "http://www.opengis.net/def/query/OGC-WFS/0/GetFeatureById";
 
+    /**
+     * Feature type metadata key naming the unique, indexed attribute used for keyset paging, see
+     * {@link KeysetPaging}
+     */
+    public static final String KEYSET_PAGING_ATTRIBUTE = "keysetPagingAttribute";
+
+    /** Vendor parameter carrying the key of the last feature of the previous page */
+    public static final String SEEK_AFTER = "seekAfter";
+
     /** Standard logging instance for class */
     private static final Logger LOGGER =
             org.geotools.util.logging.Logging.getLogger("org.vfny.geoserver.requests");
@@ -376,6 +385,10 @@ public class GetFeature {
 
         List results = new ArrayList();
         final List<CountExecutor> totalCountExecutors = new ArrayList<CountExecutor>();
+        final TotalCountCalculator totalCountCalculator =
+                new TotalCountCalculator(totalCountExecutors);
+        KeysetPaging keyset = null;
+        String seekAfter = null;
         try {
             for (int i = 0; (i < queries.size()) && (count < maxFeatures); i++) {
 
@@ -642,6 +655,16 @@ public class GetFeature {
                                     primaryTypeName,
                                     primaryAlias);
 
+                    // keyset paging, only for single type requests returning results
+                    if (queries.size() == 1 && metas.size() == 1 && !request.isResultTypeHits()) {
+                        keyset =
+                                KeysetPaging.get(
+                                        meta, query.getSortBy(), getSeekAfter(request), request);
+                        if (keyset != null) {
+                            gtQuery = keyset.apply(gtQuery);
+                        }
+                    }
+
                     if (LOGGER.isLoggable(Level.FINE)) {
                         LOGGER.fine("Query is " + query + "\n To gt2: " + gtQuery);
                     }
@@ -660,9 +683,16 @@ public class GetFeature {
                         }
                         gtQuery = context.getQuery();
                     }
+                    if (keyset != null) {
+                        keyset.setPage(source, gtQuery);
+                    }
 
                     FeatureCollection<? extends FeatureType, ? extends Feature> features =
                             getFeatures(request, source, gtQuery);
+                    if (keyset != null) {
+                        // small pages are read right away, providing the key of the last feature
+                        features = keyset.read(features, queryMaxFeatures);
+                    }
 
                     // For complex features, we need the targetCrs and version in scenario where we
                     // have
@@ -695,34 +725,9 @@ public class GetFeature {
                     // update the count
                     count += size;
 
-                    // collect queries required to return numberMatched/totalSize
-                    // check maxFeatures and offset, if they are unset we can use the size we
-                    // calculated above
-                    isNumberMatchedSkipped =
-                            meta.getSkipNumberMatched() && !request.isResultTypeHits();
-                    if (!isNumberMatchedSkipped) {
-                        if (calculateSize
-                                && (queryMaxFeatures == Integer.MAX_VALUE
-                                        || size < queryMaxFeatures)
-                                && offset <= 0) {
-                            totalCountExecutors.add(new CountExecutor(size));
-                        } else {
-                            org.geotools.data.Query qTotal =
-                                    toDataQuery(
-                                            query,
-                                            filter,
-                                            0,
-                                            Integer.MAX_VALUE,
-                                            source,
-                                            request,
-                                            allPropNames.get(0),
-                                            viewParam,
-                                            joins,
-                                            primaryTypeName,
-                                            primaryAlias);
-                            totalCountExecutors.add(new CountExecutor(source, qTotal));
-                        }
-                    }
+                    int queryOffset = offset;
+                    // size of the query without offset, if computed below
+                    int unpagedSize = -1;
 
                     // if offset is present we need to check the size of this returned feature
                     // collection
@@ -751,6 +756,7 @@ public class GetFeature {
 
                             // int size2 = getFeatures(request, source, q2).size();
                             int size2 = source.getCount(q2);
+                            unpagedSize = size2;
                             if (size2 > 0) {
                                 // adjust the offset for the next query
                                 offset = Math.max(0, offset - size2);
@@ -758,6 +764,39 @@ public class GetFeature {
                         }
                     }
 
+                    // collect queries required to return numberMatched/totalSize
+                    // check maxFeatures and offset, if they are unset we can use the size we
+                    // calculated above, or the one calculated to adjust the offset
+                    isNumberMatchedSkipped =
+                            meta.getSkipNumberMatched() && !request.isResultTypeHits();
+                    if (!isNumberMatchedSkipped) {
+                        if (calculateSize
+                                && (queryMaxFeatures == Integer.MAX_VALUE
+                                        || size < queryMaxFeatures)
+                                && queryOffset <= 0) {
+                            totalCountExecutors.add(new CountExecutor(size));
+                        } else if (unpagedSize >= 0
+                                && (queryMaxFeatures == Integer.MAX_VALUE
+                                        || unpagedSize < queryMaxFeatures)) {
+                            totalCountExecutors.add(new CountExecutor(unpagedSize));
+                        } else {
+                            org.geotools.data.Query qTotal =
+                                    toDataQuery(
+                                            query,
+                                            filter,
+                                            0,
+                                            Integer.MAX_VALUE,
+                                            source,
+                                            request,
+                                            allPropNames.get(0),
+                                            viewParam,
+                                            joins,
+                                            primaryTypeName,
+                                            primaryAlias);
+                            totalCountExecutors.add(new CountExecutor(source, qTotal));
+                        }
+                    }
+
                     // we may need to shave off geometries we did load only to make bounds
                     // computation happy
                     // TODO: support non-SimpleFeature geometry shaving
@@ -807,8 +846,8 @@ public class GetFeature {
                 // optimization: if count < max features then total count == count
                 // can't use this optimization for v2
                 totalCount = BigInteger.valueOf(count);
-            } else if (isPreComputed(totalCountExecutors)) {
-                long total = getTotalCount(totalCountExecutors);
+            } else if (totalCountCalculator.isPreComputed()) {
+                long total = totalCountCalculator.getTotalCount();
                 totalCount = BigInteger.valueOf(total);
             } else {
                 // ok, in this case we're forced to run the queries to discover the actual total
@@ -823,13 +862,19 @@ public class GetFeature {
 
                             @Override
                             public Object loadObject() throws Exception {
-                                long totalCount = getTotalCount(totalCountExecutors);
+                                long totalCount = totalCountCalculator.getTotalCount();
                                 return BigInteger.valueOf(totalCount);
                             }
                         });
                 totalCount =
                         (BigInteger)
                                 enhancer.create(new Class[] {String.class}, new Object[] {"0"});
+                totalCountCalculator.startIfAsync();
+            }
+
+            // with keyset paging the next page link needs the key of the last feature
+            if (keyset != null && count > 0 && totalOffset > -1 && maxFeatures <= count) {
+                seekAfter = keyset.getLastKey(count);
             }
         } catch (IOException e) {
             throw new WFSException(
@@ -847,33 +892,21 @@ public class GetFeature {
                 totalCount,
                 results,
                 lockId,
-                getFeatureById);
+                getFeatureById,
+                seekAfter);
     }
 
-    /** Returns true if all count executors are given a static count value */
-    private boolean isPreComputed(List<CountExecutor> totalCountExecutors) {
-        for (CountExecutor q : totalCountExecutors) {
-            if (!q.isCountSet()) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private long getTotalCount(List<CountExecutor> totalCountExecutors) throws IOException {
-        long totalCount = 0;
-        for (CountExecutor q : totalCountExecutors) {
-            int result = q.getCount();
-            // if the count is unknown for one, we don't know the total,
-            // period
-            if (result == -1) {
-                totalCount = -1;
-                break;
-            } else {
-                totalCount += result;
-            }
+    /**
+     * Returns the key of the last feature of the previous page, as provided by the {@link
+     * #SEEK_AFTER} parameter of the request, or null if missing
+     */
+    protected String getSeekAfter(GetFeatureRequest request) {
+        Request req = Dispatcher.REQUEST.get();
+        if (req == null || req.getRawKvp() == null) {
+            return null;
         }
-        return totalCount;
+        Object value = new KvpMap(req.getRawKvp()).get(SEEK_AFTER);
+        return value != null ? value.toString() : null;
     }
 
     private Filter toFeatureIdFilter(List<FeatureId> lockedFeatures) {
@@ -966,7 +999,13 @@ public class GetFeature {
         return foundGetFeatureById;
     }
 
-    /** Allows subclasses to alter the result generation */
+    /**
+     * Allows subclasses to alter the result generation
+     *
+     * @deprecated use {@link #buildResults(GetFeatureRequest, int, int, int, BigInteger, List,
+     *     String, boolean, String)} instead
+     */
+    @Deprecated
     protected FeatureCollectionResponse buildResults(
             GetFeatureRequest request,
             int offset,
@@ -976,6 +1015,33 @@ public class GetFeature {
             List results,
             String lockId,
             boolean getFeatureById) {
+        return buildResults(
+                request,
+                offset,
+                maxFeatures,
+                count,
+                total,
+                results,
+                lockId,
+                getFeatureById,
+                null);
+    }
+
+    /**
+     * Allows subclasses to alter the result generation
+     *
+     * @param seekAfter the key of the last feature returned, when using keyset paging, or null
+     */
+    protected FeatureCollectionResponse buildResults(
+            GetFeatureRequest request,
+            int offset,
+            int maxFeatures,
+            int count,
+            BigInteger total,
+            List results,
+            String lockId,
+            boolean getFeatureById,
+            String seekAfter) {
 
         FeatureCollectionResponse result = request.createResponse();
         result.setNumberOfFeatures(BigInteger.valueOf(count));
@@ -1005,12 +1071,19 @@ public class GetFeature {
                 // generate kvp map from request object
                 kvp = buildKvpFromRequest(request);
             }
-            buildPrevNextLinks(request, offset, maxFeatures, count, result, kvp);
+            buildPrevNextLinks(request, offset, maxFeatures, count, result, kvp, seekAfter);
         }
 
         return result;
     }
 
+    /**
+     * Builds the previous and next page links
+     *
+     * @deprecated use {@link #buildPrevNextLinks(GetFeatureRequest, int, int, int,
+     *     FeatureCollectionResponse, Map, String)} instead
+     */
+    @Deprecated
     protected void buildPrevNextLinks(
             GetFeatureRequest request,
             int offset,
@@ -1018,6 +1091,26 @@ public class GetFeature {
             int count,
             FeatureCollectionResponse result,
             Map<String, String> kvp) {
+        buildPrevNextLinks(request, offset, maxFeatures, count, result, kvp, null);
+    }
+
+    /**
+     * Builds the previous and next page links
+     *
+     * @param seekAfter the key of the last feature returned, to be added to the next link when
+     *     using keyset paging, or null
+     */
+    protected void buildPrevNextLinks(
+            GetFeatureRequest request,
+            int offset,
+            int maxFeatures,
+            int count,
+            FeatureCollectionResponse result,
+            Map<String, String> kvp,
+            String seekAfter) {
+        // the previous page is always reached by offset
+        kvp.remove(SEEK_AFTER);
+
         // WFS 2.0 specific, must have a next and should point to the first result
         if (request.isResultTypeHits()
                 && (request.getVersion() == null || request.getVersion().startsWith("2"))) {
@@ -1049,6 +1142,9 @@ public class GetFeature {
         } else if (count > 0 && offset > -1 && maxFeatures <= count) {
             kvp.put("startIndex", String.valueOf(offset > 0 ? offset + count : count));
             kvp.put("count", String.valueOf(maxFeatures));
+            if (seekAfter != null) {
+                kvp.put(SEEK_AFTER, seekAfter);
+            }
             result.setNext(buildURL(request.getBaseUrl(), "wfs", kvp, URLType.SERVICE));
         }
     }
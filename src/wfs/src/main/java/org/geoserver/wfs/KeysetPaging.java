@@ -0,0 +1,207 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wfs.request.GetFeatureRequest;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.FeatureIterator;
+import org.geotools.util.Converters;
+import org.opengis.feature.Feature;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.type.FeatureType;
+import org.opengis.feature.type.PropertyDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+/**
+ * Keyset (seek) paging support for {@link GetFeature}.
+ *
+ * <p>Feature types can opt in by naming a unique, indexed attribute in their metadata, under the
+ * {@link GetFeature#KEYSET_PAGING_ATTRIBUTE} key. Pages of those types are then sorted on the key,
+ * and the next page links carry, along with the usual start index, the key of the last feature
+ * returned in the {@link GetFeature#SEEK_AFTER} parameter. The next page is then fetched with a
+ * {@code key > last} predicate instead of an offset, whose cost grows with the page depth.
+ *
+ * <p>Requests sorting on anything else than the key fall back to offset paging, as the start
+ * index is still part of the links.
+ *
+ * <p>The next page links are written before the features are encoded, so pages of up to {@link
+ * #MAX_BUFFERED_FEATURES} simple features are read in memory, and the key is taken from their last
+ * feature. The key of larger pages is read with a one feature query at the end of the page.
+ */
+class KeysetPaging {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    /** Largest page read in memory to take the key from its last feature */
+    static final int MAX_BUFFERED_FEATURES = 1000;
+
+    final String key;
+
+    final Object after;
+
+    /** The source and query the page has been read with */
+    FeatureSource<? extends FeatureType, ? extends Feature> source;
+
+    Query query;
+
+    /** True if the page has been read in memory, and {@link #lastKey} is taken from it */
+    boolean buffered;
+
+    String lastKey;
+
+    KeysetPaging(String key, Object after) {
+        this.key = key;
+        this.after = after;
+    }
+
+    /**
+     * Returns the keyset paging setup for the given feature type and requested sort, or null if
+     * the feature type does not support it, or the sort does not allow it
+     *
+     * @param seekAfter the key of the last feature of the previous page, if any
+     */
+    static KeysetPaging get(
+            FeatureTypeInfo meta,
+            List<SortBy> sortBy,
+            String seekAfter,
+            GetFeatureRequest request)
+            throws IOException {
+        String key = meta.getMetadata().get(GetFeature.KEYSET_PAGING_ATTRIBUTE, String.class);
+        if (key == null || key.trim().isEmpty()) {
+            return null;
+        }
+        key = key.trim();
+        if (sortBy != null && !sortBy.isEmpty()) {
+            if (sortBy.size() > 1
+                    || sortBy.get(0).getPropertyName() == null
+                    || !key.equals(sortBy.get(0).getPropertyName().getPropertyName())
+                    || sortBy.get(0).getSortOrder() != SortOrder.ASCENDING) {
+                return null;
+            }
+        }
+        PropertyDescriptor descriptor = meta.getFeatureType().getDescriptor(key);
+        if (descriptor == null) {
+            return null;
+        }
+
+        Object after = null;
+        if (seekAfter != null) {
+            after = Converters.convert(seekAfter, descriptor.getType().getBinding());
+            if (after == null) {
+                throw new WFSException(
+                        request,
+                        "Invalid " + GetFeature.SEEK_AFTER + " value " + seekAfter,
+                        ServiceException.INVALID_PARAMETER_VALUE);
+            }
+        }
+        return new KeysetPaging(key, after);
+    }
+
+    /**
+     * Sorts the query on the key and, if a page has already been read, replaces the offset with a
+     * predicate on the key
+     */
+    Query apply(Query query) {
+        Query result = new Query(query);
+        result.setSortBy(new SortBy[] {FF.sort(key, SortOrder.ASCENDING)});
+        if (after != null) {
+            Filter seek = FF.greater(FF.property(key), FF.literal(after));
+            Filter filter = query.getFilter();
+            if (filter == null || filter == Filter.INCLUDE) {
+                result.setFilter(seek);
+            } else {
+                result.setFilter(FF.and(filter, seek));
+            }
+            result.setStartIndex(null);
+        }
+        return result;
+    }
+
+    /** Remembers the source and query used to read the page */
+    void setPage(FeatureSource<? extends FeatureType, ? extends Feature> source, Query query) {
+        this.source = source;
+        this.query = query;
+    }
+
+    /**
+     * Reads the page in memory if it holds simple features and is not larger than {@link
+     * #MAX_BUFFERED_FEATURES}, keeping the key of its last feature, otherwise returns the page as
+     * is
+     *
+     * @param maxFeatures the maximum number of features in the page
+     */
+    FeatureCollection<? extends FeatureType, ? extends Feature> read(
+            FeatureCollection<? extends FeatureType, ? extends Feature> features, int maxFeatures) {
+        if (maxFeatures > MAX_BUFFERED_FEATURES || !(features instanceof SimpleFeatureCollection)) {
+            return features;
+        }
+        SimpleFeatureCollection simple = (SimpleFeatureCollection) features;
+        List<SimpleFeature> page = new ArrayList<>();
+        try (SimpleFeatureIterator it = simple.features()) {
+            while (it.hasNext()) {
+                page.add(it.next());
+            }
+        }
+        if (!page.isEmpty()) {
+            // the key might not be among the requested properties
+            Property property = page.get(page.size() - 1).getProperty(key);
+            if (property == null) {
+                return new ListFeatureCollection(simple.getSchema(), page);
+            }
+            if (property.getValue() != null) {
+                lastKey = Converters.convert(property.getValue(), String.class);
+            }
+        }
+        buffered = true;
+        return new ListFeatureCollection(simple.getSchema(), page);
+    }
+
+    /**
+     * Returns the key of the last feature of the page, taken from the page itself if it was read
+     * in memory, or else reading a single feature at the end of the page. Returns null if not
+     * found.
+     *
+     * @param count the number of features in the page
+     */
+    String getLastKey(int count) throws IOException {
+        if (buffered) {
+            return lastKey;
+        }
+        if (source == null || count <= 0) {
+            return null;
+        }
+        Query last = new Query(query);
+        int start = query.getStartIndex() != null ? query.getStartIndex() : 0;
+        last.setStartIndex(start + count - 1);
+        last.setMaxFeatures(1);
+        last.setPropertyNames(new String[] {key});
+        FeatureCollection<? extends FeatureType, ? extends Feature> features =
+                source.getFeatures(last);
+        try (FeatureIterator<? extends Feature> it = features.features()) {
+            if (it.hasNext()) {
+                Property property = it.next().getProperty(key);
+                if (property != null && property.getValue() != null) {
+                    return Converters.convert(property.getValue(), String.class);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,210 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.util.logging.Logging;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Sums the counts of the {@link CountExecutor}s of a GetFeature request, used to compute the
+ * numberMatched attribute.
+ *
+ * <p>When more than one count needs to be run, they are executed concurrently on a shared bounded
+ * pool, whose size can be configured with the {@link #THREADS_KEY} property (1 runs them
+ * sequentially in the calling thread). The counts are normally run the first time the total is
+ * requested, that is, only if the output format actually writes it. Setting the {@link #ASYNC_KEY}
+ * property to true starts them as soon as the request is parsed, overlapping them with the
+ * encoding of the features.
+ */
+class TotalCountCalculator {
+
+    static final Logger LOGGER = Logging.getLogger(TotalCountCalculator.class);
+
+    /** System/environment property used to configure the number of count threads */
+    public static final String THREADS_KEY = "wfs.count.threads";
+
+    /** System/environment property used to start the counts before they are requested */
+    public static final String ASYNC_KEY = "wfs.count.async";
+
+    static final int DEFAULT_THREADS = 4;
+
+    static final int THREADS = getThreads();
+
+    static final boolean ASYNC = Boolean.parseBoolean(GeoServerExtensions.getProperty(ASYNC_KEY));
+
+    /** Lazily initialized, see {@link #getExecutor()} */
+    private static ExecutorService executor;
+
+    private final List<CountExecutor> executors;
+
+    private final int threads;
+
+    private List<Future<Integer>> futures;
+
+    TotalCountCalculator(List<CountExecutor> executors) {
+        this(executors, THREADS);
+    }
+
+    TotalCountCalculator(List<CountExecutor> executors, int threads) {
+        this.executors = executors;
+        this.threads = threads;
+    }
+
+    private static int getThreads() {
+        String value = GeoServerExtensions.getProperty(THREADS_KEY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + THREADS_KEY + " value " + value + ", using default");
+            }
+        }
+        return DEFAULT_THREADS;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("WFSCount-");
+            threadFactory.setDaemon(true);
+            int size = Math.max(1, THREADS);
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            size,
+                            size,
+                            60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /** Returns true if all count executors are given a static count value */
+    boolean isPreComputed() {
+        for (CountExecutor q : executors) {
+            if (!q.isCountSet()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts the counts that are not pre-computed on the pool, if there are at least two of them
+     * and the pool is enabled, otherwise does nothing and the counts will be run by {@link
+     * #getTotalCount()}
+     */
+    synchronized void start() {
+        if (futures != null || threads <= 1) {
+            return;
+        }
+        List<CountExecutor> pending = new ArrayList<>();
+        for (CountExecutor q : executors) {
+            if (!q.isCountSet()) {
+                pending.add(q);
+            }
+        }
+        if (pending.size() < 2) {
+            return;
+        }
+        ExecutorService executor = getExecutor();
+        futures = new ArrayList<>();
+        for (CountExecutor q : pending) {
+            ThreadLocalsTransfer transfer = new ThreadLocalsTransfer();
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                try {
+                                    transfer.apply();
+                                    return q.getCount();
+                                } finally {
+                                    transfer.cleanup();
+                                }
+                            }));
+        }
+    }
+
+    /** Starts the counts right away if so configured with the {@link #ASYNC_KEY} property */
+    void startIfAsync() {
+        if (ASYNC) {
+            start();
+        }
+    }
+
+    /** Returns the sum of the counts, or -1 if any of them is unknown */
+    long getTotalCount() throws IOException {
+        start();
+        long totalCount = 0;
+        for (CountExecutor q : executors) {
+            if (q.isCountSet()) {
+                totalCount = add(totalCount, q.getCount());
+            }
+        }
+        if (futures != null) {
+            for (Future<Integer> future : futures) {
+                totalCount = add(totalCount, get(future));
+            }
+        } else {
+            for (CountExecutor q : executors) {
+                if (totalCount == -1) {
+                    break;
+                }
+                if (!q.isCountSet()) {
+                    totalCount = add(totalCount, q.getCount());
+                }
+            }
+        }
+        return totalCount;
+    }
+
+    private static long add(long total, int count) {
+        // if the count is unknown for one, we don't know the total, period
+        if (total == -1 || count == -1) {
+            return -1;
+        }
+        return total + count;
+    }
+
+    private int get(Future<Integer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new IOException("Interrupted while counting features", e);
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void cancel() {
+        for (Future<Integer> future : futures) {
+            future.cancel(true);
+        }
+    }
+}
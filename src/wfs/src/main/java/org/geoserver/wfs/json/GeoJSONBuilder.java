@@ -5,15 +5,16 @@
  */
 package org.geoserver.wfs.json;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 import net.sf.json.JSONException;
+import net.sf.json.JSONString;
 import net.sf.json.util.JSONBuilder;
 import org.geotools.referencing.CRS;
 import org.geotools.util.Converters;
-import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryCollection;
@@ -33,14 +34,17 @@ import org.locationtech.jts.geom.Polygon;
  */
 public class GeoJSONBuilder extends JSONBuilder {
 
-    private CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
-
-    private int numDecimals = 6;
+    /**
+     * Placeholder for values already streamed to the writer, appending it updates the builder state
+     * without writing anything
+     */
+    private static final JSONString WRITTEN = () -> "";
 
-    private boolean encodeMeasures = false;
+    private final GeoJSONCoordinateWriter coordinates;
 
     public GeoJSONBuilder(Writer w) {
         super(w);
+        this.coordinates = new GeoJSONCoordinateWriter(w);
     }
 
     /**
@@ -60,50 +64,13 @@ public class GeoJSONBuilder extends JSONBuilder {
 
         if (geometryType != MULTIGEOMETRY) {
             this.key("coordinates");
-
-            switch (geometryType) {
-                case POINT:
-                    Point point = (Point) geometry;
-                    writeCoordinate(point);
-                    break;
-                case LINESTRING:
-                    writeCoordinates(((LineString) geometry).getCoordinateSequence());
-                    break;
-                case MULTIPOINT:
-                    this.array();
-                    for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
-                        writeCoordinate((Point) geometry.getGeometryN(i));
-                    }
-                    this.endArray();
-                    break;
-                case POLYGON:
-                    writePolygon((Polygon) geometry);
-
-                    break;
-
-                case MULTILINESTRING:
-                    this.array();
-
-                    for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
-                        writeCoordinates(
-                                ((LineString) geometry.getGeometryN(i)).getCoordinateSequence());
-                    }
-
-                    this.endArray();
-
-                    break;
-
-                case MULTIPOLYGON:
-                    this.array();
-
-                    for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
-                        writePolygon((Polygon) geometry.getGeometryN(i));
-                    }
-
-                    this.endArray();
-
-                    break;
+            try {
+                coordinates.writeCoordinates(geometry);
+            } catch (IOException e) {
+                throw new JSONException(e);
             }
+            // the coordinates have been written already, just update the builder state
+            super.value(WRITTEN);
         } else {
             writeGeomCollection((GeometryCollection) geometry);
         }
@@ -122,92 +89,6 @@ public class GeoJSONBuilder extends JSONBuilder {
         return this.endArray();
     }
 
-    /**
-     * Helper method that encodes a {@see Point} coordinate to the JSON output. This method will
-     * respect the configured axis order. If activated, coordinates measures (M) will be encoded,
-     * otherwise measures will be ignored.
-     *
-     * @param point the point whose coordinate will be encoded
-     * @return the JSON builder instance, this allow chained calls
-     */
-    private JSONBuilder writeCoordinate(Point point) throws JSONException {
-        CoordinateSequence coordinates = point.getCoordinateSequence();
-        // let's see if we need to encode measures, NaN values will not be encoded
-        double m = encodeMeasures ? coordinates.getM(0) : Double.NaN;
-        return writeCoordinate(coordinates.getX(0), coordinates.getY(0), coordinates.getZ(0), m);
-    }
-
-    /**
-     * Helper method that encodes a sequence of coordinates to the JSON output as an array. This
-     * method will respect the configured axis order. If activated, coordinates measures (M) will be
-     * encoded, otherwise measures will be ignored.
-     *
-     * @param coordinates the coordinates sequence that will be encoded
-     * @return the JSON builder instance, this allow chained calls
-     */
-    private JSONBuilder writeCoordinates(CoordinateSequence coordinates) throws JSONException {
-        // start encoding the JSON array of coordinates
-        this.array();
-        // each coordinate will be encoded has an array of ordinates
-        for (int i = 0; i < coordinates.size(); i++) {
-            // let's see if we need to encode measures, NaN values will not be encoded
-            double m = encodeMeasures ? coordinates.getM(i) : Double.NaN;
-            // encode the coordinate ordinates to the JSON output
-            writeCoordinate(coordinates.getX(i), coordinates.getY(i), coordinates.getZ(i), m);
-        }
-        // we are done with the array
-        return this.endArray();
-    }
-
-    /**
-     * Helper method that will encode the provided coordinate values. The order the {@code X} and
-     * {@code Y} coordinates will be encoded will depend on the configured axis order.
-     *
-     * <p>If both provided {@code Z} or {@code M} values are {@code NaN} they will not be encoded.
-     * If a valid {@code M} value was provided but {@code Z} is {@code NaN}, zero (0) will be used
-     * for {@code Z}.
-     *
-     * @param x X ordinate
-     * @param y X ordinate
-     * @param z Z ordinate, can be {@code NaN}
-     * @param m M ordinate, can be {@code NaN}
-     * @return the JSON builder instance, this allow chained calls
-     */
-    private JSONBuilder writeCoordinate(double x, double y, double z, double m) {
-        // start encoding JSON array
-        this.array();
-        // adjust the order of X and Y ordinates if needed
-        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
-            // encode latitude first and then longitude
-            if (!Double.isNaN(y)) { // for 1d linear referencing cases
-                roundedValue(y);
-            }
-            roundedValue(x);
-        } else {
-            // encode longitude first and then latitude
-            roundedValue(x);
-            if (!Double.isNaN(y)) { // for 1d linear referencing cases
-                roundedValue(y);
-            }
-        }
-        // if Z value is not available but we have a measure, we set Z value to zero
-        z = Double.isNaN(z) && !Double.isNaN(m) ? 0 : z;
-        // encode Z value if available
-        if (!Double.isNaN(z)) {
-            roundedValue(z);
-        }
-        // encode M value if available
-        if (!Double.isNaN(m)) {
-            roundedValue(m);
-        }
-        // we are done with the array
-        return this.endArray();
-    }
-
-    private void roundedValue(double value) {
-        super.value(RoundingUtil.round(value, numDecimals));
-    }
-
     /**
      * Turns an envelope into an array [minX,minY,maxX,maxY]
      *
@@ -216,36 +97,12 @@ public class GeoJSONBuilder extends JSONBuilder {
      */
     protected JSONBuilder writeBoundingBox(Envelope env) {
         this.key("bbox");
-        this.array();
-        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
-            roundedValue(env.getMinY());
-            roundedValue(env.getMinX());
-            roundedValue(env.getMaxY());
-            roundedValue(env.getMaxX());
-        } else {
-            roundedValue(env.getMinX());
-            roundedValue(env.getMinY());
-            roundedValue(env.getMaxX());
-            roundedValue(env.getMaxY());
+        try {
+            coordinates.writeBoundingBox(env);
+        } catch (IOException e) {
+            throw new JSONException(e);
         }
-        return this.endArray();
-    }
-
-    /**
-     * Writes a polygon
-     *
-     * @param geometry The polygon to write
-     */
-    private void writePolygon(Polygon geometry) throws JSONException {
-        this.array();
-        writeCoordinates(geometry.getExteriorRing().getCoordinateSequence());
-
-        for (int i = 0, ii = geometry.getNumInteriorRing(); i < ii; i++) {
-            writeCoordinates(geometry.getInteriorRingN(i).getCoordinateSequence());
-        }
-
-        this.endArray(); // end the linear ring
-        // this.endObject(); //end the
+        return super.value(WRITTEN);
     }
 
     /** Internal representation of OGC SF Point */
@@ -387,11 +244,11 @@ public class GeoJSONBuilder extends JSONBuilder {
      * have already been written.
      */
     public void setAxisOrder(CRS.AxisOrder axisOrder) {
-        this.axisOrder = axisOrder;
+        coordinates.setAxisOrder(axisOrder);
     }
 
     public void setNumberOfDecimals(int numberOfDecimals) {
-        this.numDecimals = numberOfDecimals;
+        coordinates.setNumberOfDecimals(numberOfDecimals);
     }
 
     /**
@@ -400,6 +257,6 @@ public class GeoJSONBuilder extends JSONBuilder {
      * @param encodeMeasures TRUE if coordinates measures should be encoded, otherwise FALSE
      */
     public void setEncodeMeasures(boolean encodeMeasures) {
-        this.encodeMeasures = encodeMeasures;
+        coordinates.setEncodeMeasures(encodeMeasures);
     }
 }
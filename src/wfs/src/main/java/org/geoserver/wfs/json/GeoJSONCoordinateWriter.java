@@ -0,0 +1,245 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import net.sf.json.util.JSONUtils;
+import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Writes GeoJSON coordinate arrays straight to a {@link Writer}, walking the {@link
+ * CoordinateSequence} directly and formatting the ordinates in a reusable buffer, instead of going
+ * through a boxed value and its string conversion for each ordinate.
+ *
+ * <p>The output is the same as the one of the {@link net.sf.json.util.JSONBuilder} based encoding:
+ * ordinates are rounded with {@link RoundingUtil} and trailing zeros are removed. Values that are
+ * too small or too large to be written in plain notation are delegated to {@link
+ * JSONUtils#numberToString(Number)}.
+ */
+public class GeoJSONCoordinateWriter {
+
+    /** Largest number of decimals handled by the fast formatting path */
+    static final int MAX_FAST_DECIMALS = 8;
+
+    static final long[] POWERS = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L
+    };
+
+    /** {@link Double#toString(double)} switches to scientific notation outside of this range */
+    static final double PLAIN_MIN = 1e-3;
+
+    static final double PLAIN_MAX = 1e7;
+
+    private final Writer writer;
+
+    private final char[] buffer = new char[32];
+
+    private CRS.AxisOrder axisOrder = CRS.AxisOrder.EAST_NORTH;
+
+    private int numDecimals = 6;
+
+    private boolean encodeMeasures = false;
+
+    public GeoJSONCoordinateWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public void setAxisOrder(CRS.AxisOrder axisOrder) {
+        this.axisOrder = axisOrder;
+    }
+
+    public void setNumberOfDecimals(int numDecimals) {
+        this.numDecimals = numDecimals;
+    }
+
+    public void setEncodeMeasures(boolean encodeMeasures) {
+        this.encodeMeasures = encodeMeasures;
+    }
+
+    /**
+     * Writes the coordinates array of a simple or multi geometry. Geometry collections are not
+     * supported, as they do not have a coordinates member.
+     */
+    public void writeCoordinates(Geometry geometry) throws IOException {
+        if (geometry instanceof Point) {
+            writeCoordinate(((Point) geometry).getCoordinateSequence(), 0);
+        } else if (geometry instanceof LineString) {
+            writeCoordinates(((LineString) geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            writePolygon((Polygon) geometry);
+        } else if (geometry instanceof MultiPoint
+                || geometry instanceof MultiLineString
+                || geometry instanceof MultiPolygon) {
+            writer.write('[');
+            for (int i = 0, n = geometry.getNumGeometries(); i < n; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCoordinates(geometry.getGeometryN(i));
+            }
+            writer.write(']');
+        } else {
+            throw new IllegalArgumentException(
+                    "Cannot write coordinates of geometry type " + geometry.getClass());
+        }
+    }
+
+    private void writePolygon(Polygon polygon) throws IOException {
+        writer.write('[');
+        writeCoordinates(polygon.getExteriorRing().getCoordinateSequence());
+        for (int i = 0, n = polygon.getNumInteriorRing(); i < n; i++) {
+            writer.write(',');
+            writeCoordinates(polygon.getInteriorRingN(i).getCoordinateSequence());
+        }
+        writer.write(']');
+    }
+
+    /** Writes a coordinate sequence as an array of positions */
+    public void writeCoordinates(CoordinateSequence coordinates) throws IOException {
+        writer.write('[');
+        for (int i = 0, n = coordinates.size(); i < n; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCoordinate(coordinates, i);
+        }
+        writer.write(']');
+    }
+
+    private void writeCoordinate(CoordinateSequence coordinates, int i) throws IOException {
+        // let's see if we need to encode measures, NaN values will not be encoded
+        double m = encodeMeasures ? coordinates.getM(i) : Double.NaN;
+        writeCoordinate(coordinates.getX(i), coordinates.getY(i), coordinates.getZ(i), m);
+    }
+
+    /**
+     * Writes a single position, respecting the configured axis order. If both {@code Z} and {@code
+     * M} are {@code NaN} they are not encoded, if only {@code Z} is {@code NaN} zero is used in its
+     * place.
+     */
+    public void writeCoordinate(double x, double y, double z, double m) throws IOException {
+        writer.write('[');
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
+            // encode latitude first and then longitude
+            if (!Double.isNaN(y)) { // for 1d linear referencing cases
+                writeNumber(y);
+                writer.write(',');
+            }
+            writeNumber(x);
+        } else {
+            // encode longitude first and then latitude
+            writeNumber(x);
+            if (!Double.isNaN(y)) { // for 1d linear referencing cases
+                writer.write(',');
+                writeNumber(y);
+            }
+        }
+        // if Z value is not available but we have a measure, we set Z value to zero
+        z = Double.isNaN(z) && !Double.isNaN(m) ? 0 : z;
+        if (!Double.isNaN(z)) {
+            writer.write(',');
+            writeNumber(z);
+        }
+        if (!Double.isNaN(m)) {
+            writer.write(',');
+            writeNumber(m);
+        }
+        writer.write(']');
+    }
+
+    /** Writes an envelope as a [minX,minY,maxX,maxY] array, respecting the axis order */
+    public void writeBoundingBox(Envelope env) throws IOException {
+        writer.write('[');
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
+            writeNumbers(env.getMinY(), env.getMinX(), env.getMaxY(), env.getMaxX());
+        } else {
+            writeNumbers(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY());
+        }
+        writer.write(']');
+    }
+
+    private void writeNumbers(double v1, double v2, double v3, double v4) throws IOException {
+        writeNumber(v1);
+        writer.write(',');
+        writeNumber(v2);
+        writer.write(',');
+        writeNumber(v3);
+        writer.write(',');
+        writeNumber(v4);
+    }
+
+    /** Writes a number rounded to the configured number of decimals */
+    public void writeNumber(double value) throws IOException {
+        double rounded = RoundingUtil.round(value, numDecimals);
+        int length = format(rounded, numDecimals, buffer);
+        if (length > 0) {
+            writer.write(buffer, buffer.length - length, length);
+        } else {
+            // scientific notation or invalid number, let json-lib handle it
+            writer.write(JSONUtils.numberToString(rounded));
+        }
+    }
+
+    /**
+     * Formats a value already rounded to {@code numDecimals} decimals at the end of the buffer,
+     * without trailing zeros.
+     *
+     * @return the number of characters written, or -1 if the value cannot be formatted in plain
+     *     notation, in which case the buffer contents are undefined
+     */
+    static int format(double rounded, int numDecimals, char[] buffer) {
+        double abs = Math.abs(rounded);
+        if (numDecimals < 0
+                || numDecimals > MAX_FAST_DECIMALS
+                || !(abs < PLAIN_MAX)
+                || (abs < PLAIN_MIN && abs != 0)) {
+            return -1;
+        }
+        int pos = buffer.length;
+        if (abs == 0) {
+            buffer[--pos] = '0';
+            if (Double.doubleToRawLongBits(rounded) != 0) {
+                buffer[--pos] = '-';
+            }
+            return buffer.length - pos;
+        }
+        // the value is the closest double to an integer divided by the scale, and has less than 16
+        // significant digits, so that integer digits are the shortest representation of the value
+        long scale = POWERS[numDecimals];
+        long digits = Math.round(abs * scale);
+        long integer = digits / scale;
+        long fraction = digits % scale;
+        if (fraction != 0) {
+            int decimals = numDecimals;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                decimals--;
+            }
+            for (int i = 0; i < decimals; i++) {
+                buffer[--pos] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            buffer[--pos] = '.';
+        }
+        do {
+            buffer[--pos] = (char) ('0' + integer % 10);
+            integer /= 10;
+        } while (integer != 0);
+        if (rounded < 0) {
+            buffer[--pos] = '-';
+        }
+        return buffer.length - pos;
+    }
+}
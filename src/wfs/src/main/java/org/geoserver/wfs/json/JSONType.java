@@ -113,6 +113,8 @@ public enum JSONType {
             } finally {
                 lock.writeLock().unlock();
             }
+            // the JSONP responses are excluded by extension filters
+            GeoServerExtensions.extensionFiltersChanged();
         }
     }
 
@@ -74,9 +74,21 @@ public class GML3OutputFormat extends WFSGetFeatureOutputFormat
     public static final boolean OPTIMIZED_ENCODING =
             Boolean.parseBoolean(System.getProperty("GML_OPTIMIZED_ENCODING", "true"));
 
+    /**
+     * Default for the streaming, multi threaded encoder for GML 3.1 simple features, see {@link
+     * #setStreamingEncoding(boolean)}
+     */
+    public static final boolean STREAMING_ENCODING =
+            Boolean.parseBoolean(System.getProperty("GML_STREAMING_ENCODING", "false"));
+
+    /** Configuration property used to enable the streaming encoder for a request */
+    public static final QName STREAMING_ENCODING_PROPERTY =
+            new QName("http://www.geoserver.org/wfs", "streamingEncoding");
+
     GeoServer geoServer;
     Catalog catalog;
     WFSConfiguration configuration;
+    boolean streamingEncoding = STREAMING_ENCODING;
     protected static DOMSource xslt;
 
     static {
@@ -118,6 +130,19 @@ public class GML3OutputFormat extends WFSGetFeatureOutputFormat
         return "text/xml; subtype=gml/3.1.1";
     }
 
+    /** Returns true if the streaming encoder is enabled for GML 3.1 simple features */
+    public boolean isStreamingEncoding() {
+        return streamingEncoding;
+    }
+
+    /**
+     * Enables the streaming, multi threaded encoder for GML 3.1 simple features, on top of the
+     * optimized one. Defaults to the {@code GML_STREAMING_ENCODING} system property.
+     */
+    public void setStreamingEncoding(boolean streamingEncoding) {
+        this.streamingEncoding = streamingEncoding;
+    }
+
     public String getCapabilitiesElementName() {
         return "GML3";
     }
@@ -216,6 +241,14 @@ public class GML3OutputFormat extends WFSGetFeatureOutputFormat
             configuration.getProperties().remove(GMLConfiguration.OPTIMIZED_ENCODING);
         }
 
+        // the streaming encoder does not support the extra number formatting options
+        boolean encodeMeasures = encodeMeasures(featureCollections, catalog);
+        if (streamingEncoding && !padWithZeros && !forcedDecimal && !encodeMeasures) {
+            configuration.getProperties().add(STREAMING_ENCODING_PROPERTY);
+        } else {
+            configuration.getProperties().remove(STREAMING_ENCODING_PROPERTY);
+        }
+
         // set up the srsname syntax
         configuration.setSrsSyntax(
                 wfs.getGML().get(WFSInfo.Version.V_11).getSrsNameStyle().toSrsSyntax());
@@ -234,7 +267,6 @@ public class GML3OutputFormat extends WFSGetFeatureOutputFormat
         Object gft = getFeature.getParameters()[0];
 
         Configuration configuration = customizeConfiguration(this.configuration, ns2metas, gft);
-        boolean encodeMeasures = encodeMeasures(featureCollections, catalog);
         updateConfiguration(
                 configuration, numDecimals, padWithZeros, forcedDecimal, encodeMeasures);
         Encoder encoder = createEncoder(configuration, ns2metas, gft);
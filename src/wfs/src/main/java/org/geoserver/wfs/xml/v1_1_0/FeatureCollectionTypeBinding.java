@@ -12,6 +12,7 @@ import net.opengis.wfs.WfsFactory;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.feature.CompositeFeatureCollection;
+import org.geoserver.wfs.xml.GML3OutputFormat;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
@@ -220,6 +221,20 @@ public class FeatureCollectionTypeBinding extends AbstractComplexEMFBinding {
 
         if (isSimpleFeatureCollection(result)
                 && encoder.getConfiguration().hasProperty(GMLConfiguration.OPTIMIZED_ENCODING)) {
+            if (encoder.getConfiguration()
+                    .hasProperty(GML3OutputFormat.STREAMING_ENCODING_PROPERTY)) {
+                GML3StreamingEncoderDelegate streaming =
+                        GML3StreamingEncoderDelegate.create(
+                                featureCollection.getFeature(),
+                                (SimpleFeatureCollection) result,
+                                encoder,
+                                catalog,
+                                encodeFeatureMember,
+                                generateBounds);
+                if (streaming != null) {
+                    return streaming;
+                }
+            }
             return new GML3FeatureCollectionEncoderDelegate(
                     (SimpleFeatureCollection) result, encoder);
         } else {
@@ -0,0 +1,439 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml.v1_1_0;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.geotools.gml.producer.CoordinateFormatter;
+import org.geotools.gml3.GML;
+import org.geotools.util.Converters;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * The GML 3.1 encoding of a simple feature type, compiled once and shared among requests: the
+ * qualified names of the feature and attribute elements, the srsName of each geometry attribute,
+ * and the way each attribute value is turned into text, so that encoding a feature does not involve
+ * any schema or binding lookup.
+ *
+ * <p>Only the geometry types with a fixed GML representation are supported, see {@link
+ * #build(SimpleFeatureType, String, String, Function)}. Instances are immutable and thread safe.
+ */
+class FeatureEncodingPlan {
+
+    static final String GML_NS = GML.NAMESPACE;
+
+    static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+
+    /** The GML elements and attributes written by the plan */
+    static final List<String> GML_NAMES =
+            Arrays.asList(
+                    "id",
+                    "boundedBy",
+                    "Envelope",
+                    "lowerCorner",
+                    "upperCorner",
+                    "Point",
+                    "pos",
+                    "LineString",
+                    "posList",
+                    "Polygon",
+                    "exterior",
+                    "interior",
+                    "LinearRing",
+                    "MultiPoint",
+                    "pointMember",
+                    "MultiLineString",
+                    "lineStringMember",
+                    "MultiSurface",
+                    "surfaceMember");
+
+    static final List<Class<?>> SUPPORTED_GEOMETRIES =
+            Arrays.asList(
+                    Point.class,
+                    LineString.class,
+                    Polygon.class,
+                    MultiPoint.class,
+                    MultiLineString.class,
+                    MultiPolygon.class);
+
+    /** How an attribute value is turned into text */
+    enum ValueKind {
+        GEOMETRY,
+        DATE,
+        TIME,
+        DATE_TIME,
+        PLAIN,
+        CONVERTED
+    }
+
+    /** A pre-resolved attribute element */
+    static class AttributePlan {
+        final int index;
+        final String uri;
+        final String localName;
+        final String qName;
+        final ValueKind kind;
+        /** The srsName of a geometry attribute, may be null */
+        final String srsName;
+
+        AttributePlan(
+                int index,
+                String uri,
+                String localName,
+                String qName,
+                ValueKind kind,
+                String srsName) {
+            this.index = index;
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.kind = kind;
+            this.srsName = srsName;
+        }
+    }
+
+    final String uri;
+
+    final String localName;
+
+    final String qName;
+
+    /** Qualified names of the {@link #GML_NAMES} */
+    final Map<String, String> gmlNames = new HashMap<>();
+
+    /** The srsName of the feature bounds, the default geometry one */
+    final String srsName;
+
+    final List<AttributePlan> attributes;
+
+    private FeatureEncodingPlan(
+            String uri,
+            String localName,
+            String qName,
+            String gmlPrefix,
+            String srsName,
+            List<AttributePlan> attributes) {
+        this.uri = uri;
+        this.localName = localName;
+        this.qName = qName;
+        for (String name : GML_NAMES) {
+            gmlNames.put(name, qualify(gmlPrefix, name));
+        }
+        this.srsName = srsName;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Compiles the encoding plan for the given feature type, or returns null if the type contains
+     * attributes that cannot be encoded by the plan (generic or curved geometries)
+     *
+     * @param prefix the prefix bound to the feature type namespace in the output document
+     * @param gmlPrefix the prefix bound to the GML namespace in the output document
+     * @param srsNames turns the CRS of each geometry attribute into the srsName to be declared on
+     *     its values, it is not called for geometries without a CRS
+     */
+    static FeatureEncodingPlan build(
+            SimpleFeatureType type,
+            String prefix,
+            String gmlPrefix,
+            Function<CoordinateReferenceSystem, String> srsNames) {
+        String uri = type.getName().getNamespaceURI();
+        List<AttributePlan> attributes = new ArrayList<>();
+        for (int i = 0; i < type.getAttributeCount(); i++) {
+            AttributeDescriptor ad = type.getDescriptor(i);
+            ValueKind kind = getKind(ad);
+            if (kind == null) {
+                return null;
+            }
+            String srsName = null;
+            if (ad instanceof GeometryDescriptor) {
+                srsName =
+                        getSrsName(
+                                ((GeometryDescriptor) ad).getCoordinateReferenceSystem(),
+                                srsNames);
+            }
+            String localName = ad.getLocalName();
+            attributes.add(
+                    new AttributePlan(
+                            i, uri, localName, qualify(prefix, localName), kind, srsName));
+        }
+        String localName = type.getTypeName();
+        String srsName = getSrsName(type.getCoordinateReferenceSystem(), srsNames);
+        return new FeatureEncodingPlan(
+                uri, localName, qualify(prefix, localName), gmlPrefix, srsName, attributes);
+    }
+
+    private static String getSrsName(
+            CoordinateReferenceSystem crs, Function<CoordinateReferenceSystem, String> srsNames) {
+        return crs == null ? null : srsNames.apply(crs);
+    }
+
+    private static ValueKind getKind(AttributeDescriptor ad) {
+        Class<?> binding = ad.getType().getBinding();
+        if (ad instanceof GeometryDescriptor || Geometry.class.isAssignableFrom(binding)) {
+            return SUPPORTED_GEOMETRIES.contains(binding) ? ValueKind.GEOMETRY : null;
+        } else if (java.sql.Date.class.isAssignableFrom(binding)) {
+            return ValueKind.DATE;
+        } else if (java.sql.Time.class.isAssignableFrom(binding)) {
+            return ValueKind.TIME;
+        } else if (java.util.Date.class.isAssignableFrom(binding)) {
+            return ValueKind.DATE_TIME;
+        } else if (String.class.equals(binding)
+                || Number.class.isAssignableFrom(binding)
+                || Boolean.class.equals(binding)) {
+            return ValueKind.PLAIN;
+        }
+        return ValueKind.CONVERTED;
+    }
+
+    private static String qualify(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Encodes the feature in the output handler
+     *
+     * @param formatter the coordinate formatter, not thread safe, hence provided by the caller
+     * @param srsDimension whether to declare the srsDimension on geometries
+     * @param bounds whether to encode the feature bounds
+     */
+    void encode(
+            SimpleFeature feature,
+            ContentHandler output,
+            CoordinateFormatter formatter,
+            boolean srsDimension,
+            boolean bounds)
+            throws SAXException {
+        AttributesImpl atts = new AttributesImpl();
+        if (feature.getID() != null) {
+            atts.addAttribute(GML_NS, "id", gml("id"), "ID", feature.getID());
+        }
+        output.startElement(uri, localName, qName, atts);
+        if (bounds) {
+            encodeBounds(feature, output, formatter, srsDimension);
+        }
+        for (AttributePlan ap : attributes) {
+            Object value = feature.getAttribute(ap.index);
+            if (value == null) {
+                continue;
+            }
+            output.startElement(ap.uri, ap.localName, ap.qName, NO_ATTRIBUTES);
+            if (ap.kind == ValueKind.GEOMETRY) {
+                Geometry geometry = (Geometry) value;
+                Attributes atts = rootAttributes(geometry, ap.srsName, srsDimension);
+                encodeGeometry(geometry, output, formatter, atts);
+            } else {
+                characters(output, toText(ap.kind, value));
+            }
+            output.endElement(ap.uri, ap.localName, ap.qName);
+        }
+        output.endElement(uri, localName, qName);
+    }
+
+    private void encodeBounds(
+            SimpleFeature feature,
+            ContentHandler output,
+            CoordinateFormatter formatter,
+            boolean srsDimension)
+            throws SAXException {
+        BoundingBox envelope = feature.getBounds();
+        if (envelope == null || envelope.isEmpty()) {
+            return;
+        }
+        AttributesImpl atts = new AttributesImpl();
+        if (srsDimension) {
+            atts.addAttribute(null, "srsDimension", "srsDimension", "CDATA", "2");
+        }
+        if (srsName != null) {
+            atts.addAttribute(null, "srsName", "srsName", "CDATA", srsName);
+        }
+        start(output, "boundedBy", NO_ATTRIBUTES);
+        start(output, "Envelope", atts);
+        start(output, "lowerCorner", NO_ATTRIBUTES);
+        StringBuilder sb = new StringBuilder();
+        sb.append(formatter.format(envelope.getMinX()));
+        sb.append(' ').append(formatter.format(envelope.getMinY()));
+        characters(output, sb.toString());
+        end(output, "lowerCorner");
+        start(output, "upperCorner", NO_ATTRIBUTES);
+        sb.setLength(0);
+        sb.append(formatter.format(envelope.getMaxX()));
+        sb.append(' ').append(formatter.format(envelope.getMaxY()));
+        characters(output, sb.toString());
+        end(output, "upperCorner");
+        end(output, "Envelope");
+        end(output, "boundedBy");
+    }
+
+    /** The srsName and srsDimension of the top level geometry, members do not repeat them */
+    private Attributes rootAttributes(Geometry geometry, String srsName, boolean srsDimension) {
+        AttributesImpl atts = new AttributesImpl();
+        if (srsName != null) {
+            atts.addAttribute(null, "srsName", "srsName", "CDATA", srsName);
+        }
+        if (srsDimension) {
+            String dimension = String.valueOf(getDimension(geometry));
+            atts.addAttribute(null, "srsDimension", "srsDimension", "CDATA", dimension);
+        }
+        return atts;
+    }
+
+    private void encodeGeometry(
+            Geometry geometry,
+            ContentHandler output,
+            CoordinateFormatter formatter,
+            Attributes atts)
+            throws SAXException {
+        if (geometry instanceof Point) {
+            start(output, "Point", atts);
+            encodeCoordinates(((Point) geometry).getCoordinateSequence(), "pos", output, formatter);
+            end(output, "Point");
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            start(output, "Polygon", atts);
+            encodeRing(polygon.getExteriorRing(), "exterior", output, formatter);
+            for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                encodeRing(polygon.getInteriorRingN(i), "interior", output, formatter);
+            }
+            end(output, "Polygon");
+        } else if (geometry instanceof LineString) {
+            start(output, "LineString", atts);
+            CoordinateSequence cs = ((LineString) geometry).getCoordinateSequence();
+            encodeCoordinates(cs, "posList", output, formatter);
+            end(output, "LineString");
+        } else if (geometry instanceof MultiPoint) {
+            encodeMulti(geometry, "MultiPoint", "pointMember", output, formatter, atts);
+        } else if (geometry instanceof MultiLineString) {
+            encodeMulti(geometry, "MultiLineString", "lineStringMember", output, formatter, atts);
+        } else if (geometry instanceof MultiPolygon) {
+            encodeMulti(geometry, "MultiSurface", "surfaceMember", output, formatter, atts);
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported geometry type " + geometry.getGeometryType());
+        }
+    }
+
+    private void encodeMulti(
+            Geometry geometry,
+            String element,
+            String member,
+            ContentHandler output,
+            CoordinateFormatter formatter,
+            Attributes atts)
+            throws SAXException {
+        start(output, element, atts);
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            start(output, member, NO_ATTRIBUTES);
+            encodeGeometry(geometry.getGeometryN(i), output, formatter, NO_ATTRIBUTES);
+            end(output, member);
+        }
+        end(output, element);
+    }
+
+    private void encodeRing(
+            LineString ring, String element, ContentHandler output, CoordinateFormatter formatter)
+            throws SAXException {
+        start(output, element, NO_ATTRIBUTES);
+        start(output, "LinearRing", NO_ATTRIBUTES);
+        encodeCoordinates(ring.getCoordinateSequence(), "posList", output, formatter);
+        end(output, "LinearRing");
+        end(output, element);
+    }
+
+    private void encodeCoordinates(
+            CoordinateSequence cs,
+            String element,
+            ContentHandler output,
+            CoordinateFormatter formatter)
+            throws SAXException {
+        boolean is3D = is3D(cs);
+        StringBuilder sb = new StringBuilder(cs.size() * (is3D ? 36 : 24));
+        for (int i = 0; i < cs.size(); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(formatter.format(cs.getX(i)));
+            sb.append(' ').append(formatter.format(cs.getY(i)));
+            if (is3D) {
+                sb.append(' ').append(formatter.format(cs.getOrdinate(i, CoordinateSequence.Z)));
+            }
+        }
+        start(output, element, NO_ATTRIBUTES);
+        characters(output, sb.toString());
+        end(output, element);
+    }
+
+    private static int getDimension(Geometry geometry) {
+        if (geometry.isEmpty()) {
+            return 2;
+        }
+        return Double.isNaN(geometry.getCoordinate().getZ()) ? 2 : 3;
+    }
+
+    private static boolean is3D(CoordinateSequence cs) {
+        return cs.size() > 0
+                && cs.getDimension() > 2
+                && !Double.isNaN(cs.getOrdinate(0, CoordinateSequence.Z));
+    }
+
+    static String toText(ValueKind kind, Object value) {
+        switch (kind) {
+            case DATE:
+            case TIME:
+                // java.sql types already use the XML schema lexical representation
+                return value.toString();
+            case DATE_TIME:
+                if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+                    // no instant representation, and already in lexical form
+                    return value.toString();
+                }
+                return ((java.util.Date) value).toInstant().toString();
+            case PLAIN:
+                return value.toString();
+            default:
+                String converted = Converters.convert(value, String.class);
+                return converted != null ? converted : value.toString();
+        }
+    }
+
+    private String gml(String localName) {
+        return gmlNames.get(localName);
+    }
+
+    private void start(ContentHandler output, String localName, Attributes atts)
+            throws SAXException {
+        output.startElement(GML_NS, localName, gml(localName), atts);
+    }
+
+    private void end(ContentHandler output, String localName) throws SAXException {
+        output.endElement(GML_NS, localName, gml(localName));
+    }
+
+    private static void characters(ContentHandler output, String text) throws SAXException {
+        char[] chars = text.toCharArray();
+        output.characters(chars, 0, chars.length);
+    }
+}
@@ -0,0 +1,415 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml.v1_1_0;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.xml.GML3OutputFormat;
+import org.geoserver.wfs.xml.WFSXmlUtils;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.gml.producer.CoordinateFormatter;
+import org.geotools.gml2.SrsSyntax;
+import org.geotools.gml3.GML;
+import org.geotools.gml3.GMLConfiguration;
+import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
+import org.geotools.xsd.Configuration;
+import org.geotools.xsd.Encoder;
+import org.geotools.xsd.EncoderDelegate;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Streams the GML 3.1 feature members of a simple feature collection using pre-compiled {@link
+ * FeatureEncodingPlan}s, cached per feature type, instead of resolving bindings for each feature
+ * and attribute.
+ *
+ * <p>When configured to use more than one thread (see {@link #THREADS_KEY}), the features are read
+ * in chunks of {@link #CHUNK_SIZE_KEY} features, each chunk is encoded on a shared pool, and the
+ * chunks are written out in the order they were read. The number of chunks in flight is bounded,
+ * so that memory usage does not depend on the size of the output.
+ *
+ * <p>Enabled with the {@code GML_STREAMING_ENCODING} system property, or {@link
+ * GML3OutputFormat#setStreamingEncoding(boolean)}.
+ */
+class GML3StreamingEncoderDelegate implements EncoderDelegate {
+
+    static final Logger LOGGER = Logging.getLogger(GML3StreamingEncoderDelegate.class);
+
+    /** System/environment property used to configure the number of encoding threads */
+    public static final String THREADS_KEY = "GML_STREAMING_THREADS";
+
+    /** System/environment property used to configure the number of features in a chunk */
+    public static final String CHUNK_SIZE_KEY = "GML_STREAMING_CHUNK_SIZE";
+
+    static final int THREADS =
+            getProperty(THREADS_KEY, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    static final int CHUNK_SIZE = getProperty(CHUNK_SIZE_KEY, 500);
+
+    /** Encoding plans, by feature type and output namespace setup */
+    static final Cache<List<Object>, FeatureEncodingPlan> PLANS =
+            CacheBuilder.newBuilder().maximumSize(1000).build();
+
+    /** Lazily initialized, see {@link #getExecutor()} */
+    private static ExecutorService executor;
+
+    final SimpleFeatureCollection features;
+
+    final Map<SimpleFeatureType, FeatureEncodingPlan> plans;
+
+    final boolean encodeFeatureMember;
+
+    final String memberQName;
+
+    final int numDecimals;
+
+    final boolean srsDimension;
+
+    final boolean bounds;
+
+    int threads = THREADS;
+
+    int chunkSize = CHUNK_SIZE;
+
+    GML3StreamingEncoderDelegate(
+            SimpleFeatureCollection features,
+            Map<SimpleFeatureType, FeatureEncodingPlan> plans,
+            String gmlPrefix,
+            boolean encodeFeatureMember,
+            int numDecimals,
+            boolean srsDimension,
+            boolean bounds) {
+        this.features = features;
+        this.plans = plans;
+        this.encodeFeatureMember = encodeFeatureMember;
+        String member = encodeFeatureMember ? "featureMember" : "featureMembers";
+        this.memberQName = gmlPrefix == null ? member : gmlPrefix + ":" + member;
+        this.numDecimals = numDecimals;
+        this.srsDimension = srsDimension;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Builds the streaming delegate for the given collections, or returns null if any of them has
+     * a feature type the encoding plans cannot handle, in which case the standard encoding should
+     * be used
+     *
+     * @param collections the simple feature collections being encoded
+     * @param features the collection wrapping them all
+     */
+    static GML3StreamingEncoderDelegate create(
+            List<FeatureCollection> collections,
+            SimpleFeatureCollection features,
+            Encoder encoder,
+            Catalog catalog,
+            boolean encodeFeatureMember,
+            boolean bounds) {
+        Configuration configuration = encoder.getConfiguration();
+        GMLConfiguration gml = configuration.getDependency(GMLConfiguration.class);
+        if (gml == null) {
+            return null;
+        }
+        SrsSyntax srsSyntax = WFSXmlUtils.getSrsSyntax(configuration);
+        String gmlPrefix = getPrefix(encoder, GML.NAMESPACE, "gml");
+        Map<SimpleFeatureType, FeatureEncodingPlan> plans = new IdentityHashMap<>();
+        for (FeatureCollection collection : collections) {
+            SimpleFeatureType type = (SimpleFeatureType) collection.getSchema();
+            FeatureEncodingPlan plan = getPlan(type, encoder, catalog, gmlPrefix, srsSyntax);
+            if (plan == null) {
+                return null;
+            }
+            plans.put(type, plan);
+        }
+        boolean srsDimension = !configuration.hasProperty(GMLConfiguration.NO_SRS_DIMENSION);
+        return new GML3StreamingEncoderDelegate(
+                features,
+                plans,
+                gmlPrefix,
+                encodeFeatureMember,
+                gml.getNumDecimals(),
+                srsDimension,
+                bounds);
+    }
+
+    private static FeatureEncodingPlan getPlan(
+            SimpleFeatureType type,
+            Encoder encoder,
+            Catalog catalog,
+            String gmlPrefix,
+            SrsSyntax srsSyntax) {
+        // curved geometries have their own GML representation
+        FeatureTypeInfo info = catalog.getFeatureTypeByName(type.getName());
+        if (info != null && info.isCircularArcPresent()) {
+            return null;
+        }
+        String uri = type.getName().getNamespaceURI();
+        String defaultPrefix = info != null ? info.getNamespace().getPrefix() : null;
+        String prefix = getPrefix(encoder, uri, defaultPrefix);
+        List<Object> key = Arrays.asList(type, prefix, gmlPrefix, srsSyntax);
+        FeatureEncodingPlan plan = PLANS.getIfPresent(key);
+        if (plan == null) {
+            plan =
+                    FeatureEncodingPlan.build(
+                            type, prefix, gmlPrefix, crs -> getSrsName(crs, srsSyntax));
+            if (plan == null) {
+                return null;
+            }
+            PLANS.put(key, plan);
+        }
+        return plan;
+    }
+
+    private static String getPrefix(Encoder encoder, String uri, String defaultPrefix) {
+        String prefix = encoder.getNamespaces().getPrefix(uri);
+        return prefix != null ? prefix : defaultPrefix;
+    }
+
+    private static String getSrsName(CoordinateReferenceSystem crs, SrsSyntax srsSyntax) {
+        try {
+            Integer code = CRS.lookupEpsgCode(crs, false);
+            if (code != null) {
+                return srsSyntax.getPrefix() + code;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to lookup the EPSG code of " + crs, e);
+        }
+        return CRS.toSRS(crs);
+    }
+
+    private static int getProperty(String key, int defaultValue) {
+        String value = GeoServerExtensions.getProperty(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid " + key + " value " + value + ", using default");
+            }
+        }
+        return defaultValue;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("GMLEncoder-");
+            threadFactory.setDaemon(true);
+            int size = Math.max(1, THREADS);
+            ThreadPoolExecutor pool =
+                    new ThreadPoolExecutor(
+                            size,
+                            size,
+                            60L,
+                            TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(),
+                            threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    @Override
+    public void encode(ContentHandler output) throws Exception {
+        if (!encodeFeatureMember) {
+            output.startElement(GML.NAMESPACE, "featureMembers", memberQName, new AttributesImpl());
+        }
+        try (SimpleFeatureIterator it = features.features()) {
+            if (threads <= 1) {
+                encodeChunk(it, output);
+            } else {
+                encodeParallel(it, output);
+            }
+        }
+        if (!encodeFeatureMember) {
+            output.endElement(GML.NAMESPACE, "featureMembers", memberQName);
+        }
+    }
+
+    /** Encodes all the remaining features directly in the output */
+    private void encodeChunk(SimpleFeatureIterator it, ContentHandler output) throws Exception {
+        CoordinateFormatter formatter = new CoordinateFormatter(numDecimals);
+        while (it.hasNext()) {
+            encodeFeature(it.next(), output, formatter);
+        }
+    }
+
+    /**
+     * Reads the features in chunks, encodes them on the pool, and writes them out in order,
+     * keeping at most twice as many chunks in flight as threads
+     */
+    private void encodeParallel(SimpleFeatureIterator it, ContentHandler output)
+            throws Exception {
+        ExecutorService executor = getExecutor();
+        Deque<Future<RecordingHandler>> pending = new ArrayDeque<>();
+        try {
+            List<SimpleFeature> chunk = new ArrayList<>(chunkSize);
+            while (it.hasNext()) {
+                chunk.add(it.next());
+                if (chunk.size() >= chunkSize) {
+                    pending.add(executor.submit(new ChunkEncoder(chunk)));
+                    chunk = new ArrayList<>(chunkSize);
+                    if (pending.size() >= threads * 2) {
+                        get(pending.poll()).replay(output);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.add(executor.submit(new ChunkEncoder(chunk)));
+            }
+            while (!pending.isEmpty()) {
+                get(pending.poll()).replay(output);
+            }
+        } finally {
+            for (Future<RecordingHandler> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private RecordingHandler get(Future<RecordingHandler> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void encodeFeature(
+            SimpleFeature feature, ContentHandler output, CoordinateFormatter formatter)
+            throws Exception {
+        FeatureEncodingPlan plan = plans.get(feature.getFeatureType());
+        if (plan == null) {
+            // the reader returned a different, yet equal, type instance
+            for (Map.Entry<SimpleFeatureType, FeatureEncodingPlan> entry : plans.entrySet()) {
+                if (entry.getKey().equals(feature.getFeatureType())) {
+                    plan = entry.getValue();
+                    break;
+                }
+            }
+            if (plan == null) {
+                throw new IllegalStateException(
+                        "No encoding plan for feature type " + feature.getFeatureType());
+            }
+        }
+        if (encodeFeatureMember) {
+            output.startElement(GML.NAMESPACE, "featureMember", memberQName, new AttributesImpl());
+        }
+        plan.encode(feature, output, formatter, srsDimension, bounds);
+        if (encodeFeatureMember) {
+            output.endElement(GML.NAMESPACE, "featureMember", memberQName);
+        }
+    }
+
+    /** Encodes a chunk of features into a {@link RecordingHandler} */
+    private class ChunkEncoder implements Callable<RecordingHandler> {
+
+        final List<SimpleFeature> chunk;
+
+        ChunkEncoder(List<SimpleFeature> chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public RecordingHandler call() throws Exception {
+            RecordingHandler recorder = new RecordingHandler();
+            CoordinateFormatter formatter = new CoordinateFormatter(numDecimals);
+            for (SimpleFeature feature : chunk) {
+                encodeFeature(feature, recorder, formatter);
+            }
+            return recorder;
+        }
+    }
+
+    /**
+     * Records the element and text events produced while encoding a chunk, to be replayed later in
+     * the actual output
+     */
+    static class RecordingHandler extends DefaultHandler {
+
+        static final Object END = new Object();
+
+        /** Start element events, end markers, and text */
+        final List<Object> events = new ArrayList<>();
+
+        static class Start {
+            final String uri;
+            final String localName;
+            final String qName;
+            final Attributes atts;
+
+            Start(String uri, String localName, String qName, Attributes atts) {
+                this.uri = uri;
+                this.localName = localName;
+                this.qName = qName;
+                this.atts = atts.getLength() == 0 ? atts : new AttributesImpl(atts);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            events.add(new Start(uri, localName, qName, atts));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            events.add(END);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            events.add(new String(ch, start, length));
+        }
+
+        void replay(ContentHandler output) throws Exception {
+            Deque<Start> open = new ArrayDeque<>();
+            for (Object event : events) {
+                if (event == END) {
+                    Start start = open.pop();
+                    output.endElement(start.uri, start.localName, start.qName);
+                } else if (event instanceof Start) {
+                    Start start = (Start) event;
+                    output.startElement(start.uri, start.localName, start.qName, start.atts);
+                    open.push(start);
+                } else {
+                    char[] chars = ((String) event).toCharArray();
+                    output.characters(chars, 0, chars.length);
+                }
+            }
+        }
+    }
+}
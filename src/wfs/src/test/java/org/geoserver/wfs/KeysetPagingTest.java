@@ -0,0 +1,77 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Test;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.FeatureType;
+
+public class KeysetPagingTest {
+
+    SimpleFeatureCollection page(String spec, int count) throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("test", spec);
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            SimpleFeatureBuilder fb = new SimpleFeatureBuilder(type);
+            fb.set("name", "f" + i);
+            if (type.getDescriptor("num") != null) {
+                fb.set("num", i);
+            }
+            features.add(fb.buildFeature("test." + i));
+        }
+        return new ListFeatureCollection(type, features);
+    }
+
+    @Test
+    public void testLastKeyFromPage() throws Exception {
+        KeysetPaging keyset = new KeysetPaging("num", null);
+        FeatureCollection<? extends FeatureType, ? extends Feature> read =
+                keyset.read(page("num:Integer,name:String", 5), 5);
+        assertEquals(5, read.size());
+        // no query is needed, no source has been set
+        assertEquals("4", keyset.getLastKey(5));
+    }
+
+    @Test
+    public void testEmptyPage() throws Exception {
+        KeysetPaging keyset = new KeysetPaging("num", null);
+        keyset.read(page("num:Integer,name:String", 0), 5);
+        assertTrue(keyset.buffered);
+        assertNull(keyset.getLastKey(0));
+    }
+
+    @Test
+    public void testKeyNotInPage() throws Exception {
+        // the key is not among the requested properties, it will have to be queried
+        KeysetPaging keyset = new KeysetPaging("num", null);
+        FeatureCollection<? extends FeatureType, ? extends Feature> read =
+                keyset.read(page("name:String", 5), 5);
+        assertEquals(5, read.size());
+        assertFalse(keyset.buffered);
+    }
+
+    @Test
+    public void testLargePage() throws Exception {
+        KeysetPaging keyset = new KeysetPaging("num", null);
+        SimpleFeatureCollection page = page("num:Integer,name:String", 5);
+        assertSame(page, keyset.read(page, KeysetPaging.MAX_BUFFERED_FEATURES + 1));
+        assertFalse(keyset.buffered);
+    }
+}
@@ -0,0 +1,108 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TotalCountCalculatorTest {
+
+    /** A count that can only complete if run concurrently with the others sharing the latch */
+    static class ConcurrentCount extends CountExecutor {
+        final int count;
+        final CountDownLatch latch;
+
+        ConcurrentCount(int count, CountDownLatch latch) {
+            super(null, null);
+            this.count = count;
+            this.latch = latch;
+        }
+
+        @Override
+        public int getCount() throws IOException {
+            latch.countDown();
+            try {
+                if (!latch.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("Counts were not run concurrently");
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void testPreComputed() throws Exception {
+        TotalCountCalculator calculator =
+                new TotalCountCalculator(
+                        Arrays.asList(new CountExecutor(10), new CountExecutor(5)), 2);
+        assertTrue(calculator.isPreComputed());
+        assertEquals(15, calculator.getTotalCount());
+    }
+
+    @Test
+    public void testConcurrentCounts() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        TotalCountCalculator calculator =
+                new TotalCountCalculator(
+                        Arrays.asList(
+                                new CountExecutor(1),
+                                new ConcurrentCount(10, latch),
+                                new ConcurrentCount(20, latch)),
+                        2);
+        assertFalse(calculator.isPreComputed());
+        assertEquals(31, calculator.getTotalCount());
+    }
+
+    @Test
+    public void testUnknownCount() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        TotalCountCalculator calculator =
+                new TotalCountCalculator(
+                        Arrays.asList(
+                                new ConcurrentCount(-1, latch), new ConcurrentCount(20, latch)),
+                        2);
+        assertEquals(-1, calculator.getTotalCount());
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        TotalCountCalculator calculator =
+                new TotalCountCalculator(
+                        Arrays.asList(
+                                new ConcurrentCount(10, new CountDownLatch(1)),
+                                new ConcurrentCount(20, new CountDownLatch(1))),
+                        1);
+        assertEquals(30, calculator.getTotalCount());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CountExecutor failing =
+                new CountExecutor(null, null) {
+                    @Override
+                    public int getCount() throws IOException {
+                        throw new IOException("fake");
+                    }
+                };
+        TotalCountCalculator calculator =
+                new TotalCountCalculator(Arrays.asList(failing, new CountExecutor(null, null)), 2);
+        try {
+            calculator.getTotalCount();
+            fail("Should have failed");
+        } catch (IOException e) {
+            assertEquals("fake", e.getMessage());
+        }
+    }
+}
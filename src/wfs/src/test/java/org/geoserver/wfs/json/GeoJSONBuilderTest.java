@@ -17,9 +17,11 @@ import java.util.TimeZone;
 import java.util.UUID;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import org.geotools.referencing.CRS;
 import org.junit.Before;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
@@ -494,6 +496,40 @@ public class GeoJSONBuilderTest {
                 writer.toString());
     }
 
+    @Test
+    public void testWriteGeometryMember() throws Exception {
+        builder.object().key("geometry");
+        builder.writeGeom(new WKTReader().read("POINT(1 2)"));
+        builder.key("bbox").value(null).key("id").value("f1").endObject();
+        assertEquals(
+                "{\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},\"bbox\":null,\"id\":\"f1\"}",
+                writer.toString());
+    }
+
+    @Test
+    public void testWriteNorthEastBoundingBox() throws Exception {
+        builder.setAxisOrder(CRS.AxisOrder.NORTH_EAST);
+        builder.setNumberOfDecimals(3);
+        builder.object();
+        builder.writeBoundingBox(new Envelope(10.12345, 20.5, 45.0001, 46));
+        builder.key("geometry");
+        builder.writeGeom(new WKTReader().read("LINESTRING(10.12345 45, 20.5 46)"));
+        builder.endObject();
+        assertEquals(
+                "{\"bbox\":[45,10.123,46,20.5],"
+                        + "\"geometry\":{\"type\":\"LineString\",\"coordinates\":[[45,10.123],[46,20.5]]}}",
+                writer.toString());
+    }
+
+    @Test
+    public void testWriteScientificNotation() throws Exception {
+        builder.setNumberOfDecimals(8);
+        builder.writeGeom(new WKTReader().read("POINT(123456789.5 0.00001 -0.0004)"));
+        assertEquals(
+                "{\"type\":\"Point\",\"coordinates\":[1.234567895E8,1.0E-5,-4.0E-4]}",
+                writer.toString());
+    }
+
     /** Checks max json nested level should allow up to 100 by default. */
     @Test
     public void testMaxNestedLevel() {
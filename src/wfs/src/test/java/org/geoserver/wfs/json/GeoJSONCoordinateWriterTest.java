@@ -0,0 +1,67 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.util.Random;
+import net.sf.json.JSONException;
+import net.sf.json.util.JSONUtils;
+import org.junit.Test;
+
+public class GeoJSONCoordinateWriterTest {
+
+    String write(double value, int numDecimals) throws Exception {
+        StringWriter writer = new StringWriter();
+        GeoJSONCoordinateWriter coordinates = new GeoJSONCoordinateWriter(writer);
+        coordinates.setNumberOfDecimals(numDecimals);
+        coordinates.writeNumber(value);
+        return writer.toString();
+    }
+
+    /** The output json-lib produces for a rounded value */
+    String expected(double value, int numDecimals) {
+        return JSONUtils.numberToString(RoundingUtil.round(value, numDecimals));
+    }
+
+    @Test
+    public void testSpecificCases() throws Exception {
+        assertEquals("0", write(0, 6));
+        assertEquals("0", write(-0.0000001, 6));
+        assertEquals("1", write(0.9999999, 6));
+        assertEquals("-12.5", write(-12.5, 6));
+        assertEquals("45.123457", write(45.1234567, 6));
+        assertEquals("0.001", write(0.001, 3));
+        assertEquals("1.0E-4", write(0.0001, 4));
+        assertEquals("1.0E7", write(9999999.9, 0));
+        assertEquals("1.23456789123E8", write(123456789.123, 12));
+    }
+
+    @Test
+    public void testSameAsJSONLib() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            int numDecimals = random.nextInt(10);
+            double value;
+            switch (i % 3) {
+                case 0:
+                    value = (random.nextDouble() - 0.5) * 360;
+                    break;
+                case 1:
+                    value = (random.nextDouble() - 0.5) * 4e7;
+                    break;
+                default:
+                    value = (random.nextDouble() - 0.5) * 0.01;
+            }
+            assertEquals(expected(value, numDecimals), write(value, numDecimals));
+        }
+    }
+
+    @Test(expected = JSONException.class)
+    public void testNaN() throws Exception {
+        write(Double.NaN, 6);
+    }
+}
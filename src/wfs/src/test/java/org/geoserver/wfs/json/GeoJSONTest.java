@@ -420,6 +420,23 @@ public class GeoJSONTest extends WFSTestSupport {
         assertEquals(aFeature.getString("geometry_name"), "surfaceProperty");
     }
 
+    @Test
+    public void testToggleJsonp() throws Exception {
+        String path =
+                "wfs?request=GetFeature&version=1.0.0&typename=sf:PrimitiveGeoFeature&maxfeatures=1&outputformat="
+                        + JSONType.jsonp;
+        // the dispatcher caches the responses, the JSONP one must come and go with the toggle
+        JSONType.setJsonpEnabled(false);
+        assertFalse(JSONType.jsonp.equals(getAsServletResponse(path).getContentType()));
+        try {
+            JSONType.setJsonpEnabled(true);
+            assertEquals(JSONType.jsonp, getAsServletResponse(path).getContentType());
+        } finally {
+            JSONType.setJsonpEnabled(false);
+        }
+        assertFalse(JSONType.jsonp.equals(getAsServletResponse(path).getContentType()));
+    }
+
     @Test
     public void testGetFeatureCountNoFilter() throws Exception {
         // request without filter
@@ -0,0 +1,119 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.v1_1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import javax.xml.namespace.QName;
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.XMLUnit;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wfs.WFSTestSupport;
+import org.geoserver.wfs.xml.GML3OutputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Checks the streaming GML 3.1 encoder produces the same output as the standard optimized one, on
+ * the WFS test data
+ */
+public class GetFeatureStreamingTest extends WFSTestSupport {
+
+    GML3OutputFormat format;
+
+    @Before
+    public void setUpFormat() {
+        assumeTrue(GML3OutputFormat.OPTIMIZED_ENCODING);
+        format = applicationContext.getBean("gml3OutputFormat", GML3OutputFormat.class);
+    }
+
+    @After
+    public void resetFormat() {
+        if (format != null) {
+            format.setStreamingEncoding(GML3OutputFormat.STREAMING_ENCODING);
+        }
+    }
+
+    /** Runs the request with and without the streaming encoder, and compares the results */
+    void assertSameOutput(String path, int expectedFeatures, String featureElement)
+            throws Exception {
+        format.setStreamingEncoding(false);
+        Document standard = getAsDOM(path);
+        format.setStreamingEncoding(true);
+        Document streaming = getAsDOM(path);
+
+        assertEquals(expectedFeatures, standard.getElementsByTagName(featureElement).getLength());
+        // the only expected difference
+        standard.getDocumentElement().removeAttribute("timeStamp");
+        streaming.getDocumentElement().removeAttribute("timeStamp");
+        boolean ignoreWhitespace = XMLUnit.getIgnoreWhitespace();
+        XMLUnit.setIgnoreWhitespace(true);
+        try {
+            Diff diff = new Diff(standard, streaming);
+            assertTrue(diff.toString(), diff.similar());
+        } finally {
+            XMLUnit.setIgnoreWhitespace(ignoreWhitespace);
+        }
+    }
+
+    void assertSameOutput(QName typeName, int expectedFeatures) throws Exception {
+        String name = getLayerId(typeName);
+        assertSameOutput(
+                "wfs?service=WFS&version=1.1.0&request=GetFeature&typename=" + name,
+                expectedFeatures,
+                name);
+    }
+
+    @Test
+    public void testDatesAndNulls() throws Exception {
+        // dates, timestamps, URIs, booleans and null geometries and values
+        assertSameOutput(MockData.PRIMITIVEGEOFEATURE, 5);
+    }
+
+    @Test
+    public void testMultiGeometries() throws Exception {
+        // multi points, multi linestrings with several members, multi polygons with holes
+        assertSameOutput(MockData.AGGREGATEGEOFEATURE, 4);
+    }
+
+    @Test
+    public void testCiteTypes() throws Exception {
+        assertSameOutput(MockData.BASIC_POLYGONS, 3);
+        assertSameOutput(MockData.BRIDGES, 1);
+        assertSameOutput(MockData.BUILDINGS, 2);
+        assertSameOutput(MockData.DIVIDED_ROUTES, 1);
+        assertSameOutput(MockData.FORESTS, 1);
+        assertSameOutput(MockData.LAKES, 1);
+        assertSameOutput(MockData.MAP_NEATLINE, 1);
+        assertSameOutput(MockData.NAMED_PLACES, 2);
+        assertSameOutput(MockData.PONDS, 1);
+        assertSameOutput(MockData.ROAD_SEGMENTS, 5);
+        assertSameOutput(MockData.STREAMS, 2);
+    }
+
+    @Test
+    public void testMultipleTypes() throws Exception {
+        String path =
+                "wfs?service=WFS&version=1.1.0&request=GetFeature&typename="
+                        + getLayerId(MockData.PRIMITIVEGEOFEATURE)
+                        + ","
+                        + getLayerId(MockData.AGGREGATEGEOFEATURE);
+        assertSameOutput(path, 4, getLayerId(MockData.AGGREGATEGEOFEATURE));
+    }
+
+    @Test
+    public void testReprojected() throws Exception {
+        String name = getLayerId(MockData.AGGREGATEGEOFEATURE);
+        assertSameOutput(
+                "wfs?service=WFS&version=1.1.0&request=GetFeature&srsName=EPSG:3857&typename="
+                        + name,
+                4,
+                name);
+    }
+}
@@ -24,6 +24,7 @@ import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.data.test.SystemTestData;
 import org.geoserver.ows.util.KvpMap;
+import org.geoserver.wfs.GetFeature;
 import org.geotools.data.DataStore;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.FeatureStore;
@@ -659,6 +660,52 @@ public class GetFeaturePagingTest extends WFS20TestSupport {
         XMLAssert.assertXpathExists("//gs:Fifteen/gs:num[text() = '14']", dom);
     }
 
+    @Test
+    public void testKeysetPagingGET() throws Exception {
+        FeatureTypeInfo fti = getCatalog().getFeatureTypeByName("gs", "Fifteen");
+        fti.getMetadata().put(GetFeature.KEYSET_PAGING_ATTRIBUTE, "num");
+        getCatalog().save(fti);
+        try {
+            Document doc =
+                    getAsDOM(
+                            "wfs?service=WFS&version=2.0.0&request=GetFeature&typeName=gs:Fifteen"
+                                    + "&startIndex=0&count=5");
+            XMLAssert.assertXpathEvaluatesTo("5", "count(//gs:Fifteen)", doc);
+            XMLAssert.assertXpathExists("//gs:Fifteen/gs:num[text() = '4']", doc);
+            assertStartIndexCount(doc, "next", 5, 5);
+            String next = doc.getDocumentElement().getAttribute("next");
+            assertEquals("4", toKvpMap(next).get(GetFeature.SEEK_AFTER));
+
+            // the next page is read after the last key
+            doc = getAsDOM(next.substring(next.indexOf("wfs")));
+            XMLAssert.assertXpathEvaluatesTo("5", "count(//gs:Fifteen)", doc);
+            XMLAssert.assertXpathExists("//gs:Fifteen/gs:num[text() = '5']", doc);
+            XMLAssert.assertXpathExists("//gs:Fifteen/gs:num[text() = '9']", doc);
+            XMLAssert.assertXpathEvaluatesTo(
+                    "15", "/wfs:FeatureCollection/@numberMatched", doc);
+            String prev = doc.getDocumentElement().getAttribute("previous");
+            assertStartIndexCount(doc, "previous", 0, 5);
+            assertFalse(toKvpMap(prev).containsKey(GetFeature.SEEK_AFTER));
+            next = doc.getDocumentElement().getAttribute("next");
+            assertStartIndexCount(doc, "next", 10, 5);
+            assertEquals("9", toKvpMap(next).get(GetFeature.SEEK_AFTER));
+
+            // sorting on something else falls back to offset paging
+            doc =
+                    getAsDOM(
+                            "wfs?service=WFS&version=2.0.0&request=GetFeature&typeName=gs:Fifteen"
+                                    + "&sortBy=num DESC&startIndex=0&count=5");
+            XMLAssert.assertXpathExists("//gs:Fifteen/gs:num[text() = '14']", doc);
+            next = doc.getDocumentElement().getAttribute("next");
+            assertStartIndexCount(doc, "next", 5, 5);
+            assertFalse(toKvpMap(next).containsKey(GetFeature.SEEK_AFTER));
+        } finally {
+            fti = getCatalog().getFeatureTypeByName("gs", "Fifteen");
+            fti.getMetadata().remove(GetFeature.KEYSET_PAGING_ATTRIBUTE);
+            getCatalog().save(fti);
+        }
+    }
+
     @Test
     public void testNextPreviousHitsGET() throws Exception {
         doTestNextPreviousHitsGET("gs:Fifteen");
@@ -0,0 +1,163 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.xml.v1_1_0;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Map;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class GML3StreamingEncoderDelegateTest {
+
+    static final String NS = "http://www.geoserver.org/test";
+
+    /** Writes the events as a compact XML like string */
+    static class StringHandler extends DefaultHandler {
+        StringBuilder sb = new StringBuilder();
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            sb.append("<").append(qName);
+            for (int i = 0; i < atts.getLength(); i++) {
+                sb.append(" ").append(atts.getQName(i)).append("=\"");
+                sb.append(atts.getValue(i)).append("\"");
+            }
+            sb.append(">");
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            sb.append("</").append(qName).append(">");
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            sb.append(ch, start, length);
+        }
+    }
+
+    SimpleFeatureType buildType(Class<?> geometryBinding) throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("Points");
+        tb.setNamespaceURI(NS);
+        tb.add("name", String.class);
+        tb.add("geom", geometryBinding, CRS.decode("EPSG:4326"));
+        return tb.buildFeatureType();
+    }
+
+    ListFeatureCollection buildFeatures(SimpleFeatureType type, int count) throws Exception {
+        ListFeatureCollection features = new ListFeatureCollection(type);
+        WKTReader reader = new WKTReader();
+        for (int i = 0; i < count; i++) {
+            Geometry point = reader.read("POINT(" + i + " " + (i + 0.5) + ")");
+            features.add(SimpleFeatureBuilder.build(type, new Object[] {"p" + i, point}, "p." + i));
+        }
+        return features;
+    }
+
+    String encode(ListFeatureCollection features, int threads, boolean featureMember)
+            throws Exception {
+        SimpleFeatureType type = features.getSchema();
+        FeatureEncodingPlan plan = FeatureEncodingPlan.build(type, "t", "gml", CRS::toSRS);
+        Map<SimpleFeatureType, FeatureEncodingPlan> plans = Collections.singletonMap(type, plan);
+        GML3StreamingEncoderDelegate delegate =
+                new GML3StreamingEncoderDelegate(
+                        features, plans, "gml", featureMember, 4, true, false);
+        delegate.threads = threads;
+        delegate.chunkSize = 7;
+        StringHandler handler = new StringHandler();
+        delegate.encode(handler);
+        return handler.sb.toString();
+    }
+
+    @Test
+    public void testEncodeFeature() throws Exception {
+        String gml = encode(buildFeatures(buildType(Point.class), 1), 1, false);
+        assertEquals(
+                "<gml:featureMembers><t:Points gml:id=\"p.0\"><t:name>p0</t:name><t:geom>"
+                        + "<gml:Point srsName=\"EPSG:4326\" srsDimension=\"2\">"
+                        + "<gml:pos>0 0.5</gml:pos></gml:Point></t:geom></t:Points>"
+                        + "</gml:featureMembers>",
+                gml);
+    }
+
+    @Test
+    public void testEncodeFeatureMember() throws Exception {
+        String gml = encode(buildFeatures(buildType(Point.class), 2), 1, true);
+        assertThat(gml, containsString("<gml:featureMember><t:Points gml:id=\"p.0\">"));
+        assertThat(gml, containsString("</t:Points></gml:featureMember><gml:featureMember>"));
+    }
+
+    @Test
+    public void testParallelPreservesOrder() throws Exception {
+        ListFeatureCollection features = buildFeatures(buildType(Point.class), 100);
+        String sequential = encode(features, 1, false);
+        String parallel = encode(features, 3, false);
+        assertEquals(sequential, parallel);
+        assertThat(parallel, containsString("<gml:pos>99 99.5</gml:pos>"));
+    }
+
+    @Test
+    public void testMultiPolygon() throws Exception {
+        SimpleFeatureType type = buildType(MultiPolygon.class);
+        ListFeatureCollection features = new ListFeatureCollection(type);
+        Geometry polygon =
+                new WKTReader()
+                        .read("MULTIPOLYGON(((0 0, 10 0, 10 10, 0 0), (1 1, 2 1, 2 2, 1 1)))");
+        features.add(SimpleFeatureBuilder.build(type, new Object[] {null, polygon}, "mp.1"));
+        String gml = encode(features, 1, false);
+        assertThat(
+                gml,
+                containsString(
+                        "<t:geom><gml:MultiSurface srsName=\"EPSG:4326\" srsDimension=\"2\">"
+                                + "<gml:surfaceMember><gml:Polygon><gml:exterior><gml:LinearRing>"
+                                + "<gml:posList>0 0 10 0 10 10 0 0</gml:posList>"));
+        assertThat(gml, containsString("<gml:interior><gml:LinearRing>"));
+        // null values are skipped
+        assertThat(gml, containsString("<t:Points gml:id=\"mp.1\"><t:geom>"));
+    }
+
+    @Test
+    public void testSrsNamePerGeometry() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("Points");
+        tb.setNamespaceURI(NS);
+        tb.add("geom", Point.class, CRS.decode("EPSG:4326"));
+        tb.add("projected", Point.class, CRS.decode("EPSG:3857"));
+        tb.add("unknown", Point.class);
+        SimpleFeatureType type = tb.buildFeatureType();
+        ListFeatureCollection features = new ListFeatureCollection(type);
+        WKTReader reader = new WKTReader();
+        Geometry point = reader.read("POINT(1 2)");
+        features.add(SimpleFeatureBuilder.build(type, new Object[] {point, point, point}, "p.1"));
+
+        String gml = encode(features, 1, false);
+        assertThat(gml, containsString("<t:geom><gml:Point srsName=\"EPSG:4326\""));
+        assertThat(gml, containsString("<t:projected><gml:Point srsName=\"EPSG:3857\""));
+        assertThat(gml, containsString("<t:unknown><gml:Point srsDimension=\"2\">"));
+    }
+
+    @Test
+    public void testUnsupportedGeometry() throws Exception {
+        assertNull(FeatureEncodingPlan.build(buildType(Geometry.class), "t", "gml", CRS::toSRS));
+        assertNotNull(FeatureEncodingPlan.build(buildType(Point.class), "t", "gml", CRS::toSRS));
+    }
+}
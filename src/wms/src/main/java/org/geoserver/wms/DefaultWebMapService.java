@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import net.opengis.wfs.FeatureCollectionType;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
@@ -23,6 +24,7 @@ import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyledLayerDescriptor;
 import org.geotools.util.SuppressFBWarnings;
+import org.geotools.util.logging.Logging;
 import org.geotools.xml.transform.TransformerBase;
 import org.locationtech.jts.geom.Envelope;
 import org.springframework.beans.BeansException;
@@ -58,6 +60,9 @@ import org.springframework.context.ApplicationContextAware;
  */
 public class DefaultWebMapService
         implements WebMapService, ApplicationContextAware, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(DefaultWebMapService.class);
+
     /** default for 'format' parameter. */
     public static String FORMAT = "image/png";
 
@@ -108,6 +113,12 @@ public class DefaultWebMapService
     /** Use a global rendering pool, or use a new pool each time */
     private static Boolean USE_GLOBAL_RENDERING_POOL = null;
 
+    /**
+     * Max number of maps rendered in parallel by the global rendering pool, zero or less for an
+     * unbounded pool
+     */
+    private static Integer RENDERING_POOL_SIZE = null;
+
     private GetCapabilities getCapabilities;
 
     private DescribeLayer describeLayer;
@@ -186,6 +197,28 @@ public class DefaultWebMapService
             if (usePool == null) USE_GLOBAL_RENDERING_POOL = true;
             else USE_GLOBAL_RENDERING_POOL = Boolean.valueOf(usePool);
         }
+
+        // size of the global rendering thread pool
+        if (RENDERING_POOL_SIZE == null) {
+            String size = GeoServerExtensions.getProperty("RENDERING_POOL_SIZE", context);
+            // default to twice the number of cores, but allow going back to an unbounded pool
+            if (size == null) RENDERING_POOL_SIZE = getDefaultRenderingPoolSize();
+            else {
+                try {
+                    RENDERING_POOL_SIZE = Integer.valueOf(size.trim());
+                } catch (NumberFormatException e) {
+                    LOGGER.warning(
+                            "Invalid RENDERING_POOL_SIZE value '"
+                                    + size
+                                    + "', using the default instead");
+                    RENDERING_POOL_SIZE = getDefaultRenderingPoolSize();
+                }
+            }
+        }
+    }
+
+    static int getDefaultRenderingPoolSize() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
     }
 
     /**
@@ -337,12 +370,25 @@ public class DefaultWebMapService
         new GetMapDefaults().autoSetBoundsAndSize(getMap);
     }
 
-    /** Returns a app wide cached rendering pool that can be used for parallelized rendering */
+    /**
+     * Returns a app wide rendering pool that can be used for parallelized rendering. The pool is
+     * bounded to RENDERING_POOL_SIZE threads, unless the size is zero or less.
+     */
     public static ExecutorService getRenderingPool() {
         if (USE_GLOBAL_RENDERING_POOL && RENDERING_POOL == null) {
             synchronized (DefaultWebMapService.class) {
                 if (RENDERING_POOL == null) {
-                    RENDERING_POOL = new ThreadLocalTransferExecutor();
+                    int size =
+                            RENDERING_POOL_SIZE != null
+                                    ? RENDERING_POOL_SIZE
+                                    : getDefaultRenderingPoolSize();
+                    if (size > 0) {
+                        RenderingExecutor executor = new RenderingExecutor(size);
+                        executor.register();
+                        RENDERING_POOL = executor;
+                    } else {
+                        RENDERING_POOL = new ThreadLocalTransferExecutor();
+                    }
                 }
             }
         }
@@ -350,8 +396,23 @@ public class DefaultWebMapService
         return RENDERING_POOL;
     }
 
+    /**
+     * Returns the app wide rendering pool, as seen by a map of the given size. When the pool is
+     * bounded, tile sized maps get a thread before the large ones queued around the same time.
+     */
+    public static ExecutorService getRenderingPool(int width, int height) {
+        ExecutorService pool = getRenderingPool();
+        if (pool instanceof RenderingExecutor) {
+            return ((RenderingExecutor) pool).forMap(width, height);
+        }
+        return pool;
+    }
+
     public void destroy() throws Exception {
         if (RENDERING_POOL != null) {
+            if (RENDERING_POOL instanceof RenderingExecutor) {
+                ((RenderingExecutor) RENDERING_POOL).unregister();
+            }
             RENDERING_POOL.shutdown();
             RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
             RENDERING_POOL = null;
@@ -0,0 +1,237 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
+import org.geotools.util.logging.Logging;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * A bounded rendering pool, performing thread locals transfer like {@link
+ * ThreadLocalTransferExecutor}, that runs the queued maps in submission order, but for the large
+ * ones, which are queued as if they were submitted {@link #LARGE_MAP_DELAY} later. This way, under
+ * load, tile sized requests are served before large prints, while the latter still get a thread
+ * after waiting at most {@link #LARGE_MAP_DELAY} more than the others.
+ *
+ * <p>The queue is unbounded, a rendering task is never rejected: since the tasks are submitted by
+ * the request threads, the number of queued maps is bounded by the number of concurrent requests.
+ * Use {@link #forMap(int, int)} to get an executor that submits tasks with the priority of a map.
+ */
+class RenderingExecutor extends ThreadPoolExecutor implements RenderingPoolMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(RenderingExecutor.class);
+
+    /** Maps larger than this many pixels are considered large */
+    static final long LARGE_MAP_AREA = 1024 * 1024;
+
+    /** The delay applied to the large maps in the queue */
+    static final long LARGE_MAP_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+    /** Tie breaker for tasks with the same rank, preserving submission order */
+    final AtomicLong sequence = new AtomicLong();
+
+    final LongAdder started = new LongAdder();
+
+    final LongAdder waitTime = new LongAdder();
+
+    /** Creates a pool running at most {@code threads} rendering tasks in parallel */
+    public RenderingExecutor(int threads) {
+        super(
+                threads,
+                threads,
+                60L,
+                TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(),
+                threadFactory());
+        allowCoreThreadTimeOut(true);
+    }
+
+    private static CustomizableThreadFactory threadFactory() {
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("GeoServerRendering-");
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    /**
+     * Returns an executor submitting the tasks to this pool, with the priority of a map of the
+     * given size. Shutting down the returned executor has no effect on the pool.
+     */
+    public ExecutorService forMap(int width, int height) {
+        return new MapExecutor((long) width * height > LARGE_MAP_AREA ? LARGE_MAP_DELAY : 0);
+    }
+
+    /** Registers this pool statistics in the platform MBean server */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the rendering pool MBean", e);
+        }
+    }
+
+    /** Removes this pool statistics from the platform MBean server */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.FINE, "Failed to unregister the rendering pool MBean", e);
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    @Override
+    public double getAverageWaitTime() {
+        long count = started.sum();
+        return count > 0 ? waitTime.sum() / (count * 1e6) : 0;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new RenderingTask<>(callable, 0);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new RenderingTask<>(Executors.callable(runnable, value), 0);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        // the priority queue can only hold comparable tasks
+        if (!(command instanceof RenderingTask)) {
+            command = newTaskFor(command, null);
+        }
+        super.execute(command);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof RenderingTask) {
+            started.increment();
+            waitTime.add(System.nanoTime() - ((RenderingTask<?>) r).submitted);
+        }
+    }
+
+    /** A task ordered by rank, carrying over the thread locals of the submitting thread */
+    final class RenderingTask<T> extends FutureTask<T> implements Comparable<RenderingTask<?>> {
+        final long submitted;
+        final long rank;
+        final long seq;
+
+        RenderingTask(Callable<T> callable, long delay) {
+            super(transfer(callable));
+            this.submitted = System.nanoTime();
+            this.rank = submitted + delay;
+            this.seq = sequence.getAndIncrement();
+        }
+
+        @Override
+        public int compareTo(RenderingTask<?> other) {
+            // nanoTime values must be compared by difference, they might overflow
+            long diff = rank - other.rank;
+            if (diff != 0) {
+                return diff < 0 ? -1 : 1;
+            }
+            return Long.compare(seq, other.seq);
+        }
+    }
+
+    static <T> Callable<T> transfer(Callable<T> callable) {
+        ThreadLocalsTransfer threadLocalTransfer = new ThreadLocalsTransfer();
+        return () -> {
+            threadLocalTransfer.apply();
+            try {
+                return callable.call();
+            } finally {
+                threadLocalTransfer.cleanup();
+            }
+        };
+    }
+
+    /** Submits tasks to the pool with a given delay */
+    final class MapExecutor extends AbstractExecutorService {
+        final long delay;
+
+        MapExecutor(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new RenderingTask<>(callable, delay);
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new RenderingTask<>(Executors.callable(runnable, value), delay);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!(command instanceof RenderingTask)) {
+                command = newTaskFor(command, null);
+            }
+            RenderingExecutor.this.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            // the pool is shared, it's not up to a single map to shut it down
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return RenderingExecutor.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return RenderingExecutor.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return RenderingExecutor.this.awaitTermination(timeout, unit);
+        }
+    }
+}
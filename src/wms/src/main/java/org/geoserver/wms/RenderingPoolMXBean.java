@@ -0,0 +1,30 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+/** JMX view of the rendering pool shared by the GetMap requests */
+public interface RenderingPoolMXBean {
+
+    /** The object name the bean is registered with */
+    String OBJECT_NAME = "org.geoserver:type=RenderingPool";
+
+    /** Number of maps waiting for a rendering thread */
+    int getQueueSize();
+
+    /** Number of threads currently rendering a map */
+    int getActiveCount();
+
+    /** Number of threads in the pool */
+    int getPoolSize();
+
+    /** Maximum number of threads in the pool */
+    int getMaximumPoolSize();
+
+    /** Number of maps rendered so far */
+    long getCompletedTaskCount();
+
+    /** Average time, in milliseconds, the maps waited for a rendering thread */
+    double getAverageWaitTime();
+}
@@ -19,9 +19,9 @@ import org.geoserver.catalog.SLDHandler;
 import org.geoserver.config.GeoServer;
 import org.geoserver.ows.KvpParser;
 import org.geoserver.ows.URLMangler.URLType;
+import org.geoserver.ows.util.KvpParserIndex;
 import org.geoserver.ows.util.KvpUtils;
 import org.geoserver.ows.util.ResponseUtils;
-import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.wms.map.GetMapKvpRequestReader;
 import org.geotools.map.Layer;
 import org.geotools.styling.Style;
@@ -526,22 +526,18 @@ public class WMSRequests {
     public static void mergeEntry(
             Map<String, String> kvp, Map<String, Object> formatOptions, final String key)
             throws Exception {
-        // look up parser objects
-        List<KvpParser> parsers = GeoServerExtensions.extensions(KvpParser.class);
-
-        // strip out parsers which do not match current service/request/version
         String service = KvpUtils.getSingleValue(kvp, "service");
         String version = KvpUtils.getSingleValue(kvp, "version");
         String request = KvpUtils.getSingleValue(kvp, "request");
 
-        KvpUtils.purgeParsers(parsers, service, version, request);
-
         String val = null;
         if ((val = kvp.get(key)) != null) {
             Object foValue = formatOptions.get(key);
             // if not found in format option
             if (foValue == null) {
-                Object parsed = KvpUtils.parseKey(key, val, service, request, version, parsers);
+                // look up the parser matching the current service/request/version
+                KvpParser parser = KvpParserIndex.get().findParser(key, service, request, version);
+                Object parsed = parser != null ? parser.parse(val) : null;
                 if (parsed != null) {
                     formatOptions.put(key, parsed);
                 } else {
@@ -168,11 +168,12 @@ public final class MetatileMapOutputFormat implements GetMapOutputFormat {
                 EnvFunction.setLocalValue("wms_width", mapContent.getMapWidth());
                 EnvFunction.setLocalValue("wms_height", mapContent.getMapHeight());
 
+                long start = System.nanoTime();
                 RenderedImageMap metaTileMap = delegate.produceMap(mapContent);
 
                 RenderedImage metaTile = metaTileMap.getImage();
                 RenderedImage[] tiles = split(key, metaTile);
-                tileCache.storeTiles(key, tiles);
+                tileCache.storeTiles(key, tiles, System.nanoTime() - start);
                 tile = tileCache.getTile(key, request, tiles);
                 renderedCoverages = metaTileMap.getRenderedCoverages();
             }
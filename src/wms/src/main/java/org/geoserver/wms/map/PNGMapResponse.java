@@ -11,14 +11,19 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.geoserver.config.JAIInfo;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.png.AdaptivePNGWriter;
+import org.geoserver.wms.map.png.PNGEncodingStatistics;
 import org.geoserver.wms.map.png.PNGJWriter;
 import org.geotools.image.ImageWorker;
 import org.geotools.util.logging.Logging;
@@ -96,8 +101,16 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         image = applyPalette(image, mapContent, f -> f != null && f.contains("png8"), true);
         float quality = (100 - wms.getPngCompression()) / 100.0f;
         JAIInfo.PngEncoderType encoder = wms.getPNGEncoderType();
-        if (encoder == JAIInfo.PngEncoderType.PNGJ) {
-            image = new PNGJWriter().writePNG(image, outStream, quality, mapContent);
+        CountingOutputStream counter = new CountingOutputStream(outStream);
+        long start = System.nanoTime();
+        String strategy = encoder.name();
+        if (encoder == JAIInfo.PngEncoderType.ADAPTIVE) {
+            AdaptivePNGWriter writer = new AdaptivePNGWriter();
+            image = writer.writePNG(image, counter, quality, mapContent);
+            RasterCleaner.addImage(image);
+            strategy = writer.getStrategy().name();
+        } else if (encoder == JAIInfo.PngEncoderType.PNGJ) {
+            image = new PNGJWriter().writePNG(image, counter, quality, mapContent);
             RasterCleaner.addImage(image);
         } else {
             Boolean PNGNativeAcc = (encoder == JAIInfo.PngEncoderType.NATIVE);
@@ -107,15 +120,42 @@ public class PNGMapResponse extends RenderedImageMapResponse {
             boolean nativeAcceleration =
                     PNGNativeAcc.booleanValue() && !(numBits > 1 && numBits < 8);
             ImageWorker iw = new ImageWorker(image);
-            iw.writePNG(outStream, "FILTERED", quality, nativeAcceleration, false);
+            iw.writePNG(counter, "FILTERED", quality, nativeAcceleration, false);
             RasterCleaner.addImage(iw.getRenderedImage());
         }
+        PNGEncodingStatistics.get()
+                .record(
+                        getLayers(mapContent),
+                        getOutputFormat(mapContent),
+                        strategy,
+                        System.nanoTime() - start,
+                        counter.getByteCount());
 
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Writing png image ... done!");
         }
     }
 
+    /** The requested layer names, used to classify the encoding statistics */
+    private String getLayers(WMSMapContent mapContent) {
+        GetMapRequest request = mapContent != null ? mapContent.getRequest() : null;
+        if (request == null || request.getLayers() == null) {
+            return "";
+        }
+        return request.getLayers()
+                .stream()
+                .map(MapLayerInfo::getName)
+                .collect(Collectors.joining(","));
+    }
+
+    private String getOutputFormat(WMSMapContent mapContent) {
+        GetMapRequest request = mapContent != null ? mapContent.getRequest() : null;
+        if (request != null && request.getFormat() != null && request.getFormat().contains("8")) {
+            return MIME_TYPE_8BIT;
+        }
+        return MIME_TYPE;
+    }
+
     @Override
     public MapProducerCapabilities getCapabilities(String outputFormat) {
         return CAPABILITIES;
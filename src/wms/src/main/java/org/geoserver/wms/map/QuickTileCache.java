@@ -5,35 +5,72 @@
  */
 package org.geoserver.wms.map;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.namespace.QName;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.CacheStatisticsProvider;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.config.ConfigurationListenerAdapter;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionListener;
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
+import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
 import org.geotools.util.CanonicalSet;
+import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Caches the tiles of the meta-tiles rendered for {@code tiled=true} requests, so that the other
+ * tiles of the same meta-tile can be returned without rendering again.
+ *
+ * <p>The cache is bounded by the memory used by the tile images, see {@link #SIZE_KEY}, and
+ * transactions invalidate only the meta-tiles intersecting the modified features bounds and
+ * containing a layer published from the modified store table, whatever its name. The cache
+ * statistics are published along with the resource pool ones, as a {@link
+ * CacheStatisticsProvider}.
+ */
+public class QuickTileCache
+        implements TransactionListener, GeoServerLifecycleHandler, CacheStatisticsProvider {
+
+    static final Logger LOGGER = Logging.getLogger(QuickTileCache.class);
+
+    /** System variable setting the maximum memory used by the cached tiles, in megabytes */
+    public static final String SIZE_KEY = "org.geoserver.wms.metaTileCache.size";
+
+    /** Default maximum memory used by the cached tiles, in megabytes */
+    static final int DEFAULT_SIZE = 64;
 
-public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler {
     /**
      * Set of parameters that we can ignore, since they do not define a map, are either unrelated,
      * or define the tiling instead
@@ -55,9 +92,23 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /** Canonicalizer used to return the same object when two threads ask for the same meta-tile */
     private CanonicalSet<MetaTileKey> metaTileKeys = CanonicalSet.newInstance(MetaTileKey.class);
 
-    private WeakHashMap tileCache = new WeakHashMap();
+    private final long maximumSize = getMaximumSize();
+
+    private final Cache<MetaTileKey, CacheElement> tileCache =
+            CacheBuilder.newBuilder()
+                    .maximumWeight(maximumSize)
+                    .weigher((MetaTileKey key, CacheElement element) -> element.weight)
+                    .recordStats()
+                    .build();
+
+    /** Time spent rendering the cached meta-tiles, in nanoseconds */
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    /** Used to find the source of the layers modified by transactions */
+    Catalog catalog;
 
     public QuickTileCache(GeoServer geoServer) {
+        this.catalog = geoServer.getCatalog();
         geoServer.addListener(
                 new ConfigurationListenerAdapter() {
                     public void handleGlobalChange(
@@ -65,7 +116,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
 
                     public void handleServiceChange(
@@ -73,11 +124,11 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
 
                     public void reloaded() {
-                        tileCache.clear();
+                        tileCache.invalidateAll();
                     }
                 });
     }
@@ -85,6 +136,19 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /** For testing only */
     QuickTileCache() {}
 
+    static long getMaximumSize() {
+        int size = DEFAULT_SIZE;
+        String value = GeoServerExtensions.getProperty(SIZE_KEY);
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + SIZE_KEY + ": " + value);
+            }
+        }
+        return size * 1024L * 1024L;
+    }
+
     /**
      * Given a tiled request, builds a key that can be used to access the cache looking for a
      * specific meta-tile, and also as a synchronization tool to avoid multiple requests to trigger
@@ -114,6 +178,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         Point metaTileCoords = getMetaTileCoordinates(tileCoords);
         ReferencedEnvelope metaTileEnvelope = getMetaTileEnvelope(bbox, tileCoords, metaTileCoords);
         MetaTileKey key = new MetaTileKey(mapKey, metaTileCoords, metaTileEnvelope);
+        key.sources = getSources(request);
 
         // since this will be used for thread synchronization, we have to make
         // sure two thread asking for the same meta tile will get the same key
@@ -121,6 +186,35 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         return metaTileKeys.unique(key);
     }
 
+    /** The sources of the catalog layers in the request, layer groups included */
+    private Set<String> getSources(GetMapRequest request) {
+        Set<String> sources = new HashSet<>();
+        for (MapLayerInfo layer : request.getLayers()) {
+            if (layer.getLayerInfo() != null) {
+                sources.add(getSource(layer.getResource()));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Identifies the data a resource is published from, shared by all the layers publishing the
+     * same store table under different names
+     */
+    static String getSource(ResourceInfo resource) {
+        return resource.getStore().getId() + ":" + resource.getNativeName();
+    }
+
+    /** The source of the modified layer, or null if it cannot be found in the catalog */
+    private String getSource(QName layer) {
+        if (catalog == null || layer == null) {
+            return null;
+        }
+        FeatureTypeInfo featureType =
+                catalog.getFeatureTypeByName(layer.getNamespaceURI(), layer.getLocalPart());
+        return featureType == null ? null : getSource(featureType);
+    }
+
     private ReferencedEnvelope getMetaTileEnvelope(
             ReferencedEnvelope bbox, Point tileCoords, Point metaTileCoords) {
         double minx = bbox.getMinX() + (metaTileCoords.x - tileCoords.x) * bbox.getWidth();
@@ -270,6 +364,13 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
         ReferencedEnvelope metaTileEnvelope;
 
+        /**
+         * The sources of the layers in the map, see {@link QuickTileCache#getSource(ResourceInfo)},
+         * used for invalidation. Not part of the identity, as the map key already contains the
+         * layers
+         */
+        Set<String> sources = Collections.emptySet();
+
         public MetaTileKey(
                 MapKey mapKey, Point metaTileCoords, ReferencedEnvelope metaTileEnvelope) {
             super();
@@ -321,8 +422,8 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     }
 
     /** Gathers a tile from the cache, if available */
-    public synchronized RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
-        CacheElement ce = (CacheElement) tileCache.get(key);
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
+        CacheElement ce = tileCache.getIfPresent(key);
 
         if (ce == null) {
             return null;
@@ -346,35 +447,128 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /**
      * Puts the specified tile array in the cache, and returns the tile the request was looking for
      */
-    public synchronized void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
         tileCache.put(key, new CacheElement(tiles));
     }
 
-    class CacheElement {
+    /**
+     * Puts the specified tile array in the cache, recording the time it took to render them
+     *
+     * @param loadTime the meta-tile rendering time, in nanoseconds
+     */
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles, long loadTime) {
+        totalLoadTime.addAndGet(loadTime);
+        storeTiles(key, tiles);
+    }
+
+    @Override
+    public List<CacheStatistics> getCacheStatistics() {
+        return Collections.singletonList(getStatistics());
+    }
+
+    /** Returns the cache hit/miss statistics */
+    public CacheStatistics getStatistics() {
+        CacheStats stats = tileCache.stats();
+        return new CacheStatistics(
+                "metaTiles",
+                tileCache.size(),
+                maximumSize,
+                stats.hitCount(),
+                stats.missCount(),
+                totalLoadTime.get(),
+                stats.evictionCount());
+    }
+
+    static class CacheElement {
         RenderedImage[] tiles;
 
+        /** Memory used by the tiles, in bytes */
+        int weight;
+
         public CacheElement(RenderedImage[] tiles) {
             this.tiles = tiles;
+            long weight = 0;
+            for (RenderedImage tile : tiles) {
+                if (tile != null) {
+                    int bits = 0;
+                    for (int size : tile.getSampleModel().getSampleSize()) {
+                        bits += size;
+                    }
+                    weight += (long) tile.getWidth() * tile.getHeight() * bits / 8;
+                }
+            }
+            this.weight = (int) Math.min(weight, Integer.MAX_VALUE);
         }
     }
 
     public void dataStoreChange(TransactionEvent event) throws WFSException {
-        // if anything changes we just wipe out the cache. the mapkey
-        // contains a string with part of the map request where the layer
-        // name is included, but we would have to parse it and consider
-        // also that the namespace may be missing in the getmap request
-        tileCache.clear();
+        // only drop the meta-tiles containing a layer published from the modified data and
+        // touching the modified features. Maps without catalog layers (e.g., remote or inline
+        // ones) are always dropped, and if the modified data cannot be found all the meta-tiles
+        // touching the features are
+        String source = getSource(event.getLayerName());
+        ReferencedEnvelope bounds = getBounds(event);
+        tileCache
+                .asMap()
+                .keySet()
+                .removeIf(
+                        key ->
+                                key.sources.isEmpty()
+                                        || ((source == null || key.sources.contains(source))
+                                                && intersects(key, bounds)));
+    }
+
+    /** The bounds of the features affected by the transaction, or null if not available */
+    private ReferencedEnvelope getBounds(TransactionEvent event) {
+        try {
+            SimpleFeatureCollection features = event.getAffectedFeatures();
+            if (features != null) {
+                ReferencedEnvelope bounds = features.getBounds();
+                if (bounds != null && !bounds.isNull()) {
+                    return bounds;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to compute the transaction bounds", e);
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the meta-tile, plus one tile around it to account for symbols and labels
+     * extending beyond the features, might be touched by the bounds. Null bounds, or bounds that
+     * cannot be reprojected, touch every meta-tile.
+     */
+    private boolean intersects(MetaTileKey key, ReferencedEnvelope bounds) {
+        if (bounds == null) {
+            return true;
+        }
+        ReferencedEnvelope metaTile = new ReferencedEnvelope(key.getMetaTileEnvelope());
+        metaTile.expandBy(metaTile.getWidth() / key.getMetaFactor());
+        try {
+            CoordinateReferenceSystem crs = metaTile.getCoordinateReferenceSystem();
+            ReferencedEnvelope target = bounds;
+            if (crs != null
+                    && bounds.getCoordinateReferenceSystem() != null
+                    && !CRS.equalsIgnoreMetadata(crs, bounds.getCoordinateReferenceSystem())) {
+                target = bounds.transform(crs, true);
+            }
+            return metaTile.intersects((Envelope) target);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to reproject the transaction bounds", e);
+            return true;
+        }
     }
 
     @Override
     public void onReset() {
         // data might have changed in the meantime
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 
     @Override
     public void onDispose() {
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 
     public void beforeReload() {
@@ -383,6 +577,6 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     @Override
     public void onReload() {
-        tileCache.clear();
+        tileCache.invalidateAll();
     }
 }
@@ -440,7 +440,8 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
 
         RenderingHints hints = new RenderingHints(hintsMap);
         StreamingRenderer renderer = buildRenderer();
-        renderer.setThreadPool(DefaultWebMapService.getRenderingPool());
+        renderer.setThreadPool(
+                DefaultWebMapService.getRenderingPool(paintArea.width, paintArea.height));
         renderer.setMapContent(mapContent);
         renderer.setJava2DHints(hints);
 
@@ -0,0 +1,257 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import ar.com.hjg.pngj.FilterType;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.WMSMapContent;
+
+/**
+ * A {@link PNGJWriter} that picks the scanline filter and the compression effort for each image,
+ * based on a quick analysis of its contents:
+ *
+ * <ul>
+ *   <li>Images made of a single color (e.g., empty tiles) are encoded once, and the encoded bytes
+ *       are reused for all the images with the same size, color model and color
+ *   <li>Paletted images are not filtered, filtering does not help on palette indexes
+ *   <li>Mostly transparent images are not filtered, and are compressed with a lower effort, as long
+ *       runs of transparent pixels compress well anyway
+ *   <li>Other images use the same filter as {@link PNGJWriter}, and the configured compression
+ * </ul>
+ *
+ * The strategy used for the last image is available from {@link #getStrategy()}.
+ */
+public class AdaptivePNGWriter extends PNGJWriter {
+
+    /** How the image has been encoded */
+    public enum Strategy {
+        UNIFORM,
+        PALETTE,
+        SPARSE,
+        DENSE
+    }
+
+    /** Ratio of transparent pixels above which an image is considered sparse */
+    static final double SPARSE_RATIO = 0.75;
+
+    /** Minimum quality (hence maximum compression effort) used for sparse images */
+    static final float SPARSE_QUALITY = 0.8f;
+
+    /** Once the image is known not to be uniform, only one row every this many is analyzed */
+    static final int ROW_STEP = 8;
+
+    static final Cache<UniformImageKey, byte[]> UNIFORM_IMAGES =
+            CacheBuilder.newBuilder().maximumSize(256).build();
+
+    Strategy strategy;
+
+    @Override
+    public RenderedImage writePNG(
+            RenderedImage image, OutputStream outStream, float quality, WMSMapContent mapContent) {
+        ColorModel cm = image.getColorModel();
+        if (cm instanceof IndexColorModel) {
+            strategy = Strategy.PALETTE;
+            return writePNG(image, outStream, quality, FilterType.FILTER_NONE);
+        }
+
+        ImageAnalysis analysis = analyze(image);
+        if (analysis == null) {
+            strategy = Strategy.DENSE;
+            return writePNG(image, outStream, quality, getFilterType(mapContent));
+        } else if (analysis.uniform) {
+            strategy = Strategy.UNIFORM;
+            writeUniform(image, outStream, quality, analysis.pixel);
+            return image;
+        } else if (analysis.transparentRatio >= SPARSE_RATIO) {
+            strategy = Strategy.SPARSE;
+            float sparseQuality = Math.max(quality, SPARSE_QUALITY);
+            return writePNG(image, outStream, sparseQuality, FilterType.FILTER_NONE);
+        } else {
+            strategy = Strategy.DENSE;
+            return writePNG(image, outStream, quality, getFilterType(mapContent));
+        }
+    }
+
+    /** Returns the strategy used to encode the last image, or null if none was encoded */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    private void writeUniform(
+            RenderedImage image, OutputStream outStream, float quality, int[] pixel) {
+        ColorModel cm = image.getColorModel();
+        UniformImageKey key =
+                new UniformImageKey(
+                        image.getWidth(),
+                        image.getHeight(),
+                        cm.getNumComponents(),
+                        cm.hasAlpha(),
+                        cm.isAlphaPremultiplied(),
+                        quality,
+                        pixel);
+        try {
+            byte[] encoded =
+                    UNIFORM_IMAGES.get(
+                            key,
+                            () -> {
+                                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                                writePNG(image, bos, quality, FilterType.FILTER_NONE);
+                                return bos.toByteArray();
+                            });
+            outStream.write(encoded);
+        } catch (Exception e) {
+            throw new ServiceException("Failed to encode the PNG", e);
+        }
+    }
+
+    /**
+     * Looks for uniform and mostly transparent images. Only byte images with a component color
+     * model are analyzed, null is returned for the others.
+     */
+    static ImageAnalysis analyze(RenderedImage image) {
+        ColorModel cm = image.getColorModel();
+        int bands = image.getSampleModel().getNumBands();
+        if (cm == null
+                || cm instanceof IndexColorModel
+                || image.getSampleModel().getDataType() != DataBuffer.TYPE_BYTE
+                || bands != cm.getNumComponents()
+                || image.getWidth() == 0
+                || image.getHeight() == 0) {
+            return null;
+        }
+        int alphaBand = cm.hasAlpha() ? bands - 1 : -1;
+
+        ImageAnalysis analysis = new ImageAnalysis();
+        Rectangle bounds =
+                new Rectangle(
+                        image.getMinX(), image.getMinY(), image.getWidth(), image.getHeight());
+        int[] row = new int[image.getWidth() * bands];
+        long pixels = 0;
+        long transparent = 0;
+        int offset = 0;
+        while (offset < bounds.height) {
+            // the transparency ratio is estimated on every ROW_STEP rows only
+            boolean sampled = offset % ROW_STEP == 0;
+            readRow(image, bounds, bounds.y + offset, row);
+            if (analysis.pixel == null) {
+                analysis.pixel = Arrays.copyOf(row, bands);
+            }
+            for (int i = 0; i < row.length; i += bands) {
+                if (analysis.uniform) {
+                    for (int b = 0; b < bands; b++) {
+                        if (row[i + b] != analysis.pixel[b]) {
+                            analysis.uniform = false;
+                            break;
+                        }
+                    }
+                }
+                if (sampled && alphaBand >= 0 && row[i + alphaBand] == 0) {
+                    transparent++;
+                }
+            }
+            if (sampled) {
+                pixels += bounds.width;
+            }
+            // rows are checked one by one while the image looks uniform, then sampled
+            offset = analysis.uniform ? offset + 1 : (offset / ROW_STEP + 1) * ROW_STEP;
+        }
+        analysis.transparentRatio = (double) transparent / pixels;
+        return analysis;
+    }
+
+    /** Reads a full image row, across all the tiles it intersects */
+    private static void readRow(RenderedImage image, Rectangle bounds, int y, int[] row) {
+        int tileY = Math.floorDiv(y - image.getTileGridYOffset(), image.getTileHeight());
+        int bands = image.getSampleModel().getNumBands();
+        int minTileX = image.getMinTileX();
+        for (int tileX = minTileX; tileX < minTileX + image.getNumXTiles(); tileX++) {
+            Raster tile = image.getTile(tileX, tileY);
+            Rectangle area = tile.getBounds().intersection(bounds);
+            if (area.isEmpty()) {
+                continue;
+            }
+            int[] samples = tile.getPixels(area.x, y, area.width, 1, (int[]) null);
+            System.arraycopy(samples, 0, row, (area.x - bounds.x) * bands, area.width * bands);
+        }
+    }
+
+    /** Results of the analysis of an image */
+    static class ImageAnalysis {
+
+        boolean uniform = true;
+
+        /** The samples of the first pixel, which are the ones of all pixels in uniform images */
+        int[] pixel;
+
+        /** Ratio of the transparent pixels, estimated on a subset of the rows */
+        double transparentRatio;
+    }
+
+    /** Identifies the images that result in the same encoded bytes */
+    static class UniformImageKey {
+
+        int width;
+        int height;
+        int components;
+        boolean alpha;
+        boolean premultiplied;
+        float quality;
+        int[] pixel;
+
+        UniformImageKey(
+                int width,
+                int height,
+                int components,
+                boolean alpha,
+                boolean premultiplied,
+                float quality,
+                int[] pixel) {
+            this.width = width;
+            this.height = height;
+            this.components = components;
+            this.alpha = alpha;
+            this.premultiplied = premultiplied;
+            this.quality = quality;
+            this.pixel = pixel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            UniformImageKey that = (UniformImageKey) o;
+            return width == that.width
+                    && height == that.height
+                    && components == that.components
+                    && alpha == that.alpha
+                    && premultiplied == that.premultiplied
+                    && Float.compare(quality, that.quality) == 0
+                    && Arrays.equals(pixel, that.pixel);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + components;
+            result = 31 * result + (alpha ? 1 : 0);
+            result = 31 * result + (premultiplied ? 1 : 0);
+            result = 31 * result + Float.floatToIntBits(quality);
+            result = 31 * result + Arrays.hashCode(pixel);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Point in time histogram of the PNG encoding times for a combination of layers, output format and
+ * encoding strategy. Bucket {@code i} counts the images encoded in less than {@code 2^i}
+ * milliseconds (and at least {@code 2^(i-1)}), the last bucket counts all the slower ones.
+ */
+public class PNGEncodingHistogram implements Serializable {
+
+    private static final long serialVersionUID = -3530712381563472163L;
+
+    String layers;
+    String format;
+    String strategy;
+    long count;
+    long totalBytes;
+    long totalTime;
+    long[] buckets;
+
+    @ConstructorProperties({
+        "layers",
+        "format",
+        "strategy",
+        "count",
+        "totalBytes",
+        "totalTime",
+        "buckets"
+    })
+    public PNGEncodingHistogram(
+            String layers,
+            String format,
+            String strategy,
+            long count,
+            long totalBytes,
+            long totalTime,
+            long[] buckets) {
+        this.layers = layers;
+        this.format = format;
+        this.strategy = strategy;
+        this.count = count;
+        this.totalBytes = totalBytes;
+        this.totalTime = totalTime;
+        this.buckets = buckets;
+    }
+
+    /** The comma separated names of the requested layers */
+    public String getLayers() {
+        return layers;
+    }
+
+    /** The requested output format */
+    public String getFormat() {
+        return format;
+    }
+
+    /** The encoder, or the adaptive encoder strategy, used for the images */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /** Number of encoded images */
+    public long getCount() {
+        return count;
+    }
+
+    /** Total size of the encoded images */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /** Total time spent encoding, in nanoseconds */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /** Image counts by encoding time, in power of two milliseconds buckets */
+    public long[] getBuckets() {
+        return buckets;
+    }
+
+    @Override
+    public String toString() {
+        return "PNGEncodingHistogram [layers="
+                + layers
+                + ", format="
+                + format
+                + ", strategy="
+                + strategy
+                + ", count="
+                + count
+                + ", totalBytes="
+                + totalBytes
+                + ", totalTime="
+                + totalTime
+                + ", buckets="
+                + Arrays.toString(buckets)
+                + "]";
+    }
+}
@@ -0,0 +1,175 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Collects PNG encoding time histograms, by requested layers, output format and encoding strategy,
+ * so that the bytes/CPU trade off of the encoders can be compared layer by layer. The number of
+ * tracked layer combinations is bounded, once the limit is reached the new ones are accounted
+ * under {@link #OTHER_LAYERS}.
+ */
+public class PNGEncodingStatistics implements PNGEncodingStatisticsMXBean {
+
+    static final Logger LOGGER = Logging.getLogger(PNGEncodingStatistics.class);
+
+    /** Maximum number of histograms kept */
+    static final int MAX_HISTOGRAMS = 1000;
+
+    /** The layers name used once {@link #MAX_HISTOGRAMS} is reached */
+    public static final String OTHER_LAYERS = "*";
+
+    /** Number of histogram buckets, the last one collects encodings taking more than 2 seconds */
+    static final int BUCKETS = 13;
+
+    static final PNGEncodingStatistics INSTANCE = new PNGEncodingStatistics();
+
+    final Map<Key, Histogram> histograms = new ConcurrentHashMap<>();
+
+    /** Returns the statistics shared by all the PNG map responses */
+    public static PNGEncodingStatistics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the encoding of an image
+     *
+     * @param layers the requested layers
+     * @param format the output format
+     * @param strategy the encoder, or encoding strategy, used
+     * @param nanos the encoding time, in nanoseconds
+     * @param bytes the size of the encoded image
+     */
+    public void record(String layers, String format, String strategy, long nanos, long bytes) {
+        Key key = new Key(layers, format, strategy);
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            if (histograms.size() >= MAX_HISTOGRAMS) {
+                key = new Key(OTHER_LAYERS, format, strategy);
+            }
+            histogram = histograms.computeIfAbsent(key, k -> new Histogram());
+        }
+        histogram.record(nanos, bytes);
+    }
+
+    @Override
+    public List<PNGEncodingHistogram> getHistograms() {
+        List<PNGEncodingHistogram> result = new ArrayList<>();
+        for (Map.Entry<Key, Histogram> entry : histograms.entrySet()) {
+            Key key = entry.getKey();
+            Histogram histogram = entry.getValue();
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.buckets.get(i);
+            }
+            result.add(
+                    new PNGEncodingHistogram(
+                            key.layers,
+                            key.format,
+                            key.strategy,
+                            histogram.count.sum(),
+                            histogram.bytes.sum(),
+                            histogram.time.sum(),
+                            buckets));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        histograms.clear();
+    }
+
+    /** Registers the bean in the platform MBean server, replacing any previous registration */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the PNG encoding statistics MBean", e);
+        }
+    }
+
+    /** Removes the bean from the platform MBean server */
+    public void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.FINE, "Failed to unregister the PNG encoding statistics MBean", e);
+        }
+    }
+
+    /** Returns the bucket for the given encoding time */
+    static int bucket(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        // 0ms goes in bucket 0, 1ms in bucket 1, 2-3ms in bucket 2, 4-7ms in bucket 3 and so on
+        int bucket = 64 - Long.numberOfLeadingZeros(millis);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    static class Histogram {
+        final LongAdder count = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder time = new LongAdder();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos, long encoded) {
+            count.increment();
+            bytes.add(encoded);
+            time.add(nanos);
+            buckets.incrementAndGet(bucket(nanos));
+        }
+    }
+
+    static class Key {
+        final String layers;
+        final String format;
+        final String strategy;
+
+        Key(String layers, String format, String strategy) {
+            this.layers = layers;
+            this.format = format;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(layers, key.layers)
+                    && Objects.equals(format, key.format)
+                    && Objects.equals(strategy, key.strategy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layers, format, strategy);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import java.util.List;
+
+/** JMX view of the PNG encoding time histograms */
+public interface PNGEncodingStatisticsMXBean {
+
+    /** The object name the bean is registered with */
+    String OBJECT_NAME = "org.geoserver:type=PNGEncodingStatistics";
+
+    /** Returns a histogram for each combination of layers, format and encoding strategy */
+    List<PNGEncodingHistogram> getHistograms();
+
+    /** Clears all the collected statistics */
+    void reset();
+}
@@ -28,6 +28,16 @@ public class PNGJWriter {
             RenderedImage image, OutputStream outStream, float quality, WMSMapContent mapContent) {
         // what kind of scaline filtering are we going to use?
         FilterType filterType = getFilterType(mapContent);
+        return writePNG(image, outStream, quality, filterType);
+    }
+
+    /**
+     * Encodes the image with the given compression quality and scanline filter
+     *
+     * @return the image actually encoded, which might be a rescaled version of the original one
+     */
+    protected RenderedImage writePNG(
+            RenderedImage image, OutputStream outStream, float quality, FilterType filterType) {
         // Creation of a new PNGWriter object
         PNGWriter writer = new PNGWriter();
         // Check if a Scanline is supported by the writer
@@ -56,7 +66,7 @@ public class PNGJWriter {
      * SUB filtering is useful for raster images with "high" variation, otherwise we go for NONE,
      * empirically it provides better compression at lower effort
      */
-    private FilterType getFilterType(WMSMapContent mapContent) {
+    protected FilterType getFilterType(WMSMapContent mapContent) {
         RasterSymbolizerVisitor visitor = new RasterSymbolizerVisitor();
         for (Layer layer : mapContent.layers()) {
             // check if the style has a raster symbolizer, don't trust the layer type as
@@ -0,0 +1,105 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RenderingExecutorTest {
+
+    RenderingExecutor executor;
+
+    @Before
+    public void setup() {
+        executor = new RenderingExecutor(1);
+    }
+
+    @After
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testTilesBeforeLargeMaps() throws Exception {
+        // keep the only thread busy, so that the following maps get queued
+        CountDownLatch latch = new CountDownLatch(1);
+        Future<?> blocker =
+                executor.submit(
+                        () -> {
+                            latch.await();
+                            return null;
+                        });
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService print = executor.forMap(4096, 4096);
+        ExecutorService tile = executor.forMap(256, 256);
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(print.submit(() -> order.add("print")));
+        futures.add(tile.submit(() -> order.add("tile1")));
+        futures.add(tile.submit(() -> order.add("tile2")));
+        assertEquals(3, executor.getQueueSize());
+
+        latch.countDown();
+        blocker.get(10, TimeUnit.SECONDS);
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("tile1", "tile2", "print"), order);
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        executor.shutdown();
+        executor = new RenderingExecutor(2);
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(
+                    executor.forMap(256, 256)
+                            .submit(
+                                    () -> {
+                                        maxRunning.accumulateAndGet(
+                                                running.incrementAndGet(), Math::max);
+                                        latch.await();
+                                        running.decrementAndGet();
+                                        return null;
+                                    }));
+        }
+        assertEquals(2, executor.getMaximumPoolSize());
+        assertTrue(executor.getPoolSize() <= 2);
+
+        latch.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testMapViewShutdown() {
+        ExecutorService view = executor.forMap(256, 256);
+        view.shutdown();
+        assertFalse(view.isShutdown());
+        assertFalse(executor.isShutdown());
+    }
+}
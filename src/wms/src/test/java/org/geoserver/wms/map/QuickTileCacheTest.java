@@ -6,15 +6,85 @@
 package org.geoserver.wms.map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import org.geoserver.catalog.CacheStatistics;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wms.map.QuickTileCache.MapKey;
+import org.geoserver.wms.map.QuickTileCache.MetaTileKey;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
 import org.junit.Test;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 public class QuickTileCacheTest {
+
+    static final String URI = "http://www.geoserver.org/test";
+
     QuickTileCache cache = new QuickTileCache();
 
+    QName roads = new QName(URI, "roads");
+
+    QName lakes = new QName(URI, "lakes");
+
+    /** Published from the same table as roads */
+    QName mainRoads = new QName(URI, "mainRoads");
+
+    @Before
+    public void setUpCatalog() {
+        CatalogImpl catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("test");
+        catalog.add(ws);
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("test");
+        ns.setURI(URI);
+        catalog.add(ns);
+        DataStoreInfo store = factory.createDataStore();
+        store.setName("store");
+        store.setWorkspace(ws);
+        catalog.add(store);
+        catalog.add(featureType(catalog, store, "roads", "roads"));
+        catalog.add(featureType(catalog, store, "lakes", "lakes"));
+        catalog.add(featureType(catalog, store, "mainRoads", "roads"));
+        cache.catalog = catalog;
+    }
+
+    private FeatureTypeInfo featureType(
+            CatalogImpl catalog, DataStoreInfo store, String name, String nativeName) {
+        FeatureTypeInfo ft = catalog.getFactory().createFeatureType();
+        ft.setName(name);
+        ft.setNativeName(nativeName);
+        ft.setNamespace(catalog.getNamespaceByPrefix("test"));
+        ft.setStore(store);
+        return ft;
+    }
+
     @Test
     public void testMetaCoordinates() {
         Point orig = new Point(0, 0);
@@ -68,4 +138,121 @@ public class QuickTileCacheTest {
         assertEquals(new Point(0, 2), cache.getTileOffsetsInMeta(box1, meta));
         assertEquals(new Point(1, 2), cache.getTileOffsetsInMeta(box2, meta));
     }
+
+    @Test
+    public void testTransactionInvalidation() throws Exception {
+        CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        MetaTileKey west = key("roads", new Point(0, 0), new Envelope(-30, -20, 0, 10), roads);
+        MetaTileKey east = key("roads", new Point(9, 0), new Envelope(60, 70, 0, 10), roads);
+        MetaTileKey other = key("lakes", new Point(0, 0), new Envelope(-30, -20, 0, 10), lakes);
+        for (MetaTileKey key : new MetaTileKey[] {west, east, other}) {
+            cache.storeTiles(key, tiles());
+        }
+
+        // a change far from all the meta-tiles
+        cache.dataStoreChange(event(roads, new ReferencedEnvelope(0, 1, 50, 51, wgs84)));
+        assertEquals(3, cache.getStatistics().getSize());
+
+        // a change touching the west meta-tile, only that one gets dropped
+        cache.dataStoreChange(event(roads, new ReferencedEnvelope(-25, -24, 5, 6, wgs84)));
+        assertEquals(2, cache.getStatistics().getSize());
+        assertNull(cache.getTile(west, null));
+
+        // no bounds, all the roads meta-tiles are dropped
+        cache.dataStoreChange(event(roads, null));
+        assertEquals(1, cache.getStatistics().getSize());
+        assertEquals(1, cache.getStatistics().getMissCount());
+    }
+
+    @Test
+    public void testSameTableInvalidation() throws Exception {
+        CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        MetaTileKey main =
+                key("mainRoads", new Point(0, 0), new Envelope(-30, -20, 0, 10), mainRoads);
+        MetaTileKey other = key("lakes", new Point(0, 0), new Envelope(-30, -20, 0, 10), lakes);
+        cache.storeTiles(main, tiles());
+        cache.storeTiles(other, tiles());
+
+        // a change to roads drops the meta-tiles of the other layer published from its table
+        cache.dataStoreChange(event(roads, new ReferencedEnvelope(-25, -24, 5, 6, wgs84)));
+        assertEquals(1, cache.getStatistics().getSize());
+        assertNull(cache.getTile(main, null));
+    }
+
+    @Test
+    public void testUnknownLayerInvalidation() throws Exception {
+        CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        MetaTileKey west = key("roads", new Point(0, 0), new Envelope(-30, -20, 0, 10), roads);
+        MetaTileKey east = key("lakes", new Point(9, 0), new Envelope(60, 70, 0, 10), lakes);
+        cache.storeTiles(west, tiles());
+        cache.storeTiles(east, tiles());
+
+        // the source of the layer is not known, all the meta-tiles touching the change are dropped
+        QName unknown = new QName(URI, "unknown");
+        cache.dataStoreChange(event(unknown, new ReferencedEnvelope(-25, -24, 5, 6, wgs84)));
+        assertEquals(1, cache.getStatistics().getSize());
+        assertNull(cache.getTile(west, null));
+    }
+
+    @Test
+    public void testSizeBound() {
+        // each meta-tile takes 9 * 256 * 256 * 4 bytes, a bit more than 2MB
+        int count = (int) (QuickTileCache.getMaximumSize() / (9 * 256 * 256 * 4)) + 10;
+        for (int i = 0; i < count; i++) {
+            Envelope envelope = new Envelope(i * 10, i * 10 + 10, 0, 10);
+            cache.storeTiles(key("roads", new Point(i * 3, 0), envelope, roads), tiles());
+        }
+        CacheStatistics statistics = cache.getStatistics();
+        assertTrue(statistics.getSize() < count);
+        assertTrue(statistics.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void testCacheStatisticsProvider() {
+        MetaTileKey key = key("roads", new Point(0, 0), new Envelope(0, 10, 0, 10), roads);
+        cache.storeTiles(key, tiles(), 5000);
+
+        List<CacheStatistics> statistics = cache.getCacheStatistics();
+        assertEquals(1, statistics.size());
+        assertEquals("metaTiles", statistics.get(0).getName());
+        assertEquals(1, statistics.get(0).getSize());
+        assertEquals(QuickTileCache.getMaximumSize(), statistics.get(0).getMaximumSize());
+        assertEquals(5000, statistics.get(0).getTotalLoadTime());
+    }
+
+    private MetaTileKey key(String layers, Point coords, Envelope envelope, QName layer) {
+        MapKey mapKey = new MapKey("LAYERS=" + layers, 1, new Point2D.Double(0, 0));
+        MetaTileKey key =
+                new MetaTileKey(
+                        mapKey,
+                        coords,
+                        new ReferencedEnvelope(envelope, DefaultGeographicCRS.WGS84));
+        FeatureTypeInfo ft =
+                cache.catalog.getFeatureTypeByName(layer.getNamespaceURI(), layer.getLocalPart());
+        key.sources = Collections.singleton(QuickTileCache.getSource(ft));
+        return key;
+    }
+
+    private RenderedImage[] tiles() {
+        RenderedImage[] tiles = new RenderedImage[9];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        }
+        return tiles;
+    }
+
+    private TransactionEvent event(QName layer, ReferencedEnvelope bounds) {
+        SimpleFeatureCollection features = null;
+        if (bounds != null) {
+            SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+            tb.setName(layer.getLocalPart());
+            tb.add("geom", Polygon.class, bounds.getCoordinateReferenceSystem());
+            SimpleFeatureType type = tb.buildFeatureType();
+            Polygon polygon = JTS.toGeometry((Envelope) bounds);
+            features =
+                    DataUtilities.collection(
+                            SimpleFeatureBuilder.build(type, new Object[] {polygon}, null));
+        }
+        return new TransactionEvent(TransactionEventType.POST_UPDATE, null, layer, features);
+    }
 }
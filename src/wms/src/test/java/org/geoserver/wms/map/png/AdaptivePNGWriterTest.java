@@ -0,0 +1,128 @@
+/* (c) 2021 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map.png;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.png.AdaptivePNGWriter.ImageAnalysis;
+import org.geoserver.wms.map.png.AdaptivePNGWriter.Strategy;
+import org.junit.Test;
+
+public class AdaptivePNGWriterTest {
+
+    BufferedImage image(int type, Color background, int filled) {
+        BufferedImage image = new BufferedImage(256, 256, type);
+        Graphics2D graphics = image.createGraphics();
+        if (background != null) {
+            graphics.setColor(background);
+            graphics.fillRect(0, 0, 256, 256);
+        }
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 256, filled);
+        graphics.dispose();
+        return image;
+    }
+
+    ImageAnalysis analyze(int type, Color background, int filled) {
+        return AdaptivePNGWriter.analyze(image(type, background, filled));
+    }
+
+    byte[] write(AdaptivePNGWriter writer, BufferedImage image) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writer.writePNG(image, bos, 0.1f, new WMSMapContent());
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testAnalyze() {
+        ImageAnalysis analysis = analyze(BufferedImage.TYPE_4BYTE_ABGR, null, 0);
+        assertTrue(analysis.uniform);
+        assertArrayEquals(new int[] {0, 0, 0, 0}, analysis.pixel);
+        assertEquals(1, analysis.transparentRatio, 0d);
+
+        analysis = analyze(BufferedImage.TYPE_4BYTE_ABGR, null, 32);
+        assertFalse(analysis.uniform);
+        assertEquals(0.875, analysis.transparentRatio, 0.01);
+
+        analysis = analyze(BufferedImage.TYPE_3BYTE_BGR, Color.WHITE, 128);
+        assertFalse(analysis.uniform);
+        assertEquals(0, analysis.transparentRatio, 0d);
+
+        assertNull(analyze(BufferedImage.TYPE_INT_ARGB, null, 0));
+    }
+
+    @Test
+    public void testStrategies() throws Exception {
+        AdaptivePNGWriter writer = new AdaptivePNGWriter();
+        BufferedImage sparse = image(BufferedImage.TYPE_4BYTE_ABGR, null, 32);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(write(writer, sparse)));
+        assertEquals(Strategy.SPARSE, writer.getStrategy());
+        assertEquals(Color.RED.getRGB(), decoded.getRGB(0, 0));
+        assertEquals(0, decoded.getRGB(0, 255));
+
+        write(writer, image(BufferedImage.TYPE_4BYTE_ABGR, Color.WHITE, 200));
+        assertEquals(Strategy.DENSE, writer.getStrategy());
+
+        write(writer, image(BufferedImage.TYPE_BYTE_INDEXED, Color.WHITE, 200));
+        assertEquals(Strategy.PALETTE, writer.getStrategy());
+    }
+
+    @Test
+    public void testUniformImagesReuseEncoding() throws Exception {
+        AdaptivePNGWriter writer = new AdaptivePNGWriter();
+        BufferedImage empty = image(BufferedImage.TYPE_4BYTE_ABGR, null, 0);
+        byte[] first = write(writer, empty);
+        assertEquals(Strategy.UNIFORM, writer.getStrategy());
+        byte[] second = write(writer, image(BufferedImage.TYPE_4BYTE_ABGR, null, 0));
+        assertArrayEquals(first, second);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(first));
+        assertEquals(256, decoded.getWidth());
+        assertEquals(0, decoded.getRGB(128, 128));
+
+        // a different color gets its own encoding
+        byte[] red = write(writer, image(BufferedImage.TYPE_4BYTE_ABGR, null, 256));
+        assertEquals(Strategy.UNIFORM, writer.getStrategy());
+        decoded = ImageIO.read(new ByteArrayInputStream(red));
+        assertEquals(Color.RED.getRGB(), decoded.getRGB(128, 128));
+    }
+
+    @Test
+    public void testStatistics() {
+        assertEquals(0, PNGEncodingStatistics.bucket(TimeUnit.MICROSECONDS.toNanos(500)));
+        assertEquals(1, PNGEncodingStatistics.bucket(TimeUnit.MILLISECONDS.toNanos(1)));
+        assertEquals(3, PNGEncodingStatistics.bucket(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertEquals(12, PNGEncodingStatistics.bucket(TimeUnit.MINUTES.toNanos(1)));
+
+        PNGEncodingStatistics statistics = new PNGEncodingStatistics();
+        long millis = TimeUnit.MILLISECONDS.toNanos(1);
+        statistics.record("topp:states", "image/png", "SPARSE", 5 * millis, 1000);
+        statistics.record("topp:states", "image/png", "SPARSE", 6 * millis, 500);
+        statistics.record("topp:states", "image/png", "UNIFORM", 0, 100);
+        List<PNGEncodingHistogram> histograms = statistics.getHistograms();
+        assertEquals(2, histograms.size());
+        PNGEncodingHistogram sparse =
+                histograms.stream().filter(h -> "SPARSE".equals(h.getStrategy())).findFirst().get();
+        assertEquals(2, sparse.getCount());
+        assertEquals(1500, sparse.getTotalBytes());
+        assertEquals(11 * millis, sparse.getTotalTime());
+        assertEquals(2, sparse.getBuckets()[3]);
+
+        statistics.reset();
+        assertTrue(statistics.getHistograms().isEmpty());
+    }
+}